@@ -0,0 +1,51 @@
+package com.memora.ai.nativemic;
+
+import android.util.Base64;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** PCM16 chunk to Base64: the reusable encoder against the ByteBuffer + android.util.Base64 path it replaced. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Base64Benchmark {
+
+    @Param({ "16000", "48000" })
+    public int sampleRate;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private short[] samples;
+    private Pcm16Base64Encoder encoder;
+
+    @Setup
+    public void setUp() {
+        samples = BenchmarkSignals.pcm16Chunk(sampleRate, BenchmarkSignals.chunkFrames(sampleRate, chunkMs));
+        encoder = new Pcm16Base64Encoder(samples.length);
+    }
+
+    @Benchmark
+    public String pcm16Encoder() {
+        return encoder.encode(samples, 0, samples.length);
+    }
+
+    @Benchmark
+    public String byteBufferBaseline() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(samples.length * 2);
+        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : samples) {
+            byteBuffer.putShort(sample);
+        }
+        return Base64.encodeToString(byteBuffer.array(), Base64.NO_WRAP);
+    }
+}
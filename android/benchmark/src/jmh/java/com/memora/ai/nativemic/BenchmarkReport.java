@@ -0,0 +1,98 @@
+package com.memora.ai.nativemic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Locale;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Prints a JMH JSON result file as one line per benchmark: time per chunk, bytes allocated per chunk, allocation rate
+ * and realtime factor (audio duration of the chunk divided by the time spent processing it).
+ */
+public final class BenchmarkReport {
+
+    private BenchmarkReport() {}
+
+    public static void main(String[] args) throws IOException, JSONException {
+        Path resultsFile = Paths.get(args.length > 0 ? args[0] : "build/results/jmh/results.json");
+        if (!Files.exists(resultsFile)) {
+            System.out.println("No JMH results at " + resultsFile + "; run :benchmark:jmh first.");
+            return;
+        }
+
+        JSONArray results = new JSONArray(new String(Files.readAllBytes(resultsFile), StandardCharsets.UTF_8));
+        System.out.println(
+            String.format(Locale.US, "%-80s %12s %12s %12s %10s", "benchmark", "ns/chunk", "B/chunk", "MB/s alloc", "realtime")
+        );
+        for (int index = 0; index < results.length(); index += 1) {
+            JSONObject result = results.getJSONObject(index);
+            JSONObject params = result.optJSONObject("params");
+            double nsPerChunk = toNanoseconds(result.getJSONObject("primaryMetric"));
+            JSONObject secondary = result.optJSONObject("secondaryMetrics");
+            double bytesPerChunk = secondaryScore(secondary, "gc.alloc.rate.norm");
+            double allocationRate = secondaryScore(secondary, "gc.alloc.rate");
+            int chunkMs = params != null ? params.optInt("chunkMs", 0) : 0;
+            double realtimeFactor = chunkMs > 0 && nsPerChunk > 0 ? (chunkMs * 1_000_000.0) / nsPerChunk : Double.NaN;
+
+            System.out.println(
+                String.format(
+                    Locale.US,
+                    "%-80s %12.1f %12.1f %12.1f %9.0fx",
+                    describe(result.getString("benchmark"), params),
+                    nsPerChunk,
+                    bytesPerChunk,
+                    allocationRate,
+                    realtimeFactor
+                )
+            );
+        }
+    }
+
+    private static String describe(String benchmark, JSONObject params) {
+        String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        if (params == null) {
+            return name;
+        }
+
+        StringBuilder builder = new StringBuilder(name);
+        Iterator<String> keys = params.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!"chunkMs".equals(key)) {
+                builder.append(' ').append(params.optString(key));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static double toNanoseconds(JSONObject metric) throws JSONException {
+        double score = metric.getDouble("score");
+        String unit = metric.optString("scoreUnit");
+        if (unit.startsWith("us/")) {
+            return score * 1_000;
+        }
+        if (unit.startsWith("ms/")) {
+            return score * 1_000_000;
+        }
+        return score;
+    }
+
+    private static double secondaryScore(JSONObject secondary, String name) {
+        if (secondary == null) {
+            return Double.NaN;
+        }
+
+        // Older JMH releases prefix profiler metrics with a middle dot.
+        JSONObject metric = secondary.optJSONObject(name);
+        if (metric == null) {
+            metric = secondary.optJSONObject("\u00b7" + name);
+        }
+        return metric != null ? metric.optDouble("score", Double.NaN) : Double.NaN;
+    }
+}
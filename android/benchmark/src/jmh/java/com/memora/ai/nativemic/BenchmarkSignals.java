@@ -0,0 +1,34 @@
+package com.memora.ai.nativemic;
+
+import java.util.Random;
+
+/** Deterministic speech-like test input: two tones plus low-level noise. */
+final class BenchmarkSignals {
+
+    private BenchmarkSignals() {}
+
+    static int chunkFrames(int sampleRate, int chunkMs) {
+        return (sampleRate * chunkMs) / 1_000;
+    }
+
+    static float[] floatChunk(int sampleRate, int frames) {
+        Random random = new Random(42);
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            double time = index / (double) sampleRate;
+            samples[index] = (float) (0.4 * Math.sin(2 * Math.PI * 220 * time) +
+                0.2 * Math.sin(2 * Math.PI * 3_100 * time) +
+                0.02 * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    static short[] pcm16Chunk(int sampleRate, int frames) {
+        float[] source = floatChunk(sampleRate, frames);
+        short[] samples = new short[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = NativeMic.floatToPcm16(source[index]);
+        }
+        return samples;
+    }
+}
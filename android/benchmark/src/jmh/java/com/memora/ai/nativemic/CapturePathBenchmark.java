@@ -0,0 +1,88 @@
+package com.memora.ai.nativemic;
+
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The whole per-block processing path of a headless {@link NativeMic}: level metering, resampling or passthrough,
+ * chunking, payload building and Base64 encoding. Each operation feeds one chunk of input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CapturePathBenchmark {
+
+    @Param({ "16000", "44100", "48000" })
+    public int inputSampleRate;
+
+    @Param({ "pcm16k_s16le", "pcm48k_s16le", "pcm16k_s16le,pcm48k_s16le" })
+    public String outputStreams;
+
+    @Param({ "linear", "sinc" })
+    public String resamplerQuality;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private NativeMic controller;
+    private short[] block;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws NativeMic.NativeMicControllerError {
+        this.blackhole = blackhole;
+        controller = new NativeMic(this::consume);
+
+        List<String> streamValues = new ArrayList<>();
+        for (String value : outputStreams.split(",")) {
+            streamValues.add(value);
+        }
+
+        NativeMic.StartCaptureOptionsModel options = new NativeMic.StartCaptureOptionsModel(
+            NativeMic.MicProfile.WAVEFORM,
+            NativeMic.SessionMode.MEASUREMENT,
+            NativeMic.parseOutputStreams(streamValues),
+            chunkMs,
+            true,
+            NativeMic.getDefaultAudioLevelIntervalMs(),
+            false,
+            null,
+            NativeMic.OutputRoute.SYSTEM,
+            NativeMic.ResamplerQuality.fromWireValue(resamplerQuality),
+            NativeMic.CaptureEncoding.PCM16,
+            1,
+            NativeMic.ChannelMix.AVERAGE,
+            NativeMic.PcmTransport.EVENTS,
+            1,
+            false,
+            NativeMic.getDefaultVadPreRollMs(),
+            NativeMic.getDefaultVadPostRollMs(),
+            0,
+            null,
+            null
+        );
+        controller.startHeadlessCapture(options, inputSampleRate, NativeMic.CaptureEncoding.PCM16);
+        block = BenchmarkSignals.pcm16Chunk(inputSampleRate, BenchmarkSignals.chunkFrames(inputSampleRate, chunkMs));
+    }
+
+    @Benchmark
+    public void processInputFrames() {
+        controller.processInputFrames(block, block.length);
+    }
+
+    private void consume(String eventName, JSObject payload) {
+        blackhole.consume(payload);
+    }
+}
@@ -0,0 +1,50 @@
+package com.memora.ai.nativemic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Chunk staging in a stream pipeline: append one chunk of samples, then pop one chunk. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PcmRingBufferBenchmark {
+
+    @Param({ "16000", "48000" })
+    public int sampleRate;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private NativeMic.PcmRingBuffer buffer;
+    private short[] pcmChunk;
+    private float[] floatChunk;
+    private short[] target;
+
+    @Setup
+    public void setUp() {
+        int frames = BenchmarkSignals.chunkFrames(sampleRate, chunkMs);
+        buffer = new NativeMic.PcmRingBuffer(frames * 4);
+        pcmChunk = BenchmarkSignals.pcm16Chunk(sampleRate, frames);
+        floatChunk = BenchmarkSignals.floatChunk(sampleRate, frames);
+        target = new short[frames];
+    }
+
+    @Benchmark
+    public boolean appendAndPop() {
+        buffer.write(pcmChunk, 0, pcmChunk.length);
+        return buffer.read(target, target.length);
+    }
+
+    @Benchmark
+    public boolean appendFloatAndPop() {
+        buffer.writeFloat(floatChunk, 0, floatChunk.length);
+        return buffer.read(target, target.length);
+    }
+}
@@ -0,0 +1,53 @@
+package com.memora.ai.nativemic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** One chunk of input through each resampler engine, and the end-of-capture flush that follows it. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResamplerBenchmark {
+
+    @Param({ "16000", "44100", "48000" })
+    public int inputSampleRate;
+
+    @Param({ "16000", "48000" })
+    public int outputSampleRate;
+
+    @Param({ "linear", "sinc" })
+    public String resamplerQuality;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private NativeMic.Resampler resampler;
+    private float[] input;
+    private float[] output;
+
+    @Setup
+    public void setUp() {
+        NativeMic.ResamplerQuality quality = NativeMic.ResamplerQuality.fromWireValue(resamplerQuality);
+        resampler = NativeMic.StreamPipeline.createResampler(inputSampleRate, outputSampleRate, quality);
+        input = BenchmarkSignals.floatChunk(inputSampleRate, BenchmarkSignals.chunkFrames(inputSampleRate, chunkMs));
+        output = new float[resampler.maxOutputFrames(input.length) + resampler.maxFlushFrames()];
+    }
+
+    @Benchmark
+    public int process() {
+        return resampler.process(input, 0, input.length, output, 0);
+    }
+
+    @Benchmark
+    public int processAndFlush() {
+        int written = resampler.process(input, 0, input.length, output, 0);
+        return written + resampler.flush(output, written);
+    }
+}
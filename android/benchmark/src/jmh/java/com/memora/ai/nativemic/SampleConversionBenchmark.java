@@ -0,0 +1,54 @@
+package com.memora.ai.nativemic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Sample format conversion for one chunk in each direction. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SampleConversionBenchmark {
+
+    @Param({ "16000", "48000" })
+    public int sampleRate;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private float[] floatChunk;
+    private short[] pcmChunk;
+    private float[] floatTarget;
+    private short[] pcmTarget;
+
+    @Setup
+    public void setUp() {
+        int frames = BenchmarkSignals.chunkFrames(sampleRate, chunkMs);
+        floatChunk = BenchmarkSignals.floatChunk(sampleRate, frames);
+        pcmChunk = BenchmarkSignals.pcm16Chunk(sampleRate, frames);
+        floatTarget = new float[frames];
+        pcmTarget = new short[frames];
+    }
+
+    @Benchmark
+    public short[] floatToPcm16() {
+        for (int index = 0; index < floatChunk.length; index += 1) {
+            pcmTarget[index] = NativeMic.floatToPcm16(floatChunk[index]);
+        }
+        return pcmTarget;
+    }
+
+    @Benchmark
+    public float[] pcm16ToFloat() {
+        for (int index = 0; index < pcmChunk.length; index += 1) {
+            floatTarget[index] = pcmChunk[index] / 32768.0f;
+        }
+        return floatTarget;
+    }
+}
@@ -0,0 +1,45 @@
+package com.memora.ai.nativemic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Compressing one chunk for each compressed output stream; the realtime column must stay well above 1x. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamEncodingBenchmark {
+
+    @Param({ "pcm16k_mulaw", "pcm16k_ima_adpcm", "pcm16k_flac", "pcm48k_flac" })
+    public String stream;
+
+    @Param({ "20" })
+    public int chunkMs;
+
+    private NativeMic.StreamPipeline pipeline;
+    private short[] samples;
+
+    @Setup
+    public void setUp() {
+        NativeMic.OutputStream outputStream = NativeMic.OutputStream.fromWireValue(stream);
+        pipeline = new NativeMic.StreamPipeline(
+            outputStream,
+            outputStream.sampleRate,
+            chunkMs,
+            BenchmarkSignals.chunkFrames(outputStream.sampleRate, chunkMs),
+            NativeMic.ResamplerQuality.LINEAR
+        );
+        samples = BenchmarkSignals.pcm16Chunk(outputStream.sampleRate, pipeline.chunkFrames);
+    }
+
+    @Benchmark
+    public int encode() {
+        return pipeline.encode(samples, samples.length);
+    }
+}
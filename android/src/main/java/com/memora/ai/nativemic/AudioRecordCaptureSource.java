@@ -0,0 +1,140 @@
+package com.memora.ai.nativemic;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+
+/** {@link CaptureSource} backed by a platform {@link AudioRecord}. */
+final class AudioRecordCaptureSource implements CaptureSource {
+
+    private final AudioRecord record;
+
+    private AudioRecordCaptureSource(AudioRecord record) {
+        this.record = record;
+    }
+
+    static AudioRecordCaptureSource open(int audioSource, int sampleRate, NativeMic.CaptureEncoding encoding, int channels, int chunkFrames)
+        throws NativeMic.NativeMicControllerError {
+        int channelMask = channels > 1 ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
+        int minBufferBytes = AudioRecord.getMinBufferSize(sampleRate, channelMask, encoding.audioFormatEncoding);
+        if (minBufferBytes <= 0) {
+            throw new NativeMic.NativeMicControllerError(
+                NativeMic.NativeMicErrorCode.AUDIO_SESSION_CONFIG,
+                "Failed to configure AVAudioSession.",
+                false,
+                String.valueOf(minBufferBytes)
+            );
+        }
+
+        int desiredBufferBytes = Math.max(minBufferBytes, chunkFrames * channels * encoding.bytesPerSample * 2);
+        AudioFormat format = new AudioFormat.Builder()
+            .setEncoding(encoding.audioFormatEncoding)
+            .setSampleRate(sampleRate)
+            .setChannelMask(channelMask)
+            .build();
+
+        AudioRecord record = new AudioRecord.Builder()
+            .setAudioSource(audioSource)
+            .setAudioFormat(format)
+            .setBufferSizeInBytes(desiredBufferBytes)
+            .build();
+
+        AudioRecordCaptureSource source = new AudioRecordCaptureSource(record);
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            source.release();
+            throw new NativeMic.NativeMicControllerError(
+                NativeMic.NativeMicErrorCode.ENGINE_START_FAILED,
+                "Failed to start AVAudioEngine.",
+                false,
+                String.valueOf(record.getState())
+            );
+        }
+
+        return source;
+    }
+
+    @Override
+    public int sampleRate() {
+        return record.getSampleRate();
+    }
+
+    @Override
+    public int channelCount() {
+        return record.getChannelCount();
+    }
+
+    @Override
+    public void start() throws NativeMic.NativeMicControllerError {
+        record.startRecording();
+        if (record.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+            throw new NativeMic.NativeMicControllerError(
+                NativeMic.NativeMicErrorCode.ENGINE_START_FAILED,
+                "Failed to start AVAudioEngine.",
+                false,
+                String.valueOf(record.getRecordingState())
+            );
+        }
+    }
+
+    @Override
+    public int read(short[] buffer, int length) {
+        return record.read(buffer, 0, length);
+    }
+
+    @Override
+    public int read(float[] buffer, int length) {
+        return record.read(buffer, 0, length, AudioRecord.READ_BLOCKING);
+    }
+
+    @Override
+    public boolean getTimestamp(AudioTimestamp timestamp) {
+        try {
+            return record.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_BOOTTIME) == AudioRecord.SUCCESS;
+        } catch (RuntimeException ignored) {
+            // Some HALs do not report timestamps; chunks then stay on the nominal clock.
+            return false;
+        }
+    }
+
+    @Override
+    public boolean setPreferredDevice(AudioDeviceInfo device) {
+        return record.setPreferredDevice(device);
+    }
+
+    @Override
+    public AudioDeviceInfo getPreferredDevice() {
+        return record.getPreferredDevice();
+    }
+
+    @Override
+    public AudioDeviceInfo getRoutedDevice() {
+        return record.getRoutedDevice();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            record.stop();
+        } catch (IllegalStateException ignored) {
+            // Might already be stopped.
+        }
+    }
+
+    @Override
+    public void release() {
+        try {
+            if (record.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                record.stop();
+            }
+        } catch (IllegalStateException ignored) {
+            // Ignore cleanup failures.
+        }
+
+        try {
+            record.release();
+        } catch (Exception ignored) {
+            // Ignore cleanup failures.
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.memora.ai.nativemic;
+
+/**
+ * Maps input frame positions to the capture hardware's clock. The capture thread feeds it
+ * {@code AudioRecord.getTimestamp} samples (frame position plus the boot-time nanos at which that frame was
+ * captured); a least-squares line through the most recent samples gives the real capture rate, so chunk timestamps
+ * follow the device clock instead of accumulating the error of the nominal rate. Until two samples span
+ * {@link #MIN_FIT_SPAN_MS} the nominal rate is used from the latest anchor.
+ *
+ * <p>A sample more than {@link #MAX_RESIDUAL_MS} off the current fit, or one that would pull the fit further than
+ * {@link #MAX_DRIFT_PPM} from nominal, is treated as a glitch and ignored. If {@link #MAX_CONSECUTIVE_REJECTS} arrive
+ * in a row the clock really did jump (a route change, say), and the window restarts from the newest sample. Methods
+ * are synchronized: samples arrive on the capture thread, lookups happen on the processing worker.
+ */
+final class CaptureClock {
+
+    static final int WINDOW = 64;
+    static final int MIN_FIT_SPAN_MS = 2_000;
+    static final double MAX_DRIFT_PPM = 20_000;
+    static final int MAX_RESIDUAL_MS = 5;
+    static final int MAX_CONSECUTIVE_REJECTS = 4;
+
+    private final int nominalSampleRate;
+    private final double nominalNanosPerFrame;
+    private final long[] framePositions = new long[WINDOW];
+    private final long[] nanoTimes = new long[WINDOW];
+    private int next = 0;
+    private int count = 0;
+    private long acceptedSamples = 0;
+    private long rejectedSamples = 0;
+    private int consecutiveRejects = 0;
+
+    // Fitted line: nanos = anchorNanos + (frame - anchorFrame) * nanosPerFrame.
+    private long anchorFrame;
+    private long anchorNanos;
+    private double nanosPerFrame;
+    private boolean fitted = false;
+
+    /** Starts on the nominal clock, with frame 0 captured at {@code startNanos}. */
+    CaptureClock(int nominalSampleRate, long startNanos) {
+        this.nominalSampleRate = nominalSampleRate;
+        this.nominalNanosPerFrame = 1_000_000_000.0 / nominalSampleRate;
+        this.anchorFrame = 0;
+        this.anchorNanos = startNanos;
+        this.nanosPerFrame = nominalNanosPerFrame;
+    }
+
+    /** Adds a hardware timestamp; positions must not go backwards, or the window restarts from this sample. */
+    synchronized void addTimestamp(long framePosition, long nanoTime) {
+        if (count > 0) {
+            int latest = (next + WINDOW - 1) % WINDOW;
+            if (framePosition <= framePositions[latest] || nanoTime <= nanoTimes[latest]) {
+                if (framePosition == framePositions[latest]) {
+                    return;
+                }
+                restart();
+            }
+        }
+
+        if (fitted && Math.abs(nanoTime - nanosAtFrame(framePosition)) > MAX_RESIDUAL_MS * 1_000_000L) {
+            if (!reject()) {
+                return;
+            }
+            restart();
+        }
+
+        framePositions[next] = framePosition;
+        nanoTimes[next] = nanoTime;
+        next = (next + 1) % WINDOW;
+        count = Math.min(WINDOW, count + 1);
+        refit(framePosition, nanoTime);
+    }
+
+    /**
+     * Forgets the sample window after the position source changed (a rebuilt recorder), keeping the current rate and
+     * anchor until samples from the new source refit them.
+     */
+    synchronized void resync() {
+        restart();
+    }
+
+    /** Boot-time nanos at which {@code framePosition} was captured. */
+    synchronized long nanosAtFrame(long framePosition) {
+        return anchorNanos + Math.round((framePosition - anchorFrame) * nanosPerFrame);
+    }
+
+    /** The frame position captured at {@code nanoTime}; the inverse of {@link #nanosAtFrame(long)}. */
+    synchronized long frameAtNanos(long nanoTime) {
+        return anchorFrame + Math.round((nanoTime - anchorNanos) / nanosPerFrame);
+    }
+
+    /** Capture rate measured against the boot-time clock, or the nominal rate until there is a fit. */
+    synchronized double estimatedSampleRate() {
+        return 1_000_000_000.0 / nanosPerFrame;
+    }
+
+    /** How much faster (positive) or slower than nominal the hardware clock runs, in parts per million. */
+    synchronized double driftPpm() {
+        return (nominalNanosPerFrame / nanosPerFrame - 1.0) * 1_000_000.0;
+    }
+
+    synchronized boolean hasHardwareTimestamps() {
+        return acceptedSamples > 0;
+    }
+
+    synchronized boolean isFitted() {
+        return fitted;
+    }
+
+    synchronized long acceptedSamples() {
+        return acceptedSamples;
+    }
+
+    synchronized long rejectedSamples() {
+        return rejectedSamples;
+    }
+
+    private void refit(long latestFrame, long latestNanos) {
+        int oldest = (next + WINDOW - count) % WINDOW;
+        long spanFrames = latestFrame - framePositions[oldest];
+        if (count < 2 || spanFrames < ((long) nominalSampleRate * MIN_FIT_SPAN_MS) / 1_000) {
+            // Not enough history for a slope: keep the current one and re-anchor on this sample.
+            consecutiveRejects = 0;
+            acceptedSamples += 1;
+            reanchor(latestFrame, latestNanos, nanosPerFrame);
+            return;
+        }
+
+        // Least squares on offsets from the oldest sample keeps the sums well inside double precision.
+        long baseFrame = framePositions[oldest];
+        long baseNanos = nanoTimes[oldest];
+        double sumX = 0;
+        double sumY = 0;
+        for (int index = 0; index < count; index += 1) {
+            int slot = (oldest + index) % WINDOW;
+            sumX += framePositions[slot] - baseFrame;
+            sumY += nanoTimes[slot] - baseNanos;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        double covariance = 0;
+        double variance = 0;
+        for (int index = 0; index < count; index += 1) {
+            int slot = (oldest + index) % WINDOW;
+            double x = framePositions[slot] - baseFrame - meanX;
+            double y = nanoTimes[slot] - baseNanos - meanY;
+            covariance += x * y;
+            variance += x * x;
+        }
+        double slope = covariance / variance;
+        double ppm = Math.abs(nominalNanosPerFrame / slope - 1.0) * 1_000_000.0;
+        if (!(ppm <= MAX_DRIFT_PPM)) {
+            // Drop the outlier again so it does not skew later fits.
+            next = (next + WINDOW - 1) % WINDOW;
+            count -= 1;
+            if (reject()) {
+                restart();
+                addTimestamp(latestFrame, latestNanos);
+            }
+            return;
+        }
+
+        consecutiveRejects = 0;
+        acceptedSamples += 1;
+        fitted = true;
+        // Anchor on the fitted line at the newest sample, so positions past it extrapolate from the freshest point.
+        long fittedNanos = baseNanos + Math.round(meanY + (latestFrame - baseFrame - meanX) * slope);
+        reanchor(latestFrame, fittedNanos, slope);
+    }
+
+    /** Counts a rejected sample; true once enough arrived in a row that the window should restart instead. */
+    private boolean reject() {
+        rejectedSamples += 1;
+        consecutiveRejects += 1;
+        return consecutiveRejects >= MAX_CONSECUTIVE_REJECTS;
+    }
+
+    private void restart() {
+        count = 0;
+        fitted = false;
+        consecutiveRejects = 0;
+    }
+
+    private void reanchor(long frame, long nanos, double slope) {
+        anchorFrame = frame;
+        anchorNanos = nanos;
+        nanosPerFrame = slope;
+    }
+}
@@ -0,0 +1,45 @@
+package com.memora.ai.nativemic;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioTimestamp;
+
+/**
+ * The input a capture reads from. On a device this is an {@link AudioRecordCaptureSource}; the controller only talks to
+ * this interface, so tests can drive the capture thread (including media server death and recovery) with a fake.
+ * Reads follow {@code AudioRecord}: they block, return the number of samples read, or an {@code AudioRecord.ERROR_*}
+ * code.
+ */
+interface CaptureSource {
+
+    /** Opens a source; called again with the same arguments when the capture is rebuilt after the media server died. */
+    interface Factory {
+        CaptureSource open(int audioSource, int sampleRate, NativeMic.CaptureEncoding encoding, int channels, int chunkFrames)
+            throws NativeMic.NativeMicControllerError;
+    }
+
+    int sampleRate();
+
+    int channelCount();
+
+    /** Starts recording; fails when the source did not reach the recording state. */
+    void start() throws NativeMic.NativeMicControllerError;
+
+    int read(short[] buffer, int length);
+
+    int read(float[] buffer, int length);
+
+    /** Fills {@code timestamp} on the boot-time clock; false when the source cannot report one right now. */
+    boolean getTimestamp(AudioTimestamp timestamp);
+
+    boolean setPreferredDevice(AudioDeviceInfo device);
+
+    AudioDeviceInfo getPreferredDevice();
+
+    AudioDeviceInfo getRoutedDevice();
+
+    /** Stops recording so a blocked {@link #read} returns; safe to call on a stopped or dead source. */
+    void stop();
+
+    /** Stops and frees the source; never throws. */
+    void release();
+}
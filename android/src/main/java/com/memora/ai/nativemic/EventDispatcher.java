@@ -0,0 +1,344 @@
+package com.memora.ai.nativemic;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers plugin events to the bridge from one dedicated thread so capture and WebRTC work never wait on the main
+ * thread. The queue is bounded for droppable events; each event name maps to a {@link DeliveryPolicy}.
+ */
+final class EventDispatcher<P> {
+
+    interface Sink<P> {
+        void deliver(String eventName, P payload);
+    }
+
+    enum DeliveryPolicy {
+        /** Always queued, even past capacity. Used for state, error and lifecycle events. */
+        RELIABLE("reliable"),
+        /** When the queue is full, the oldest droppable event is discarded to make room. */
+        DROP_OLDEST("drop_oldest"),
+        /** A pending event with the same name is replaced in place, so only the latest value is delivered. */
+        COALESCE("coalesce"),
+        /** The producer waits up to the block timeout for room, then falls back to drop-oldest. */
+        BLOCK("block");
+
+        final String wireValue;
+
+        DeliveryPolicy(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static DeliveryPolicy fromWireValue(String value) {
+            for (DeliveryPolicy policy : values()) {
+                if (policy.wireValue.equals(value)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class Stats {
+
+        final int queueDepth;
+        final int maxQueueDepth;
+        final int capacity;
+        final long dispatchedEvents;
+        final long droppedEvents;
+        final long coalescedEvents;
+        final long blockedEnqueues;
+        final double lastDispatchLatencyMs;
+        final double averageDispatchLatencyMs;
+        final double maxDispatchLatencyMs;
+        final Map<String, Long> droppedByEvent;
+
+        Stats(
+            int queueDepth,
+            int maxQueueDepth,
+            int capacity,
+            long dispatchedEvents,
+            long droppedEvents,
+            long coalescedEvents,
+            long blockedEnqueues,
+            double lastDispatchLatencyMs,
+            double averageDispatchLatencyMs,
+            double maxDispatchLatencyMs,
+            Map<String, Long> droppedByEvent
+        ) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.capacity = capacity;
+            this.dispatchedEvents = dispatchedEvents;
+            this.droppedEvents = droppedEvents;
+            this.coalescedEvents = coalescedEvents;
+            this.blockedEnqueues = blockedEnqueues;
+            this.lastDispatchLatencyMs = lastDispatchLatencyMs;
+            this.averageDispatchLatencyMs = averageDispatchLatencyMs;
+            this.maxDispatchLatencyMs = maxDispatchLatencyMs;
+            this.droppedByEvent = droppedByEvent;
+        }
+    }
+
+    private static final class Entry<P> {
+
+        final String eventName;
+        final DeliveryPolicy policy;
+        final long enqueuedAtNs;
+        P payload;
+
+        Entry(String eventName, DeliveryPolicy policy, P payload, long enqueuedAtNs) {
+            this.eventName = eventName;
+            this.policy = policy;
+            this.payload = payload;
+            this.enqueuedAtNs = enqueuedAtNs;
+        }
+    }
+
+    private static final long CLOSE_DRAIN_TIMEOUT_MS = 500;
+
+    private final Sink<P> sink;
+    private final int capacity;
+    private final long blockTimeoutNs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Entry<P>> queue = new ArrayDeque<>();
+    private final Map<String, Entry<P>> pendingCoalesced = new HashMap<>();
+    private final Map<String, DeliveryPolicy> policies = new HashMap<>();
+    private final Map<String, Long> droppedByEvent = new HashMap<>();
+    private final Map<String, LatencyHistogram> latencyHistograms = new HashMap<>();
+    private final Thread thread;
+
+    private DeliveryPolicy defaultPolicy = DeliveryPolicy.RELIABLE;
+    private boolean closed = false;
+    private int maxQueueDepth = 0;
+    private long dispatchedEvents = 0;
+    private long droppedEvents = 0;
+    private long coalescedEvents = 0;
+    private long blockedEnqueues = 0;
+    private long lastLatencyNs = 0;
+    private long totalLatencyNs = 0;
+    private long maxLatencyNs = 0;
+
+    EventDispatcher(String threadName, int capacity, long blockTimeoutMs, Sink<P> sink) {
+        this.sink = sink;
+        this.capacity = Math.max(1, capacity);
+        this.blockTimeoutNs = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMs));
+        this.thread = new Thread(this::dispatchLoop, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void setPolicy(String eventName, DeliveryPolicy policy) {
+        lock.lock();
+        try {
+            policies.put(eventName, policy);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setDefaultPolicy(DeliveryPolicy policy) {
+        lock.lock();
+        try {
+            defaultPolicy = policy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records every delivered {@code eventName}'s enqueue-to-delivery latency into {@code histogram}. */
+    void trackLatency(String eventName, LatencyHistogram histogram) {
+        lock.lock();
+        try {
+            latencyHistograms.put(eventName, histogram);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    DeliveryPolicy policyFor(String eventName) {
+        lock.lock();
+        try {
+            DeliveryPolicy policy = policies.get(eventName);
+            return policy != null ? policy : defaultPolicy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Queues an event; returns false when it was dropped because the dispatcher is closed or the queue is full. */
+    boolean dispatch(String eventName, P payload) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+
+            DeliveryPolicy policy = policies.get(eventName);
+            if (policy == null) {
+                policy = defaultPolicy;
+            }
+
+            if (policy == DeliveryPolicy.COALESCE) {
+                Entry<P> pending = pendingCoalesced.get(eventName);
+                if (pending != null) {
+                    pending.payload = payload;
+                    coalescedEvents += 1;
+                    return true;
+                }
+            }
+
+            if (policy == DeliveryPolicy.BLOCK && queue.size() >= capacity) {
+                blockedEnqueues += 1;
+                long remainingNs = blockTimeoutNs;
+                while (queue.size() >= capacity && remainingNs > 0 && !closed) {
+                    try {
+                        remainingNs = notFull.awaitNanos(remainingNs);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (closed) {
+                    return false;
+                }
+            }
+
+            if (policy != DeliveryPolicy.RELIABLE && queue.size() >= capacity && !dropOldestDroppableLocked()) {
+                recordDropLocked(eventName);
+                return false;
+            }
+
+            Entry<P> entry = new Entry<>(eventName, policy, payload, now);
+            queue.addLast(entry);
+            if (policy == DeliveryPolicy.COALESCE) {
+                pendingCoalesced.put(eventName, entry);
+            }
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(
+                queue.size(),
+                maxQueueDepth,
+                capacity,
+                dispatchedEvents,
+                droppedEvents,
+                coalescedEvents,
+                blockedEnqueues,
+                lastLatencyNs / 1_000_000.0,
+                dispatchedEvents > 0 ? (totalLatencyNs / (double) dispatchedEvents) / 1_000_000.0 : 0,
+                maxLatencyNs / 1_000_000.0,
+                new HashMap<>(droppedByEvent)
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops accepting events and gives the dispatch thread a short window to deliver what is already queued. */
+    void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join(CLOSE_DRAIN_TIMEOUT_MS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean dropOldestDroppableLocked() {
+        Iterator<Entry<P>> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Entry<P> entry = iterator.next();
+            if (entry.policy == DeliveryPolicy.RELIABLE) {
+                continue;
+            }
+            iterator.remove();
+            if (entry.policy == DeliveryPolicy.COALESCE) {
+                pendingCoalesced.remove(entry.eventName);
+            }
+            recordDropLocked(entry.eventName);
+            return true;
+        }
+        return false;
+    }
+
+    private void recordDropLocked(String eventName) {
+        droppedEvents += 1;
+        Long previous = droppedByEvent.get(eventName);
+        droppedByEvent.put(eventName, previous != null ? previous + 1 : 1L);
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            Entry<P> entry;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                entry = queue.pollFirst();
+                if (entry == null) {
+                    return;
+                }
+                if (entry.policy == DeliveryPolicy.COALESCE && pendingCoalesced.get(entry.eventName) == entry) {
+                    pendingCoalesced.remove(entry.eventName);
+                }
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                sink.deliver(entry.eventName, entry.payload);
+            } catch (RuntimeException ignored) {
+                // A failing listener must not take the dispatcher down with it.
+            }
+
+            long latencyNs = System.nanoTime() - entry.enqueuedAtNs;
+            LatencyHistogram histogram;
+            lock.lock();
+            try {
+                dispatchedEvents += 1;
+                lastLatencyNs = latencyNs;
+                totalLatencyNs += latencyNs;
+                maxLatencyNs = Math.max(maxLatencyNs, latencyNs);
+                histogram = latencyHistograms.get(entry.eventName);
+            } finally {
+                lock.unlock();
+            }
+            if (histogram != null) {
+                histogram.record(latencyNs);
+            }
+        }
+    }
+}
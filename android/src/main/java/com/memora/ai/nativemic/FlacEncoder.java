@@ -0,0 +1,641 @@
+package com.memora.ai.nativemic;
+
+import java.util.Arrays;
+
+/**
+ * Streaming mono 16-bit FLAC encoder. Each call to {@link #encode} turns the given samples into one or more complete
+ * FLAC frames (variable block size, at most {@value #MAX_BLOCK_FRAMES} samples each) whose headers carry the sample
+ * rate and bit depth, so any payload can be decoded on its own once the {@link #streamHeader()} has been seen.
+ *
+ * <p>Every frame picks the cheapest of a constant, verbatim, fixed-predictor (orders 0-4) or LPC (orders 1-8,
+ * 12-bit coefficients) subframe, with Rice-coded residuals split into up to 2^6 partitions. All working buffers are
+ * allocated up front; encoding never allocates.
+ */
+final class FlacEncoder {
+
+    static final int MAX_BLOCK_FRAMES = 4_096;
+    static final int STREAM_HEADER_BYTES = 42;
+
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MIN_BLOCK_FRAMES = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_LPC_ORDER = 8;
+    private static final int LPC_PRECISION = 12;
+    private static final int MAX_LPC_SHIFT = 15;
+    private static final int MAX_PARTITION_ORDER = 6;
+    private static final int MAX_RICE_PARAMETER = 14;
+    /** Frame header (at most 16 bytes), subframe header and CRC-16 footer around a verbatim subframe. */
+    private static final int FRAME_OVERHEAD_BYTES = 20;
+
+    private static final int SUBFRAME_CONSTANT = 0;
+    private static final int SUBFRAME_VERBATIM = 1;
+    private static final int SUBFRAME_FIXED = 8;
+    private static final int SUBFRAME_LPC = 32;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int index = 0; index < 256; index += 1) {
+            int crc8 = index;
+            int crc16 = index << 8;
+            for (int bit = 0; bit < 8; bit += 1) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[index] = crc8 & 0xff;
+            CRC16_TABLE[index] = crc16 & 0xffff;
+        }
+    }
+
+    private final int sampleRate;
+    private final BitWriter writer = new BitWriter();
+    private final int[] block = new int[MAX_BLOCK_FRAMES];
+    private final double[] windowed = new double[MAX_BLOCK_FRAMES];
+    private final double[] window = new double[MAX_BLOCK_FRAMES];
+    private final double[] autocorrelation = new double[MAX_LPC_ORDER + 1];
+    private final double[][] lpcCoefficients = new double[MAX_LPC_ORDER][MAX_LPC_ORDER];
+    private final double[] lpcErrors = new double[MAX_LPC_ORDER];
+    private final double[] levinson = new double[MAX_LPC_ORDER];
+    private final int[] quantized = new int[MAX_LPC_ORDER];
+    private final long[] fixedTotals = new long[MAX_FIXED_ORDER + 1];
+    private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+    private int windowLength = 0;
+    private int[] residual = new int[MAX_BLOCK_FRAMES];
+    private int[] bestResidual = new int[MAX_BLOCK_FRAMES];
+    private int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private int[] bestRiceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private int partitionOrder;
+    private int bestPartitionOrder;
+    private int lpcShift;
+    private long nextSample = 0;
+
+    FlacEncoder(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /** Upper bound on the bytes {@link #encode} writes for {@code frames} samples. */
+    static int maxEncodedBytes(int frames) {
+        if (frames <= 0) {
+            return 0;
+        }
+        int blocks = (frames + MAX_BLOCK_FRAMES - 1) / MAX_BLOCK_FRAMES;
+        return frames * 2 + blocks * FRAME_OVERHEAD_BYTES;
+    }
+
+    /** The {@code fLaC} marker followed by a STREAMINFO block; totals and MD5 are left unknown for streaming. */
+    byte[] streamHeader() {
+        byte[] header = new byte[STREAM_HEADER_BYTES];
+        header[0] = 'f';
+        header[1] = 'L';
+        header[2] = 'a';
+        header[3] = 'C';
+        writer.reset(header, 4);
+        writer.write(1, 1);
+        writer.write(0, 7);
+        writer.write(34, 24);
+        writer.write(MIN_BLOCK_FRAMES, 16);
+        writer.write(MAX_BLOCK_FRAMES, 16);
+        writer.write(0, 24);
+        writer.write(0, 24);
+        writer.write(sampleRate, 20);
+        writer.write(0, 3);
+        writer.write(BITS_PER_SAMPLE - 1, 5);
+        // 36-bit total sample count, then the 128-bit MD5, all zero.
+        writer.write(0, 4);
+        for (int word = 0; word < 5; word += 1) {
+            writer.write(0, 32);
+        }
+        return header;
+    }
+
+    long encodedFrames() {
+        return nextSample;
+    }
+
+    /** Encodes {@code length} samples as consecutive FLAC frames and returns the number of bytes written. */
+    int encode(short[] samples, int offset, int length, byte[] out, int outOffset) {
+        int cursor = outOffset;
+        for (int start = 0; start < length; start += MAX_BLOCK_FRAMES) {
+            int frames = Math.min(MAX_BLOCK_FRAMES, length - start);
+            cursor += encodeFrame(samples, offset + start, frames, out, cursor);
+        }
+        return cursor - outOffset;
+    }
+
+    private int encodeFrame(short[] samples, int offset, int frames, byte[] out, int outOffset) {
+        boolean constant = true;
+        for (int index = 0; index < frames; index += 1) {
+            block[index] = samples[offset + index];
+            constant &= block[index] == block[0];
+        }
+
+        writer.reset(out, outOffset);
+        writeFrameHeader(frames);
+        int headerEnd = writer.position();
+        out[headerEnd] = (byte) crc8(out, outOffset, headerEnd - outOffset);
+        writer.reset(out, headerEnd + 1);
+
+        if (constant) {
+            writeSubframeHeader(SUBFRAME_CONSTANT);
+            writer.write(block[0], BITS_PER_SAMPLE);
+        } else {
+            writePredictedSubframe(frames);
+        }
+
+        writer.alignToByte();
+        int crcEnd = writer.position();
+        int crc16 = crc16(out, outOffset, crcEnd - outOffset);
+        out[crcEnd] = (byte) (crc16 >> 8);
+        out[crcEnd + 1] = (byte) crc16;
+        nextSample += frames;
+        return crcEnd + 2 - outOffset;
+    }
+
+    private void writeFrameHeader(int frames) {
+        // Sync code, reserved bit, variable-blocksize strategy.
+        writer.write(0x3ffe, 14);
+        writer.write(0, 1);
+        writer.write(1, 1);
+        writer.write(frames <= 256 ? 6 : 7, 4);
+        int rateCode = sampleRateCode(sampleRate);
+        writer.write(rateCode, 4);
+        // Mono, 16 bits per sample, reserved bit.
+        writer.write(0, 4);
+        writer.write(4, 3);
+        writer.write(0, 1);
+        writeUtf8(nextSample);
+        writer.write(frames - 1, frames <= 256 ? 8 : 16);
+        if (rateCode == 13) {
+            writer.write(sampleRate, 16);
+        } else if (rateCode == 14) {
+            writer.write(sampleRate / 10, 16);
+        }
+    }
+
+    private void writePredictedSubframe(int frames) {
+        long bestBits = (long) frames * BITS_PER_SAMPLE;
+        int bestType = SUBFRAME_VERBATIM;
+
+        int fixedOrder = chooseFixedOrder(frames);
+        computeFixedResidual(fixedOrder, frames);
+        long fixedBits = (long) fixedOrder * BITS_PER_SAMPLE + encodeResidualBits(frames, fixedOrder);
+        if (fixedBits < bestBits) {
+            bestBits = fixedBits;
+            bestType = SUBFRAME_FIXED + fixedOrder;
+            keepCandidate();
+        }
+
+        int lpcOrder = frames >= MAX_LPC_ORDER * 4 ? chooseLpcOrder(frames) : 0;
+        if (lpcOrder > 0 && quantizeLpc(lpcOrder)) {
+            computeLpcResidual(lpcOrder, frames);
+            long lpcBits = (long) lpcOrder * (BITS_PER_SAMPLE + LPC_PRECISION) + 9 + encodeResidualBits(frames, lpcOrder);
+            if (lpcBits < bestBits) {
+                bestBits = lpcBits;
+                bestType = SUBFRAME_LPC + lpcOrder - 1;
+                keepCandidate();
+            }
+        }
+
+        writeSubframeHeader(bestType);
+        if (bestType == SUBFRAME_VERBATIM) {
+            for (int index = 0; index < frames; index += 1) {
+                writer.write(block[index], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+
+        int order = bestType >= SUBFRAME_LPC ? bestType - SUBFRAME_LPC + 1 : bestType - SUBFRAME_FIXED;
+        for (int index = 0; index < order; index += 1) {
+            writer.write(block[index], BITS_PER_SAMPLE);
+        }
+        if (bestType >= SUBFRAME_LPC) {
+            // The LPC candidate was evaluated last, so its coefficients are still in place.
+            writer.write(LPC_PRECISION - 1, 4);
+            writer.write(lpcShift, 5);
+            for (int index = 0; index < order; index += 1) {
+                writer.write(quantized[index], LPC_PRECISION);
+            }
+        }
+        writeResidual(frames, order);
+    }
+
+    private void writeSubframeHeader(int type) {
+        writer.write(0, 1);
+        writer.write(type, 6);
+        writer.write(0, 1);
+    }
+
+    private void keepCandidate() {
+        int[] residualSwap = bestResidual;
+        bestResidual = residual;
+        residual = residualSwap;
+        int[] parameterSwap = bestRiceParameters;
+        bestRiceParameters = riceParameters;
+        riceParameters = parameterSwap;
+        bestPartitionOrder = partitionOrder;
+    }
+
+    private int chooseFixedOrder(int frames) {
+        if (frames <= MAX_FIXED_ORDER) {
+            return 0;
+        }
+
+        // Rolling differences of increasing order, primed from the first four samples.
+        int last0 = block[3];
+        int last1 = block[3] - block[2];
+        int last2 = last1 - (block[2] - block[1]);
+        int last3 = last2 - (block[2] - block[1] - (block[1] - block[0]));
+        long total0 = 0;
+        long total1 = 0;
+        long total2 = 0;
+        long total3 = 0;
+        long total4 = 0;
+        for (int index = MAX_FIXED_ORDER; index < frames; index += 1) {
+            int error0 = block[index];
+            int error1 = error0 - last0;
+            int error2 = error1 - last1;
+            int error3 = error2 - last2;
+            int error4 = error3 - last3;
+            total0 += Math.abs(error0);
+            total1 += Math.abs(error1);
+            total2 += Math.abs(error2);
+            total3 += Math.abs(error3);
+            total4 += Math.abs(error4);
+            last0 = error0;
+            last1 = error1;
+            last2 = error2;
+            last3 = error3;
+        }
+
+        fixedTotals[0] = total0;
+        fixedTotals[1] = total1;
+        fixedTotals[2] = total2;
+        fixedTotals[3] = total3;
+        fixedTotals[4] = total4;
+        int best = 0;
+        for (int order = 1; order <= MAX_FIXED_ORDER; order += 1) {
+            if (fixedTotals[order] < fixedTotals[best]) {
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    private void computeFixedResidual(int order, int frames) {
+        for (int index = order; index < frames; index += 1) {
+            int value = block[index];
+            switch (order) {
+                case 1:
+                    value -= block[index - 1];
+                    break;
+                case 2:
+                    value -= 2 * block[index - 1] - block[index - 2];
+                    break;
+                case 3:
+                    value -= 3 * block[index - 1] - 3 * block[index - 2] + block[index - 3];
+                    break;
+                case 4:
+                    value -= 4 * block[index - 1] - 6 * block[index - 2] + 4 * block[index - 3] - block[index - 4];
+                    break;
+                default:
+                    break;
+            }
+            residual[index] = value;
+        }
+    }
+
+    /** Windowed autocorrelation and Levinson-Durbin; picks the order whose estimated size is smallest. */
+    private int chooseLpcOrder(int frames) {
+        if (windowLength != frames) {
+            fillTukeyWindow(frames);
+        }
+        for (int index = 0; index < frames; index += 1) {
+            windowed[index] = block[index] * window[index];
+        }
+        for (int lag = 0; lag <= MAX_LPC_ORDER; lag += 1) {
+            double sum = 0;
+            for (int index = lag; index < frames; index += 1) {
+                sum += windowed[index] * windowed[index - lag];
+            }
+            autocorrelation[lag] = sum;
+        }
+        if (autocorrelation[0] <= 0) {
+            return 0;
+        }
+
+        double[] lpc = levinson;
+        Arrays.fill(lpc, 0);
+        double error = autocorrelation[0];
+        int maxOrder = MAX_LPC_ORDER;
+        for (int order = 0; order < MAX_LPC_ORDER; order += 1) {
+            double reflection = -autocorrelation[order + 1];
+            for (int index = 0; index < order; index += 1) {
+                reflection -= lpc[index] * autocorrelation[order - index];
+            }
+            reflection /= error;
+
+            lpc[order] = reflection;
+            int half = order >> 1;
+            for (int index = 0; index < half; index += 1) {
+                double swap = lpc[index];
+                lpc[index] += reflection * lpc[order - 1 - index];
+                lpc[order - 1 - index] += reflection * swap;
+            }
+            if ((order & 1) != 0) {
+                lpc[half] += lpc[half] * reflection;
+            }
+            error *= 1.0 - reflection * reflection;
+            for (int index = 0; index <= order; index += 1) {
+                lpcCoefficients[order][index] = -lpc[index];
+            }
+            lpcErrors[order] = error;
+            if (error <= 0) {
+                maxOrder = order + 1;
+                break;
+            }
+        }
+
+        int bestOrder = 0;
+        double bestBits = Double.MAX_VALUE;
+        double scale = 1.0 / frames;
+        for (int order = 1; order <= maxOrder; order += 1) {
+            double perSample = 0.5 * Math.log(Math.max(lpcErrors[order - 1] * scale, 1e-9)) / Math.log(2);
+            double bits = Math.max(0, perSample) * (frames - order) + order * (BITS_PER_SAMPLE + LPC_PRECISION);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+        return bestOrder;
+    }
+
+    private void fillTukeyWindow(int frames) {
+        // Tukey(0.5): flat in the middle, raised-cosine tapers over the outer quarters.
+        int taper = Math.max(1, frames / 4);
+        for (int index = 0; index < frames; index += 1) {
+            double value = 1.0;
+            if (index < taper) {
+                value = 0.5 - 0.5 * Math.cos(Math.PI * index / taper);
+            } else if (index >= frames - taper) {
+                value = 0.5 - 0.5 * Math.cos(Math.PI * (frames - 1 - index) / taper);
+            }
+            window[index] = value;
+        }
+        windowLength = frames;
+    }
+
+    /** Quantizes the chosen predictor to {@value #LPC_PRECISION}-bit coefficients with error feedback. */
+    private boolean quantizeLpc(int order) {
+        double[] coefficients = lpcCoefficients[order - 1];
+        double max = 0;
+        for (int index = 0; index < order; index += 1) {
+            max = Math.max(max, Math.abs(coefficients[index]));
+        }
+        if (max <= 0) {
+            return false;
+        }
+
+        int precision = LPC_PRECISION - 1;
+        int shift = precision - (Math.getExponent(max) + 1);
+        if (shift < 0) {
+            return false;
+        }
+        shift = Math.min(shift, MAX_LPC_SHIFT);
+
+        int limit = 1 << precision;
+        double error = 0;
+        for (int index = 0; index < order; index += 1) {
+            error += coefficients[index] * (1 << shift);
+            long rounded = Math.round(error);
+            int value = (int) Math.max(-limit, Math.min(limit - 1, rounded));
+            error -= value;
+            quantized[index] = value;
+        }
+        lpcShift = shift;
+        return true;
+    }
+
+    private void computeLpcResidual(int order, int frames) {
+        for (int index = order; index < frames; index += 1) {
+            long prediction = 0;
+            for (int tap = 0; tap < order; tap += 1) {
+                prediction += (long) quantized[tap] * block[index - tap - 1];
+            }
+            residual[index] = block[index] - (int) (prediction >> lpcShift);
+        }
+    }
+
+    /**
+     * Picks the Rice partition order and parameters for {@link #residual} and returns its exact size in bits,
+     * including the 6-bit coding method and partition order fields.
+     */
+    private long encodeResidualBits(int frames, int predictorOrder) {
+        int maxOrder = 0;
+        while (maxOrder < MAX_PARTITION_ORDER
+            && (frames & ((1 << (maxOrder + 1)) - 1)) == 0
+            && (frames >> (maxOrder + 1)) > predictorOrder) {
+            maxOrder += 1;
+        }
+
+        int partitions = 1 << maxOrder;
+        int partitionFrames = frames >> maxOrder;
+        for (int partition = 0; partition < partitions; partition += 1) {
+            int start = partition == 0 ? predictorOrder : partition * partitionFrames;
+            int end = (partition + 1) * partitionFrames;
+            long sum = 0;
+            for (int index = start; index < end; index += 1) {
+                sum += fold(residual[index]);
+            }
+            partitionSums[partition] = sum;
+        }
+
+        long bestEstimate = Long.MAX_VALUE;
+        int bestOrder = maxOrder;
+        for (int order = maxOrder; order >= 0; order -= 1) {
+            int count = 1 << order;
+            long estimate = 0;
+            for (int partition = 0; partition < count; partition += 1) {
+                int samples = (frames >> order) - (partition == 0 ? predictorOrder : 0);
+                long sum = partitionSums[partition];
+                int parameter = riceParameter(sum, samples);
+                estimate += 4 + (long) samples * (parameter + 1) + (sum >> parameter);
+            }
+            if (estimate < bestEstimate) {
+                bestEstimate = estimate;
+                bestOrder = order;
+            }
+            if (order > 0) {
+                // Merge neighbouring partitions for the next, coarser order.
+                for (int partition = 0; partition < count / 2; partition += 1) {
+                    partitionSums[partition] = partitionSums[2 * partition] + partitionSums[2 * partition + 1];
+                }
+            }
+        }
+
+        // Recompute the chosen partitioning exactly; the estimate above only used sums.
+        int count = 1 << bestOrder;
+        int perPartition = frames >> bestOrder;
+        long bits = 6;
+        for (int partition = 0; partition < count; partition += 1) {
+            int start = partition == 0 ? predictorOrder : partition * perPartition;
+            int end = (partition + 1) * perPartition;
+            long sum = 0;
+            for (int index = start; index < end; index += 1) {
+                sum += fold(residual[index]);
+            }
+            int parameter = riceParameter(sum, end - start);
+            riceParameters[partition] = parameter;
+            bits += 4 + (long) (end - start) * (parameter + 1);
+            for (int index = start; index < end; index += 1) {
+                bits += fold(residual[index]) >>> parameter;
+            }
+        }
+        partitionOrder = bestOrder;
+        return bits;
+    }
+
+    private void writeResidual(int frames, int predictorOrder) {
+        writer.write(0, 2);
+        writer.write(bestPartitionOrder, 4);
+        int count = 1 << bestPartitionOrder;
+        int perPartition = frames >> bestPartitionOrder;
+        for (int partition = 0; partition < count; partition += 1) {
+            int parameter = bestRiceParameters[partition];
+            writer.write(parameter, 4);
+            int start = partition == 0 ? predictorOrder : partition * perPartition;
+            int end = (partition + 1) * perPartition;
+            for (int index = start; index < end; index += 1) {
+                long folded = fold(bestResidual[index]);
+                writer.writeUnary(folded >>> parameter);
+                if (parameter > 0) {
+                    writer.write((int) folded & ((1 << parameter) - 1), parameter);
+                }
+            }
+        }
+    }
+
+    private void writeUtf8(long value) {
+        if (value < 0x80) {
+            writer.write((int) value, 8);
+            return;
+        }
+        int bytes = 2;
+        while (bytes < 7 && value >= 1L << (5 * bytes + 1)) {
+            bytes += 1;
+        }
+        int prefix = (0xff << (8 - bytes)) & 0xff;
+        int shift = 6 * (bytes - 1);
+        writer.write(prefix | (int) (value >>> shift), 8);
+        while (shift > 0) {
+            shift -= 6;
+            writer.write(0x80 | (int) ((value >>> shift) & 0x3f), 8);
+        }
+    }
+
+    private static long fold(int value) {
+        return value >= 0 ? (long) value << 1 : ((long) -value << 1) - 1;
+    }
+
+    private static int riceParameter(long sum, int samples) {
+        int parameter = 0;
+        while (parameter < MAX_RICE_PARAMETER && ((long) samples << (parameter + 1)) < sum) {
+            parameter += 1;
+        }
+        return parameter;
+    }
+
+    private static int sampleRateCode(int sampleRate) {
+        switch (sampleRate) {
+            case 88_200:
+                return 1;
+            case 176_400:
+                return 2;
+            case 192_000:
+                return 3;
+            case 8_000:
+                return 4;
+            case 16_000:
+                return 5;
+            case 22_050:
+                return 6;
+            case 24_000:
+                return 7;
+            case 32_000:
+                return 8;
+            case 44_100:
+                return 9;
+            case 48_000:
+                return 10;
+            case 96_000:
+                return 11;
+            default:
+                if (sampleRate <= 0xffff) {
+                    return 13;
+                }
+                return sampleRate % 10 == 0 && sampleRate / 10 <= 0xffff ? 14 : 0;
+        }
+    }
+
+    private static int crc8(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int index = offset; index < offset + length; index += 1) {
+            crc = CRC8_TABLE[(crc ^ data[index]) & 0xff];
+        }
+        return crc;
+    }
+
+    private static int crc16(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int index = offset; index < offset + length; index += 1) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ data[index]) & 0xff]) & 0xffff;
+        }
+        return crc;
+    }
+
+    /** MSB-first bit packer over a caller-provided byte array. */
+    private static final class BitWriter {
+
+        private byte[] buffer;
+        private int position;
+        private long accumulator;
+        private int pendingBits;
+
+        void reset(byte[] buffer, int offset) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.accumulator = 0;
+            this.pendingBits = 0;
+        }
+
+        /** Byte offset of the next write; only meaningful when the writer is byte-aligned. */
+        int position() {
+            return position;
+        }
+
+        void write(int value, int bits) {
+            accumulator = (accumulator << bits) | (value & ((1L << bits) - 1));
+            pendingBits += bits;
+            while (pendingBits >= 8) {
+                pendingBits -= 8;
+                buffer[position] = (byte) (accumulator >>> pendingBits);
+                position += 1;
+            }
+        }
+
+        /** Writes {@code zeros} zero bits followed by a one. */
+        void writeUnary(long zeros) {
+            while (zeros >= 32) {
+                write(0, 32);
+                zeros -= 32;
+            }
+            write(1, (int) zeros + 1);
+        }
+
+        void alignToByte() {
+            if (pendingBits > 0) {
+                write(0, 8 - pendingBits);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.memora.ai.nativemic;
+
+/**
+ * IMA/DVI ADPCM at 4 bits per sample, packed in self-contained mono blocks like WAV format 0x11: a 4-byte header
+ * (first sample as int16, step index, reserved byte) followed by the remaining samples as nibbles, low nibble first.
+ * Every chunk is one block, so a receiver can start decoding at any chunk and a dropped chunk does not corrupt the
+ * ones after it. The encoder carries its step index across blocks to keep adapting smoothly.
+ */
+final class ImaAdpcmCodec {
+
+    static final int BLOCK_HEADER_BYTES = 4;
+
+    private static final int[] STEP_SIZES = {
+        7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+        130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060,
+        1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484,
+        7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767,
+    };
+    private static final int[] INDEX_ADJUST = { -1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8 };
+
+    private int stepIndex = 0;
+
+    /** Encoded size of a block holding {@code frames} samples. */
+    static int blockBytes(int frames) {
+        return frames <= 0 ? 0 : BLOCK_HEADER_BYTES + frames / 2;
+    }
+
+    /** Encodes {@code length} samples as one block and returns the number of bytes written. */
+    int encodeBlock(short[] samples, int offset, int length, byte[] out, int outOffset) {
+        if (length <= 0) {
+            return 0;
+        }
+
+        int predictor = samples[offset];
+        out[outOffset] = (byte) predictor;
+        out[outOffset + 1] = (byte) (predictor >> 8);
+        out[outOffset + 2] = (byte) stepIndex;
+        out[outOffset + 3] = 0;
+
+        int cursor = outOffset + BLOCK_HEADER_BYTES;
+        int index = stepIndex;
+        for (int sample = 1; sample < length; sample += 1) {
+            int step = STEP_SIZES[index];
+            int diff = samples[offset + sample] - predictor;
+            int nibble = 0;
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+
+            int delta = step >> 3;
+            if (diff >= step) {
+                nibble |= 4;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 2;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 1;
+                delta += step;
+            }
+
+            predictor = clamp((nibble & 8) != 0 ? predictor - delta : predictor + delta);
+            index = Math.max(0, Math.min(STEP_SIZES.length - 1, index + INDEX_ADJUST[nibble]));
+
+            if ((sample & 1) == 1) {
+                out[cursor] = (byte) nibble;
+            } else {
+                out[cursor] = (byte) (out[cursor] | (nibble << 4));
+                cursor += 1;
+            }
+        }
+        if ((length & 1) == 0) {
+            // Odd number of nibbles: the last byte only has its low half filled.
+            cursor += 1;
+        }
+
+        stepIndex = index;
+        return cursor - outOffset;
+    }
+
+    /** Decodes one block of {@code frames} samples; returns the number of samples written. */
+    static int decodeBlock(byte[] block, int offset, int frames, short[] out, int outOffset) {
+        if (frames <= 0) {
+            return 0;
+        }
+
+        int predictor = (short) ((block[offset] & 0xff) | (block[offset + 1] << 8));
+        int index = Math.max(0, Math.min(STEP_SIZES.length - 1, block[offset + 2] & 0xff));
+        out[outOffset] = (short) predictor;
+
+        for (int sample = 1; sample < frames; sample += 1) {
+            int packed = block[offset + BLOCK_HEADER_BYTES + (sample - 1) / 2] & 0xff;
+            int nibble = (sample & 1) == 1 ? packed & 0x0f : packed >> 4;
+            int step = STEP_SIZES[index];
+
+            int delta = step >> 3;
+            if ((nibble & 4) != 0) {
+                delta += step;
+            }
+            if ((nibble & 2) != 0) {
+                delta += step >> 1;
+            }
+            if ((nibble & 1) != 0) {
+                delta += step >> 2;
+            }
+
+            predictor = clamp((nibble & 8) != 0 ? predictor - delta : predictor + delta);
+            index = Math.max(0, Math.min(STEP_SIZES.length - 1, index + INDEX_ADJUST[nibble]));
+            out[outOffset + sample] = (short) predictor;
+        }
+        return frames;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,117 @@
+package com.memora.ai.nativemic;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket log histogram of durations in nanoseconds. Buckets are 1.024 us wide up to 8 us, then eight per
+ * doubling (12.5% resolution) up to about two minutes; anything longer lands in the last bucket. Recording is a
+ * couple of shifts and an array increment, so it can sit on the capture path without allocating. Methods are
+ * synchronized: stages record from the capture, processing and dispatch threads while diagnostics read from the
+ * bridge.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MIN_SHIFT = 10;
+    static final int OCTAVES = 27;
+
+    /** Point-in-time percentiles, in milliseconds. Percentiles report the upper edge of their bucket. */
+    static final class Summary {
+
+        final long count;
+        final double p50Ms;
+        final double p95Ms;
+        final double p99Ms;
+        final double maxMs;
+        final double meanMs;
+        final double totalMs;
+
+        Summary(long count, double p50Ms, double p95Ms, double p99Ms, double maxMs, double meanMs, double totalMs) {
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.meanMs = meanMs;
+            this.totalMs = totalMs;
+        }
+    }
+
+    private final long[] counts = new long[(OCTAVES + 1) * SUB_BUCKETS];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    synchronized void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketFor(value)] += 1;
+        count += 1;
+        totalNanos += value;
+        maxNanos = Math.max(maxNanos, value);
+    }
+
+    synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    /** Upper bound of the bucket holding the {@code quantile} (0..1) sample, clamped to the largest recorded value. */
+    synchronized long percentileNanos(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket += 1) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(maxNanos, bucketUpperNanos(bucket));
+            }
+        }
+        return maxNanos;
+    }
+
+    synchronized Summary summary() {
+        return new Summary(
+            count,
+            percentileNanos(0.50) / 1_000_000.0,
+            percentileNanos(0.95) / 1_000_000.0,
+            percentileNanos(0.99) / 1_000_000.0,
+            maxNanos / 1_000_000.0,
+            count > 0 ? (totalNanos / (double) count) / 1_000_000.0 : 0,
+            totalNanos / 1_000_000.0
+        );
+    }
+
+    static int bucketFor(long nanos) {
+        long value = nanos >>> MIN_SHIFT;
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int octave = exponent - SUB_BUCKET_BITS + 1;
+        if (octave > OCTAVES) {
+            return (OCTAVES + 1) * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return octave * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperNanos(int bucket) {
+        int octave = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+        if (octave == 0) {
+            return (long) (subBucket + 1) << MIN_SHIFT;
+        }
+        int widthShift = octave - 1;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << widthShift) << MIN_SHIFT;
+    }
+}
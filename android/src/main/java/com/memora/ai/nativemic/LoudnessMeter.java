@@ -0,0 +1,277 @@
+package com.memora.ai.nativemic;
+
+/**
+ * Single-pass mono metering engine: sliding-window RMS, 4x oversampled true peak, K-weighted momentary (400 ms) and
+ * short-term (3 s) loudness per ITU-R BS.1770, DC offset and clipped-sample count.
+ *
+ * <p>Energy is kept in 10 ms sub-blocks so the sliding windows advance smoothly without storing per-sample history.
+ * Peak, true peak, DC offset and clip counts cover the interval since the last {@link #resetInterval()}.
+ */
+final class LoudnessMeter {
+
+    static final double SILENCE_DB = -90;
+
+    private static final int SUB_BLOCK_MS = 10;
+    private static final int RMS_WINDOW_MS = 300;
+    private static final int MOMENTARY_WINDOW_MS = 400;
+    private static final int SHORT_TERM_WINDOW_MS = 3_000;
+    private static final double LOUDNESS_OFFSET = -0.691;
+    private static final float CLIP_THRESHOLD = 32_767f / 32_768f;
+
+    private static final int OVERSAMPLING = 4;
+    private static final int TRUE_PEAK_TAPS = 12;
+    private static final double TRUE_PEAK_KAISER_BETA = 6.0;
+    private static final float[][] TRUE_PEAK_PHASES = designTruePeakPhases();
+
+    // Pre-filter (high shelf) followed by the RLB high-pass, both direct form II transposed.
+    private final double shelfB0;
+    private final double shelfB1;
+    private final double shelfB2;
+    private final double shelfA1;
+    private final double shelfA2;
+    private final double highPassA1;
+    private final double highPassA2;
+    private double shelfZ1 = 0;
+    private double shelfZ2 = 0;
+    private double highPassZ1 = 0;
+    private double highPassZ2 = 0;
+
+    private final int subBlockFrames;
+    private final double[] weightedBlocks;
+    private final double[] rawBlocks;
+    private final int rmsBlocks;
+    private final int momentaryBlocks;
+    private int blockCursor = 0;
+    private int filledBlocks = 0;
+    private int subBlockFill = 0;
+    private double subBlockWeighted = 0;
+    private double subBlockRaw = 0;
+
+    private final float[] truePeakHistory = new float[TRUE_PEAK_TAPS * 2];
+    private int truePeakCursor = 0;
+
+    private float intervalPeak = 0;
+    private float intervalTruePeak = 0;
+    private double intervalSum = 0;
+    private long intervalFrames = 0;
+    private long intervalClipped = 0;
+    private long totalClipped = 0;
+
+    LoudnessMeter(int sampleRate) {
+        double shelfK = Math.tan(Math.PI * 1_681.974450955533 / sampleRate);
+        double shelfQ = 0.7071752369554196;
+        double shelfVh = Math.pow(10, 3.999843853973347 / 20);
+        double shelfVb = Math.pow(shelfVh, 0.4996667741545416);
+        double shelfA0 = 1 + shelfK / shelfQ + shelfK * shelfK;
+        shelfB0 = (shelfVh + shelfVb * shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+        shelfB1 = (2 * (shelfK * shelfK - shelfVh)) / shelfA0;
+        shelfB2 = (shelfVh - shelfVb * shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+        shelfA1 = (2 * (shelfK * shelfK - 1)) / shelfA0;
+        shelfA2 = (1 - shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+
+        double highPassK = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        double highPassQ = 0.5003270373238773;
+        double highPassA0 = 1 + highPassK / highPassQ + highPassK * highPassK;
+        highPassA1 = (2 * (highPassK * highPassK - 1)) / highPassA0;
+        highPassA2 = (1 - highPassK / highPassQ + highPassK * highPassK) / highPassA0;
+
+        subBlockFrames = Math.max(1, (sampleRate * SUB_BLOCK_MS) / 1_000);
+        weightedBlocks = new double[SHORT_TERM_WINDOW_MS / SUB_BLOCK_MS];
+        rawBlocks = new double[weightedBlocks.length];
+        rmsBlocks = RMS_WINDOW_MS / SUB_BLOCK_MS;
+        momentaryBlocks = MOMENTARY_WINDOW_MS / SUB_BLOCK_MS;
+    }
+
+    /** Coefficients of the K-weighting stages as {b0, b1, b2, a1, a2} for the shelf and {a1, a2} for the high-pass. */
+    double[] kWeightingCoefficients() {
+        return new double[] { shelfB0, shelfB1, shelfB2, shelfA1, shelfA2, highPassA1, highPassA2 };
+    }
+
+    void process(float[] samples, int offset, int length) {
+        for (int index = offset; index < offset + length; index += 1) {
+            processSample(samples[index]);
+        }
+    }
+
+    void processPcm16(short[] samples, int length) {
+        for (int index = 0; index < length; index += 1) {
+            processSample(samples[index] / 32768.0f);
+        }
+    }
+
+    /** Feeds digital silence so the windows and filters decay while the microphone is muted. */
+    void processSilence(int length) {
+        for (int index = 0; index < length; index += 1) {
+            processSample(0f);
+        }
+    }
+
+    private void processSample(float sample) {
+        float absolute = Math.abs(sample);
+        if (absolute > intervalPeak) {
+            intervalPeak = absolute;
+        }
+        if (absolute >= CLIP_THRESHOLD) {
+            intervalClipped += 1;
+            totalClipped += 1;
+        }
+        intervalSum += sample;
+        intervalFrames += 1;
+
+        float truePeak = oversampledPeak(sample);
+        if (truePeak > intervalTruePeak) {
+            intervalTruePeak = truePeak;
+        }
+
+        double shelfOut = shelfB0 * sample + shelfZ1;
+        shelfZ1 = shelfB1 * sample - shelfA1 * shelfOut + shelfZ2;
+        shelfZ2 = shelfB2 * sample - shelfA2 * shelfOut;
+        double weighted = shelfOut + highPassZ1;
+        highPassZ1 = -2 * shelfOut - highPassA1 * weighted + highPassZ2;
+        highPassZ2 = shelfOut - highPassA2 * weighted;
+
+        subBlockWeighted += weighted * weighted;
+        subBlockRaw += (double) sample * sample;
+        subBlockFill += 1;
+        if (subBlockFill >= subBlockFrames) {
+            weightedBlocks[blockCursor] = subBlockWeighted;
+            rawBlocks[blockCursor] = subBlockRaw;
+            blockCursor = (blockCursor + 1) % weightedBlocks.length;
+            filledBlocks = Math.min(weightedBlocks.length, filledBlocks + 1);
+            subBlockWeighted = 0;
+            subBlockRaw = 0;
+            subBlockFill = 0;
+        }
+    }
+
+    private float oversampledPeak(float sample) {
+        truePeakHistory[truePeakCursor] = sample;
+        truePeakHistory[truePeakCursor + TRUE_PEAK_TAPS] = sample;
+        truePeakCursor = (truePeakCursor + 1) % TRUE_PEAK_TAPS;
+
+        // History from truePeakCursor onwards is oldest-first; the phases are stored in the same order.
+        float peak = 0;
+        for (float[] phase : TRUE_PEAK_PHASES) {
+            float sum = 0;
+            for (int tap = 0; tap < TRUE_PEAK_TAPS; tap += 1) {
+                sum += phase[tap] * truePeakHistory[truePeakCursor + tap];
+            }
+            float absolute = Math.abs(sum);
+            if (absolute > peak) {
+                peak = absolute;
+            }
+        }
+        return peak;
+    }
+
+    /** RMS over the last {@value #RMS_WINDOW_MS} ms, including the sub-block in progress. */
+    double rms() {
+        return Math.sqrt(windowMeanSquare(rawBlocks, subBlockRaw, rmsBlocks));
+    }
+
+    double momentaryLufs() {
+        return toLufs(windowMeanSquare(weightedBlocks, subBlockWeighted, momentaryBlocks));
+    }
+
+    double shortTermLufs() {
+        return toLufs(windowMeanSquare(weightedBlocks, subBlockWeighted, weightedBlocks.length));
+    }
+
+    float peak() {
+        return intervalPeak;
+    }
+
+    float truePeak() {
+        return Math.max(intervalPeak, intervalTruePeak);
+    }
+
+    double dcOffset() {
+        return intervalFrames > 0 ? intervalSum / intervalFrames : 0;
+    }
+
+    long clippedSamples() {
+        return intervalClipped;
+    }
+
+    long totalClippedSamples() {
+        return totalClipped;
+    }
+
+    /** Starts a new reporting interval for peak, true peak, DC offset and clip counts; windows keep sliding. */
+    void resetInterval() {
+        intervalPeak = 0;
+        intervalTruePeak = 0;
+        intervalSum = 0;
+        intervalFrames = 0;
+        intervalClipped = 0;
+    }
+
+    static double toDb(double amplitude) {
+        return amplitude > 0 ? Math.min(0, Math.max(SILENCE_DB, 20 * Math.log10(amplitude))) : SILENCE_DB;
+    }
+
+    /** Like {@link #toDb(double)} but not clamped at 0, since inter-sample peaks can exceed full scale. */
+    static double toDbtp(double amplitude) {
+        return amplitude > 0 ? Math.max(SILENCE_DB, 20 * Math.log10(amplitude)) : SILENCE_DB;
+    }
+
+    private double windowMeanSquare(double[] blocks, double partial, int windowBlocks) {
+        int completeBlocks = Math.min(filledBlocks, windowBlocks);
+        double sum = partial;
+        int cursor = blockCursor;
+        for (int count = 0; count < completeBlocks; count += 1) {
+            cursor = cursor == 0 ? blocks.length - 1 : cursor - 1;
+            sum += blocks[cursor];
+        }
+        long frames = (long) completeBlocks * subBlockFrames + subBlockFill;
+        return frames > 0 ? sum / frames : 0;
+    }
+
+    private static double toLufs(double meanSquare) {
+        if (meanSquare <= 0) {
+            return SILENCE_DB;
+        }
+        return Math.max(SILENCE_DB, LOUDNESS_OFFSET + 10 * Math.log10(meanSquare));
+    }
+
+    private static float[][] designTruePeakPhases() {
+        int length = OVERSAMPLING * TRUE_PEAK_TAPS;
+        double cutoff = 0.5 / OVERSAMPLING;
+        double center = (length - 1) / 2.0;
+        double windowNorm = besselI0(TRUE_PEAK_KAISER_BETA);
+
+        double[] prototype = new double[length];
+        for (int index = 0; index < length; index += 1) {
+            double x = index - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double ratio = (2.0 * index) / (length - 1) - 1;
+            prototype[index] = sinc * besselI0(TRUE_PEAK_KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / windowNorm;
+        }
+
+        float[][] phases = new float[OVERSAMPLING][TRUE_PEAK_TAPS];
+        for (int phase = 0; phase < OVERSAMPLING; phase += 1) {
+            double sum = 0;
+            for (int tap = 0; tap < TRUE_PEAK_TAPS; tap += 1) {
+                sum += prototype[phase + tap * OVERSAMPLING];
+            }
+            for (int tap = 0; tap < TRUE_PEAK_TAPS; tap += 1) {
+                phases[phase][TRUE_PEAK_TAPS - 1 - tap] = (float) (prototype[phase + tap * OVERSAMPLING] / sum);
+            }
+        }
+        return phases;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+        for (int k = 1; k < 64; k += 1) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+}
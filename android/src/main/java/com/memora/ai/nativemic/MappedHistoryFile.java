@@ -0,0 +1,332 @@
+package com.memora.ai.nativemic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Circular PCM16 recording kept in a memory-mapped file, so long sessions have a fixed disk footprint and the audio
+ * outlives the process: pages written through the mapping belong to the kernel and are flushed even if the app dies.
+ *
+ * <p>Layout: a 4 KiB header, a ring of time-index entries and the sample ring. The header counts frames written since
+ * capture start, so after a crash {@link #openExisting(File)} finds exactly which frames are valid. Every
+ * {@value #INDEX_INTERVAL_MS} ms an entry pairs a frame position with its ptsMs, which lets a time range be located
+ * without scanning audio.
+ */
+final class MappedHistoryFile {
+
+    static final int INDEX_INTERVAL_MS = 1_000;
+
+    private static final int MAGIC = 0x464d484e;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4_096;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int MAX_CAPTURE_ID_BYTES = 64;
+    private static final int FLAG_CLOSED = 1;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_SAMPLE_RATE = 8;
+    private static final int OFFSET_FLAGS = 12;
+    private static final int OFFSET_CAPACITY_FRAMES = 16;
+    private static final int OFFSET_WRITTEN_FRAMES = 24;
+    private static final int OFFSET_STARTED_AT_EPOCH_MS = 32;
+    private static final int OFFSET_INDEX_CAPACITY = 40;
+    private static final int OFFSET_INDEX_WRITTEN = 48;
+    private static final int OFFSET_CAPTURE_ID_LENGTH = 56;
+    private static final int OFFSET_CAPTURE_ID = 60;
+
+    private final File file;
+    private final MappedByteBuffer mapping;
+    private final ShortBuffer samples;
+    private final int sampleRate;
+    private final int capacityFrames;
+    private final int indexCapacity;
+    private final int dataOffset;
+    private final String captureId;
+    private final long startedAtEpochMs;
+    private final boolean writable;
+
+    private long writtenFrames;
+    private long indexWritten;
+    private long lastIndexPtsMs = Long.MIN_VALUE;
+
+    private MappedHistoryFile(File file, MappedByteBuffer mapping, boolean writable) {
+        this.file = file;
+        this.mapping = mapping;
+        this.writable = writable;
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        this.sampleRate = mapping.getInt(OFFSET_SAMPLE_RATE);
+        this.capacityFrames = (int) mapping.getLong(OFFSET_CAPACITY_FRAMES);
+        this.indexCapacity = mapping.getInt(OFFSET_INDEX_CAPACITY);
+        this.dataOffset = dataOffset(indexCapacity);
+        this.startedAtEpochMs = mapping.getLong(OFFSET_STARTED_AT_EPOCH_MS);
+        this.writtenFrames = mapping.getLong(OFFSET_WRITTEN_FRAMES);
+        this.indexWritten = mapping.getLong(OFFSET_INDEX_WRITTEN);
+
+        byte[] idBytes = new byte[Math.min(MAX_CAPTURE_ID_BYTES, Math.max(0, mapping.getInt(OFFSET_CAPTURE_ID_LENGTH)))];
+        for (int index = 0; index < idBytes.length; index += 1) {
+            idBytes[index] = mapping.get(OFFSET_CAPTURE_ID + index);
+        }
+        this.captureId = new String(idBytes, StandardCharsets.UTF_8);
+
+        ByteBuffer data = mapping.duplicate();
+        data.position(dataOffset);
+        this.samples = data.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    /** Creates (or truncates) the file and maps it for a new capture. */
+    static MappedHistoryFile create(File file, int sampleRate, int durationMs, String captureId, long startedAtEpochMs)
+        throws IOException {
+        long capacityFrames = ((long) durationMs * sampleRate) / 1_000;
+        int indexCapacity = durationMs / INDEX_INTERVAL_MS + 2;
+        long totalBytes = dataOffset(indexCapacity) + capacityFrames * 2;
+        if (capacityFrames < 1 || totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("History of " + durationMs + " ms at " + sampleRate + " Hz does not fit one mapping.");
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent + ".");
+        }
+
+        // RandomAccessFile rather than FileChannel.open, which needs API 26. The mapping outlives the closed file.
+        MappedByteBuffer mapping;
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.setLength(0);
+            access.setLength(totalBytes);
+            mapping = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, totalBytes);
+        }
+
+        byte[] idBytes = captureId.getBytes(StandardCharsets.UTF_8);
+        int idLength = Math.min(MAX_CAPTURE_ID_BYTES, idBytes.length);
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        mapping.putInt(OFFSET_VERSION, VERSION);
+        mapping.putInt(OFFSET_SAMPLE_RATE, sampleRate);
+        mapping.putInt(OFFSET_FLAGS, 0);
+        mapping.putLong(OFFSET_CAPACITY_FRAMES, capacityFrames);
+        mapping.putLong(OFFSET_WRITTEN_FRAMES, 0);
+        mapping.putLong(OFFSET_STARTED_AT_EPOCH_MS, startedAtEpochMs);
+        mapping.putInt(OFFSET_INDEX_CAPACITY, indexCapacity);
+        mapping.putLong(OFFSET_INDEX_WRITTEN, 0);
+        mapping.putInt(OFFSET_CAPTURE_ID_LENGTH, idLength);
+        for (int index = 0; index < idLength; index += 1) {
+            mapping.put(OFFSET_CAPTURE_ID + index, idBytes[index]);
+        }
+        // Written last so a half-initialised file is never taken for a valid one.
+        mapping.putInt(OFFSET_MAGIC, MAGIC);
+        return new MappedHistoryFile(file, mapping, true);
+    }
+
+    /** Maps an existing history read-only, typically one left behind by a capture that did not stop cleanly. */
+    static MappedHistoryFile openExisting(File file) throws IOException {
+        MappedByteBuffer mapping;
+        try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            FileChannel channel = access.getChannel();
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a capture history file.");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapping.getInt(OFFSET_MAGIC) != MAGIC || mapping.getInt(OFFSET_VERSION) != VERSION) {
+            throw new IOException(file + " is not a capture history file.");
+        }
+        long expectedBytes = dataOffset(mapping.getInt(OFFSET_INDEX_CAPACITY)) + mapping.getLong(OFFSET_CAPACITY_FRAMES) * 2;
+        if (expectedBytes != mapping.capacity()) {
+            throw new IOException(file + " is truncated.");
+        }
+        return new MappedHistoryFile(file, mapping, false);
+    }
+
+    /** Appends one chunk whose first frame has the given ptsMs. The sample copy is the only work on the data. */
+    void write(short[] chunk, int offset, int length, long ptsMs) {
+        if (!writable || length <= 0) {
+            return;
+        }
+        if (lastIndexPtsMs == Long.MIN_VALUE || ptsMs - lastIndexPtsMs >= INDEX_INTERVAL_MS) {
+            int entry = indexOffset(indexWritten % indexCapacity);
+            mapping.putLong(entry, writtenFrames);
+            mapping.putLong(entry + 8, ptsMs);
+            indexWritten += 1;
+            mapping.putLong(OFFSET_INDEX_WRITTEN, indexWritten);
+            lastIndexPtsMs = ptsMs;
+        }
+
+        if (length > capacityFrames) {
+            offset += length - capacityFrames;
+            writtenFrames += length - capacityFrames;
+            length = capacityFrames;
+        }
+        int writeIndex = (int) (writtenFrames % capacityFrames);
+        int firstLength = Math.min(length, capacityFrames - writeIndex);
+        samples.position(writeIndex);
+        samples.put(chunk, offset, firstLength);
+        if (firstLength < length) {
+            samples.position(0);
+            samples.put(chunk, offset + firstLength, length - firstLength);
+        }
+        writtenFrames += length;
+        // Published after the samples so a crash never exposes frames that were not written.
+        mapping.putLong(OFFSET_WRITTEN_FRAMES, writtenFrames);
+    }
+
+    File file() {
+        return file;
+    }
+
+    int sampleRate() {
+        return sampleRate;
+    }
+
+    String captureId() {
+        return captureId;
+    }
+
+    long startedAtEpochMs() {
+        return startedAtEpochMs;
+    }
+
+    boolean closedCleanly() {
+        return (mapping.getInt(OFFSET_FLAGS) & FLAG_CLOSED) != 0;
+    }
+
+    long oldestFrame() {
+        return Math.max(0, writtenFrames - capacityFrames);
+    }
+
+    long endFrame() {
+        return writtenFrames;
+    }
+
+    /** Frame position of {@code ptsMs}, interpolated from the nearest index entry at or before it. */
+    long frameAt(long ptsMs) {
+        long oldestEntry = Math.max(0, indexWritten - indexCapacity);
+        if (indexWritten == 0) {
+            return 0;
+        }
+
+        // Entries are in ptsMs order; binary search for the last one not after ptsMs.
+        long low = oldestEntry;
+        long high = indexWritten - 1;
+        long best = oldestEntry;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            if (indexPtsMs(middle) <= ptsMs) {
+                best = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return indexFrame(best) + ((ptsMs - indexPtsMs(best)) * sampleRate) / 1_000;
+    }
+
+    /** ptsMs of a frame position, the inverse of {@link #frameAt(long)}. */
+    long ptsAt(long frame) {
+        long oldestEntry = Math.max(0, indexWritten - indexCapacity);
+        if (indexWritten == 0) {
+            return 0;
+        }
+
+        long low = oldestEntry;
+        long high = indexWritten - 1;
+        long best = oldestEntry;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            if (indexFrame(middle) <= frame) {
+                best = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return indexPtsMs(best) + ((frame - indexFrame(best)) * 1_000) / sampleRate;
+    }
+
+    /** Copies frames {@code [fromFrame, fromFrame + length)}, which must lie within the retained range. */
+    void copy(long fromFrame, int length, short[] out, int outOffset) {
+        if (fromFrame < oldestFrame() || fromFrame + length > writtenFrames) {
+            throw new IllegalArgumentException("Requested frames are no longer in the history.");
+        }
+
+        ShortBuffer view = samples.duplicate();
+        int readIndex = (int) (fromFrame % capacityFrames);
+        int firstLength = Math.min(length, capacityFrames - readIndex);
+        view.position(readIndex);
+        view.get(out, outOffset, firstLength);
+        if (firstLength < length) {
+            view.position(0);
+            view.get(out, outOffset + firstLength, length - firstLength);
+        }
+    }
+
+    /**
+     * Writes frames {@code [fromFrame, toFrame)} to a WAV file straight from the mapping; the samples are already
+     * little-endian, so no conversion buffer is needed.
+     */
+    void exportWav(File target, long fromFrame, long toFrame) throws IOException {
+        if (fromFrame < oldestFrame() || toFrame > writtenFrames || toFrame < fromFrame) {
+            throw new IllegalArgumentException("Requested frames are no longer in the history.");
+        }
+
+        long frames = toFrame - fromFrame;
+        try (FileChannel channel = new FileOutputStream(target).getChannel()) {
+            writeFully(channel, PcmFileRecorder.wavHeader(sampleRate, frames * 2));
+            int readIndex = (int) (fromFrame % capacityFrames);
+            int firstLength = (int) Math.min(frames, capacityFrames - readIndex);
+            writeFully(channel, dataSlice(readIndex, firstLength));
+            if (firstLength < frames) {
+                writeFully(channel, dataSlice(0, (int) (frames - firstLength)));
+            }
+            channel.force(true);
+        }
+    }
+
+    /** Marks the history as cleanly closed and flushes it to storage. */
+    void close() {
+        if (!writable) {
+            return;
+        }
+        mapping.putInt(OFFSET_FLAGS, mapping.getInt(OFFSET_FLAGS) | FLAG_CLOSED);
+        mapping.force();
+    }
+
+    private ByteBuffer dataSlice(int fromFrame, int frames) {
+        ByteBuffer slice = mapping.duplicate();
+        slice.limit(dataOffset + (fromFrame + frames) * 2);
+        slice.position(dataOffset + fromFrame * 2);
+        return slice;
+    }
+
+    private long indexFrame(long entry) {
+        return mapping.getLong(indexOffset(entry % indexCapacity));
+    }
+
+    private long indexPtsMs(long entry) {
+        return mapping.getLong(indexOffset(entry % indexCapacity) + 8);
+    }
+
+    private static int indexOffset(long slot) {
+        return HEADER_BYTES + (int) slot * INDEX_ENTRY_BYTES;
+    }
+
+    private static int dataOffset(int indexCapacity) {
+        int indexEnd = HEADER_BYTES + indexCapacity * INDEX_ENTRY_BYTES;
+        return ((indexEnd + HEADER_BYTES - 1) / HEADER_BYTES) * HEADER_BYTES;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.memora.ai.nativemic;
+
+/**
+ * ITU-T G.711 mu-law companding between PCM16 and one byte per sample. Both directions are table lookups plus a few
+ * shifts, and the array forms write into caller-provided buffers, so encoding a chunk never allocates.
+ */
+final class MuLawCodec {
+
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32_635;
+    /** Segment (exponent) for the biased magnitude shifted right by 7. */
+    private static final byte[] SEGMENTS = new byte[256];
+    private static final short[] DECODED = new short[256];
+
+    static {
+        for (int index = 0; index < SEGMENTS.length; index += 1) {
+            SEGMENTS[index] = (byte) (index == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(index));
+        }
+        for (int code = 0; code < DECODED.length; code += 1) {
+            int value = ~code & 0xff;
+            int segment = (value >> 4) & 0x07;
+            int magnitude = ((((value & 0x0f) << 3) + BIAS) << segment) - BIAS;
+            DECODED[code] = (short) ((value & 0x80) != 0 ? -magnitude : magnitude);
+        }
+    }
+
+    private MuLawCodec() {}
+
+    static byte encode(short pcm) {
+        int sample = pcm;
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) {
+            sample = -sample;
+        }
+        if (sample > CLIP) {
+            sample = CLIP;
+        }
+        sample += BIAS;
+        int segment = SEGMENTS[(sample >> 7) & 0xff];
+        int mantissa = (sample >> (segment + 3)) & 0x0f;
+        return (byte) ~(sign | (segment << 4) | mantissa);
+    }
+
+    static void encode(short[] samples, int offset, int length, byte[] out, int outOffset) {
+        for (int index = 0; index < length; index += 1) {
+            out[outOffset + index] = encode(samples[offset + index]);
+        }
+    }
+
+    static short decode(byte code) {
+        return DECODED[code & 0xff];
+    }
+
+    static void decode(byte[] codes, int offset, int length, short[] out, int outOffset) {
+        for (int index = 0; index < length; index += 1) {
+            out[outOffset + index] = DECODED[codes[offset + index] & 0xff];
+        }
+    }
+}
@@ -8,15 +8,18 @@ import android.media.AudioFocusRequest;
 import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.media.AudioRecord;
+import android.media.AudioTimestamp;
 import android.media.MediaRecorder;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Base64;
+import android.os.SystemClock;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -27,6 +30,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 public final class NativeMic {
 
@@ -34,6 +40,16 @@ public final class NativeMic {
         void emit(String eventName, JSObject payload);
     }
 
+    interface Resampler {
+        int maxOutputFrames(int inputFrames);
+
+        int maxFlushFrames();
+
+        int process(float[] input, int inputOffset, int length, float[] output, int outputOffset);
+
+        int flush(float[] output, int outputOffset);
+    }
+
     enum NativeMicErrorCode {
         PERMISSION_DENIED("E_PERMISSION_DENIED"),
         PERMISSION_RESTRICTED("E_PERMISSION_RESTRICTED"),
@@ -117,25 +133,231 @@ public final class NativeMic {
         }
     }
 
-    enum OutputStream {
-        PCM16K("pcm16k_s16le", 16_000),
-        PCM48K("pcm48k_s16le", 48_000);
+    enum StreamEncoding {
+        S16LE("s16le"),
+        MULAW("mulaw"),
+        IMA_ADPCM("ima_adpcm"),
+        FLAC("flac"),
+        F32LE("f32le");
 
         final String wireValue;
-        final int sampleRate;
 
-        OutputStream(String wireValue, int sampleRate) {
+        StreamEncoding(String wireValue) {
             this.wireValue = wireValue;
+        }
+
+        static StreamEncoding fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (StreamEncoding encoding : values()) {
+                if (encoding.wireValue.equals(value)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class OutputStream {
+
+        static final int MIN_SAMPLE_RATE = 8_000;
+        static final int MAX_SAMPLE_RATE = 48_000;
+
+        static final OutputStream PCM16K = new OutputStream(16_000, StreamEncoding.S16LE);
+        static final OutputStream PCM48K = new OutputStream(48_000, StreamEncoding.S16LE);
+        static final OutputStream MULAW8K = new OutputStream(8_000, StreamEncoding.MULAW);
+        static final OutputStream MULAW16K = new OutputStream(16_000, StreamEncoding.MULAW);
+        static final OutputStream ADPCM8K = new OutputStream(8_000, StreamEncoding.IMA_ADPCM);
+        static final OutputStream ADPCM16K = new OutputStream(16_000, StreamEncoding.IMA_ADPCM);
+        static final OutputStream FLAC16K = new OutputStream(16_000, StreamEncoding.FLAC);
+        static final OutputStream FLAC48K = new OutputStream(48_000, StreamEncoding.FLAC);
+
+        final String wireValue;
+        final int sampleRate;
+        final StreamEncoding encoding;
+
+        private OutputStream(int sampleRate, StreamEncoding encoding) {
+            String rate = sampleRate % 1_000 == 0 ? (sampleRate / 1_000) + "k" : String.valueOf(sampleRate);
+            this.wireValue = "pcm" + rate + "_" + encoding.wireValue;
             this.sampleRate = sampleRate;
+            this.encoding = encoding;
+        }
+
+        static OutputStream of(int sampleRate, StreamEncoding encoding) {
+            if (encoding == null || sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE) {
+                return null;
+            }
+            return new OutputStream(sampleRate, encoding);
+        }
+
+        int encodedBytes(int frames) {
+            switch (encoding) {
+                case MULAW:
+                    return frames;
+                case IMA_ADPCM:
+                    return ImaAdpcmCodec.blockBytes(frames);
+                case FLAC:
+                    return FlacEncoder.maxEncodedBytes(frames);
+                case F32LE:
+                    return frames * 4;
+                default:
+                    return frames * 2;
+            }
+        }
+
+        static String describeWireValues() {
+            StringBuilder builder = new StringBuilder("pcm<rate>_<encoding> with a rate of ");
+            builder.append(MIN_SAMPLE_RATE).append('-').append(MAX_SAMPLE_RATE).append(" Hz and an encoding of ");
+            StreamEncoding[] encodings = StreamEncoding.values();
+            for (int index = 0; index < encodings.length; index += 1) {
+                if (index > 0) {
+                    builder.append(index == encodings.length - 1 ? ", or " : ", ");
+                }
+                builder.append(encodings[index].wireValue);
+            }
+            return builder.append(" (e.g. pcm16k_s16le or pcm44100_flac)").toString();
         }
 
         static OutputStream fromWireValue(String value) {
+            if (value == null || !value.startsWith("pcm")) {
+                return null;
+            }
+            int separator = value.indexOf('_');
+            if (separator < 4) {
+                return null;
+            }
+
+            String rate = value.substring(3, separator);
+            boolean kilohertz = rate.endsWith("k");
+            String digits = kilohertz ? rate.substring(0, rate.length() - 1) : rate;
+            if (digits.isEmpty() || digits.length() > 6 || digits.charAt(0) == '0') {
+                return null;
+            }
+            for (int index = 0; index < digits.length(); index += 1) {
+                if (!Character.isDigit(digits.charAt(index))) {
+                    return null;
+                }
+            }
+
+            int sampleRate = Integer.parseInt(digits) * (kilohertz ? 1_000 : 1);
+            OutputStream stream = of(sampleRate, StreamEncoding.fromWireValue(value.substring(separator + 1)));
+            // Only the canonical spelling is accepted, so each stream has exactly one name in events and URLs.
+            return stream != null && stream.wireValue.equals(value) ? stream : null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof OutputStream)) {
+                return false;
+            }
+            OutputStream stream = (OutputStream) other;
+            return sampleRate == stream.sampleRate && encoding == stream.encoding;
+        }
+
+        @Override
+        public int hashCode() {
+            return sampleRate * 31 + encoding.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return wireValue;
+        }
+    }
+
+    enum ResamplerQuality {
+        LINEAR("linear"),
+        SINC("sinc");
+
+        final String wireValue;
+
+        ResamplerQuality(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static ResamplerQuality fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (ResamplerQuality quality : values()) {
+                if (quality.wireValue.equals(value)) {
+                    return quality;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum CaptureEncoding {
+        PCM16("pcm16", AudioFormat.ENCODING_PCM_16BIT, 2),
+        FLOAT("float", AudioFormat.ENCODING_PCM_FLOAT, 4);
+
+        final String wireValue;
+        final int audioFormatEncoding;
+        final int bytesPerSample;
+
+        CaptureEncoding(String wireValue, int audioFormatEncoding, int bytesPerSample) {
+            this.wireValue = wireValue;
+            this.audioFormatEncoding = audioFormatEncoding;
+            this.bytesPerSample = bytesPerSample;
+        }
+
+        static CaptureEncoding fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (CaptureEncoding encoding : values()) {
+                if (encoding.wireValue.equals(value)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum ChannelMix {
+        AVERAGE("average"),
+        LEFT("left"),
+        RIGHT("right"),
+        LOUDEST("loudest");
+
+        final String wireValue;
+
+        ChannelMix(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static ChannelMix fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (ChannelMix mix : values()) {
+                if (mix.wireValue.equals(value)) {
+                    return mix;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum PcmTransport {
+        EVENTS("events"),
+        LOOPBACK("loopback");
+
+        final String wireValue;
+
+        PcmTransport(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static PcmTransport fromWireValue(String value) {
             if (value == null) {
                 return null;
             }
-            for (OutputStream stream : values()) {
-                if (stream.wireValue.equals(value)) {
-                    return stream;
+            for (PcmTransport transport : values()) {
+                if (transport.wireValue.equals(value)) {
+                    return transport;
                 }
             }
             return null;
@@ -166,6 +388,24 @@ public final class NativeMic {
         }
     }
 
+    enum LatencyStage {
+        READ("read"),
+        QUEUE("queue"),
+        CONVERT("convert"),
+        RESAMPLE("resample"),
+        ENCODE("encode"),
+        EMIT("emit"),
+        JS_DISPATCH("jsDispatch"),
+        CAPTURE_CPU("captureCpu"),
+        PROCESS_CPU("processCpu");
+
+        final String wireValue;
+
+        LatencyStage(String wireValue) {
+            this.wireValue = wireValue;
+        }
+    }
+
     enum NativeMicState {
         IDLE("idle"),
         RUNNING("running"),
@@ -189,6 +429,18 @@ public final class NativeMic {
         final boolean voiceProcessing;
         final String preferredInputId;
         final OutputRoute outputRoute;
+        final ResamplerQuality resamplerQuality;
+        final CaptureEncoding captureEncoding;
+        final int channels;
+        final ChannelMix channelMix;
+        final PcmTransport pcmTransport;
+        final int batchChunks;
+        final boolean gateOnVad;
+        final int vadPreRollMs;
+        final int vadPostRollMs;
+        final int historyMs;
+        final RecordOptionsModel record;
+        final DiskHistoryOptionsModel diskHistory;
 
         StartCaptureOptionsModel(
             MicProfile profile,
@@ -199,7 +451,19 @@ public final class NativeMic {
             int audioLevelIntervalMs,
             boolean voiceProcessing,
             String preferredInputId,
-            OutputRoute outputRoute
+            OutputRoute outputRoute,
+            ResamplerQuality resamplerQuality,
+            CaptureEncoding captureEncoding,
+            int channels,
+            ChannelMix channelMix,
+            PcmTransport pcmTransport,
+            int batchChunks,
+            boolean gateOnVad,
+            int vadPreRollMs,
+            int vadPostRollMs,
+            int historyMs,
+            RecordOptionsModel record,
+            DiskHistoryOptionsModel diskHistory
         ) {
             this.profile = profile;
             this.mode = mode;
@@ -210,6 +474,50 @@ public final class NativeMic {
             this.voiceProcessing = voiceProcessing;
             this.preferredInputId = preferredInputId;
             this.outputRoute = outputRoute;
+            this.resamplerQuality = resamplerQuality;
+            this.captureEncoding = captureEncoding;
+            this.channels = channels;
+            this.channelMix = channelMix;
+            this.pcmTransport = pcmTransport;
+            this.batchChunks = batchChunks;
+            this.gateOnVad = gateOnVad;
+            this.vadPreRollMs = vadPreRollMs;
+            this.vadPostRollMs = vadPostRollMs;
+            this.historyMs = historyMs;
+            this.record = record;
+            this.diskHistory = diskHistory;
+        }
+
+        boolean sameEngineAs(StartCaptureOptionsModel other) {
+            return (
+                voiceProcessing == other.voiceProcessing &&
+                captureEncoding == other.captureEncoding &&
+                channels == other.channels &&
+                channelMix == other.channelMix &&
+                chunkMs == other.chunkMs &&
+                outputStreams.equals(other.outputStreams) &&
+                resamplerQuality == other.resamplerQuality &&
+                batchChunks == other.batchChunks &&
+                gateOnVad == other.gateOnVad &&
+                vadPreRollMs == other.vadPreRollMs &&
+                vadPostRollMs == other.vadPostRollMs &&
+                historyMs == other.historyMs
+            );
+        }
+    }
+
+    static final class RecordOptionsModel {
+
+        final File file;
+        final OutputStream stream;
+        final PcmFileRecorder.Format format;
+        final PcmFileRecorder.FsyncPolicy fsyncPolicy;
+
+        RecordOptionsModel(File file, OutputStream stream, PcmFileRecorder.Format format, PcmFileRecorder.FsyncPolicy fsyncPolicy) {
+            this.file = file;
+            this.stream = stream;
+            this.format = format;
+            this.fsyncPolicy = fsyncPolicy;
         }
     }
 
@@ -219,12 +527,32 @@ public final class NativeMic {
         final double actualInputSampleRate;
         final int actualInputChannels;
         final int chunkMs;
-
-        StartCaptureResultModel(String captureId, double actualInputSampleRate, int actualInputChannels, int chunkMs) {
+        final int batchChunks;
+        final Map<String, String> streamUrls;
+        final Map<String, String> streamHeaders;
+        final boolean warmStart;
+        final long startupMs;
+
+        StartCaptureResultModel(
+            String captureId,
+            double actualInputSampleRate,
+            int actualInputChannels,
+            int chunkMs,
+            int batchChunks,
+            Map<String, String> streamUrls,
+            Map<String, String> streamHeaders,
+            boolean warmStart,
+            long startupMs
+        ) {
             this.captureId = captureId;
             this.actualInputSampleRate = actualInputSampleRate;
             this.actualInputChannels = actualInputChannels;
             this.chunkMs = chunkMs;
+            this.batchChunks = batchChunks;
+            this.streamUrls = streamUrls;
+            this.streamHeaders = streamHeaders;
+            this.warmStart = warmStart;
+            this.startupMs = startupMs;
         }
 
         JSObject asJSObject() {
@@ -233,6 +561,155 @@ public final class NativeMic {
             object.put("actualInputSampleRate", actualInputSampleRate);
             object.put("actualInputChannels", actualInputChannels);
             object.put("chunkMs", chunkMs);
+            object.put("batchChunks", batchChunks);
+            if (streamUrls != null) {
+                JSObject urls = new JSObject();
+                for (Map.Entry<String, String> entry : streamUrls.entrySet()) {
+                    urls.put(entry.getKey(), entry.getValue());
+                }
+                object.put("streamUrls", urls);
+            }
+            if (!streamHeaders.isEmpty()) {
+                JSObject headers = new JSObject();
+                for (Map.Entry<String, String> entry : streamHeaders.entrySet()) {
+                    headers.put(entry.getKey(), entry.getValue());
+                }
+                object.put("streamHeaders", headers);
+            }
+            object.put("warmStart", warmStart);
+            object.put("startupMs", startupMs);
+            return object;
+        }
+    }
+
+    static final class PreparedCapture {
+
+        final StartCaptureOptionsModel options;
+        final CaptureSource source;
+        final int audioSource;
+        final int chunkFrames;
+        final CaptureEncoding encoding;
+        final int readBufferFrames;
+        final ResamplingGraph graph;
+        final Map<OutputStream, StreamPipeline> pipelines;
+
+        PreparedCapture(
+            StartCaptureOptionsModel options,
+            CaptureSource source,
+            int audioSource,
+            int chunkFrames,
+            CaptureEncoding encoding,
+            int readBufferFrames,
+            ResamplingGraph graph,
+            Map<OutputStream, StreamPipeline> pipelines
+        ) {
+            this.options = options;
+            this.source = source;
+            this.audioSource = audioSource;
+            this.chunkFrames = chunkFrames;
+            this.encoding = encoding;
+            this.readBufferFrames = readBufferFrames;
+            this.graph = graph;
+            this.pipelines = pipelines;
+        }
+    }
+
+    // Raised under lock; handed to the emitter by emitPendingEvents once the lock is released.
+    private static final class PendingEvent {
+
+        final String eventName;
+        final JSObject payload;
+
+        PendingEvent(String eventName, JSObject payload) {
+            this.eventName = eventName;
+            this.payload = payload;
+        }
+    }
+
+    static final class DiskHistoryOptionsModel {
+
+        final File file;
+        final OutputStream stream;
+        final int durationMs;
+
+        DiskHistoryOptionsModel(File file, OutputStream stream, int durationMs) {
+            this.file = file;
+            this.stream = stream;
+            this.durationMs = durationMs;
+        }
+    }
+
+    static final class HistoryExportResultModel {
+
+        final String path;
+        final String outputPath;
+        final String captureId;
+        final int sampleRate;
+        final long startedAtEpochMs;
+        final long ptsMs;
+        final long frames;
+        final boolean recovered;
+
+        HistoryExportResultModel(
+            String path,
+            String outputPath,
+            String captureId,
+            int sampleRate,
+            long startedAtEpochMs,
+            long ptsMs,
+            long frames,
+            boolean recovered
+        ) {
+            this.path = path;
+            this.outputPath = outputPath;
+            this.captureId = captureId;
+            this.sampleRate = sampleRate;
+            this.startedAtEpochMs = startedAtEpochMs;
+            this.ptsMs = ptsMs;
+            this.frames = frames;
+            this.recovered = recovered;
+        }
+
+        JSObject asJSObject() {
+            JSObject object = new JSObject();
+            object.put("path", path);
+            object.put("outputPath", outputPath);
+            object.put("captureId", captureId);
+            object.put("sampleRate", sampleRate);
+            object.put("startedAtEpochMs", startedAtEpochMs);
+            object.put("ptsMs", ptsMs);
+            object.put("frames", frames);
+            object.put("durationMs", (frames * 1_000L) / sampleRate);
+            object.put("recovered", recovered);
+            return object;
+        }
+    }
+
+    static final class RecentAudioResultModel {
+
+        final String captureId;
+        final OutputStream stream;
+        final long ptsMs;
+        final int frames;
+        final String dataBase64;
+
+        RecentAudioResultModel(String captureId, OutputStream stream, long ptsMs, int frames, String dataBase64) {
+            this.captureId = captureId;
+            this.stream = stream;
+            this.ptsMs = ptsMs;
+            this.frames = frames;
+            this.dataBase64 = dataBase64;
+        }
+
+        JSObject asJSObject() {
+            JSObject object = new JSObject();
+            object.put("captureId", captureId);
+            object.put("stream", stream.wireValue);
+            object.put("sampleRate", stream.sampleRate);
+            object.put("channels", 1);
+            object.put("ptsMs", ptsMs);
+            object.put("frames", frames);
+            object.put("dataBase64", dataBase64);
             return object;
         }
     }
@@ -241,25 +718,95 @@ public final class NativeMic {
 
         final String captureId;
         final long totalFramesIn;
-        final long totalFramesOut16k;
-        final long totalFramesOut48k;
+        final Map<String, Long> totalFramesOut;
         final long durationMs;
-
-        StopCaptureResultModel(String captureId, long totalFramesIn, long totalFramesOut16k, long totalFramesOut48k, long durationMs) {
+        final RecordingResultModel recording;
+        final Map<String, LatencyHistogram.Summary> latency;
+
+        StopCaptureResultModel(
+            String captureId,
+            long totalFramesIn,
+            Map<String, Long> totalFramesOut,
+            long durationMs,
+            RecordingResultModel recording,
+            Map<String, LatencyHistogram.Summary> latency
+        ) {
             this.captureId = captureId;
             this.totalFramesIn = totalFramesIn;
-            this.totalFramesOut16k = totalFramesOut16k;
-            this.totalFramesOut48k = totalFramesOut48k;
+            this.totalFramesOut = totalFramesOut;
             this.durationMs = durationMs;
+            this.recording = recording;
+            this.latency = latency;
         }
 
         JSObject asJSObject() {
             JSObject object = new JSObject();
             object.put("captureId", captureId);
             object.put("totalFramesIn", totalFramesIn);
-            object.put("totalFramesOut16k", totalFramesOut16k);
-            object.put("totalFramesOut48k", totalFramesOut48k);
+            object.put("totalFramesOut", framesByStream(totalFramesOut));
             object.put("durationMs", durationMs);
+            if (recording != null) {
+                object.put("recording", recording.asJSObject());
+            }
+            object.put("latency", latencyByStage(latency));
+            return object;
+        }
+    }
+
+    static final class RecordingResultModel {
+
+        final String path;
+        final OutputStream stream;
+        final PcmFileRecorder.Format format;
+        final long bytesWritten;
+        final long droppedBytes;
+        final long writerLagMs;
+        final long maxWriterLagMs;
+        final boolean complete;
+
+        RecordingResultModel(
+            String path,
+            OutputStream stream,
+            PcmFileRecorder.Format format,
+            long bytesWritten,
+            long droppedBytes,
+            long writerLagMs,
+            long maxWriterLagMs,
+            boolean complete
+        ) {
+            this.path = path;
+            this.stream = stream;
+            this.format = format;
+            this.bytesWritten = bytesWritten;
+            this.droppedBytes = droppedBytes;
+            this.writerLagMs = writerLagMs;
+            this.maxWriterLagMs = maxWriterLagMs;
+            this.complete = complete;
+        }
+
+        static RecordingResultModel from(PcmFileRecorder recorder, OutputStream stream, boolean complete) {
+            return new RecordingResultModel(
+                recorder.file().getAbsolutePath(),
+                stream,
+                recorder.format(),
+                recorder.writtenBytes(),
+                recorder.droppedBytes(),
+                recorder.lagMs(),
+                recorder.maxLagMs(),
+                complete
+            );
+        }
+
+        JSObject asJSObject() {
+            JSObject object = new JSObject();
+            object.put("path", path);
+            object.put("stream", stream.wireValue);
+            object.put("format", format.wireValue);
+            object.put("bytesWritten", bytesWritten);
+            object.put("droppedBytes", droppedBytes);
+            object.put("writerLagMs", writerLagMs);
+            object.put("maxWriterLagMs", maxWriterLagMs);
+            object.put("complete", complete);
             return object;
         }
     }
@@ -312,7 +859,7 @@ public final class NativeMic {
         }
     }
 
-    static final class LinearResampler {
+    static final class LinearResampler implements Resampler {
 
         private final double step;
         private double nextInputIndex = 0;
@@ -324,12 +871,33 @@ public final class NativeMic {
             this.step = ((double) inputSampleRate) / ((double) outputSampleRate);
         }
 
+        @Override
+        public int maxOutputFrames(int inputFrames) {
+            return (int) Math.ceil(inputFrames / step) + 2;
+        }
+
+        @Override
+        public int maxFlushFrames() {
+            return (int) Math.ceil(1 / step) + 1;
+        }
+
         float[] process(float[] input, int length) {
             if (length <= 0) {
                 return new float[0];
             }
 
-            FloatBuilder output = new FloatBuilder(Math.max(16, length));
+            float[] output = new float[maxOutputFrames(length)];
+            int written = process(input, 0, length, output, 0);
+            return Arrays.copyOf(output, written);
+        }
+
+        @Override
+        public int process(float[] input, int inputOffset, int length, float[] output, int outputOffset) {
+            if (length <= 0) {
+                return 0;
+            }
+
+            int written = 0;
             long chunkStart = chunkStartIndex;
             long chunkEnd = chunkStart + length - 1;
 
@@ -345,179 +913,645 @@ public final class NativeMic {
                     sampleA = lastSample;
                 } else {
                     int inputIndex = (int) (baseIndex - chunkStart);
-                    sampleA = inputIndex >= 0 && inputIndex < length ? input[inputIndex] : lastSample;
+                    sampleA = inputIndex >= 0 && inputIndex < length ? input[inputOffset + inputIndex] : lastSample;
                 }
 
                 long nextIndex = baseIndex + 1;
                 float sampleB;
                 if (nextIndex <= chunkEnd) {
                     int inputIndex = (int) (nextIndex - chunkStart);
-                    sampleB = inputIndex >= 0 && inputIndex < length ? input[inputIndex] : sampleA;
+                    sampleB = inputIndex >= 0 && inputIndex < length ? input[inputOffset + inputIndex] : sampleA;
                 } else {
                     break;
                 }
 
-                output.append((float) (sampleA + (sampleB - sampleA) * fraction));
+                output[outputOffset + written] = (float) (sampleA + (sampleB - sampleA) * fraction);
+                written += 1;
                 nextInputIndex += step;
             }
 
             chunkStartIndex += length;
-            lastSample = input[length - 1];
+            lastSample = input[inputOffset + length - 1];
             hasLastSample = true;
 
-            return output.toArray();
+            return written;
         }
 
         float[] flush() {
+            float[] output = new float[maxFlushFrames()];
+            int written = flush(output, 0);
+            return Arrays.copyOf(output, written);
+        }
+
+        @Override
+        public int flush(float[] output, int outputOffset) {
             if (!hasLastSample) {
-                return new float[0];
+                return 0;
             }
 
-            FloatBuilder output = new FloatBuilder(32);
+            int written = 0;
             long lastIndex = chunkStartIndex - 1;
-            while (nextInputIndex <= lastIndex) {
-                output.append(lastSample);
+            while (nextInputIndex <= lastIndex && outputOffset + written < output.length) {
+                output[outputOffset + written] = lastSample;
+                written += 1;
                 nextInputIndex += step;
             }
-            return output.toArray();
+            return written;
         }
     }
 
-    private static final class FloatBuilder {
-
-        private float[] data;
-        private int size;
-
-        FloatBuilder(int initialCapacity) {
-            this.data = new float[Math.max(1, initialCapacity)];
-        }
+    static final class PcmRingBuffer {
 
-        void append(float value) {
-            ensureCapacity(size + 1);
-            data[size] = value;
-            size += 1;
-        }
+        private short[] data;
+        private int readIndex = 0;
+        private int size = 0;
 
-        float[] toArray() {
-            return Arrays.copyOf(data, size);
+        PcmRingBuffer(int capacity) {
+            this.data = new short[Math.max(16, capacity)];
         }
 
-        private void ensureCapacity(int desiredCapacity) {
-            if (desiredCapacity <= data.length) {
+        void write(short[] samples, int offset, int length) {
+            if (length <= 0) {
                 return;
             }
-            int nextCapacity = data.length;
-            while (nextCapacity < desiredCapacity) {
-                nextCapacity *= 2;
+            ensureCapacity(size + length);
+
+            int writeIndex = (readIndex + size) % data.length;
+            int firstLength = Math.min(length, data.length - writeIndex);
+            System.arraycopy(samples, offset, data, writeIndex, firstLength);
+            if (firstLength < length) {
+                System.arraycopy(samples, offset + firstLength, data, 0, length - firstLength);
             }
-            data = Arrays.copyOf(data, nextCapacity);
+            size += length;
         }
-    }
 
-    private static final class ShortBuffer {
-
-        private short[] data = new short[0];
-        private int size = 0;
+        void writeFloat(float[] samples, int offset, int length) {
+            if (length <= 0) {
+                return;
+            }
+            ensureCapacity(size + length);
 
-        void append(short[] samples) {
-            append(samples, samples.length);
+            int writeIndex = (readIndex + size) % data.length;
+            for (int index = 0; index < length; index += 1) {
+                data[writeIndex] = floatToPcm16(samples[offset + index]);
+                writeIndex += 1;
+                if (writeIndex == data.length) {
+                    writeIndex = 0;
+                }
+            }
+            size += length;
         }
 
-        void append(short[] samples, int length) {
+        void writeSilence(int length) {
             if (length <= 0) {
                 return;
             }
             ensureCapacity(size + length);
-            System.arraycopy(samples, 0, data, size, length);
+
+            int writeIndex = (readIndex + size) % data.length;
+            int firstLength = Math.min(length, data.length - writeIndex);
+            Arrays.fill(data, writeIndex, writeIndex + firstLength, (short) 0);
+            if (firstLength < length) {
+                Arrays.fill(data, 0, length - firstLength, (short) 0);
+            }
             size += length;
         }
 
-        short[] popChunk(int chunkFrames) {
-            if (size < chunkFrames) {
-                return null;
+        boolean read(short[] target, int length) {
+            if (size < length) {
+                return false;
             }
-            short[] output = Arrays.copyOfRange(data, 0, chunkFrames);
-            shiftLeft(chunkFrames);
-            return output;
+            copyOut(target, length);
+            return true;
         }
 
-        short[] popFinalChunk(int chunkFrames) {
+        boolean readFinal(short[] target, int length) {
             if (size == 0) {
-                return null;
+                return false;
             }
-            short[] output = new short[chunkFrames];
-            int copyLength = Math.min(chunkFrames, size);
-            System.arraycopy(data, 0, output, 0, copyLength);
+            int copyLength = Math.min(length, size);
+            copyOut(target, copyLength);
+            Arrays.fill(target, copyLength, length, (short) 0);
             size = 0;
-            return output;
+            readIndex = 0;
+            return true;
         }
 
         void clear() {
             size = 0;
+            readIndex = 0;
         }
 
         int size() {
             return size;
         }
 
-        private void shiftLeft(int amount) {
-            int remaining = size - amount;
-            if (remaining > 0) {
-                System.arraycopy(data, amount, data, 0, remaining);
+        int capacity() {
+            return data.length;
+        }
+
+        private void copyOut(short[] target, int length) {
+            int firstLength = Math.min(length, data.length - readIndex);
+            System.arraycopy(data, readIndex, target, 0, firstLength);
+            if (firstLength < length) {
+                System.arraycopy(data, 0, target, firstLength, length - firstLength);
             }
-            size = remaining;
+            readIndex = (readIndex + length) % data.length;
+            size -= length;
         }
 
         private void ensureCapacity(int desiredCapacity) {
             if (desiredCapacity <= data.length) {
                 return;
             }
-            int nextCapacity = Math.max(16, data.length);
-            while (nextCapacity < desiredCapacity) {
-                nextCapacity *= 2;
-            }
-            data = Arrays.copyOf(data, nextCapacity);
+            // Only reached when a caller writes more than the pipeline was sized for.
+            short[] grown = new short[Math.max(desiredCapacity, data.length * 2)];
+            int currentSize = size;
+            copyOut(grown, currentSize);
+            data = grown;
+            readIndex = 0;
+            size = currentSize;
         }
     }
 
-    private static final class StreamPipeline {
+    static final class FloatRingBuffer {
 
-        final OutputStream stream;
-        final int sampleRate;
-        final int chunkFrames;
-        final LinearResampler resampler;
-        final ShortBuffer pendingSamples = new ShortBuffer();
-        long seq = 0;
-        long emittedFrames = 0;
+        private float[] data;
+        private int readIndex = 0;
+        private int size = 0;
 
-        StreamPipeline(OutputStream stream, int inputSampleRate, int chunkMs) {
-            this.stream = stream;
-            this.sampleRate = stream.sampleRate;
-            this.chunkFrames = (stream.sampleRate * chunkMs) / 1_000;
-            this.resampler = new LinearResampler(inputSampleRate, stream.sampleRate);
+        FloatRingBuffer(int capacity) {
+            this.data = new float[Math.max(16, capacity)];
         }
 
-        short[] convert(float[] samples, int length) {
-            float[] resampled = resampler.process(samples, length);
-            return convertFloatToPcm16(resampled);
-        }
+        void write(float[] samples, int offset, int length) {
+            if (length <= 0) {
+                return;
+            }
+            ensureCapacity(size + length);
 
-        short[] flush() {
-            float[] remaining = resampler.flush();
-            return convertFloatToPcm16(remaining);
+            int writeIndex = (readIndex + size) % data.length;
+            int firstLength = Math.min(length, data.length - writeIndex);
+            System.arraycopy(samples, offset, data, writeIndex, firstLength);
+            if (firstLength < length) {
+                System.arraycopy(samples, offset + firstLength, data, 0, length - firstLength);
+            }
+            size += length;
         }
-    }
 
-    private static final int DEFAULT_CHUNK_MS = 20;
-    private static final int DEFAULT_AUDIO_LEVEL_INTERVAL_MS = 50;
-    private static final int DEFAULT_FLUSH_TIMEOUT_MS = 150;
-    private static final String PERMISSION_DENIED_MESSAGE = "Microphone permission denied.";
+        void writePcm16(short[] samples, int offset, int length) {
+            if (length <= 0) {
+                return;
+            }
+            ensureCapacity(size + length);
+
+            int writeIndex = (readIndex + size) % data.length;
+            for (int index = 0; index < length; index += 1) {
+                data[writeIndex] = samples[offset + index] / 32768.0f;
+                writeIndex += 1;
+                if (writeIndex == data.length) {
+                    writeIndex = 0;
+                }
+            }
+            size += length;
+        }
+
+        void writeSilence(int length) {
+            if (length <= 0) {
+                return;
+            }
+            ensureCapacity(size + length);
+
+            int writeIndex = (readIndex + size) % data.length;
+            int firstLength = Math.min(length, data.length - writeIndex);
+            Arrays.fill(data, writeIndex, writeIndex + firstLength, 0f);
+            if (firstLength < length) {
+                Arrays.fill(data, 0, length - firstLength, 0f);
+            }
+            size += length;
+        }
+
+        boolean read(float[] target, int length) {
+            if (size < length) {
+                return false;
+            }
+            copyOut(target, length);
+            return true;
+        }
+
+        boolean readFinal(float[] target, int length) {
+            if (size == 0) {
+                return false;
+            }
+            int copyLength = Math.min(length, size);
+            copyOut(target, copyLength);
+            Arrays.fill(target, copyLength, length, 0f);
+            size = 0;
+            readIndex = 0;
+            return true;
+        }
+
+        void clear() {
+            size = 0;
+            readIndex = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void copyOut(float[] target, int length) {
+            int firstLength = Math.min(length, data.length - readIndex);
+            System.arraycopy(data, readIndex, target, 0, firstLength);
+            if (firstLength < length) {
+                System.arraycopy(data, 0, target, firstLength, length - firstLength);
+            }
+            readIndex = (readIndex + length) % data.length;
+            size -= length;
+        }
+
+        private void ensureCapacity(int desiredCapacity) {
+            if (desiredCapacity <= data.length) {
+                return;
+            }
+            float[] grown = new float[Math.max(desiredCapacity, data.length * 2)];
+            int currentSize = size;
+            copyOut(grown, currentSize);
+            data = grown;
+            readIndex = 0;
+            size = currentSize;
+        }
+    }
+
+    static final class ChunkBatch {
+
+        final int capacity;
+        final short[] samples;
+        final float[] floatSamples;
+        final long[] seqs;
+        final long[] ptsMs;
+        final int[] frames;
+        int count = 0;
+        int totalFrames = 0;
+        int flags = 0;
+
+        ChunkBatch(int capacity, int chunkFrames) {
+            this(capacity, chunkFrames, false);
+        }
+
+        ChunkBatch(int capacity, int chunkFrames, boolean withFloats) {
+            this.capacity = Math.max(1, capacity);
+            this.samples = new short[this.capacity * chunkFrames];
+            this.floatSamples = withFloats ? new float[this.capacity * chunkFrames] : null;
+            this.seqs = new long[this.capacity];
+            this.ptsMs = new long[this.capacity];
+            this.frames = new int[this.capacity];
+        }
+
+        void add(short[] chunk, int length, long seq, long chunkPtsMs) {
+            add(chunk, length, seq, chunkPtsMs, 0);
+        }
+
+        void add(short[] chunk, int length, long seq, long chunkPtsMs, int chunkFlags) {
+            add(chunk, null, length, seq, chunkPtsMs, chunkFlags);
+        }
+
+        void add(short[] chunk, float[] floatChunk, int length, long seq, long chunkPtsMs, int chunkFlags) {
+            if (floatSamples != null) {
+                System.arraycopy(floatChunk, 0, floatSamples, totalFrames, length);
+            } else {
+                System.arraycopy(chunk, 0, samples, totalFrames, length);
+            }
+            flags |= chunkFlags;
+            seqs[count] = seq;
+            ptsMs[count] = chunkPtsMs;
+            frames[count] = length;
+            count += 1;
+            totalFrames += length;
+        }
+
+        boolean isFull() {
+            return count >= capacity;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void clear() {
+            count = 0;
+            totalFrames = 0;
+            flags = 0;
+        }
+    }
+
+    static final class SpeechGate {
+
+        interface ChunkSink {
+            void deliver(short[] samples, long seq, long ptsMs, int flags);
+        }
+
+        private final short[][] preRoll;
+        private final long[] preRollSeqs;
+        private final long[] preRollPtsMs;
+        private final int postRollChunks;
+        private int preRollStart = 0;
+        private int preRollCount = 0;
+        private boolean open = false;
+        private int postRollRemaining = 0;
+        long suppressedChunks = 0;
+
+        SpeechGate(int preRollChunks, int postRollChunks, int chunkFrames) {
+            this.preRoll = new short[Math.max(0, preRollChunks)][chunkFrames];
+            this.preRollSeqs = new long[preRoll.length];
+            this.preRollPtsMs = new long[preRoll.length];
+            this.postRollChunks = Math.max(1, postRollChunks);
+        }
+
+        static int chunksFor(int durationMs, int chunkMs) {
+            return (durationMs + chunkMs - 1) / chunkMs;
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        void offer(short[] samples, long seq, long ptsMs, boolean speech, boolean finalChunk, ChunkSink sink) {
+            int finalFlag = finalChunk ? PcmStreamServer.FLAG_FINAL : 0;
+            if (!open) {
+                if (!speech) {
+                    if (finalChunk) {
+                        // Still deliver the final chunk so consumers see the stream end.
+                        suppressedChunks += preRollCount;
+                        preRollCount = 0;
+                        sink.deliver(samples, seq, ptsMs, finalFlag);
+                    } else {
+                        hold(samples, seq, ptsMs);
+                    }
+                    return;
+                }
+
+                open = true;
+                postRollRemaining = postRollChunks;
+                int startFlag = PcmStreamServer.FLAG_SEGMENT_START;
+                for (int index = 0; index < preRollCount; index += 1) {
+                    int slot = (preRollStart + index) % preRoll.length;
+                    sink.deliver(preRoll[slot], preRollSeqs[slot], preRollPtsMs[slot], startFlag);
+                    startFlag = 0;
+                }
+                preRollCount = 0;
+                if (finalChunk) {
+                    open = false;
+                    sink.deliver(samples, seq, ptsMs, startFlag | finalFlag | PcmStreamServer.FLAG_SEGMENT_END);
+                } else {
+                    sink.deliver(samples, seq, ptsMs, startFlag);
+                }
+                return;
+            }
+
+            if (speech) {
+                postRollRemaining = postRollChunks;
+            } else {
+                postRollRemaining -= 1;
+            }
+            boolean closing = finalChunk || postRollRemaining <= 0;
+            if (closing) {
+                open = false;
+            }
+            sink.deliver(samples, seq, ptsMs, finalFlag | (closing ? PcmStreamServer.FLAG_SEGMENT_END : 0));
+        }
+
+        private void hold(short[] samples, long seq, long ptsMs) {
+            if (preRoll.length == 0) {
+                suppressedChunks += 1;
+                return;
+            }
+            int slot;
+            if (preRollCount < preRoll.length) {
+                slot = (preRollStart + preRollCount) % preRoll.length;
+                preRollCount += 1;
+            } else {
+                slot = preRollStart;
+                preRollStart = (preRollStart + 1) % preRoll.length;
+                suppressedChunks += 1;
+            }
+            System.arraycopy(samples, 0, preRoll[slot], 0, samples.length);
+            preRollSeqs[slot] = seq;
+            preRollPtsMs[slot] = ptsMs;
+        }
+    }
+
+    static final class StreamPipeline {
+
+        final OutputStream stream;
+        final int sampleRate;
+        final int chunkFrames;
+        final boolean passthrough;
+        final ResamplingGraph graph;
+        final ResamplingGraph.Stage source;
+        final PcmRingBuffer pendingSamples;
+        final short[] chunkBuffer;
+        final FloatRingBuffer pendingFloats;
+        final float[] floatChunk;
+        final ChunkBatch batch;
+        SpeechGate gate;
+        SpeechGate.ChunkSink gateSink;
+        PcmHistoryRing history;
+        PcmFileRecorder recorder;
+        MappedHistoryFile diskHistory;
+        final byte[] encoded;
+        private final ImaAdpcmCodec adpcm;
+        private final FlacEncoder flac;
+        long seq = 0;
+        long emittedFrames = 0;
+        long lastPtsMs = Long.MIN_VALUE;
+
+        StreamPipeline(OutputStream stream, int inputSampleRate, int chunkMs, int maxInputFrames, ResamplerQuality quality) {
+            this(stream, inputSampleRate, chunkMs, maxInputFrames, quality, 1);
+        }
+
+        StreamPipeline(
+            OutputStream stream,
+            int inputSampleRate,
+            int chunkMs,
+            int maxInputFrames,
+            ResamplerQuality quality,
+            int batchChunks
+        ) {
+            this(
+                stream,
+                new ResamplingGraph(inputSampleRate, Arrays.asList(stream.sampleRate), maxInputFrames, quality),
+                chunkMs,
+                batchChunks
+            );
+        }
+
+        StreamPipeline(OutputStream stream, ResamplingGraph graph, int chunkMs, int batchChunks) {
+            this.stream = stream;
+            this.sampleRate = stream.sampleRate;
+            this.chunkFrames = (stream.sampleRate * chunkMs) / 1_000;
+            this.graph = graph;
+            this.source = graph.stage(stream.sampleRate);
+            this.passthrough = source.isInput();
+            this.pendingSamples = new PcmRingBuffer(chunkFrames + source.capacity);
+            this.chunkBuffer = new short[chunkFrames];
+            boolean floats = stream.encoding == StreamEncoding.F32LE;
+            this.pendingFloats = floats ? new FloatRingBuffer(chunkFrames + source.capacity) : null;
+            this.floatChunk = floats ? new float[chunkFrames] : null;
+            this.batch = new ChunkBatch(batchChunks, chunkFrames, floats);
+            this.encoded = stream.encoding == StreamEncoding.S16LE ? null : new byte[stream.encodedBytes(batch.samples.length)];
+            this.adpcm = stream.encoding == StreamEncoding.IMA_ADPCM ? new ImaAdpcmCodec() : null;
+            this.flac = stream.encoding == StreamEncoding.FLAC ? new FlacEncoder(stream.sampleRate) : null;
+        }
+
+        int encodeFloats(float[] samples, int length) {
+            int cursor = 0;
+            for (int index = 0; index < length; index += 1) {
+                int bits = Float.floatToRawIntBits(samples[index]);
+                encoded[cursor] = (byte) bits;
+                encoded[cursor + 1] = (byte) (bits >> 8);
+                encoded[cursor + 2] = (byte) (bits >> 16);
+                encoded[cursor + 3] = (byte) (bits >> 24);
+                cursor += 4;
+            }
+            return cursor;
+        }
+
+        boolean keepsPcm16() {
+            return pendingFloats == null || history != null || recorder != null || diskHistory != null;
+        }
+
+        int encode(short[] samples, int length) {
+            if (adpcm != null) {
+                return adpcm.encodeBlock(samples, 0, length, encoded, 0);
+            }
+            if (flac != null) {
+                return flac.encode(samples, 0, length, encoded, 0);
+            }
+            MuLawCodec.encode(samples, 0, length, encoded, 0);
+            return length;
+        }
+
+        byte[] streamHeader() {
+            return flac != null ? flac.streamHeader() : null;
+        }
+
+        void writeRaw(short[] samples, int offset, int length, boolean muted) {
+            if (pendingFloats != null) {
+                if (muted) {
+                    pendingFloats.writeSilence(length);
+                } else {
+                    pendingFloats.writePcm16(samples, offset, length);
+                }
+            }
+            if (!keepsPcm16()) {
+                return;
+            }
+            if (muted) {
+                pendingSamples.writeSilence(length);
+            } else {
+                pendingSamples.write(samples, offset, length);
+            }
+        }
+
+        void pull() {
+            if (pendingFloats != null) {
+                pendingFloats.write(source.samples, source.offset, source.length);
+            }
+            if (keepsPcm16()) {
+                pendingSamples.writeFloat(source.samples, source.offset, source.length);
+            }
+        }
+
+        void convert(float[] samples, int length) {
+            int maxInputFrames = graph.maxInputFrames();
+            for (int offset = 0; offset < length; offset += maxInputFrames) {
+                graph.process(samples, offset, Math.min(maxInputFrames, length - offset));
+                pull();
+            }
+        }
+
+        void flush() {
+            if (passthrough) {
+                return;
+            }
+            graph.flush();
+            pull();
+        }
+
+        boolean popChunk() {
+            if (pendingFloats == null) {
+                return pendingSamples.read(chunkBuffer, chunkFrames);
+            }
+            if (!pendingFloats.read(floatChunk, chunkFrames)) {
+                return false;
+            }
+            if (keepsPcm16()) {
+                pendingSamples.read(chunkBuffer, chunkFrames);
+            }
+            return true;
+        }
+
+        boolean popFinalChunk() {
+            if (pendingFloats == null) {
+                return pendingSamples.readFinal(chunkBuffer, chunkFrames);
+            }
+            if (!pendingFloats.readFinal(floatChunk, chunkFrames)) {
+                return false;
+            }
+            if (keepsPcm16()) {
+                pendingSamples.readFinal(chunkBuffer, chunkFrames);
+            }
+            return true;
+        }
+
+        static Resampler createResampler(int inputSampleRate, int outputSampleRate, ResamplerQuality quality) {
+            if (quality == ResamplerQuality.SINC && PolyphaseResampler.supports(inputSampleRate, outputSampleRate)) {
+                return new PolyphaseResampler(inputSampleRate, outputSampleRate);
+            }
+            return new LinearResampler(inputSampleRate, outputSampleRate);
+        }
+    }
+
+    private static final int DEFAULT_CHUNK_MS = 20;
+    private static final int MIN_CHUNK_MS = 5;
+    private static final int MAX_CHUNK_MS = 200;
+    private static final int MAX_BATCH_CHUNKS = 50;
+    private static final int MAX_INPUT_CHANNELS = 2;
+    private static final String[] CHANNEL_NAMES = { "left", "right" };
+    private static final int MAX_VAD_ROLL_MS = 2_000;
+    private static final int MAX_HISTORY_MS = 30_000;
+    private static final int MAX_DISK_HISTORY_MS = 4 * 3_600_000;
+    private static final int DEFAULT_AUDIO_LEVEL_INTERVAL_MS = 50;
+    private static final int DEFAULT_FLUSH_TIMEOUT_MS = 150;
+    private static final int DEFAULT_VAD_PRE_ROLL_MS = 300;
+    private static final int DEFAULT_VAD_POST_ROLL_MS = 200;
+    private static final int DEFAULT_DISK_HISTORY_MS = 2 * 3_600_000;
+    private static final int MIN_READ_FRAMES = 64;
+    private static final int INPUT_RING_BLOCKS = 32;
+    private static final long PROCESS_IDLE_PARK_NS = 5_000_000L;
+    private static final int TIMESTAMP_INTERVAL_MS = 500;
+    private static final long RECOVERY_TIMEOUT_MS = 5_000;
+    private static final long RECOVERY_RETRY_NS = 200_000_000L;
+    private static final String PERMISSION_DENIED_MESSAGE = "Microphone permission denied.";
 
     private final Context appContext;
     private final AudioManager audioManager;
     private final EventEmitter eventEmitter;
+    private final LongSupplier monotonicClock;
+    private final LongSupplier threadCpuClock;
+    private final CaptureSource.Factory captureSourceFactory;
     private final Object lock = new Object();
-    private final AtomicBoolean captureLoopRunning = new AtomicBoolean(false);
+    private final Object emitOrder = new Object();
+    private final ArrayDeque<PendingEvent> pendingEvents = new ArrayDeque<>();
+    private final Pcm16Base64Encoder pcmEncoder = new Pcm16Base64Encoder();
+    // Replaced on every start, so a thread left over from an earlier capture only ever sees its own cleared flag.
+    private AtomicBoolean captureLoopRunning = new AtomicBoolean(false);
+    private AtomicBoolean processLoopRunning = new AtomicBoolean(false);
+    private final AtomicLong droppedInputFrames = new AtomicLong(0);
+    private final AtomicLong pendingRecoveryMs = new AtomicLong(-1);
+    private final SkippedInputMap skippedInput = new SkippedInputMap();
+    private final LatencyHistogram[] stageLatency = new LatencyHistogram[LatencyStage.values().length];
 
     private NativeMicState state = NativeMicState.IDLE;
     private StartCaptureOptionsModel activeConfig;
@@ -525,25 +1559,48 @@ public final class NativeMic {
     private String preferredInputId;
     private OutputRoute selectedOutputRoute = OutputRoute.SYSTEM;
     private boolean micEnabled = true;
+    private boolean emittingPendingEvents = false;
 
     private long captureStartPtsMs = 0;
+    private CaptureClock captureClock;
+    private long lastCaptureLatencyMs = -1;
     private long totalFramesIn = 0;
-    private long totalFramesOut16k = 0;
-    private long totalFramesOut48k = 0;
     private double actualInputSampleRate = 0;
     private int actualInputChannels = 0;
-    private long droppedInputFrames = 0;
+    private CaptureEncoding actualInputEncoding = CaptureEncoding.PCM16;
     private int mediaServicesResetCount = 0;
+    private int captureRecoveryCount = 0;
+    private long lastRecoveryMs = -1;
+    private long concealedInputFrames = 0;
+    private long concealedStartPtsMs = -1;
+    private long concealedEndPtsMs = -1;
     private String lastRouteChangeReason = "unknown";
 
-    private double levelSumSquares = 0;
-    private float levelPeak = 0;
+    private ChannelDownmixer downmixer;
+    private LoudnessMeter levelMeter;
+    private VoiceActivityDetector voiceActivity;
     private int levelFrames = 0;
     private int levelIntervalFrames = 0;
 
-    private AudioRecord audioRecord;
+    private int readBufferFrames = MIN_READ_FRAMES;
+    private float[] inputSamples;
+    private short[] silenceSamples;
+    private float[] floatSilenceSamples;
+    private boolean floatInputRequired = false;
+
+    private CaptureSource captureSource;
+    private PreparedCapture preparedCapture;
+    private int cachedInputSampleRate = 0;
+    private long captureRequestedAtMs = 0;
+    private long timeToFirstChunkMs = -1;
+    private int captureAudioSource = MediaRecorder.AudioSource.MIC;
+    private int captureChunkFrames = MIN_READ_FRAMES;
     private Thread captureThread;
+    private Thread processThread;
+    private RawFrameRing inputRing;
+    private PcmStreamServer loopbackServer;
     private final Map<OutputStream, StreamPipeline> outputPipelines = new LinkedHashMap<>();
+    private ResamplingGraph resamplingGraph;
 
     private boolean interruptionActive = false;
     private boolean expectedResumeAfterInterruption = false;
@@ -558,9 +1615,39 @@ public final class NativeMic {
     private final AudioDeviceCallback audioDeviceCallback;
 
     public NativeMic(Context context, EventEmitter eventEmitter) {
-        this.appContext = context.getApplicationContext();
-        this.audioManager = (AudioManager) appContext.getSystemService(Context.AUDIO_SERVICE);
+        this(
+            eventEmitter,
+            context.getApplicationContext(),
+            SystemClock::elapsedRealtime,
+            Debug::threadCpuTimeNanos,
+            AudioRecordCaptureSource::open
+        );
+    }
+
+    NativeMic(EventEmitter eventEmitter) {
+        this(eventEmitter, AudioRecordCaptureSource::open);
+    }
+
+    NativeMic(EventEmitter eventEmitter, CaptureSource.Factory captureSourceFactory) {
+        this(eventEmitter, null, () -> System.nanoTime() / 1_000_000L, () -> -1L, captureSourceFactory);
+    }
+
+    private NativeMic(
+        EventEmitter eventEmitter,
+        Context appContext,
+        LongSupplier monotonicClock,
+        LongSupplier threadCpuClock,
+        CaptureSource.Factory captureSourceFactory
+    ) {
+        this.appContext = appContext;
+        this.audioManager = appContext != null ? (AudioManager) appContext.getSystemService(Context.AUDIO_SERVICE) : null;
         this.eventEmitter = eventEmitter;
+        this.monotonicClock = monotonicClock;
+        this.threadCpuClock = threadCpuClock;
+        this.captureSourceFactory = captureSourceFactory;
+        for (int stage = 0; stage < stageLatency.length; stage += 1) {
+            stageLatency[stage] = new LatencyHistogram();
+        }
 
         this.audioFocusChangeListener = (focusChange) -> {
             synchronized (lock) {
@@ -572,6 +1659,7 @@ public final class NativeMic {
             @Override
             public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
                 synchronized (lock) {
+                    cachedInputSampleRate = 0;
                     emitRouteChangedLocked("new_device_available");
                 }
             }
@@ -579,6 +1667,7 @@ public final class NativeMic {
             @Override
             public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
                 synchronized (lock) {
+                    cachedInputSampleRate = 0;
                     emitRouteChangedLocked("old_device_unavailable");
                 }
             }
@@ -601,6 +1690,7 @@ public final class NativeMic {
             }
         }
 
+        releasePreparedCapture();
         unregisterAudioDeviceCallbacks();
     }
 
@@ -658,9 +1748,25 @@ public final class NativeMic {
         }
     }
 
-    public StartCaptureResultModel startCapture(StartCaptureOptionsModel options) throws NativeMicControllerError {
-        AudioRecord recordToStart = null;
+    public void prepareCapture(StartCaptureOptionsModel options) throws NativeMicControllerError {
+        synchronized (lock) {
+            prepareCaptureLocked(options, resolveInputSampleRateLocked());
+        }
+    }
 
+    void prepareCaptureAt(StartCaptureOptionsModel options, int inputSampleRate) throws NativeMicControllerError {
+        synchronized (lock) {
+            prepareCaptureLocked(options, inputSampleRate);
+        }
+    }
+
+    public void releasePreparedCapture() {
+        synchronized (lock) {
+            releasePreparedCaptureLocked();
+        }
+    }
+
+    public StartCaptureResultModel startCapture(StartCaptureOptionsModel options) throws NativeMicControllerError {
         synchronized (lock) {
             if (state == NativeMicState.RUNNING || state == NativeMicState.PAUSED) {
                 throw new NativeMicControllerError(NativeMicErrorCode.ALREADY_RUNNING, "Capture is already running.", false, null);
@@ -675,6 +1781,7 @@ public final class NativeMic {
             selectedOutputRoute = options.outputRoute;
             micEnabled = true;
             captureStartPtsMs = monotonicMs();
+            captureRequestedAtMs = captureStartPtsMs;
             expectedResumeAfterInterruption = false;
             interruptionActive = false;
 
@@ -682,118 +1789,261 @@ public final class NativeMic {
                 preferredInputId = options.preferredInputId;
             }
 
+            PreparedCapture engine = takePreparedCaptureLocked(options);
+            boolean warmStart = engine != null;
             try {
+                // The session and focus are applied here even when warm: holding focus while idle would duck other apps.
                 configureAudioSessionLocked(options);
 
-                int inputSampleRate = resolveInputSampleRate();
-                int chunkFrames = Math.max(256, (inputSampleRate * options.chunkMs) / 1_000);
-                int minBufferBytes = AudioRecord.getMinBufferSize(
-                    inputSampleRate,
-                    AudioFormat.CHANNEL_IN_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT
-                );
-                if (minBufferBytes <= 0) {
-                    throw new NativeMicControllerError(
-                        NativeMicErrorCode.AUDIO_SESSION_CONFIG,
-                        "Failed to configure AVAudioSession.",
-                        false,
-                        String.valueOf(minBufferBytes)
-                    );
+                if (engine != null) {
+                    configureCaptureEngineLocked(options, engine);
+                    try {
+                        captureSource.start();
+                    } catch (NativeMicControllerError | RuntimeException staleEngine) {
+                        // The prepared recorder can die while parked (media server restart); start cold instead.
+                        engine.source.release();
+                        captureSource = null;
+                        engine = null;
+                        warmStart = false;
+                    }
+                }
+                if (engine == null) {
+                    engine = openCapture(options, resolveInputSampleRateLocked());
+                    configureCaptureEngineLocked(options, engine);
+                    captureSource.start();
                 }
 
-                int desiredBufferBytes = Math.max(minBufferBytes, chunkFrames * 4);
-                AudioFormat format = new AudioFormat.Builder()
-                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
-                    .setSampleRate(inputSampleRate)
-                    .setChannelMask(AudioFormat.CHANNEL_IN_MONO)
-                    .build();
+                openCaptureFilesLocked(options, captureId);
 
-                int source = options.voiceProcessing ? MediaRecorder.AudioSource.VOICE_COMMUNICATION : MediaRecorder.AudioSource.MIC;
+                Map<String, String> streamUrls = null;
+                if (options.pcmTransport == PcmTransport.LOOPBACK) {
+                    streamUrls = startLoopbackServerLocked(options.outputStreams);
+                }
 
-                recordToStart = new AudioRecord.Builder()
-                    .setAudioSource(source)
-                    .setAudioFormat(format)
-                    .setBufferSizeInBytes(desiredBufferBytes)
-                    .build();
+                startCaptureThreadsLocked();
 
-                if (recordToStart.getState() != AudioRecord.STATE_INITIALIZED) {
-                    throw new NativeMicControllerError(
-                        NativeMicErrorCode.ENGINE_START_FAILED,
-                        "Failed to start AVAudioEngine.",
-                        false,
-                        String.valueOf(recordToStart.getState())
-                    );
+                state = NativeMicState.RUNNING;
+                emitStateChangedLocked("start_capture");
+
+                return new StartCaptureResultModel(
+                    captureId,
+                    actualInputSampleRate,
+                    actualInputChannels,
+                    options.chunkMs,
+                    options.batchChunks,
+                    streamUrls,
+                    streamHeadersLocked(),
+                    warmStart,
+                    Math.max(0, monotonicMs() - captureRequestedAtMs)
+                );
+            } catch (NativeMicControllerError error) {
+                if (engine != null) {
+                    engine.source.release();
                 }
+                captureSource = null;
+                teardownAudioSessionLocked();
+                clearCaptureStateLocked();
+                state = NativeMicState.IDLE;
+                throw error;
+            } catch (Exception exception) {
+                if (engine != null) {
+                    engine.source.release();
+                }
+                captureSource = null;
+                teardownAudioSessionLocked();
+                clearCaptureStateLocked();
+                state = NativeMicState.IDLE;
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.ENGINE_START_FAILED,
+                    "Failed to start AVAudioEngine.",
+                    false,
+                    String.valueOf(exception.hashCode())
+                );
+            }
+        }
+    }
 
-                actualInputSampleRate = recordToStart.getSampleRate();
-                actualInputChannels = Math.max(1, recordToStart.getChannelCount());
-                levelIntervalFrames = Math.max(1, (int) ((actualInputSampleRate * options.audioLevelIntervalMs) / 1_000.0));
+    private void prepareCaptureLocked(StartCaptureOptionsModel options, int inputSampleRate) throws NativeMicControllerError {
+        if (state == NativeMicState.RUNNING || state == NativeMicState.PAUSED) {
+            throw new NativeMicControllerError(NativeMicErrorCode.ALREADY_RUNNING, "Capture is already running.", false, null);
+        }
 
-                outputPipelines.clear();
-                for (OutputStream stream : options.outputStreams) {
-                    outputPipelines.put(stream, new StreamPipeline(stream, (int) actualInputSampleRate, options.chunkMs));
-                }
+        validateStartOptions(options);
+        releasePreparedCaptureLocked();
+        preparedCapture = openCapture(options, inputSampleRate);
+    }
 
-                totalFramesIn = 0;
-                totalFramesOut16k = 0;
-                totalFramesOut48k = 0;
-                droppedInputFrames = 0;
-                levelSumSquares = 0;
-                levelPeak = 0;
-                levelFrames = 0;
+    private void releasePreparedCaptureLocked() {
+        if (preparedCapture != null) {
+            preparedCapture.source.release();
+            preparedCapture = null;
+        }
+    }
 
-                audioRecord = recordToStart;
-                applyPreferredInputLocked(false);
-                applyOutputRouteLocked(options.outputRoute);
+    private PreparedCapture takePreparedCaptureLocked(StartCaptureOptionsModel options) {
+        PreparedCapture prepared = preparedCapture;
+        preparedCapture = null;
+        if (prepared != null && !prepared.options.sameEngineAs(options)) {
+            prepared.source.release();
+            return null;
+        }
+        return prepared;
+    }
 
-                audioRecord.startRecording();
-                if (audioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
-                    throw new NativeMicControllerError(
-                        NativeMicErrorCode.ENGINE_START_FAILED,
-                        "Failed to start AVAudioEngine.",
-                        false,
-                        String.valueOf(audioRecord.getRecordingState())
-                    );
-                }
+    private PreparedCapture openCapture(StartCaptureOptionsModel options, int inputSampleRate) throws NativeMicControllerError {
+        int chunkFrames = Math.max(MIN_READ_FRAMES, (inputSampleRate * options.chunkMs) / 1_000);
+        int audioSource = options.voiceProcessing ? MediaRecorder.AudioSource.VOICE_COMMUNICATION : MediaRecorder.AudioSource.MIC;
 
-                captureLoopRunning.set(true);
-                captureThread = new Thread(this::captureLoop, "NativeMicCapture");
-                captureThread.start();
+        CaptureSource source = null;
+        CaptureEncoding encoding = CaptureEncoding.PCM16;
+        if (options.captureEncoding == CaptureEncoding.FLOAT) {
+            try {
+                source = captureSourceFactory.open(audioSource, inputSampleRate, CaptureEncoding.FLOAT, options.channels, chunkFrames);
+                encoding = CaptureEncoding.FLOAT;
+            } catch (NativeMicControllerError | RuntimeException floatUnsupported) {
+                // Fall back to 16-bit below; not every HAL exposes a float capture path.
+                source = null;
+            }
+        }
+        if (source == null && options.channels > 1) {
+            try {
+                source = captureSourceFactory.open(audioSource, inputSampleRate, CaptureEncoding.PCM16, options.channels, chunkFrames);
+            } catch (NativeMicControllerError | RuntimeException stereoUnsupported) {
+                // Fall back to mono below; actualInputChannels tells the caller what it got.
+                source = null;
+            }
+        }
+        if (source == null) {
+            source = captureSourceFactory.open(audioSource, inputSampleRate, CaptureEncoding.PCM16, 1, chunkFrames);
+        }
 
-                state = NativeMicState.RUNNING;
-                emitStateChangedLocked("start_capture");
+        try {
+            int bufferFrames = resolveReadBufferFrames(source.sampleRate(), options.chunkMs);
+            ResamplingGraph graph = buildResamplingGraph(options, source.sampleRate(), bufferFrames);
+            return new PreparedCapture(
+                options,
+                source,
+                audioSource,
+                chunkFrames,
+                encoding,
+                bufferFrames,
+                graph,
+                buildPipelines(options, graph)
+            );
+        } catch (RuntimeException exception) {
+            source.release();
+            throw exception;
+        }
+    }
+
+    private void adoptCaptureLocked(StartCaptureOptionsModel options, PreparedCapture engine) {
+        captureSource = engine.source;
+        actualInputSampleRate = engine.source.sampleRate();
+        actualInputChannels = Math.max(1, engine.source.channelCount());
+        actualInputEncoding = engine.encoding;
+        captureAudioSource = engine.audioSource;
+        captureChunkFrames = engine.chunkFrames;
+        configureProcessingLocked(options, engine.readBufferFrames, engine.graph, engine.pipelines);
+    }
+
+    private void configureCaptureEngineLocked(StartCaptureOptionsModel options, PreparedCapture engine) throws NativeMicControllerError {
+        adoptCaptureLocked(options, engine);
+        applyPreferredInputLocked(false);
+        applyOutputRouteLocked(options.outputRoute);
+    }
+
+    String startHeadlessCapture(StartCaptureOptionsModel options, int inputSampleRate, CaptureEncoding inputEncoding)
+        throws NativeMicControllerError {
+        synchronized (lock) {
+            if (state == NativeMicState.RUNNING || state == NativeMicState.PAUSED) {
+                throw new NativeMicControllerError(NativeMicErrorCode.ALREADY_RUNNING, "Capture is already running.", false, null);
+            }
+
+            validateStartOptions(options);
+
+            activeCaptureId = UUID.randomUUID().toString();
+            activeConfig = options;
+            micEnabled = true;
+            captureStartPtsMs = monotonicMs();
+            captureRequestedAtMs = captureStartPtsMs;
+            actualInputSampleRate = inputSampleRate;
+            actualInputChannels = options.channels;
+            actualInputEncoding = inputEncoding;
+            configureProcessingLocked(options);
+            try {
+                openCaptureFilesLocked(options, activeCaptureId);
+            } catch (NativeMicControllerError error) {
+                clearCaptureStateLocked();
+                throw error;
+            }
+
+            state = NativeMicState.RUNNING;
+            return activeCaptureId;
+        }
+    }
+
+    String startSourceCapture(StartCaptureOptionsModel options, int inputSampleRate) throws NativeMicControllerError {
+        synchronized (lock) {
+            if (state == NativeMicState.RUNNING || state == NativeMicState.PAUSED) {
+                throw new NativeMicControllerError(NativeMicErrorCode.ALREADY_RUNNING, "Capture is already running.", false, null);
+            }
+
+            validateStartOptions(options);
 
-                return new StartCaptureResultModel(captureId, actualInputSampleRate, actualInputChannels, options.chunkMs);
+            activeCaptureId = UUID.randomUUID().toString();
+            activeConfig = options;
+            micEnabled = true;
+            captureStartPtsMs = monotonicMs();
+            captureRequestedAtMs = captureStartPtsMs;
+            PreparedCapture engine = takePreparedCaptureLocked(options);
+            try {
+                if (engine == null) {
+                    engine = openCapture(options, inputSampleRate);
+                }
+                adoptCaptureLocked(options, engine);
+                openCaptureFilesLocked(options, activeCaptureId);
+                captureSource.start();
+                startCaptureThreadsLocked();
             } catch (NativeMicControllerError error) {
-                if (recordToStart != null) {
-                    releaseAudioRecord(recordToStart);
+                if (engine != null) {
+                    engine.source.release();
                 }
-                audioRecord = null;
-                teardownAudioSessionLocked();
+                captureSource = null;
                 clearCaptureStateLocked();
-                state = NativeMicState.IDLE;
                 throw error;
-            } catch (Exception exception) {
-                if (recordToStart != null) {
-                    releaseAudioRecord(recordToStart);
-                }
-                audioRecord = null;
-                teardownAudioSessionLocked();
-                clearCaptureStateLocked();
-                state = NativeMicState.IDLE;
-                throw new NativeMicControllerError(
-                    NativeMicErrorCode.ENGINE_START_FAILED,
-                    "Failed to start AVAudioEngine.",
-                    false,
-                    String.valueOf(exception.hashCode())
-                );
             }
+
+            state = NativeMicState.RUNNING;
+            emitStateChangedLocked("start_capture");
+            return activeCaptureId;
+        }
+    }
+
+    int getReadBufferFrames() {
+        synchronized (lock) {
+            return readBufferFrames;
+        }
+    }
+
+    void processInputFrames(short[] rawSamples, int frameCount) {
+        synchronized (lock) {
+            processInputFramesLocked(rawSamples, frameCount);
+        }
+        emitPendingEvents();
+    }
+
+    void processFloatInputFrames(float[] samples, int frameCount) {
+        synchronized (lock) {
+            processFloatInputFramesLocked(samples, frameCount);
         }
+        emitPendingEvents();
     }
 
     public StopCaptureResultModel stopCapture(String captureId, int flushTimeoutMs) throws NativeMicControllerError {
         Thread threadToJoin;
-        AudioRecord recordToStop;
+        Thread workerToJoin;
+        CaptureSource sourceToStop;
+        AtomicBoolean workerRunning;
         String activeId;
         int timeoutMs = Math.max(10, flushTimeoutMs);
 
@@ -809,17 +2059,16 @@ public final class NativeMic {
 
             activeId = activeCaptureId;
             captureLoopRunning.set(false);
+            workerRunning = processLoopRunning;
             threadToJoin = captureThread;
             captureThread = null;
-            recordToStop = audioRecord;
+            workerToJoin = processThread;
+            processThread = null;
+            sourceToStop = captureSource;
         }
 
-        if (recordToStop != null) {
-            try {
-                recordToStop.stop();
-            } catch (IllegalStateException ignored) {
-                // Might already be stopped.
-            }
+        if (sourceToStop != null) {
+            sourceToStop.stop();
         }
 
         if (threadToJoin != null) {
@@ -830,6 +2079,18 @@ public final class NativeMic {
             }
         }
 
+        // The reader has stopped publishing; let the worker drain what is queued before flushing.
+        workerRunning.set(false);
+        if (workerToJoin != null) {
+            LockSupport.unpark(workerToJoin);
+            try {
+                workerToJoin.join(timeoutMs);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        StopCaptureResultModel result;
         synchronized (lock) {
             if (activeCaptureId == null || !activeCaptureId.equals(activeId)) {
                 throw new NativeMicControllerError(
@@ -840,19 +2101,27 @@ public final class NativeMic {
                 );
             }
 
+            resamplingGraph.flush();
             for (StreamPipeline pipeline : outputPipelines.values()) {
-                short[] converted = pipeline.flush();
-                pipeline.pendingSamples.append(converted);
+                if (!pipeline.passthrough) {
+                    pipeline.pull();
+                }
                 emitAvailableChunksLocked(pipeline, false);
 
-                short[] finalChunk = pipeline.pendingSamples.popFinalChunk(pipeline.chunkFrames);
-                if (finalChunk != null) {
-                    emitChunkLocked(pipeline, finalChunk, true);
+                if (pipeline.popFinalChunk()) {
+                    emitChunkLocked(pipeline, pipeline.chunkBuffer, true);
+                } else {
+                    emitBatchLocked(pipeline, false);
                 }
             }
 
-            releaseAudioRecord(audioRecord);
-            audioRecord = null;
+            if (captureSource != null) {
+                captureSource.release();
+            }
+            captureSource = null;
+            closeLoopbackServerLocked();
+            RecordingResultModel recording = closeRecorderLocked(timeoutMs, activeId);
+            closeDiskHistoryLocked();
 
             try {
                 teardownAudioSessionLocked();
@@ -867,20 +2136,23 @@ public final class NativeMic {
             }
 
             long durationMs = Math.max(0, monotonicMs() - captureStartPtsMs);
-            StopCaptureResultModel result = new StopCaptureResultModel(
+            result = new StopCaptureResultModel(
                 activeId,
                 totalFramesIn,
-                totalFramesOut16k,
-                totalFramesOut48k,
-                durationMs
+                totalFramesOutLocked(),
+                durationMs,
+                recording,
+                latencyByStageLocked()
             );
 
             clearCaptureStateLocked();
             state = NativeMicState.IDLE;
             emitStateChangedLocked("stop_capture");
-
-            return result;
         }
+
+        // The final chunks go out after the lock is released, like every chunk.
+        emitPendingEvents();
+        return result;
     }
 
     public void setMicEnabled(String captureId, boolean enabled) throws NativeMicControllerError {
@@ -897,6 +2169,118 @@ public final class NativeMic {
         }
     }
 
+    public RecentAudioResultModel getRecentAudio(String captureId, OutputStream stream, Long fromMs, Long toMs)
+        throws NativeMicControllerError {
+        synchronized (lock) {
+            if (activeCaptureId == null || !activeCaptureId.equals(captureId) || state == NativeMicState.IDLE) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.NOT_RUNNING,
+                    "No active capture matches " + captureId + ".",
+                    false,
+                    null
+                );
+            }
+
+            StreamPipeline pipeline = outputPipelines.get(stream);
+            if (pipeline == null || pipeline.history == null) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.INTERNAL,
+                    pipeline == null
+                        ? stream.wireValue + " is not an output stream of this capture."
+                        : "historyMs must be set when starting the capture to retrieve recent audio.",
+                    false,
+                    null
+                );
+            }
+
+            PcmHistoryRing history = pipeline.history;
+            long oldestFrame = history.oldestFrame();
+            long endFrame = history.endFrame();
+            long fromFrame = fromMs != null ? historyFrameAt(pipeline, fromMs) : oldestFrame;
+            long toFrame = toMs != null ? historyFrameAt(pipeline, toMs) : endFrame;
+            fromFrame = Math.max(oldestFrame, Math.min(endFrame, fromFrame));
+            toFrame = Math.max(fromFrame, Math.min(endFrame, toFrame));
+
+            int frames = (int) (toFrame - fromFrame);
+            short[] slice = new short[frames];
+            history.copy(fromFrame, frames, slice, 0);
+            long ptsMs = streamPtsMsLocked(pipeline, fromFrame);
+            return new RecentAudioResultModel(activeCaptureId, stream, ptsMs, frames, encodePcm16(slice, frames));
+        }
+    }
+
+    // Reads go through a separate read-only mapping so capture is not held up.
+    public HistoryExportResultModel exportHistoryFile(File historyFile, File target, Long fromMs, Long toMs)
+        throws NativeMicControllerError {
+        MappedHistoryFile history;
+        try {
+            history = MappedHistoryFile.openExisting(historyFile);
+        } catch (IOException exception) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "Cannot read history file " + historyFile.getAbsolutePath() + ".",
+                false,
+                String.valueOf(exception.hashCode())
+            );
+        }
+
+        long oldestFrame = history.oldestFrame();
+        long endFrame = history.endFrame();
+        long fromFrame = fromMs != null ? history.frameAt(fromMs) : oldestFrame;
+        long toFrame = toMs != null ? history.frameAt(toMs) : endFrame;
+        fromFrame = Math.max(oldestFrame, Math.min(endFrame, fromFrame));
+        toFrame = Math.max(fromFrame, Math.min(endFrame, toFrame));
+
+        try {
+            history.exportWav(target, fromFrame, toFrame);
+        } catch (IOException exception) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "Failed to export history to " + target.getAbsolutePath() + ".",
+                false,
+                String.valueOf(exception.hashCode())
+            );
+        }
+
+        boolean recovered;
+        synchronized (lock) {
+            recovered = !history.closedCleanly() && !history.captureId().equals(activeCaptureId);
+        }
+        return new HistoryExportResultModel(
+            historyFile.getAbsolutePath(),
+            target.getAbsolutePath(),
+            history.captureId(),
+            history.sampleRate(),
+            history.startedAtEpochMs(),
+            history.ptsAt(fromFrame),
+            toFrame - fromFrame,
+            recovered
+        );
+    }
+
+    private long historyFrameAt(StreamPipeline pipeline, long ptsMs) {
+        if (captureClock == null) {
+            return ((ptsMs - captureStartPtsMs) * pipeline.sampleRate) / 1_000L;
+        }
+        long inputFrame = skippedInput.processedFrameAt(captureClock.frameAtNanos(ptsMs * 1_000_000L));
+        return Math.round(inputFrame * (pipeline.sampleRate / actualInputSampleRate));
+    }
+
+    private long streamPtsMsLocked(StreamPipeline pipeline, long streamFrame) {
+        if (captureClock == null) {
+            return captureStartPtsMs + (streamFrame * 1_000L) / pipeline.sampleRate;
+        }
+        long inputFrame = skippedInput.capturedFrameAt(Math.round(streamFrame * (actualInputSampleRate / pipeline.sampleRate)));
+        return Math.floorDiv(captureClock.nanosAtFrame(inputFrame), 1_000_000L);
+    }
+
+    private long inputPtsMsLocked(long inputFrame) {
+        if (captureClock == null) {
+            return captureStartPtsMs + (long) ((inputFrame * 1_000L) / actualInputSampleRate);
+        }
+        return Math.floorDiv(captureClock.nanosAtFrame(inputFrame), 1_000_000L);
+    }
+
     public NativeMicState getState() {
         synchronized (lock) {
             return state;
@@ -911,17 +2295,96 @@ public final class NativeMic {
             diagnostics.put("outputRoute", selectedOutputRoute.wireValue);
             diagnostics.put("actualInputSampleRate", actualInputSampleRate);
             diagnostics.put("actualInputChannels", actualInputChannels);
+            if (downmixer != null) {
+                diagnostics.put("channelMix", downmixer.mix().wireValue);
+                if (downmixer.activeChannel() >= 0) {
+                    diagnostics.put("activeChannel", CHANNEL_NAMES[downmixer.activeChannel()]);
+                }
+                JSObject channelLevels = new JSObject();
+                for (int channel = 0; channel < downmixer.channels(); channel += 1) {
+                    channelLevels.put(CHANNEL_NAMES[channel], LoudnessMeter.toDb(Math.sqrt(downmixer.channelEnergy(channel))));
+                }
+                diagnostics.put("channelLevelsDbfs", channelLevels);
+            }
+            diagnostics.put("inputEncoding", actualInputEncoding.wireValue);
             diagnostics.put("totalFramesIn", totalFramesIn);
-            diagnostics.put("totalFramesOut16k", totalFramesOut16k);
-            diagnostics.put("totalFramesOut48k", totalFramesOut48k);
-            diagnostics.put("inputFramesDropped", droppedInputFrames);
-            diagnostics.put("inputRingBufferedFrames", 0);
+            diagnostics.put("totalFramesOut", framesByStream(totalFramesOutLocked()));
+            if (resamplingGraph != null) {
+                diagnostics.put("resamplingGraph", describeResamplingGraphLocked());
+            }
+            diagnostics.put("inputFramesDropped", droppedInputFrames.get());
+            if (levelMeter != null) {
+                diagnostics.put("clippedSamples", levelMeter.totalClippedSamples());
+            }
+            if (voiceActivity != null) {
+                long suppressedChunks = 0;
+                for (StreamPipeline pipeline : outputPipelines.values()) {
+                    suppressedChunks += pipeline.gate != null ? pipeline.gate.suppressedChunks : 0;
+                }
+                diagnostics.put("vadActive", voiceActivity.isSpeech());
+                diagnostics.put("vadNoiseFloorDbfs", voiceActivity.noiseFloorDb());
+                diagnostics.put("vadSpeechSegments", voiceActivity.speechSegments());
+                diagnostics.put("vadSuppressedChunks", suppressedChunks);
+            }
+            for (StreamPipeline pipeline : outputPipelines.values()) {
+                if (pipeline.diskHistory != null) {
+                    MappedHistoryFile history = pipeline.diskHistory;
+                    diagnostics.put("diskHistoryPath", history.file().getAbsolutePath());
+                    long retainedFrames = history.endFrame() - history.oldestFrame();
+                    diagnostics.put("diskHistoryRetainedMs", (retainedFrames * 1_000L) / history.sampleRate());
+                }
+                PcmFileRecorder recorder = pipeline.recorder;
+                if (recorder != null) {
+                    diagnostics.put("recordingPath", recorder.file().getAbsolutePath());
+                    diagnostics.put("recordingBytesWritten", recorder.writtenBytes());
+                    diagnostics.put("recordingDroppedBytes", recorder.droppedBytes());
+                    diagnostics.put("recordingWriterLagMs", recorder.lagMs());
+                    diagnostics.put("recordingMaxWriterLagMs", recorder.maxLagMs());
+                    diagnostics.put("recordingFsyncCount", recorder.fsyncCount());
+                }
+            }
+            RawFrameRing ring = inputRing;
+            diagnostics.put("inputRingBufferedFrames", ring != null ? (long) ring.bufferedBlocks() * ring.blockFrames() : 0);
+            diagnostics.put("inputRingCapacityFrames", ring != null ? (long) ring.capacityBlocks() * ring.blockFrames() : 0);
+            diagnostics.put("inputOverrunCount", ring != null ? ring.overrunBlocks() : 0);
+            diagnostics.put("inputOverrunFrames", ring != null ? ring.overrunFrames() : 0);
+            CaptureClock clock = captureClock;
+            if (clock != null) {
+                diagnostics.put("clockDriftPpm", clock.driftPpm());
+                diagnostics.put("estimatedInputSampleRate", clock.estimatedSampleRate());
+                diagnostics.put("clockTimestamps", clock.acceptedSamples());
+                diagnostics.put("clockTimestampsRejected", clock.rejectedSamples());
+                diagnostics.put("clockFitted", clock.isFitted());
+                if (lastCaptureLatencyMs >= 0) {
+                    diagnostics.put("captureLatencyMs", lastCaptureLatencyMs);
+                }
+            }
+            diagnostics.put("latency", latencyByStage(latencyByStageLocked()));
+            if (timeToFirstChunkMs >= 0) {
+                diagnostics.put("timeToFirstChunkMs", timeToFirstChunkMs);
+            }
+            diagnostics.put("capturePrepared", preparedCapture != null);
             diagnostics.put("mediaServicesResetCount", mediaServicesResetCount);
+            diagnostics.put("captureRecoveryCount", captureRecoveryCount);
+            if (lastRecoveryMs >= 0) {
+                diagnostics.put("lastRecoveryMs", lastRecoveryMs);
+            }
+            if (actualInputSampleRate > 0) {
+                diagnostics.put("concealedMs", Math.round((concealedInputFrames * 1_000.0) / actualInputSampleRate));
+            }
             diagnostics.put("lastRouteChangeReason", lastRouteChangeReason);
 
             if (activeCaptureId != null) {
                 diagnostics.put("captureId", activeCaptureId);
             }
+            if (activeConfig != null) {
+                diagnostics.put("resamplerQuality", activeConfig.resamplerQuality.wireValue);
+                diagnostics.put("pcmTransport", activeConfig.pcmTransport.wireValue);
+            }
+            if (loopbackServer != null) {
+                diagnostics.put("loopbackClients", loopbackServer.clientCount());
+                diagnostics.put("loopbackDroppedFrames", loopbackServer.droppedFrames());
+            }
             if (preferredInputId != null) {
                 diagnostics.put("preferredInputId", preferredInputId);
             }
@@ -959,14 +2422,106 @@ public final class NativeMic {
     }
 
     private void validateStartOptions(StartCaptureOptionsModel options) throws NativeMicControllerError {
-        if (options.chunkMs != DEFAULT_CHUNK_MS) {
-            throw new NativeMicControllerError(NativeMicErrorCode.INTERNAL, "Only 20ms chunking is supported.", false, null);
+        if (options.chunkMs < MIN_CHUNK_MS || options.chunkMs > MAX_CHUNK_MS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "chunkMs must be between " + MIN_CHUNK_MS + " and " + MAX_CHUNK_MS + ".",
+                false,
+                null
+            );
+        }
+
+        if (options.historyMs < 0 || options.historyMs > MAX_HISTORY_MS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "historyMs must be between 0 and " + MAX_HISTORY_MS + ".",
+                false,
+                null
+            );
+        }
+
+        if (options.vadPreRollMs < 0 || options.vadPreRollMs > MAX_VAD_ROLL_MS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "vadPreRollMs must be between 0 and " + MAX_VAD_ROLL_MS + ".",
+                false,
+                null
+            );
+        }
+
+        if (options.vadPostRollMs < 0 || options.vadPostRollMs > MAX_VAD_ROLL_MS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "vadPostRollMs must be between 0 and " + MAX_VAD_ROLL_MS + ".",
+                false,
+                null
+            );
+        }
+
+        if (options.batchChunks < 1 || options.batchChunks > MAX_BATCH_CHUNKS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "batchChunks must be between 1 and " + MAX_BATCH_CHUNKS + ".",
+                false,
+                null
+            );
+        }
+
+        if (options.channels < 1 || options.channels > MAX_INPUT_CHANNELS) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "channels must be between 1 and " + MAX_INPUT_CHANNELS + ".",
+                false,
+                null
+            );
         }
 
         if (options.outputStreams == null || options.outputStreams.isEmpty()) {
             throw new NativeMicControllerError(NativeMicErrorCode.INTERNAL, "At least one output stream must be provided.", false, null);
         }
 
+        if (options.gateOnVad) {
+            for (OutputStream stream : options.outputStreams) {
+                if (stream.encoding == StreamEncoding.F32LE) {
+                    // The gate holds back PCM16 chunks; f32le chunks are not kept alongside them.
+                    throw new NativeMicControllerError(
+                        NativeMicErrorCode.INTERNAL,
+                        "gateOnVad cannot be combined with f32le streams.",
+                        false,
+                        null
+                    );
+                }
+            }
+        }
+
+        if (options.record != null && !options.outputStreams.contains(options.record.stream)) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.INTERNAL,
+                "record.stream must be one of the capture's outputStreams.",
+                false,
+                null
+            );
+        }
+
+        if (options.diskHistory != null) {
+            if (!options.outputStreams.contains(options.diskHistory.stream)) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.INTERNAL,
+                    "diskHistory.stream must be one of the capture's outputStreams.",
+                    false,
+                    null
+                );
+            }
+            if (options.diskHistory.durationMs < 1_000 || options.diskHistory.durationMs > MAX_DISK_HISTORY_MS) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.INTERNAL,
+                    "diskHistory.durationMs must be between 1000 and " + MAX_DISK_HISTORY_MS + ".",
+                    false,
+                    null
+                );
+            }
+        }
+
         if (options.profile == MicProfile.WAVEFORM && options.mode != SessionMode.MEASUREMENT) {
             throw new NativeMicControllerError(NativeMicErrorCode.INTERNAL, "Waveform profile requires measurement mode.", false, null);
         }
@@ -1105,12 +2660,12 @@ public final class NativeMic {
     }
 
     private void applyPreferredInputLocked(boolean emitRouteChanged) throws NativeMicControllerError {
-        if (audioRecord == null) {
+        if (captureSource == null) {
             return;
         }
 
         if (preferredInputId == null) {
-            boolean cleared = audioRecord.setPreferredDevice(null);
+            boolean cleared = captureSource.setPreferredDevice(null);
             if (!cleared) {
                 throw new NativeMicControllerError(NativeMicErrorCode.ROUTE_CHANGE_FAILED, "Failed to clear preferred input.", true, null);
             }
@@ -1130,7 +2685,7 @@ public final class NativeMic {
             );
         }
 
-        boolean applied = audioRecord.setPreferredDevice(targetDevice);
+        boolean applied = captureSource.setPreferredDevice(targetDevice);
         if (!applied) {
             throw new NativeMicControllerError(
                 NativeMicErrorCode.ROUTE_CHANGE_FAILED,
@@ -1210,61 +2765,366 @@ public final class NativeMic {
         }
     }
 
-    private void captureLoop() {
-        short[] readBuffer;
-        synchronized (lock) {
-            int bufferFrames = Math.max(256, (int) ((Math.max(16_000, actualInputSampleRate) * DEFAULT_CHUNK_MS) / 1_000));
-            readBuffer = new short[bufferFrames];
+    private void startCaptureThreadsLocked() {
+        RawFrameRing ring = new RawFrameRing(
+            INPUT_RING_BLOCKS,
+            readBufferFrames * actualInputChannels,
+            actualInputEncoding == CaptureEncoding.FLOAT
+        );
+        CaptureSource source = captureSource;
+        inputRing = ring;
+
+        AtomicBoolean processRunning = new AtomicBoolean(true);
+        processLoopRunning = processRunning;
+        Thread worker = new Thread(() -> processLoop(ring, processRunning), "NativeMicProcess");
+        processThread = worker;
+        worker.start();
+
+        AtomicBoolean captureRunning = new AtomicBoolean(true);
+        captureLoopRunning = captureRunning;
+        int channels = actualInputChannels;
+        CaptureClock clock = captureClock;
+        captureThread = new Thread(() -> captureLoop(source, ring, channels, clock, worker, captureRunning), "NativeMicCapture");
+        captureThread.start();
+    }
+
+    private void captureLoop(
+        CaptureSource initialSource,
+        RawFrameRing ring,
+        int channels,
+        CaptureClock clock,
+        Thread worker,
+        AtomicBoolean running
+    ) {
+        // Reads land in the ring; when the worker is a full ring behind, they land in a spare buffer and count as overruns.
+        // Blocks hold interleaved samples, so counts are converted to frames before they are published.
+        CaptureSource source = initialSource;
+        boolean floatSamples = ring.isFloat();
+        short[] overrunBuffer = floatSamples ? null : new short[ring.blockFrames()];
+        float[] floatOverrunBuffer = floatSamples ? new float[ring.blockFrames()] : null;
+        AudioTimestamp timestamp = new AudioTimestamp();
+        int sampleRate = source.sampleRate();
+        long timestampIntervalFrames = ((long) sampleRate * TIMESTAMP_INTERVAL_MS) / 1_000;
+        long framesRead = 0;
+        long nextTimestampAt = 0;
+        // Input frames captured before the current source's frame 0; nonzero once a dead recorder has been rebuilt.
+        long sourceFrameOffset = 0;
+        long lastReadAtNanos = System.nanoTime();
+        long recoveryStartNanos = -1;
+        long pendingGapFrames = 0;
+        LatencyHistogram readLatency = stageLatency[LatencyStage.READ.ordinal()];
+        LatencyHistogram captureCpu = stageLatency[LatencyStage.CAPTURE_CPU.ordinal()];
+        long cpuNanos = threadCpuClock.getAsLong();
+
+        while (running.get()) {
+            boolean claimed;
+            int readCount;
+            long readStartNanos = System.nanoTime();
+            try {
+                if (floatSamples) {
+                    float[] slot = ring.claimFloat();
+                    claimed = slot != null;
+                    float[] readBuffer = claimed ? slot : floatOverrunBuffer;
+                    readCount = source.read(readBuffer, readBuffer.length);
+                } else {
+                    short[] slot = ring.claim();
+                    claimed = slot != null;
+                    short[] readBuffer = claimed ? slot : overrunBuffer;
+                    readCount = source.read(readBuffer, readBuffer.length);
+                }
+            } catch (Exception exception) {
+                claimed = false;
+                readCount = AudioRecord.ERROR_INVALID_OPERATION;
+            }
+            long readAtNanos = System.nanoTime();
+
+            if (readCount > 0) {
+                int frames = readCount / channels;
+                if (recoveryStartNanos >= 0) {
+                    // First audio from a rebuilt recorder: whatever was captured while it was down is lost. The worker
+                    // conceals it with silence ahead of this block so stream positions, and with them ptsMs, stay on the
+                    // capture timeline; this thread only marks the gap and goes straight back to reading.
+                    long elapsedFrames = Math.round(((readAtNanos - lastReadAtNanos) * (double) sampleRate) / 1_000_000_000.0);
+                    long gapFrames = Math.max(0, elapsedFrames - frames);
+                    pendingGapFrames += gapFrames;
+                    pendingRecoveryMs.set((readAtNanos - recoveryStartNanos) / 1_000_000L);
+                    framesRead += gapFrames;
+                    sourceFrameOffset = framesRead;
+                    nextTimestampAt = framesRead;
+                    clock.resync();
+                    recoveryStartNanos = -1;
+                }
+                lastReadAtNanos = readAtNanos;
+
+                readLatency.record(readAtNanos - readStartNanos);
+                if (claimed) {
+                    ring.publish(frames, readAtNanos, pendingGapFrames);
+                    pendingGapFrames = 0;
+                    LockSupport.unpark(worker);
+                } else {
+                    ring.recordOverrun(frames);
+                }
+
+                framesRead += frames;
+                if (framesRead >= nextTimestampAt) {
+                    nextTimestampAt = framesRead + timestampIntervalFrames;
+                    if (source.getTimestamp(timestamp)) {
+                        clock.addTimestamp(sourceFrameOffset + timestamp.framePosition, timestamp.nanoTime);
+                    }
+                }
+                cpuNanos = recordThreadCpu(captureCpu, cpuNanos);
+                continue;
+            }
+
+            if (readCount == AudioRecord.ERROR_DEAD_OBJECT) {
+                long deadAtNanos = System.nanoTime();
+                synchronized (lock) {
+                    mediaServicesResetCount += 1;
+                    emitErrorLocked(
+                        NativeMicErrorCode.MEDIA_SERVICES_RESET,
+                        "Audio media services were reset.",
+                        true,
+                        null,
+                        activeCaptureId
+                    );
+                }
+
+                CaptureSource rebuilt = reopenCaptureSource(source, running);
+                if (rebuilt != null) {
+                    source = rebuilt;
+                    if (recoveryStartNanos < 0) {
+                        recoveryStartNanos = deadAtNanos;
+                    }
+                    continue;
+                }
+
+                synchronized (lock) {
+                    if (state != NativeMicState.IDLE) {
+                        state = NativeMicState.PAUSED;
+                        emitStateChangedLocked("media_services_reset");
+                    }
+                }
+                running.set(false);
+                break;
+            }
+
+            if (readCount < 0) {
+                droppedInputFrames.addAndGet(ring.blockFrames() / channels);
+            }
+        }
+    }
+
+    private CaptureSource reopenCaptureSource(CaptureSource deadSource, AtomicBoolean running) {
+        int audioSource;
+        int sampleRate;
+        CaptureEncoding encoding;
+        int channels;
+        int chunkFrames;
+        synchronized (lock) {
+            if (captureSource == deadSource) {
+                captureSource = null;
+            }
+            audioSource = captureAudioSource;
+            sampleRate = (int) actualInputSampleRate;
+            encoding = actualInputEncoding;
+            channels = actualInputChannels;
+            chunkFrames = captureChunkFrames;
+        }
+        deadSource.release();
+
+        long deadlineNanos = System.nanoTime() + RECOVERY_TIMEOUT_MS * 1_000_000L;
+        while (running.get()) {
+            CaptureSource rebuilt = null;
+            try {
+                rebuilt = captureSourceFactory.open(audioSource, sampleRate, encoding, channels, chunkFrames);
+                if (rebuilt.sampleRate() != sampleRate || Math.max(1, rebuilt.channelCount()) != channels) {
+                    rebuilt.release();
+                    return null;
+                }
+
+                synchronized (lock) {
+                    if (!running.get() || state != NativeMicState.RUNNING) {
+                        rebuilt.release();
+                        return null;
+                    }
+                    rebuilt.start();
+                    captureSource = rebuilt;
+                    try {
+                        applyPreferredInputLocked(false);
+                    } catch (NativeMicControllerError ignored) {
+                        // The preferred input may not have survived the reset; capture carries on from the system route.
+                    }
+                    return rebuilt;
+                }
+            } catch (NativeMicControllerError | RuntimeException exception) {
+                if (rebuilt != null) {
+                    rebuilt.release();
+                }
+            }
+
+            if (System.nanoTime() >= deadlineNanos) {
+                return null;
+            }
+            LockSupport.parkNanos(this, RECOVERY_RETRY_NS);
+        }
+        return null;
+    }
+
+    // Worker thread. The lock is taken one block at a time so the bridge is not held off for the length of the outage.
+    private void concealInputGap(RawFrameRing ring, long frames, long recoveryMs) {
+        synchronized (lock) {
+            if (ring != inputRing || state != NativeMicState.RUNNING || activeCaptureId == null || activeConfig == null) {
+                return;
+            }
+            long startFrame = skippedInput.capturedFrameAt(totalFramesIn);
+            concealedStartPtsMs = inputPtsMsLocked(startFrame);
+            concealedEndPtsMs = inputPtsMsLocked(startFrame + frames);
+            concealedInputFrames += frames;
+        }
+
+        for (long remaining = frames; remaining > 0; ) {
+            synchronized (lock) {
+                if (ring != inputRing || state != NativeMicState.RUNNING) {
+                    break;
+                }
+                int length = (int) Math.min(readBufferFrames, remaining);
+                // The downmix works in place, so each block starts from a clean buffer.
+                if (floatSilenceSamples != null) {
+                    Arrays.fill(floatSilenceSamples, 0f);
+                    processFloatInputFramesLocked(floatSilenceSamples, length);
+                } else {
+                    Arrays.fill(silenceSamples, (short) 0);
+                    processInputFramesLocked(silenceSamples, length);
+                }
+                remaining -= length;
+            }
+            emitPendingEvents();
+        }
+
+        synchronized (lock) {
+            emitCaptureRecoveredLocked(Math.max(0, recoveryMs), frames);
+        }
+        emitPendingEvents();
+    }
+
+    private void emitCaptureRecoveredLocked(long recoveryMs, long concealedFrames) {
+        captureRecoveryCount += 1;
+        lastRecoveryMs = recoveryMs;
+
+        JSObject payload = new JSObject();
+        payload.put("state", state.wireValue);
+        payload.put("reason", "media_services_recovered");
+        if (activeCaptureId != null) {
+            payload.put("captureId", activeCaptureId);
         }
+        payload.put("recoveryMs", recoveryMs);
+        payload.put("concealedMs", actualInputSampleRate > 0 ? Math.round((concealedFrames * 1_000.0) / actualInputSampleRate) : 0);
 
-        while (captureLoopRunning.get()) {
-            AudioRecord activeRecord;
-            synchronized (lock) {
-                activeRecord = audioRecord;
-            }
-            if (activeRecord == null) {
-                break;
-            }
+        emitEventLocked("micStateChanged", payload);
+    }
 
-            int readCount;
-            try {
-                readCount = activeRecord.read(readBuffer, 0, readBuffer.length);
-            } catch (Exception exception) {
-                readCount = AudioRecord.ERROR_INVALID_OPERATION;
+    private void configureProcessingLocked(StartCaptureOptionsModel options) {
+        int bufferFrames = resolveReadBufferFrames(actualInputSampleRate, options.chunkMs);
+        ResamplingGraph graph = buildResamplingGraph(options, (int) actualInputSampleRate, bufferFrames);
+        configureProcessingLocked(options, bufferFrames, graph, buildPipelines(options, graph));
+    }
+
+    private void configureProcessingLocked(
+        StartCaptureOptionsModel options,
+        int bufferFrames,
+        ResamplingGraph graph,
+        Map<OutputStream, StreamPipeline> pipelines
+    ) {
+        levelIntervalFrames = Math.max(1, (int) ((actualInputSampleRate * options.audioLevelIntervalMs) / 1_000.0));
+        readBufferFrames = bufferFrames;
+        resamplingGraph = graph;
+        outputPipelines.clear();
+        outputPipelines.putAll(pipelines);
+        floatInputRequired = !resamplingGraph.stages().isEmpty();
+        inputSamples = floatInputRequired && actualInputEncoding == CaptureEncoding.PCM16 ? new float[readBufferFrames] : null;
+        boolean floatInput = actualInputEncoding == CaptureEncoding.FLOAT;
+        silenceSamples = floatInput ? null : new short[readBufferFrames * Math.max(1, actualInputChannels)];
+        floatSilenceSamples = floatInput ? new float[readBufferFrames * Math.max(1, actualInputChannels)] : null;
+        pendingRecoveryMs.set(-1);
+        skippedInput.reset();
+
+        totalFramesIn = 0;
+        droppedInputFrames.set(0);
+        downmixer = actualInputChannels > 1 ? new ChannelDownmixer(actualInputChannels, options.channelMix) : null;
+        captureClock = new CaptureClock((int) actualInputSampleRate, captureStartPtsMs * 1_000_000L);
+        lastCaptureLatencyMs = -1;
+        timeToFirstChunkMs = -1;
+        concealedInputFrames = 0;
+        concealedStartPtsMs = -1;
+        concealedEndPtsMs = -1;
+        for (LatencyHistogram histogram : stageLatency) {
+            histogram.reset();
+        }
+        levelMeter = options.emitAudioLevel ? new LoudnessMeter((int) actualInputSampleRate) : null;
+        voiceActivity = options.emitAudioLevel || options.gateOnVad ? new VoiceActivityDetector((int) actualInputSampleRate) : null;
+        levelFrames = 0;
+    }
+
+    private static ResamplingGraph buildResamplingGraph(StartCaptureOptionsModel options, int inputSampleRate, int bufferFrames) {
+        List<Integer> outputRates = new ArrayList<>(options.outputStreams.size());
+        for (OutputStream stream : options.outputStreams) {
+            outputRates.add(stream.sampleRate);
+        }
+        return new ResamplingGraph(inputSampleRate, outputRates, bufferFrames, options.resamplerQuality);
+    }
+
+    private Map<OutputStream, StreamPipeline> buildPipelines(StartCaptureOptionsModel options, ResamplingGraph graph) {
+        Map<OutputStream, StreamPipeline> pipelines = new LinkedHashMap<>();
+        for (OutputStream stream : options.outputStreams) {
+            StreamPipeline pipeline = new StreamPipeline(stream, graph, options.chunkMs, options.batchChunks);
+            if (options.gateOnVad) {
+                pipeline.gate = new SpeechGate(
+                    SpeechGate.chunksFor(options.vadPreRollMs, options.chunkMs),
+                    SpeechGate.chunksFor(options.vadPostRollMs, options.chunkMs),
+                    pipeline.chunkFrames
+                );
+                pipeline.gateSink = (samples, seq, ptsMs, flags) -> deliverChunkLocked(pipeline, samples, seq, ptsMs, flags);
             }
+            if (options.historyMs > 0) {
+                pipeline.history = new PcmHistoryRing((int) (((long) options.historyMs * pipeline.sampleRate) / 1_000));
+            }
+            pipelines.put(stream, pipeline);
+        }
+        return pipelines;
+    }
 
-            if (readCount > 0) {
-                synchronized (lock) {
-                    processInputFramesLocked(readBuffer, readCount);
+    private void processLoop(RawFrameRing ring, AtomicBoolean running) {
+        while (true) {
+            int frameCount = ring.peekLength();
+            if (frameCount < 0) {
+                if (!running.get() && ring.isEmpty()) {
+                    break;
                 }
+                LockSupport.parkNanos(this, PROCESS_IDLE_PARK_NS);
                 continue;
             }
 
-            if (readCount == AudioRecord.ERROR_DEAD_OBJECT) {
-                synchronized (lock) {
-                    mediaServicesResetCount += 1;
-                    emitErrorLocked(
-                        NativeMicErrorCode.MEDIA_SERVICES_RESET,
-                        "Audio media services were reset.",
-                        true,
-                        null,
-                        activeCaptureId
-                    );
-
-                    if (state != NativeMicState.IDLE) {
-                        state = NativeMicState.PAUSED;
-                        emitStateChangedLocked("media_services_reset");
-                    }
-                }
-                captureLoopRunning.set(false);
-                break;
+            long cpuNanos = threadCpuClock.getAsLong();
+            long gapFrames = ring.peekGapFrames();
+            if (gapFrames > 0) {
+                concealInputGap(ring, gapFrames, pendingRecoveryMs.getAndSet(-1));
             }
-
-            if (readCount < 0) {
-                synchronized (lock) {
-                    droppedInputFrames += readBuffer.length;
+            synchronized (lock) {
+                if (ring != inputRing) {
+                    // The capture this ring fed has been torn down; its blocks must not reach the next one's pipelines.
+                    break;
+                }
+                stageLatency[LatencyStage.QUEUE.ordinal()].record(System.nanoTime() - ring.peekReadAtNanos());
+                skippedInput.record(totalFramesIn, ring.peekOverrunFrames());
+                if (ring.isFloat()) {
+                    processFloatInputFramesLocked(ring.peekFloat(), frameCount);
+                } else {
+                    processInputFramesLocked(ring.peek(), frameCount);
                 }
             }
+            ring.release();
+            emitPendingEvents();
+            recordThreadCpu(stageLatency[LatencyStage.PROCESS_CPU.ordinal()], cpuNanos);
         }
     }
 
@@ -1273,72 +3133,148 @@ public final class NativeMic {
             return;
         }
 
-        float[] monoSamples = new float[frameCount];
-        for (int index = 0; index < frameCount; index += 1) {
-            short pcm = rawSamples[index];
-            float sample = pcm / 32768.0f;
-            monoSamples[index] = micEnabled ? sample : 0f;
+        long startNanos = System.nanoTime();
+        if (downmixer != null) {
+            downmixer.downmix(rawSamples, frameCount);
+        }
+
+        boolean muted = !micEnabled;
+        float[] monoSamples = null;
+        if (floatInputRequired) {
+            if (inputSamples == null || inputSamples.length < frameCount) {
+                inputSamples = new float[frameCount];
+            }
+            monoSamples = inputSamples;
+            for (int index = 0; index < frameCount; index += 1) {
+                short pcm = rawSamples[index];
+                float sample = pcm / 32768.0f;
+                monoSamples[index] = muted ? 0f : sample;
+            }
         }
 
         totalFramesIn += frameCount;
 
+        if (voiceActivity != null) {
+            if (muted) {
+                voiceActivity.processSilence(frameCount);
+            } else {
+                voiceActivity.processPcm16(rawSamples, frameCount);
+            }
+        }
+
         if (activeConfig.emitAudioLevel) {
-            accumulateAudioLevelLocked(monoSamples);
+            accumulateAudioLevelLocked(rawSamples, frameCount, muted);
         }
+        recordStageLocked(LatencyStage.CONVERT, startNanos);
 
-        for (StreamPipeline pipeline : outputPipelines.values()) {
-            short[] converted = pipeline.convert(monoSamples, monoSamples.length);
-            pipeline.pendingSamples.append(converted);
-            emitAvailableChunksLocked(pipeline, false);
+        distributeInputLocked(rawSamples, monoSamples, frameCount, muted);
+    }
+
+    private void processFloatInputFramesLocked(float[] samples, int frameCount) {
+        if (state != NativeMicState.RUNNING || activeCaptureId == null || activeConfig == null) {
+            return;
+        }
+
+        // The worker owns this ring slot until release, so the downmix and mute mask are applied in place.
+        long startNanos = System.nanoTime();
+        if (downmixer != null) {
+            downmixer.downmix(samples, frameCount);
+        }
+        if (!micEnabled) {
+            Arrays.fill(samples, 0, frameCount, 0f);
+        }
+
+        totalFramesIn += frameCount;
+
+        if (voiceActivity != null) {
+            voiceActivity.process(samples, 0, frameCount);
+        }
+
+        if (activeConfig.emitAudioLevel) {
+            accumulateAudioLevelLocked(samples, frameCount);
         }
+        recordStageLocked(LatencyStage.CONVERT, startNanos);
+
+        distributeInputLocked(null, samples, frameCount, false);
     }
 
-    private void accumulateAudioLevelLocked(float[] samples) {
-        for (float sample : samples) {
-            float absolute = Math.abs(sample);
-            if (absolute > levelPeak) {
-                levelPeak = absolute;
+    private void distributeInputLocked(short[] rawSamples, float[] floatSamples, int frameCount, boolean muted) {
+        int sliceFrames = resamplingGraph.maxInputFrames();
+        long resampleNanos = 0;
+        for (int offset = 0; offset < frameCount; offset += sliceFrames) {
+            int length = Math.min(sliceFrames, frameCount - offset);
+            if (floatSamples != null) {
+                long startNanos = System.nanoTime();
+                resamplingGraph.process(floatSamples, offset, length);
+                resampleNanos += System.nanoTime() - startNanos;
+            }
+            for (StreamPipeline pipeline : outputPipelines.values()) {
+                if (pipeline.passthrough && rawSamples != null) {
+                    pipeline.writeRaw(rawSamples, offset, length, muted);
+                } else {
+                    pipeline.pull();
+                }
+                emitAvailableChunksLocked(pipeline, false);
             }
-            levelSumSquares += sample * sample;
         }
+        if (floatSamples != null) {
+            stageLatency[LatencyStage.RESAMPLE.ordinal()].record(resampleNanos);
+        }
+    }
+
+    private void accumulateAudioLevelLocked(short[] rawSamples, int length, boolean muted) {
+        if (muted) {
+            levelMeter.processSilence(length);
+        } else {
+            levelMeter.processPcm16(rawSamples, length);
+        }
+        finishAudioLevelBlockLocked(length);
+    }
+
+    private void accumulateAudioLevelLocked(float[] samples, int length) {
+        levelMeter.process(samples, 0, length);
+        finishAudioLevelBlockLocked(length);
+    }
 
-        levelFrames += samples.length;
+    private void finishAudioLevelBlockLocked(int length) {
+        levelFrames += length;
         if (levelFrames >= levelIntervalFrames) {
             emitAudioLevelLocked();
         }
     }
 
     private void emitAudioLevelLocked() {
-        if (activeCaptureId == null || levelFrames <= 0) {
+        if (activeCaptureId == null || levelMeter == null || levelFrames <= 0) {
             return;
         }
 
-        double rms = Math.sqrt(levelSumSquares / levelFrames);
-        double peak = levelPeak;
-        double dbfs = rms > 0 ? Math.min(0, Math.max(-90, 20 * Math.log10(rms))) : -90;
+        double rms = levelMeter.rms();
+        double dbfs = LoudnessMeter.toDb(rms);
+        double truePeak = levelMeter.truePeak();
 
         JSObject payload = new JSObject();
         payload.put("captureId", activeCaptureId);
         payload.put("rms", rms);
-        payload.put("peak", peak);
+        payload.put("peak", levelMeter.peak());
         payload.put("dbfs", dbfs);
-        payload.put("vad", dbfs > -45);
+        payload.put("vad", voiceActivity != null && voiceActivity.isSpeech());
+        payload.put("truePeak", truePeak);
+        payload.put("truePeakDbtp", LoudnessMeter.toDbtp(truePeak));
+        payload.put("momentaryLufs", levelMeter.momentaryLufs());
+        payload.put("shortTermLufs", levelMeter.shortTermLufs());
+        payload.put("dcOffset", levelMeter.dcOffset());
+        payload.put("clippedSamples", levelMeter.clippedSamples());
         payload.put("ptsMs", monotonicMs());
 
         emitEventLocked("micAudioLevel", payload);
 
-        levelSumSquares = 0;
-        levelPeak = 0;
+        levelMeter.resetInterval();
         levelFrames = 0;
     }
 
     private void emitAvailableChunksLocked(StreamPipeline pipeline, boolean finalChunk) {
-        while (pipeline.pendingSamples.size() >= pipeline.chunkFrames) {
-            short[] chunk = pipeline.pendingSamples.popChunk(pipeline.chunkFrames);
-            if (chunk == null) {
-                break;
-            }
-            emitChunkLocked(pipeline, chunk, finalChunk);
+        while (pipeline.popChunk()) {
+            emitChunkLocked(pipeline, pipeline.chunkBuffer, finalChunk);
         }
     }
 
@@ -1348,16 +3284,64 @@ public final class NativeMic {
         }
 
         long seq = pipeline.seq;
-        long ptsOffsetMs = (pipeline.emittedFrames * 1_000L) / pipeline.sampleRate;
-        long ptsMs = captureStartPtsMs + ptsOffsetMs;
+        // Re-anchoring on a fresh timestamp can move the clock back by a fraction of a millisecond; never go backwards.
+        long ptsMs = Math.max(pipeline.lastPtsMs, streamPtsMsLocked(pipeline, pipeline.emittedFrames));
+        pipeline.lastPtsMs = ptsMs;
 
         pipeline.seq += 1;
         pipeline.emittedFrames += samples.length;
 
-        if (pipeline.stream == OutputStream.PCM16K) {
-            totalFramesOut16k += samples.length;
-        } else {
-            totalFramesOut48k += samples.length;
+        if (pipeline.history != null) {
+            pipeline.history.write(samples, 0, samples.length);
+        }
+        if (pipeline.recorder != null) {
+            pipeline.recorder.write(samples, 0, samples.length);
+        }
+        if (pipeline.diskHistory != null) {
+            pipeline.diskHistory.write(samples, 0, samples.length, ptsMs);
+        }
+
+        if (pipeline.gate != null) {
+            boolean speech = voiceActivity != null && voiceActivity.isSpeech();
+            pipeline.gate.offer(samples, seq, ptsMs, speech, finalChunk, pipeline.gateSink);
+            return;
+        }
+
+        deliverChunkLocked(pipeline, samples, seq, ptsMs, finalChunk ? PcmStreamServer.FLAG_FINAL : 0);
+    }
+
+    private void deliverChunkLocked(StreamPipeline pipeline, short[] samples, long seq, long ptsMs, int flags) {
+        if (concealedEndPtsMs > ptsMs && concealedStartPtsMs < ptsMs + (samples.length * 1_000L) / pipeline.sampleRate) {
+            flags |= PcmStreamServer.FLAG_CONCEALED;
+        }
+        if (loopbackServer != null) {
+            // PCM travels over the loopback stream; the bridge only carries metadata.
+            long startNanos = System.nanoTime();
+            byte[] frame;
+            if (pipeline.floatChunk != null) {
+                int payloadBytes = pipeline.encodeFloats(pipeline.floatChunk, samples.length);
+                frame = PcmStreamServer.encodeFrame(seq, ptsMs, pipeline.encoded, payloadBytes, samples.length, flags);
+            } else if (pipeline.encoded != null) {
+                int payloadBytes = pipeline.encode(samples, samples.length);
+                frame = PcmStreamServer.encodeFrame(seq, ptsMs, pipeline.encoded, payloadBytes, samples.length, flags);
+            } else {
+                frame = PcmStreamServer.encodeFrame(seq, ptsMs, samples, samples.length, flags);
+            }
+            recordStageLocked(LatencyStage.ENCODE, startNanos);
+            loopbackServer.publish(pipeline.stream.wireValue, frame);
+        }
+
+        pipeline.batch.add(samples, pipeline.floatChunk, samples.length, seq, ptsMs, flags);
+        boolean boundary = (flags & (PcmStreamServer.FLAG_FINAL | PcmStreamServer.FLAG_SEGMENT_END)) != 0;
+        if (boundary || pipeline.batch.isFull()) {
+            emitBatchLocked(pipeline, (flags & PcmStreamServer.FLAG_FINAL) != 0);
+        }
+    }
+
+    private void emitBatchLocked(StreamPipeline pipeline, boolean finalChunk) {
+        ChunkBatch batch = pipeline.batch;
+        if (activeCaptureId == null || batch.isEmpty()) {
+            return;
         }
 
         JSObject payload = new JSObject();
@@ -1365,14 +3349,60 @@ public final class NativeMic {
         payload.put("stream", pipeline.stream.wireValue);
         payload.put("sampleRate", pipeline.sampleRate);
         payload.put("channels", 1);
-        payload.put("frames", samples.length);
-        payload.put("seq", seq);
-        payload.put("ptsMs", ptsMs);
-        payload.put("dataBase64", encodePcm16(samples));
+        payload.put("encoding", pipeline.stream.encoding.wireValue);
+        payload.put("frames", batch.totalFrames);
+        payload.put("seq", batch.seqs[0]);
+        payload.put("ptsMs", batch.ptsMs[0]);
+        if (loopbackServer == null) {
+            long startNanos = System.nanoTime();
+            if (batch.floatSamples != null) {
+                int payloadBytes = pipeline.encodeFloats(batch.floatSamples, batch.totalFrames);
+                payload.put("dataBase64", pcmEncoder.encodeBytes(pipeline.encoded, 0, payloadBytes));
+            } else if (pipeline.encoded != null) {
+                // A batch is encoded as one payload: a single ADPCM block, or back-to-back FLAC frames.
+                int payloadBytes = pipeline.encode(batch.samples, batch.totalFrames);
+                payload.put("dataBase64", pcmEncoder.encodeBytes(pipeline.encoded, 0, payloadBytes));
+            } else {
+                payload.put("dataBase64", encodePcm16(batch.samples, batch.totalFrames));
+            }
+            recordStageLocked(LatencyStage.ENCODE, startNanos);
+        }
+        if (batch.capacity > 1) {
+            JSArray chunks = new JSArray();
+            for (int index = 0; index < batch.count; index += 1) {
+                JSObject chunk = new JSObject();
+                chunk.put("seq", batch.seqs[index]);
+                chunk.put("ptsMs", batch.ptsMs[index]);
+                chunk.put("frames", batch.frames[index]);
+                chunks.put(chunk);
+            }
+            payload.put("chunks", chunks);
+        }
+        if ((batch.flags & PcmStreamServer.FLAG_SEGMENT_START) != 0) {
+            payload.put("segmentStart", true);
+        }
+        if ((batch.flags & PcmStreamServer.FLAG_SEGMENT_END) != 0) {
+            payload.put("segmentEnd", true);
+        }
+        if ((batch.flags & PcmStreamServer.FLAG_CONCEALED) != 0) {
+            payload.put("concealed", true);
+        }
         if (finalChunk) {
             payload.put("final", true);
         }
+        if (captureClock != null && captureClock.hasHardwareTimestamps()) {
+            // Time from the capture of the batch's last frame until it leaves for the bridge.
+            int last = batch.count - 1;
+            long endPtsMs = batch.ptsMs[last] + (batch.frames[last] * 1_000L) / pipeline.sampleRate;
+            lastCaptureLatencyMs = Math.max(0, monotonicMs() - endPtsMs);
+            payload.put("captureLatencyMs", lastCaptureLatencyMs);
+        }
+        if (timeToFirstChunkMs < 0) {
+            timeToFirstChunkMs = Math.max(0, monotonicMs() - captureRequestedAtMs);
+            payload.put("timeToFirstChunkMs", timeToFirstChunkMs);
+        }
 
+        batch.clear();
         emitEventLocked("micPcmChunk", payload);
     }
 
@@ -1460,30 +3490,278 @@ public final class NativeMic {
         }
     }
 
+    private Map<String, String> startLoopbackServerLocked(List<OutputStream> streams) throws NativeMicControllerError {
+        List<String> wireValues = new ArrayList<>(streams.size());
+        for (OutputStream stream : streams) {
+            wireValues.add(stream.wireValue);
+        }
+
+        try {
+            loopbackServer = PcmStreamServer.start(UUID.randomUUID().toString().replace("-", ""), wireValues);
+        } catch (IOException exception) {
+            throw new NativeMicControllerError(
+                NativeMicErrorCode.ENGINE_START_FAILED,
+                "Failed to start loopback PCM transport.",
+                false,
+                String.valueOf(exception.hashCode())
+            );
+        }
+
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String wireValue : wireValues) {
+            urls.put(wireValue, loopbackServer.urlFor(wireValue));
+        }
+        return urls;
+    }
+
+    private Map<String, Long> totalFramesOutLocked() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (StreamPipeline pipeline : outputPipelines.values()) {
+            totals.put(pipeline.stream.wireValue, pipeline.emittedFrames);
+        }
+        return totals;
+    }
+
+    private JSArray describeResamplingGraphLocked() {
+        List<ResamplingGraph.Stage> stages = new ArrayList<>();
+        stages.add(resamplingGraph.stage(resamplingGraph.inputSampleRate()));
+        stages.addAll(resamplingGraph.stages());
+
+        JSArray graph = new JSArray();
+        for (ResamplingGraph.Stage stage : stages) {
+            JSObject node = new JSObject();
+            node.put("sampleRate", stage.sampleRate);
+            node.put("source", stage.isInput() ? "input" : String.valueOf(stage.parent.sampleRate));
+            node.put("resampler", stage.resamplerName());
+            JSArray streams = new JSArray();
+            for (StreamPipeline pipeline : outputPipelines.values()) {
+                if (pipeline.source == stage) {
+                    streams.put(pipeline.stream.wireValue);
+                }
+            }
+            node.put("streams", streams);
+            graph.put(node);
+        }
+        return graph;
+    }
+
+    LatencyHistogram latencyHistogram(LatencyStage stage) {
+        return stageLatency[stage.ordinal()];
+    }
+
+    private void recordStageLocked(LatencyStage stage, long startNanos) {
+        stageLatency[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    private long recordThreadCpu(LatencyHistogram histogram, long sinceNanos) {
+        long nowNanos = threadCpuClock.getAsLong();
+        if (sinceNanos >= 0 && nowNanos >= sinceNanos) {
+            histogram.record(nowNanos - sinceNanos);
+        }
+        return nowNanos;
+    }
+
+    private Map<String, LatencyHistogram.Summary> latencyByStageLocked() {
+        Map<String, LatencyHistogram.Summary> summaries = new LinkedHashMap<>();
+        for (LatencyStage stage : LatencyStage.values()) {
+            summaries.put(stage.wireValue, stageLatency[stage.ordinal()].summary());
+        }
+        return summaries;
+    }
+
+    private static JSObject latencyByStage(Map<String, LatencyHistogram.Summary> summaries) {
+        JSObject object = new JSObject();
+        for (Map.Entry<String, LatencyHistogram.Summary> entry : summaries.entrySet()) {
+            object.put(entry.getKey(), describeLatency(entry.getValue()));
+        }
+        return object;
+    }
+
+    static JSObject describeLatency(LatencyHistogram.Summary summary) {
+        JSObject object = new JSObject();
+        object.put("count", summary.count);
+        object.put("p50Ms", summary.p50Ms);
+        object.put("p95Ms", summary.p95Ms);
+        object.put("p99Ms", summary.p99Ms);
+        object.put("maxMs", summary.maxMs);
+        object.put("meanMs", summary.meanMs);
+        object.put("totalMs", summary.totalMs);
+        return object;
+    }
+
+    private static JSObject framesByStream(Map<String, Long> totals) {
+        JSObject object = new JSObject();
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            object.put(entry.getKey(), (long) entry.getValue());
+        }
+        return object;
+    }
+
+    private Map<String, String> streamHeadersLocked() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (StreamPipeline pipeline : outputPipelines.values()) {
+            byte[] header = pipeline.streamHeader();
+            if (header != null) {
+                headers.put(pipeline.stream.wireValue, pcmEncoder.encodeBytes(header, 0, header.length));
+            }
+        }
+        return headers;
+    }
+
+    private void closeLoopbackServerLocked() {
+        if (loopbackServer != null) {
+            loopbackServer.close();
+            loopbackServer = null;
+        }
+    }
+
+    private void openCaptureFilesLocked(StartCaptureOptionsModel options, String captureId) throws NativeMicControllerError {
+        if (options.record != null) {
+            StreamPipeline pipeline = outputPipelines.get(options.record.stream);
+            try {
+                pipeline.recorder = PcmFileRecorder.open(
+                    options.record.file,
+                    pipeline.sampleRate,
+                    options.record.format,
+                    options.record.fsyncPolicy
+                );
+            } catch (IOException exception) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.ENGINE_START_FAILED,
+                    "Failed to open recording file " + options.record.file.getAbsolutePath() + ".",
+                    false,
+                    String.valueOf(exception.hashCode())
+                );
+            }
+        }
+
+        if (options.diskHistory != null) {
+            StreamPipeline pipeline = outputPipelines.get(options.diskHistory.stream);
+            try {
+                pipeline.diskHistory = MappedHistoryFile.create(
+                    options.diskHistory.file,
+                    pipeline.sampleRate,
+                    options.diskHistory.durationMs,
+                    captureId,
+                    System.currentTimeMillis()
+                );
+            } catch (IOException exception) {
+                throw new NativeMicControllerError(
+                    NativeMicErrorCode.ENGINE_START_FAILED,
+                    "Failed to map history file " + options.diskHistory.file.getAbsolutePath() + ".",
+                    false,
+                    String.valueOf(exception.hashCode())
+                );
+            }
+        }
+    }
+
+    private void closeDiskHistoryLocked() {
+        for (StreamPipeline pipeline : outputPipelines.values()) {
+            if (pipeline.diskHistory != null) {
+                pipeline.diskHistory.close();
+                pipeline.diskHistory = null;
+            }
+        }
+    }
+
+    private RecordingResultModel closeRecorderLocked(long timeoutMs, String captureId) {
+        for (StreamPipeline pipeline : outputPipelines.values()) {
+            PcmFileRecorder recorder = pipeline.recorder;
+            if (recorder == null) {
+                continue;
+            }
+
+            pipeline.recorder = null;
+            boolean complete = false;
+            try {
+                complete = recorder.close(timeoutMs);
+            } catch (IOException exception) {
+                if (captureId != null) {
+                    emitErrorLocked(
+                        NativeMicErrorCode.INTERNAL,
+                        "Failed to write recording " + recorder.file().getAbsolutePath() + ".",
+                        true,
+                        String.valueOf(exception.hashCode()),
+                        captureId
+                    );
+                }
+            }
+            return RecordingResultModel.from(recorder, pipeline.stream, complete);
+        }
+        return null;
+    }
+
     private void clearCaptureStateLocked() {
+        closeLoopbackServerLocked();
+        // Error paths land here with the recorder still open; let its writer finish the file in the background.
+        closeRecorderLocked(0, null);
+        closeDiskHistoryLocked();
         activeConfig = null;
         activeCaptureId = null;
         outputPipelines.clear();
+        resamplingGraph = null;
         captureStartPtsMs = 0;
+        captureClock = null;
+        lastCaptureLatencyMs = -1;
+        captureRequestedAtMs = 0;
+        timeToFirstChunkMs = -1;
+        concealedInputFrames = 0;
+        concealedStartPtsMs = -1;
+        concealedEndPtsMs = -1;
         totalFramesIn = 0;
-        totalFramesOut16k = 0;
-        totalFramesOut48k = 0;
         actualInputSampleRate = 0;
         actualInputChannels = 0;
-        droppedInputFrames = 0;
-        levelSumSquares = 0;
-        levelPeak = 0;
+        downmixer = null;
+        actualInputEncoding = CaptureEncoding.PCM16;
+        droppedInputFrames.set(0);
+        inputRing = null;
+        levelMeter = null;
+        voiceActivity = null;
         levelFrames = 0;
         levelIntervalFrames = 0;
+        readBufferFrames = MIN_READ_FRAMES;
+        inputSamples = null;
+        silenceSamples = null;
+        floatSilenceSamples = null;
+        floatInputRequired = false;
         expectedResumeAfterInterruption = false;
         interruptionActive = false;
         micEnabled = true;
     }
 
+    // Chunks wait for emitPendingEvents because the emitter can block under the block backpressure policy. Other
+    // events queue behind pending chunks so the bridge sees events in the order they were raised.
     private void emitEventLocked(String eventName, JSObject payload) {
+        if ("micPcmChunk".equals(eventName) || emittingPendingEvents || !pendingEvents.isEmpty()) {
+            pendingEvents.addLast(new PendingEvent(eventName, payload));
+            return;
+        }
         eventEmitter.emit(eventName, payload);
     }
 
+    // Must be called without holding lock.
+    private void emitPendingEvents() {
+        synchronized (emitOrder) {
+            while (true) {
+                PendingEvent event;
+                synchronized (lock) {
+                    event = pendingEvents.pollFirst();
+                    emittingPendingEvents = event != null;
+                }
+                if (event == null) {
+                    return;
+                }
+
+                long startNanos = System.nanoTime();
+                eventEmitter.emit(event.eventName, event.payload);
+                if ("micPcmChunk".equals(event.eventName)) {
+                    stageLatency[LatencyStage.EMIT.ordinal()].record(System.nanoTime() - startNanos);
+                }
+            }
+        }
+    }
+
     private void registerAudioDeviceCallbacks() {
         if (audioManager == null) {
             return;
@@ -1513,13 +3791,13 @@ public final class NativeMic {
     }
 
     private String resolveSelectedInputIdLocked(AudioDeviceInfo[] availableInputs) {
-        if (audioRecord != null) {
-            AudioDeviceInfo preferred = audioRecord.getPreferredDevice();
+        if (captureSource != null) {
+            AudioDeviceInfo preferred = captureSource.getPreferredDevice();
             if (preferred != null) {
                 return String.valueOf(preferred.getId());
             }
 
-            AudioDeviceInfo routed = audioRecord.getRoutedDevice();
+            AudioDeviceInfo routed = captureSource.getRoutedDevice();
             if (routed != null) {
                 return String.valueOf(routed.getId());
             }
@@ -1593,61 +3871,40 @@ public final class NativeMic {
         return findCommunicationDeviceByType(preferredDeviceType);
     }
 
-    private int resolveInputSampleRate() {
+    private int resolveInputSampleRateLocked() {
+        if (cachedInputSampleRate > 0) {
+            return cachedInputSampleRate;
+        }
+
         int[] candidates = new int[] { 48_000, 44_100, 32_000, 16_000 };
+        cachedInputSampleRate = 48_000;
         for (int sampleRate : candidates) {
             int minBuffer = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
             if (minBuffer > 0) {
-                return sampleRate;
-            }
-        }
-        return 48_000;
-    }
-
-    private void releaseAudioRecord(AudioRecord record) {
-        if (record == null) {
-            return;
-        }
-
-        try {
-            if (record.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                record.stop();
+                cachedInputSampleRate = sampleRate;
+                break;
             }
-        } catch (IllegalStateException ignored) {
-            // Ignore cleanup failures.
-        }
-
-        try {
-            record.release();
-        } catch (Exception ignored) {
-            // Ignore cleanup failures.
         }
+        return cachedInputSampleRate;
     }
 
     private long monotonicMs() {
-        return android.os.SystemClock.elapsedRealtime();
+        return monotonicClock.getAsLong();
     }
 
-    private static short[] convertFloatToPcm16(float[] samples) {
-        if (samples.length == 0) {
-            return new short[0];
-        }
+    private static int resolveReadBufferFrames(double inputSampleRate, int chunkMs) {
+        // Never read more than one chunk at a time so short chunks are not held back by a 20ms read.
+        int readMs = Math.min(chunkMs, DEFAULT_CHUNK_MS);
+        return Math.max(MIN_READ_FRAMES, (int) ((Math.max(16_000, inputSampleRate) * readMs) / 1_000));
+    }
 
-        short[] pcm16 = new short[samples.length];
-        for (int index = 0; index < samples.length; index += 1) {
-            float value = Math.max(-1f, Math.min(1f, samples[index]));
-            pcm16[index] = value < 0 ? (short) Math.round(value * 32_768f) : (short) Math.round(value * 32_767f);
-        }
-        return pcm16;
+    static short floatToPcm16(float sample) {
+        float value = Math.max(-1f, Math.min(1f, sample));
+        return value < 0 ? (short) Math.round(value * 32_768f) : (short) Math.round(value * 32_767f);
     }
 
-    private String encodePcm16(short[] samples) {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(samples.length * 2);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        for (short sample : samples) {
-            byteBuffer.putShort(sample);
-        }
-        return Base64.encodeToString(byteBuffer.array(), Base64.NO_WRAP);
+    private String encodePcm16(short[] samples, int length) {
+        return pcmEncoder.encode(samples, 0, length);
     }
 
     private static String mapDeviceType(AudioDeviceInfo device) {
@@ -1677,6 +3934,21 @@ public final class NativeMic {
         return DEFAULT_CHUNK_MS;
     }
 
+    static int resolveBatchChunks(int chunkMs, Integer batchChunks, Integer maxBatchMs) {
+        if (batchChunks != null && batchChunks < 1) {
+            return -1;
+        }
+        if (maxBatchMs == null) {
+            return batchChunks != null ? batchChunks : 1;
+        }
+        if (chunkMs <= 0 || maxBatchMs < chunkMs) {
+            return -1;
+        }
+
+        int chunksWithinLimit = maxBatchMs / chunkMs;
+        return batchChunks != null ? Math.min(batchChunks, chunksWithinLimit) : chunksWithinLimit;
+    }
+
     static int getDefaultAudioLevelIntervalMs() {
         return DEFAULT_AUDIO_LEVEL_INTERVAL_MS;
     }
@@ -1684,4 +3956,16 @@ public final class NativeMic {
     static int getDefaultFlushTimeoutMs() {
         return DEFAULT_FLUSH_TIMEOUT_MS;
     }
+
+    static int getDefaultVadPreRollMs() {
+        return DEFAULT_VAD_PRE_ROLL_MS;
+    }
+
+    static int getDefaultVadPostRollMs() {
+        return DEFAULT_VAD_POST_ROLL_MS;
+    }
+
+    static int getDefaultDiskHistoryMs() {
+        return DEFAULT_DISK_HISTORY_MS;
+    }
 }
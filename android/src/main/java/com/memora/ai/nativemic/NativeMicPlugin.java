@@ -10,19 +10,32 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 @CapacitorPlugin(name = "NativeMic", permissions = { @Permission(alias = "microphone", strings = { Manifest.permission.RECORD_AUDIO }) })
 public class NativeMicPlugin extends Plugin {
 
+    private static final int EVENT_QUEUE_CAPACITY = 256;
+    private static final long EVENT_BLOCK_TIMEOUT_MS = 50;
+
     private NativeMic controller;
     private NativeWebRTC webRtcController;
+    private EventDispatcher<JSObject> eventDispatcher;
 
     @Override
     public void load() {
+        eventDispatcher = new EventDispatcher<>("NativeMicEvents", EVENT_QUEUE_CAPACITY, EVENT_BLOCK_TIMEOUT_MS, this::notifyListeners);
+        eventDispatcher.setPolicy("micAudioLevel", EventDispatcher.DeliveryPolicy.COALESCE);
+        eventDispatcher.setPolicy("webrtcLocalAudioLevel", EventDispatcher.DeliveryPolicy.COALESCE);
+        eventDispatcher.setPolicy("webrtcRemoteAudioLevel", EventDispatcher.DeliveryPolicy.COALESCE);
+        eventDispatcher.setPolicy("micPcmChunk", EventDispatcher.DeliveryPolicy.DROP_OLDEST);
         controller = new NativeMic(getContext(), this::emitEventToJs);
+        eventDispatcher.trackLatency("micPcmChunk", controller.latencyHistogram(NativeMic.LatencyStage.JS_DISPATCH));
         webRtcController = new NativeWebRTC(getContext(), this::emitEventToJs);
     }
 
@@ -34,6 +47,9 @@ public class NativeMicPlugin extends Plugin {
         if (webRtcController != null) {
             webRtcController.destroy();
         }
+        if (eventDispatcher != null) {
+            eventDispatcher.close();
+        }
         super.handleOnDestroy();
     }
 
@@ -100,92 +116,80 @@ public class NativeMicPlugin extends Plugin {
     }
 
     @PluginMethod
-    public void startCapture(PluginCall call) {
-        String profileValue = call.getString("profile");
-        NativeMic.MicProfile profile = NativeMic.MicProfile.fromWireValue(profileValue);
-        if (profile == null) {
-            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "profile is required and must be waveform or pipecat.", false, null, null);
+    public void prepareCapture(PluginCall call) {
+        NativeMic.StartCaptureOptionsModel options = parseStartCaptureOptions(call);
+        if (options == null) {
             return;
         }
 
-        String modeValue = call.getString("mode");
-        NativeMic.SessionMode mode = NativeMic.SessionMode.fromWireValue(modeValue);
-        if (mode == null) {
-            reject(
-                call,
-                NativeMic.NativeMicErrorCode.INTERNAL,
-                "mode is required and must be measurement or voice_chat.",
-                false,
-                null,
-                null
-            );
-            return;
+        try {
+            NativeMic.validatePermissionForStart(toMicPermissionState(getPermissionState("microphone")));
+            controller.prepareCapture(options);
+            call.resolve();
+        } catch (NativeMic.NativeMicControllerError error) {
+            reject(call, error, null);
+        } catch (Exception exception) {
+            rejectUnexpected(call, exception, null);
         }
+    }
 
-        List<NativeMic.OutputStream> outputStreams = parseOutputStreams(call.getArray("outputStreams"));
-        if (outputStreams == null || outputStreams.isEmpty()) {
-            reject(
-                call,
-                NativeMic.NativeMicErrorCode.INTERNAL,
-                "outputStreams must include pcm16k_s16le, pcm48k_s16le, or both.",
-                false,
-                null,
-                null
-            );
+    @PluginMethod
+    public void releasePreparedCapture(PluginCall call) {
+        controller.releasePreparedCapture();
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void startCapture(PluginCall call) {
+        NativeMic.StartCaptureOptionsModel options = parseStartCaptureOptions(call);
+        if (options == null) {
             return;
         }
 
-        Integer chunkMsValue = call.getInt("chunkMs");
-        int chunkMs = chunkMsValue != null ? chunkMsValue : NativeMic.getDefaultChunkMs();
-
-        Boolean emitAudioLevelValue = call.getBoolean("emitAudioLevel");
-        boolean emitAudioLevel = emitAudioLevelValue != null ? emitAudioLevelValue : true;
-
-        Integer audioLevelIntervalValue = call.getInt("audioLevelIntervalMs");
-        int audioLevelIntervalMs = Math.max(
-            20,
-            audioLevelIntervalValue != null ? audioLevelIntervalValue : NativeMic.getDefaultAudioLevelIntervalMs()
-        );
-
-        boolean voiceProcessingDefault = profile == NativeMic.MicProfile.PIPECAT;
-        Boolean voiceProcessingValue = call.getBoolean("voiceProcessing");
-        boolean voiceProcessing = voiceProcessingValue != null ? voiceProcessingValue : voiceProcessingDefault;
-
-        String preferredInputId = call.getString("preferredInputId");
-
-        String outputRouteValue = call.getString("outputRoute");
-        if (outputRouteValue == null) {
-            outputRouteValue = NativeMic.OutputRoute.SYSTEM.wireValue;
+        String pcmBackpressureValue = call.getString("pcmBackpressure");
+        EventDispatcher.DeliveryPolicy pcmBackpressure = EventDispatcher.DeliveryPolicy.DROP_OLDEST;
+        if (pcmBackpressureValue != null) {
+            pcmBackpressure = EventDispatcher.DeliveryPolicy.fromWireValue(pcmBackpressureValue);
+            if (pcmBackpressure == null || pcmBackpressure == EventDispatcher.DeliveryPolicy.COALESCE) {
+                reject(
+                    call,
+                    NativeMic.NativeMicErrorCode.INTERNAL,
+                    "pcmBackpressure must be drop_oldest, block, or reliable.",
+                    false,
+                    null,
+                    null
+                );
+                return;
+            }
         }
-        NativeMic.OutputRoute outputRoute = NativeMic.OutputRoute.fromWireValue(outputRouteValue);
-        if (outputRoute == null) {
-            outputRoute = NativeMic.OutputRoute.SYSTEM;
+
+        // Chunks flow as soon as the capture starts, so the policy has to be in place first. A running capture keeps its
+        // own; startCapture rejects the call below.
+        boolean policyApplied = controller.getState() == NativeMic.NativeMicState.IDLE;
+        if (policyApplied) {
+            eventDispatcher.setPolicy("micPcmChunk", pcmBackpressure);
         }
 
         try {
             NativeMic.validatePermissionForStart(toMicPermissionState(getPermissionState("microphone")));
 
-            NativeMic.StartCaptureOptionsModel options = new NativeMic.StartCaptureOptionsModel(
-                profile,
-                mode,
-                outputStreams,
-                chunkMs,
-                emitAudioLevel,
-                audioLevelIntervalMs,
-                voiceProcessing,
-                preferredInputId,
-                outputRoute
-            );
-
             NativeMic.StartCaptureResultModel result = controller.startCapture(options);
             call.resolve(result.asJSObject());
         } catch (NativeMic.NativeMicControllerError error) {
+            restorePcmPolicy(policyApplied);
             reject(call, error, null);
         } catch (Exception exception) {
+            restorePcmPolicy(policyApplied);
             rejectUnexpected(call, exception, null);
         }
     }
 
+    private void restorePcmPolicy(boolean policyApplied) {
+        if (policyApplied) {
+            eventDispatcher.setPolicy("micPcmChunk", EventDispatcher.DeliveryPolicy.DROP_OLDEST);
+        }
+    }
+
     @PluginMethod
     public void stopCapture(PluginCall call) {
         String captureId = call.getString("captureId");
@@ -231,6 +235,66 @@ public class NativeMicPlugin extends Plugin {
         }
     }
 
+    @PluginMethod
+    public void getRecentAudio(PluginCall call) {
+        String captureId = call.getString("captureId");
+        if (captureId == null || captureId.isEmpty()) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "captureId is required.", false, null, null);
+            return;
+        }
+
+        NativeMic.OutputStream stream = NativeMic.OutputStream.fromWireValue(call.getString("stream"));
+        if (stream == null) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "stream must be " + NativeMic.OutputStream.describeWireValues() + ".",
+                false,
+                captureId,
+                null
+            );
+            return;
+        }
+
+        try {
+            NativeMic.RecentAudioResultModel result = controller.getRecentAudio(
+                captureId,
+                stream,
+                call.getLong("fromMs"),
+                call.getLong("toMs")
+            );
+            call.resolve(result.asJSObject());
+        } catch (NativeMic.NativeMicControllerError error) {
+            reject(call, error, captureId);
+        } catch (Exception exception) {
+            rejectUnexpected(call, exception, captureId);
+        }
+    }
+
+    @PluginMethod
+    public void exportHistoryFile(PluginCall call) {
+        String path = call.getString("path");
+        String outputPath = call.getString("outputPath");
+        if (path == null || path.isEmpty() || outputPath == null || outputPath.isEmpty()) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "path and outputPath are required.", false, null, null);
+            return;
+        }
+
+        try {
+            NativeMic.HistoryExportResultModel result = controller.exportHistoryFile(
+                resolveAppFile(path),
+                resolveAppFile(outputPath),
+                call.getLong("fromMs"),
+                call.getLong("toMs")
+            );
+            call.resolve(result.asJSObject());
+        } catch (NativeMic.NativeMicControllerError error) {
+            reject(call, error, null);
+        } catch (Exception exception) {
+            rejectUnexpected(call, exception, null);
+        }
+    }
+
     @PluginMethod
     public void getState(PluginCall call) {
         JSObject payload = new JSObject();
@@ -240,7 +304,7 @@ public class NativeMicPlugin extends Plugin {
 
     @PluginMethod
     public void getDiagnostics(PluginCall call) {
-        call.resolve(controller.getDiagnostics());
+        call.resolve(withDispatcherDiagnostics(controller.getDiagnostics()));
     }
 
     @PluginMethod
@@ -531,7 +595,7 @@ public class NativeMicPlugin extends Plugin {
         }
 
         try {
-            call.resolve(webRtcController.getDiagnostics(connectionId));
+            call.resolve(withDispatcherDiagnostics(webRtcController.getDiagnostics(connectionId)));
         } catch (NativeWebRTC.NativeWebRTCControllerError error) {
             rejectWebRTC(call, error, connectionId);
         } catch (Exception exception) {
@@ -549,6 +613,281 @@ public class NativeMicPlugin extends Plugin {
         return "prompt";
     }
 
+    /** Options shared by startCapture and prepareCapture; rejects the call and returns null when they are invalid. */
+    private NativeMic.StartCaptureOptionsModel parseStartCaptureOptions(PluginCall call) {
+        String profileValue = call.getString("profile");
+        NativeMic.MicProfile profile = NativeMic.MicProfile.fromWireValue(profileValue);
+        if (profile == null) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "profile is required and must be waveform or pipecat.", false, null, null);
+            return null;
+        }
+
+        String modeValue = call.getString("mode");
+        NativeMic.SessionMode mode = NativeMic.SessionMode.fromWireValue(modeValue);
+        if (mode == null) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "mode is required and must be measurement or voice_chat.",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        List<NativeMic.OutputStream> outputStreams = parseOutputStreams(call.getArray("outputStreams"));
+        if (outputStreams == null || outputStreams.isEmpty()) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "outputStreams must include one or more streams, each a {rate, format} object or " +
+                NativeMic.OutputStream.describeWireValues() +
+                ".",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        Integer chunkMsValue = call.getInt("chunkMs");
+        int chunkMs = chunkMsValue != null ? chunkMsValue : NativeMic.getDefaultChunkMs();
+
+        int batchChunks = NativeMic.resolveBatchChunks(chunkMs, call.getInt("batchChunks"), call.getInt("maxBatchMs"));
+        if (batchChunks < 1) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "batchChunks must be at least 1 and maxBatchMs must be at least chunkMs.",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        Boolean emitAudioLevelValue = call.getBoolean("emitAudioLevel");
+        boolean emitAudioLevel = emitAudioLevelValue != null ? emitAudioLevelValue : true;
+
+        Boolean gateOnVadValue = call.getBoolean("gateOnVad");
+        boolean gateOnVad = gateOnVadValue != null ? gateOnVadValue : false;
+
+        Integer vadPreRollValue = call.getInt("vadPreRollMs");
+        int vadPreRollMs = vadPreRollValue != null ? vadPreRollValue : NativeMic.getDefaultVadPreRollMs();
+
+        Integer vadPostRollValue = call.getInt("vadPostRollMs");
+        int vadPostRollMs = vadPostRollValue != null ? vadPostRollValue : NativeMic.getDefaultVadPostRollMs();
+
+        Integer historyValue = call.getInt("historyMs");
+        int historyMs = historyValue != null ? historyValue : 0;
+
+        Integer audioLevelIntervalValue = call.getInt("audioLevelIntervalMs");
+        int audioLevelIntervalMs = Math.max(
+            20,
+            audioLevelIntervalValue != null ? audioLevelIntervalValue : NativeMic.getDefaultAudioLevelIntervalMs()
+        );
+
+        boolean voiceProcessingDefault = profile == NativeMic.MicProfile.PIPECAT;
+        Boolean voiceProcessingValue = call.getBoolean("voiceProcessing");
+        boolean voiceProcessing = voiceProcessingValue != null ? voiceProcessingValue : voiceProcessingDefault;
+
+        String preferredInputId = call.getString("preferredInputId");
+
+        String outputRouteValue = call.getString("outputRoute");
+        if (outputRouteValue == null) {
+            outputRouteValue = NativeMic.OutputRoute.SYSTEM.wireValue;
+        }
+        NativeMic.OutputRoute outputRoute = NativeMic.OutputRoute.fromWireValue(outputRouteValue);
+        if (outputRoute == null) {
+            outputRoute = NativeMic.OutputRoute.SYSTEM;
+        }
+
+        String resamplerQualityValue = call.getString("resamplerQuality");
+        NativeMic.ResamplerQuality resamplerQuality = NativeMic.ResamplerQuality.LINEAR;
+        if (resamplerQualityValue != null) {
+            resamplerQuality = NativeMic.ResamplerQuality.fromWireValue(resamplerQualityValue);
+            if (resamplerQuality == null) {
+                reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "resamplerQuality must be linear or sinc.", false, null, null);
+                return null;
+            }
+        }
+
+        String captureEncodingValue = call.getString("captureEncoding");
+        NativeMic.CaptureEncoding captureEncoding = NativeMic.CaptureEncoding.PCM16;
+        if (captureEncodingValue != null) {
+            captureEncoding = NativeMic.CaptureEncoding.fromWireValue(captureEncodingValue);
+            if (captureEncoding == null) {
+                reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "captureEncoding must be pcm16 or float.", false, null, null);
+                return null;
+            }
+        }
+
+        Integer channelsValue = call.getInt("channels");
+        int channels = channelsValue != null ? channelsValue : 1;
+
+        String channelMixValue = call.getString("channelMix");
+        NativeMic.ChannelMix channelMix = NativeMic.ChannelMix.AVERAGE;
+        if (channelMixValue != null) {
+            channelMix = NativeMic.ChannelMix.fromWireValue(channelMixValue);
+            if (channelMix == null) {
+                reject(
+                    call,
+                    NativeMic.NativeMicErrorCode.INTERNAL,
+                    "channelMix must be average, left, right, or loudest.",
+                    false,
+                    null,
+                    null
+                );
+                return null;
+            }
+        }
+
+        String pcmTransportValue = call.getString("pcmTransport");
+        NativeMic.PcmTransport pcmTransport = NativeMic.PcmTransport.EVENTS;
+        if (pcmTransportValue != null) {
+            pcmTransport = NativeMic.PcmTransport.fromWireValue(pcmTransportValue);
+            if (pcmTransport == null) {
+                reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "pcmTransport must be events or loopback.", false, null, null);
+                return null;
+            }
+        }
+
+        NativeMic.RecordOptionsModel record = null;
+        JSObject recordValue = call.getObject("record");
+        if (recordValue != null) {
+            record = parseRecordOptions(call, recordValue, outputStreams);
+            if (record == null) {
+                return null;
+            }
+        }
+
+        NativeMic.DiskHistoryOptionsModel diskHistory = null;
+        JSObject diskHistoryValue = call.getObject("diskHistory");
+        if (diskHistoryValue != null) {
+            diskHistory = parseDiskHistoryOptions(call, diskHistoryValue, outputStreams);
+            if (diskHistory == null) {
+                return null;
+            }
+        }
+
+        return new NativeMic.StartCaptureOptionsModel(
+            profile,
+            mode,
+            outputStreams,
+            chunkMs,
+            emitAudioLevel,
+            audioLevelIntervalMs,
+            voiceProcessing,
+            preferredInputId,
+            outputRoute,
+            resamplerQuality,
+            captureEncoding,
+            channels,
+            channelMix,
+            pcmTransport,
+            batchChunks,
+            gateOnVad,
+            vadPreRollMs,
+            vadPostRollMs,
+            historyMs,
+            record,
+            diskHistory
+        );
+    }
+
+    /** Resolves the record option, rejecting the call and returning null when it is invalid. */
+    private NativeMic.RecordOptionsModel parseRecordOptions(
+        PluginCall call,
+        JSObject rawRecord,
+        List<NativeMic.OutputStream> outputStreams
+    ) {
+        String path = rawRecord.getString("path");
+        if (path == null || path.isEmpty()) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "record.path is required.", false, null, null);
+            return null;
+        }
+        File file = resolveAppFile(path);
+
+        String streamValue = rawRecord.getString("stream");
+        NativeMic.OutputStream stream = streamValue != null ? NativeMic.OutputStream.fromWireValue(streamValue) : outputStreams.get(0);
+        if (stream == null) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "record.stream must be " + NativeMic.OutputStream.describeWireValues() + ".",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        String formatValue = rawRecord.getString("format");
+        PcmFileRecorder.Format format = formatValue != null
+            ? PcmFileRecorder.Format.fromWireValue(formatValue)
+            : PcmFileRecorder.Format.WAV;
+        if (format == null) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "record.format must be wav or raw.", false, null, null);
+            return null;
+        }
+
+        String fsyncValue = rawRecord.getString("fsync");
+        PcmFileRecorder.FsyncPolicy fsyncPolicy = fsyncValue != null
+            ? PcmFileRecorder.FsyncPolicy.fromWireValue(fsyncValue)
+            : PcmFileRecorder.FsyncPolicy.PERIODIC;
+        if (fsyncPolicy == null) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "record.fsync must be none, periodic, or always.",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        return new NativeMic.RecordOptionsModel(file, stream, format, fsyncPolicy);
+    }
+
+    /** Resolves the diskHistory option, rejecting the call and returning null when it is invalid. */
+    private NativeMic.DiskHistoryOptionsModel parseDiskHistoryOptions(
+        PluginCall call,
+        JSObject rawHistory,
+        List<NativeMic.OutputStream> outputStreams
+    ) {
+        String path = rawHistory.getString("path");
+        if (path == null || path.isEmpty()) {
+            reject(call, NativeMic.NativeMicErrorCode.INTERNAL, "diskHistory.path is required.", false, null, null);
+            return null;
+        }
+
+        String streamValue = rawHistory.getString("stream");
+        NativeMic.OutputStream stream = streamValue != null ? NativeMic.OutputStream.fromWireValue(streamValue) : outputStreams.get(0);
+        if (stream == null) {
+            reject(
+                call,
+                NativeMic.NativeMicErrorCode.INTERNAL,
+                "diskHistory.stream must be " + NativeMic.OutputStream.describeWireValues() + ".",
+                false,
+                null,
+                null
+            );
+            return null;
+        }
+
+        Integer durationValue = rawHistory.getInteger("durationMs");
+        int durationMs = durationValue != null ? durationValue : NativeMic.getDefaultDiskHistoryMs();
+        return new NativeMic.DiskHistoryOptionsModel(resolveAppFile(path), stream, durationMs);
+    }
+
+    /** Absolute paths are used as given; relative ones are taken from the app's files directory. */
+    private File resolveAppFile(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(getContext().getFilesDir(), path);
+    }
+
     private List<NativeMic.OutputStream> parseOutputStreams(JSArray rawStreams) {
         if (rawStreams == null) {
             return null;
@@ -558,6 +897,19 @@ public class NativeMicPlugin extends Plugin {
         for (int index = 0; index < rawStreams.length(); index += 1) {
             try {
                 Object rawValue = rawStreams.get(index);
+                if (rawValue instanceof JSONObject) {
+                    // {rate, format} is shorthand for the canonical pcm<rate>_<format> name.
+                    JSONObject spec = (JSONObject) rawValue;
+                    NativeMic.OutputStream stream = NativeMic.OutputStream.of(
+                        spec.optInt("rate", 0),
+                        NativeMic.StreamEncoding.fromWireValue(spec.optString("format", NativeMic.StreamEncoding.S16LE.wireValue))
+                    );
+                    if (stream == null) {
+                        return null;
+                    }
+                    values.add(stream.wireValue);
+                    continue;
+                }
                 if (!(rawValue instanceof String)) {
                     return null;
                 }
@@ -645,10 +997,30 @@ public class NativeMicPlugin extends Plugin {
     }
 
     private void emitEventToJs(String eventName, JSObject payload) {
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(() -> notifyListeners(eventName, payload));
-            return;
+        eventDispatcher.dispatch(eventName, payload);
+    }
+
+    private JSObject withDispatcherDiagnostics(JSObject diagnostics) {
+        EventDispatcher.Stats stats = eventDispatcher.stats();
+        JSObject droppedByEvent = new JSObject();
+        for (Map.Entry<String, Long> entry : stats.droppedByEvent.entrySet()) {
+            droppedByEvent.put(entry.getKey(), entry.getValue());
         }
-        notifyListeners(eventName, payload);
+
+        JSObject dispatcher = new JSObject();
+        dispatcher.put("queueDepth", stats.queueDepth);
+        dispatcher.put("maxQueueDepth", stats.maxQueueDepth);
+        dispatcher.put("queueCapacity", stats.capacity);
+        dispatcher.put("dispatchedEvents", stats.dispatchedEvents);
+        dispatcher.put("droppedEvents", stats.droppedEvents);
+        dispatcher.put("coalescedEvents", stats.coalescedEvents);
+        dispatcher.put("blockedEnqueues", stats.blockedEnqueues);
+        dispatcher.put("lastDispatchLatencyMs", stats.lastDispatchLatencyMs);
+        dispatcher.put("averageDispatchLatencyMs", stats.averageDispatchLatencyMs);
+        dispatcher.put("maxDispatchLatencyMs", stats.maxDispatchLatencyMs);
+        dispatcher.put("pcmBackpressure", eventDispatcher.policyFor("micPcmChunk").wireValue);
+        dispatcher.put("droppedByEvent", droppedByEvent);
+        diagnostics.put("eventDispatcher", dispatcher);
+        return diagnostics;
     }
 }
@@ -0,0 +1,124 @@
+package com.memora.ai.nativemic;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes little-endian PCM16 straight from {@code short[]} into standard padded Base64 without line breaks, matching
+ * {@code android.util.Base64.encodeToString(bytes, NO_WRAP)}. Already-encoded payloads such as mu-law or ADPCM go
+ * through {@link #encodeBytes(byte[], int, int)}. The ASCII scratch buffer is reused between calls, so the returned
+ * String is the only allocation. Instances are not thread-safe.
+ */
+final class Pcm16Base64Encoder {
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(
+        StandardCharsets.US_ASCII
+    );
+    private static final byte PAD = '=';
+
+    private byte[] scratch;
+
+    Pcm16Base64Encoder() {
+        this(0);
+    }
+
+    Pcm16Base64Encoder(int initialFrames) {
+        this.scratch = new byte[encodedLength(Math.max(0, initialFrames))];
+    }
+
+    static int encodedLength(int frames) {
+        return ((frames * 2 + 2) / 3) * 4;
+    }
+
+    String encode(short[] samples, int offset, int length) {
+        byte[] out = scratchFor(encodedLength(length));
+        int cursor = 0;
+        int index = offset;
+        int wholeGroupsEnd = offset + (length / 3) * 3;
+
+        // Three samples are six bytes, which is exactly eight Base64 characters.
+        while (index < wholeGroupsEnd) {
+            int s0 = samples[index];
+            int s1 = samples[index + 1];
+            int s2 = samples[index + 2];
+            index += 3;
+
+            int first = ((s0 & 0xff) << 16) | (s0 & 0xff00) | (s1 & 0xff);
+            int second = ((s1 & 0xff00) << 8) | ((s2 & 0xff) << 8) | ((s2 >> 8) & 0xff);
+            out[cursor] = ALPHABET[first >>> 18];
+            out[cursor + 1] = ALPHABET[(first >>> 12) & 0x3f];
+            out[cursor + 2] = ALPHABET[(first >>> 6) & 0x3f];
+            out[cursor + 3] = ALPHABET[first & 0x3f];
+            out[cursor + 4] = ALPHABET[second >>> 18];
+            out[cursor + 5] = ALPHABET[(second >>> 12) & 0x3f];
+            out[cursor + 6] = ALPHABET[(second >>> 6) & 0x3f];
+            out[cursor + 7] = ALPHABET[second & 0x3f];
+            cursor += 8;
+        }
+
+        int remaining = offset + length - index;
+        if (remaining == 1) {
+            int s0 = samples[index];
+            int group = ((s0 & 0xff) << 16) | (s0 & 0xff00);
+            out[cursor] = ALPHABET[group >>> 18];
+            out[cursor + 1] = ALPHABET[(group >>> 12) & 0x3f];
+            out[cursor + 2] = ALPHABET[(group >>> 6) & 0x3f];
+            out[cursor + 3] = PAD;
+            cursor += 4;
+        } else if (remaining == 2) {
+            int s0 = samples[index];
+            int s1 = samples[index + 1];
+            int first = ((s0 & 0xff) << 16) | (s0 & 0xff00) | (s1 & 0xff);
+            int second = (s1 & 0xff00) << 8;
+            out[cursor] = ALPHABET[first >>> 18];
+            out[cursor + 1] = ALPHABET[(first >>> 12) & 0x3f];
+            out[cursor + 2] = ALPHABET[(first >>> 6) & 0x3f];
+            out[cursor + 3] = ALPHABET[first & 0x3f];
+            out[cursor + 4] = ALPHABET[second >>> 18];
+            out[cursor + 5] = ALPHABET[(second >>> 12) & 0x3f];
+            out[cursor + 6] = PAD;
+            out[cursor + 7] = PAD;
+            cursor += 8;
+        }
+
+        return new String(out, 0, cursor, StandardCharsets.ISO_8859_1);
+    }
+
+    String encodeBytes(byte[] data, int offset, int length) {
+        byte[] out = scratchFor(((length + 2) / 3) * 4);
+        int cursor = 0;
+        int index = offset;
+        int wholeGroupsEnd = offset + (length / 3) * 3;
+
+        while (index < wholeGroupsEnd) {
+            int group = ((data[index] & 0xff) << 16) | ((data[index + 1] & 0xff) << 8) | (data[index + 2] & 0xff);
+            index += 3;
+            out[cursor] = ALPHABET[group >>> 18];
+            out[cursor + 1] = ALPHABET[(group >>> 12) & 0x3f];
+            out[cursor + 2] = ALPHABET[(group >>> 6) & 0x3f];
+            out[cursor + 3] = ALPHABET[group & 0x3f];
+            cursor += 4;
+        }
+
+        int remaining = offset + length - index;
+        if (remaining > 0) {
+            int group = (data[index] & 0xff) << 16;
+            if (remaining == 2) {
+                group |= (data[index + 1] & 0xff) << 8;
+            }
+            out[cursor] = ALPHABET[group >>> 18];
+            out[cursor + 1] = ALPHABET[(group >>> 12) & 0x3f];
+            out[cursor + 2] = remaining == 2 ? ALPHABET[(group >>> 6) & 0x3f] : PAD;
+            out[cursor + 3] = PAD;
+            cursor += 4;
+        }
+
+        return new String(out, 0, cursor, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] scratchFor(int encodedLength) {
+        if (scratch.length < encodedLength) {
+            scratch = new byte[encodedLength];
+        }
+        return scratch;
+    }
+}
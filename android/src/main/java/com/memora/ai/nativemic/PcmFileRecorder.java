@@ -0,0 +1,324 @@
+package com.memora.ai.nativemic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams mono PCM16 to a WAV or raw file from a dedicated writer thread. The capture path only copies samples into
+ * one of a fixed set of direct buffers and hands full buffers over; the writer drains them through a
+ * {@link FileChannel} and returns them for reuse. If storage stalls long enough that no buffer is free, audio is
+ * dropped and counted rather than blocking capture. For WAV files the RIFF sizes are patched once the writer has
+ * drained everything.
+ */
+final class PcmFileRecorder {
+
+    enum Format {
+        WAV("wav"),
+        RAW("raw");
+
+        final String wireValue;
+
+        Format(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static Format fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (Format format : values()) {
+                if (format.wireValue.equals(value)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum FsyncPolicy {
+        /** Leave flushing to the OS; the file is synced once when the recording closes. */
+        NONE("none"),
+        /** Sync at most once per {@link #PERIODIC_FSYNC_MS} while data is flowing. */
+        PERIODIC("periodic"),
+        /** Sync after every buffer written. */
+        ALWAYS("always");
+
+        final String wireValue;
+
+        FsyncPolicy(String wireValue) {
+            this.wireValue = wireValue;
+        }
+
+        static FsyncPolicy fromWireValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (FsyncPolicy policy : values()) {
+                if (policy.wireValue.equals(value)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final int WAV_HEADER_BYTES = 44;
+    static final long PERIODIC_FSYNC_MS = 1_000;
+
+    private static final int BUFFER_BYTES = 32 * 1024;
+    private static final int BUFFERED_MS = 2_000;
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final File file;
+    private final int sampleRate;
+    private final Format format;
+    private final FsyncPolicy fsyncPolicy;
+    private final FileChannel channel;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+    private final ArrayBlockingQueue<ByteBuffer> filledBuffers;
+    private final Thread writerThread;
+
+    // Producer side, only touched by the capture path.
+    private ByteBuffer current;
+    private long submittedBytes = 0;
+    private long maxLagBytes = 0;
+    private boolean closed = false;
+
+    private volatile long writtenBytes = 0;
+    private final AtomicLong droppedBytes = new AtomicLong(0);
+    private volatile long fsyncCount = 0;
+    private volatile IOException failure;
+
+    private PcmFileRecorder(File file, int sampleRate, Format format, FsyncPolicy fsyncPolicy, FileChannel channel, int bufferCount) {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.format = format;
+        this.fsyncPolicy = fsyncPolicy;
+        this.channel = channel;
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int index = 0; index < bufferCount; index += 1) {
+            freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        this.current = freeBuffers.poll();
+        this.writerThread = new Thread(this::writeLoop, "NativeMicRecorder");
+    }
+
+    static PcmFileRecorder open(File file, int sampleRate, Format format, FsyncPolicy fsyncPolicy) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent + ".");
+        }
+
+        // FileChannel.open needs API 26; the stream's channel truncates the same way and still takes positional writes.
+        FileChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            if (format == Format.WAV) {
+                ByteBuffer header = wavHeader(sampleRate, 0);
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+
+        int bufferCount = Math.max(2, (int) Math.ceil((sampleRate * 2.0 * BUFFERED_MS) / 1_000 / BUFFER_BYTES) + 1);
+        PcmFileRecorder recorder = new PcmFileRecorder(file, sampleRate, format, fsyncPolicy, channel, bufferCount);
+        recorder.writerThread.start();
+        return recorder;
+    }
+
+    /** Producer: queues samples for writing. Never blocks; audio that finds no free buffer is dropped and counted. */
+    void write(short[] samples, int offset, int length) {
+        if (closed) {
+            return;
+        }
+
+        int index = offset;
+        int end = offset + length;
+        while (index < end) {
+            if (current == null) {
+                current = freeBuffers.poll();
+                if (current == null) {
+                    droppedBytes.addAndGet((end - index) * 2L);
+                    return;
+                }
+            }
+
+            int count = Math.min(end - index, current.remaining() / 2);
+            for (int sample = 0; sample < count; sample += 1) {
+                current.putShort(samples[index + sample]);
+            }
+            index += count;
+            submittedBytes += count * 2L;
+
+            if (!current.hasRemaining()) {
+                current.flip();
+                filledBuffers.add(current);
+                current = null;
+            }
+        }
+
+        long lag = submittedBytes - writtenBytes;
+        if (lag > maxLagBytes) {
+            maxLagBytes = lag;
+        }
+    }
+
+    /**
+     * Producer: hands over the last partial buffer and waits up to {@code timeoutMs} for the writer to drain, sync and
+     * finish the file. Returns false if the writer is still busy; it then completes the file on its own.
+     */
+    boolean close(long timeoutMs) throws IOException {
+        if (!closed) {
+            closed = true;
+            if (current != null && current.position() > 0) {
+                current.flip();
+                filledBuffers.add(current);
+            }
+            current = null;
+            filledBuffers.add(END_OF_STREAM);
+        }
+
+        try {
+            writerThread.join(Math.max(1, timeoutMs));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return !writerThread.isAlive();
+    }
+
+    File file() {
+        return file;
+    }
+
+    Format format() {
+        return format;
+    }
+
+    /** Audio bytes that have reached the file, excluding the WAV header. */
+    long writtenBytes() {
+        return writtenBytes;
+    }
+
+    long droppedBytes() {
+        return droppedBytes.get();
+    }
+
+    long fsyncCount() {
+        return fsyncCount;
+    }
+
+    long lagBytes() {
+        return Math.max(0, submittedBytes - writtenBytes);
+    }
+
+    long lagMs() {
+        return bytesToMs(lagBytes());
+    }
+
+    long maxLagMs() {
+        return bytesToMs(maxLagBytes);
+    }
+
+    private long bytesToMs(long bytes) {
+        return (bytes * 1_000L) / (sampleRate * 2L);
+    }
+
+    private void writeLoop() {
+        long lastFsyncAt = System.nanoTime();
+        try {
+            while (true) {
+                ByteBuffer buffer = filledBuffers.take();
+                if (buffer == END_OF_STREAM) {
+                    break;
+                }
+
+                if (failure == null) {
+                    try {
+                        int length = buffer.remaining();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        writtenBytes += length;
+
+                        long now = System.nanoTime();
+                        if (
+                            fsyncPolicy == FsyncPolicy.ALWAYS ||
+                            (fsyncPolicy == FsyncPolicy.PERIODIC && now - lastFsyncAt >= TimeUnit.MILLISECONDS.toNanos(PERIODIC_FSYNC_MS))
+                        ) {
+                            channel.force(false);
+                            fsyncCount += 1;
+                            lastFsyncAt = now;
+                        }
+                    } catch (IOException exception) {
+                        failure = exception;
+                    }
+                } else {
+                    droppedBytes.addAndGet(buffer.remaining());
+                }
+
+                buffer.clear();
+                freeBuffers.offer(buffer);
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            if (failure == null && format == Format.WAV) {
+                ByteBuffer header = wavHeader(sampleRate, writtenBytes);
+                long position = 0;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+            }
+            if (failure == null) {
+                channel.force(true);
+                fsyncCount += 1;
+            }
+        } catch (IOException exception) {
+            failure = exception;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                if (failure == null) {
+                    failure = exception;
+                }
+            }
+        }
+    }
+
+    static ByteBuffer wavHeader(int sampleRate, long dataBytes) {
+        // RIFF sizes are 32-bit; recordings past 4 GiB keep a saturated header, which most readers tolerate.
+        long dataSize = Math.min(dataBytes, 0xFFFF_FFFFL - 36);
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 'R', 'I', 'F', 'F' });
+        header.putInt((int) (36 + dataSize));
+        header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) 1);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * 2);
+        header.putShort((short) 2);
+        header.putShort((short) 16);
+        header.put(new byte[] { 'd', 'a', 't', 'a' });
+        header.putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+}
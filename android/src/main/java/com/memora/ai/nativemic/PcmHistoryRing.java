@@ -0,0 +1,67 @@
+package com.memora.ai.nativemic;
+
+/**
+ * Fixed-size history of the most recent PCM16 frames of one output stream. Frames are addressed by their absolute
+ * position since capture start, so a slice can be located from chunk timestamps long after older audio has been
+ * overwritten. The buffer is allocated once; writing never allocates.
+ */
+final class PcmHistoryRing {
+
+    private final short[] data;
+    private long writtenFrames = 0;
+
+    PcmHistoryRing(int capacityFrames) {
+        this.data = new short[Math.max(1, capacityFrames)];
+    }
+
+    int capacityFrames() {
+        return data.length;
+    }
+
+    void write(short[] samples, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (length > data.length) {
+            // Only the tail survives anyway.
+            offset += length - data.length;
+            writtenFrames += length - data.length;
+            length = data.length;
+        }
+
+        int writeIndex = (int) (writtenFrames % data.length);
+        int firstLength = Math.min(length, data.length - writeIndex);
+        System.arraycopy(samples, offset, data, writeIndex, firstLength);
+        if (firstLength < length) {
+            System.arraycopy(samples, offset + firstLength, data, 0, length - firstLength);
+        }
+        writtenFrames += length;
+    }
+
+    /** Absolute position of the oldest frame still held. */
+    long oldestFrame() {
+        return Math.max(0, writtenFrames - data.length);
+    }
+
+    /** Absolute position one past the newest frame. */
+    long endFrame() {
+        return writtenFrames;
+    }
+
+    /**
+     * Copies frames {@code [fromFrame, fromFrame + length)} into {@code out}. The range must lie within
+     * {@link #oldestFrame()} and {@link #endFrame()}.
+     */
+    void copy(long fromFrame, int length, short[] out, int outOffset) {
+        if (fromFrame < oldestFrame() || fromFrame + length > writtenFrames) {
+            throw new IllegalArgumentException("Requested frames are no longer in the history.");
+        }
+
+        int readIndex = (int) (fromFrame % data.length);
+        int firstLength = Math.min(length, data.length - readIndex);
+        System.arraycopy(data, readIndex, out, outOffset, firstLength);
+        if (firstLength < length) {
+            System.arraycopy(data, 0, out, outOffset + firstLength, length - firstLength);
+        }
+    }
+}
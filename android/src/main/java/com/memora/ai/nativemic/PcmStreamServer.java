@@ -0,0 +1,424 @@
+package com.memora.ai.nativemic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback-only HTTP/1.1 server that streams binary PCM frames to the WebView with chunked transfer encoding.
+ * Payloads are s16le samples, or the stream's compressed encoding: one mu-law byte per sample, one IMA-ADPCM block, or
+ * whole FLAC frames (the STREAMINFO header is returned by {@code startCapture}).
+ *
+ * <p>Clients issue {@code GET /pcm/<stream>?token=<token>} and receive a stream of frames. Each frame is a
+ * {@value #FRAME_HEADER_BYTES}-byte little-endian header followed by the payload:
+ *
+ * <pre>
+ *   0  uint32 payloadBytes
+ *   4  uint32 frames
+ *   8  int64  seq
+ *   16 int64  ptsMs
+ *   24 uint32 flags (bit 0: final chunk, bit 1: speech segment start, bit 2: speech segment end,
+ *             bit 3: silence concealing audio lost while the recorder was rebuilt)
+ * </pre>
+ *
+ * One server is started per capture with a random token; it only binds to 127.0.0.1. At most {@value #MAX_CONNECTIONS}
+ * connections are served at once and request heads are read under a byte and time budget, so a misbehaving page cannot
+ * pile up handler threads.
+ */
+final class PcmStreamServer {
+
+    static final int FRAME_HEADER_BYTES = 28;
+    static final int FLAG_FINAL = 1;
+    static final int FLAG_SEGMENT_START = 2;
+    static final int FLAG_SEGMENT_END = 4;
+    static final int FLAG_CONCEALED = 8;
+
+    private static final int CLIENT_QUEUE_FRAMES = 64;
+    private static final int REQUEST_TIMEOUT_MS = 2_000;
+    private static final int MAX_REQUEST_LINE_CHARS = 4_096;
+    private static final int MAX_REQUEST_HEAD_BYTES = 16_384;
+    static final int MAX_CONNECTIONS = 8;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final Set<String> streams;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedFrames = new AtomicLong(0);
+    private final AtomicInteger connections = new AtomicInteger(0);
+    private final Thread acceptThread;
+    private volatile boolean closed = false;
+
+    private PcmStreamServer(ServerSocket serverSocket, String token, Collection<String> streams) {
+        this.serverSocket = serverSocket;
+        this.token = token;
+        this.streams = new LinkedHashSet<>(streams);
+        this.acceptThread = new Thread(this::acceptLoop, "NativeMicLoopbackAccept");
+        this.acceptThread.setDaemon(true);
+    }
+
+    static PcmStreamServer start(String token, Collection<String> streams) throws IOException {
+        ServerSocket socket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        PcmStreamServer server = new PcmStreamServer(socket, token, streams);
+        server.acceptThread.start();
+        return server;
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    String urlFor(String stream) {
+        return String.format(Locale.US, "http://127.0.0.1:%d/pcm/%s?token=%s", port(), stream, token);
+    }
+
+    int clientCount() {
+        return clients.size();
+    }
+
+    long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /** Queues an encoded frame for every client of {@code stream}; slow clients lose their oldest frame. */
+    void publish(String stream, byte[] frame) {
+        for (Client client : clients) {
+            if (!client.stream.equals(stream)) {
+                continue;
+            }
+            while (!client.queue.offer(frame)) {
+                if (client.queue.poll() != null) {
+                    droppedFrames.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /** Stops accepting connections and ends every open response after its queued frames are written. */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Best-effort shutdown.
+        }
+        for (Client client : clients) {
+            while (!client.queue.offer(END_OF_STREAM)) {
+                if (client.queue.poll() != null) {
+                    droppedFrames.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    static byte[] encodeFrame(long seq, long ptsMs, short[] samples, int frames, boolean finalChunk) {
+        return encodeFrame(seq, ptsMs, samples, frames, finalChunk ? FLAG_FINAL : 0);
+    }
+
+    static byte[] encodeFrame(long seq, long ptsMs, short[] samples, int frames, int flags) {
+        int payloadBytes = frames * 2;
+        byte[] frame = new byte[FRAME_HEADER_BYTES + payloadBytes];
+        int offset = writeHeader(frame, payloadBytes, frames, seq, ptsMs, flags);
+        for (int index = 0; index < frames; index += 1) {
+            short sample = samples[index];
+            frame[offset] = (byte) sample;
+            frame[offset + 1] = (byte) (sample >> 8);
+            offset += 2;
+        }
+        return frame;
+    }
+
+    /** Frames a payload that is already encoded, e.g. mu-law, ADPCM or FLAC, covering {@code frames} samples. */
+    static byte[] encodeFrame(long seq, long ptsMs, byte[] payload, int payloadBytes, int frames, int flags) {
+        byte[] frame = new byte[FRAME_HEADER_BYTES + payloadBytes];
+        int offset = writeHeader(frame, payloadBytes, frames, seq, ptsMs, flags);
+        System.arraycopy(payload, 0, frame, offset, payloadBytes);
+        return frame;
+    }
+
+    private static int writeHeader(byte[] frame, int payloadBytes, int frames, long seq, long ptsMs, int flags) {
+        int offset = 0;
+        offset = putInt(frame, offset, payloadBytes);
+        offset = putInt(frame, offset, frames);
+        offset = putLong(frame, offset, seq);
+        offset = putLong(frame, offset, ptsMs);
+        offset = putInt(frame, offset, flags);
+        return offset;
+    }
+
+    private static int putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+
+    private static int putLong(byte[] target, int offset, long value) {
+        putInt(target, offset, (int) value);
+        putInt(target, offset + 4, (int) (value >>> 32));
+        return offset + 8;
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException exception) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+
+            if (connections.incrementAndGet() > MAX_CONNECTIONS) {
+                connections.decrementAndGet();
+                rejectBusy(socket);
+                continue;
+            }
+            Thread handler = new Thread(() -> handleClient(socket), "NativeMicLoopbackClient");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void handleClient(Socket socket) {
+        Client client = null;
+        try {
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            RequestHead head = new RequestHead(input, MAX_REQUEST_HEAD_BYTES, REQUEST_TIMEOUT_MS);
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+
+            String requestLine = head.readLine(MAX_REQUEST_LINE_CHARS);
+            if (requestLine == null) {
+                return;
+            }
+            while (true) {
+                // Headers are not needed; the token travels in the query string so fetch() needs no preflight.
+                String header = head.readLine(MAX_REQUEST_HEAD_BYTES);
+                if (header == null) {
+                    return;
+                }
+                if (header.isEmpty()) {
+                    break;
+                }
+            }
+
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2) {
+                writeStatus(output, "400 Bad Request");
+                return;
+            }
+            if ("OPTIONS".equals(parts[0])) {
+                writeStatus(output, "204 No Content");
+                return;
+            }
+            if (!"GET".equals(parts[0])) {
+                writeStatus(output, "405 Method Not Allowed");
+                return;
+            }
+
+            String stream = parseStream(parts[1]);
+            if (stream == null || !streams.contains(stream)) {
+                writeStatus(output, "404 Not Found");
+                return;
+            }
+            String presentedToken = parseQueryParameter(parts[1], "token");
+            if (
+                presentedToken == null ||
+                !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), presentedToken.getBytes(StandardCharsets.UTF_8))
+            ) {
+                writeStatus(output, "403 Forbidden");
+                return;
+            }
+            if (closed) {
+                writeStatus(output, "410 Gone");
+                return;
+            }
+
+            output.write(
+                (
+                    "HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: application/octet-stream\r\n" +
+                    "Cache-Control: no-store\r\n" +
+                    "Access-Control-Allow-Origin: *\r\n" +
+                    "Transfer-Encoding: chunked\r\n" +
+                    "Connection: close\r\n\r\n"
+                ).getBytes(StandardCharsets.ISO_8859_1)
+            );
+            output.flush();
+
+            client = new Client(stream);
+            clients.add(client);
+            if (closed) {
+                client.queue.offer(END_OF_STREAM);
+            }
+            streamFrames(client, output);
+        } catch (IOException | InterruptedException ignored) {
+            // Client went away or the capture ended; nothing to report.
+        } finally {
+            if (client != null) {
+                clients.remove(client);
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Best-effort cleanup.
+            }
+            connections.decrementAndGet();
+        }
+    }
+
+    /** Answers a connection over the limit on the accept thread; the reply fits in a fresh socket's send buffer. */
+    private static void rejectBusy(Socket socket) {
+        try {
+            writeStatus(socket.getOutputStream(), "503 Service Unavailable");
+        } catch (IOException ignored) {
+            // The client is turned away either way.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Best-effort cleanup.
+            }
+        }
+    }
+
+    private void streamFrames(Client client, OutputStream output) throws IOException, InterruptedException {
+        while (true) {
+            byte[] frame = client.queue.poll(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (frame == null) {
+                if (closed && client.queue.isEmpty()) {
+                    frame = END_OF_STREAM;
+                } else {
+                    continue;
+                }
+            }
+
+            if (frame == END_OF_STREAM) {
+                output.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                output.flush();
+                return;
+            }
+
+            output.write((Integer.toHexString(frame.length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            output.write(frame);
+            output.write('\r');
+            output.write('\n');
+            if (client.queue.isEmpty()) {
+                output.flush();
+            }
+        }
+    }
+
+    private static void writeStatus(OutputStream output, String status) throws IOException {
+        output.write(
+            (
+                "HTTP/1.1 " +
+                status +
+                "\r\n" +
+                "Access-Control-Allow-Origin: *\r\n" +
+                "Access-Control-Allow-Methods: GET\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n\r\n"
+            ).getBytes(StandardCharsets.ISO_8859_1)
+        );
+        output.flush();
+    }
+
+    static String parseStream(String target) {
+        String path = target;
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+        if (!path.startsWith("/pcm/") || path.length() <= "/pcm/".length()) {
+            return null;
+        }
+        return path.substring("/pcm/".length());
+    }
+
+    static String parseQueryParameter(String target, String name) {
+        int queryIndex = target.indexOf('?');
+        if (queryIndex < 0) {
+            return null;
+        }
+        for (String pair : target.substring(queryIndex + 1).split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return pair.substring(separator + 1);
+            }
+        }
+        return null;
+    }
+
+    /** Reads the request line and headers byte by byte, giving up once the head outgrows its byte or time budget. */
+    private static final class RequestHead {
+
+        private final InputStream input;
+        private final long deadlineNanos;
+        private final StringBuilder line = new StringBuilder();
+        private int remainingBytes;
+
+        RequestHead(InputStream input, int maxBytes, long timeoutMs) {
+            this.input = input;
+            this.remainingBytes = maxBytes;
+            this.deadlineNanos = System.nanoTime() + timeoutMs * 1_000_000L;
+        }
+
+        /** Returns the next line without its terminator, or null when the peer hangs up or a budget runs out. */
+        String readLine(int maxChars) throws IOException {
+            line.setLength(0);
+            while (remainingBytes > 0 && line.length() <= maxChars && System.nanoTime() < deadlineNanos) {
+                int value = input.read();
+                if (value < 0) {
+                    return null;
+                }
+                remainingBytes -= 1;
+                if (value == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                line.append((char) value);
+            }
+            return null;
+        }
+    }
+
+    private static final class Client {
+
+        final String stream;
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_FRAMES);
+
+        Client(String stream) {
+            this.stream = stream;
+        }
+    }
+}
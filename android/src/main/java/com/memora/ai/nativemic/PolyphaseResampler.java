@@ -0,0 +1,202 @@
+package com.memora.ai.nativemic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rational L/M resampler built from a Kaiser-windowed sinc prototype split into L polyphase branches.
+ * Coefficient tables are designed once per ratio and shared by every pipeline that uses that ratio.
+ */
+final class PolyphaseResampler implements NativeMic.Resampler {
+
+    private static final double KAISER_BETA = 8.0;
+    private static final double PASSBAND_ROLLOFF = 0.92;
+    private static final int MIN_TAPS_PER_PHASE = 16;
+    private static final int TAPS_PER_DECIMATION_STEP = 8;
+    private static final int MAX_PHASES = 1_024;
+    private static final int BLOCK_FRAMES = 1_024;
+    private static final Map<Long, float[][]> COEFFICIENT_CACHE = new HashMap<>();
+
+    private final int interpolation;
+    private final int decimation;
+    private final int taps;
+    private final float[][] phases;
+    private final int stepWhole;
+    private final int stepFraction;
+    private final float[] work;
+
+    private int position;
+    private int phase;
+    private long inputFrames = 0;
+    private long outputFrames = 0;
+
+    PolyphaseResampler(int inputSampleRate, int outputSampleRate) {
+        int divisor = gcd(inputSampleRate, outputSampleRate);
+        this.interpolation = outputSampleRate / divisor;
+        this.decimation = inputSampleRate / divisor;
+        if (interpolation > MAX_PHASES) {
+            throw new IllegalArgumentException("Unsupported resampling ratio " + inputSampleRate + " -> " + outputSampleRate + ".");
+        }
+
+        int decimationSteps = (decimation + interpolation - 1) / interpolation;
+        this.taps = Math.max(MIN_TAPS_PER_PHASE, TAPS_PER_DECIMATION_STEP * decimationSteps);
+        this.phases = coefficientsFor(interpolation, decimation, taps);
+        this.stepWhole = decimation / interpolation;
+        this.stepFraction = decimation % interpolation;
+        this.work = new float[taps - 1 + BLOCK_FRAMES];
+
+        // Start half a filter length in so output frame 0 is centred on input frame 0.
+        int delay = (taps * interpolation) / 2;
+        this.position = delay / interpolation;
+        this.phase = delay % interpolation;
+    }
+
+    static boolean supports(int inputSampleRate, int outputSampleRate) {
+        if (inputSampleRate <= 0 || outputSampleRate <= 0) {
+            return false;
+        }
+        return outputSampleRate / gcd(inputSampleRate, outputSampleRate) <= MAX_PHASES;
+    }
+
+    @Override
+    public int maxOutputFrames(int inputFrames) {
+        return (int) (((long) inputFrames * interpolation) / decimation) + 2;
+    }
+
+    @Override
+    public int maxFlushFrames() {
+        return (taps * interpolation) / decimation + 2;
+    }
+
+    @Override
+    public int process(float[] input, int inputOffset, int length, float[] output, int outputOffset) {
+        int written = 0;
+        int consumed = 0;
+        while (consumed < length) {
+            int blockLength = Math.min(BLOCK_FRAMES, length - consumed);
+            System.arraycopy(input, inputOffset + consumed, work, taps - 1, blockLength);
+            written += drain(blockLength, output, outputOffset + written, Integer.MAX_VALUE);
+            consumed += blockLength;
+        }
+        inputFrames += Math.max(0, length);
+        return written;
+    }
+
+    @Override
+    public int flush(float[] output, int outputOffset) {
+        long expectedFrames = (inputFrames * interpolation + decimation - 1) / decimation;
+        int remaining = (int) Math.min(expectedFrames - outputFrames, output.length - outputOffset);
+        if (remaining <= 0) {
+            return 0;
+        }
+
+        int blockLength = Math.min(BLOCK_FRAMES, taps);
+        Arrays.fill(work, taps - 1, taps - 1 + blockLength, 0f);
+        return drain(blockLength, output, outputOffset, remaining);
+    }
+
+    private int drain(int blockLength, float[] output, int outputOffset, int limit) {
+        int written = 0;
+        while (position < blockLength && written < limit) {
+            output[outputOffset + written] = dot(phases[phase], position);
+            written += 1;
+
+            position += stepWhole;
+            phase += stepFraction;
+            if (phase >= interpolation) {
+                phase -= interpolation;
+                position += 1;
+            }
+        }
+
+        System.arraycopy(work, blockLength, work, 0, taps - 1);
+        position -= blockLength;
+        outputFrames += written;
+        return written;
+    }
+
+    private float dot(float[] coefficients, int start) {
+        float sum0 = 0f;
+        float sum1 = 0f;
+        float sum2 = 0f;
+        float sum3 = 0f;
+        int index = 0;
+        int unrolledEnd = taps & ~3;
+        for (; index < unrolledEnd; index += 4) {
+            sum0 += coefficients[index] * work[start + index];
+            sum1 += coefficients[index + 1] * work[start + index + 1];
+            sum2 += coefficients[index + 2] * work[start + index + 2];
+            sum3 += coefficients[index + 3] * work[start + index + 3];
+        }
+        for (; index < taps; index += 1) {
+            sum0 += coefficients[index] * work[start + index];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private static float[][] coefficientsFor(int interpolation, int decimation, int taps) {
+        long key = ((long) interpolation << 32) | decimation;
+        synchronized (COEFFICIENT_CACHE) {
+            float[][] cached = COEFFICIENT_CACHE.get(key);
+            if (cached == null) {
+                cached = designPhases(interpolation, decimation, taps);
+                COEFFICIENT_CACHE.put(key, cached);
+            }
+            return cached;
+        }
+    }
+
+    private static float[][] designPhases(int interpolation, int decimation, int taps) {
+        int length = taps * interpolation;
+        double cutoff = (PASSBAND_ROLLOFF * 0.5) / Math.max(interpolation, decimation);
+        double center = (length - 1) / 2.0;
+        double windowNorm = besselI0(KAISER_BETA);
+
+        double[] prototype = new double[length];
+        for (int index = 0; index < length; index += 1) {
+            double x = index - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double ratio = length > 1 ? (2.0 * index) / (length - 1) - 1 : 0;
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / windowNorm;
+            prototype[index] = sinc * window;
+        }
+
+        // Each branch is stored oldest-sample-first and normalised to unity DC gain.
+        float[][] phases = new float[interpolation][taps];
+        for (int branch = 0; branch < interpolation; branch += 1) {
+            double sum = 0;
+            for (int tap = 0; tap < taps; tap += 1) {
+                sum += prototype[branch + tap * interpolation];
+            }
+            double scale = sum != 0 ? 1.0 / sum : 0;
+            for (int tap = 0; tap < taps; tap += 1) {
+                phases[branch][taps - 1 - tap] = (float) (prototype[branch + tap * interpolation] * scale);
+            }
+        }
+        return phases;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+        for (int k = 1; k < 64; k += 1) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int next = a % b;
+            a = b;
+            b = next;
+        }
+        return a;
+    }
+}
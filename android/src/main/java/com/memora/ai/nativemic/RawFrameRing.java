@@ -0,0 +1,146 @@
+package com.memora.ai.nativemic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring of preallocated PCM16 or float blocks. The AudioRecord read thread claims a slot,
+ * reads into it and publishes; the processing worker peeks and releases. Neither side ever takes a lock.
+ */
+final class RawFrameRing {
+
+    private final short[][] slots;
+    private final float[][] floatSlots;
+    private final int[] lengths;
+    private final long[] publishedAtNanos;
+    private final long[] gapFramesBefore;
+    private final long[] overrunFramesBefore;
+    private final int mask;
+    private final int blockFrames;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong overrunBlocks = new AtomicLong(0);
+    private final AtomicLong overrunFrames = new AtomicLong(0);
+
+    RawFrameRing(int slotCount, int blockFrames) {
+        this(slotCount, blockFrames, false);
+    }
+
+    RawFrameRing(int slotCount, int blockFrames, boolean floatSamples) {
+        int capacity = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.slots = floatSamples ? null : new short[capacity][blockFrames];
+        this.floatSlots = floatSamples ? new float[capacity][blockFrames] : null;
+        this.lengths = new int[capacity];
+        this.publishedAtNanos = new long[capacity];
+        this.gapFramesBefore = new long[capacity];
+        this.overrunFramesBefore = new long[capacity];
+        this.mask = capacity - 1;
+        this.blockFrames = blockFrames;
+    }
+
+    /** Producer: returns the next free block, or null when the consumer has fallen a full ring behind. */
+    short[] claim() {
+        return hasFreeSlot() ? slots[(int) (head.get() & mask)] : null;
+    }
+
+    /** Producer: float counterpart of {@link #claim()} for rings created with float samples. */
+    float[] claimFloat() {
+        return hasFreeSlot() ? floatSlots[(int) (head.get() & mask)] : null;
+    }
+
+    /** Producer: makes the block returned by the last {@link #claim()} visible to the consumer. */
+    void publish(int frameCount) {
+        publish(frameCount, System.nanoTime());
+    }
+
+    /** Producer: {@link #publish(int)} with the {@code System.nanoTime()} at which the read returned. */
+    void publish(int frameCount, long readAtNanos) {
+        publish(frameCount, readAtNanos, 0);
+    }
+
+    /** Producer: {@link #publish(int, long)} for a block preceded by {@code gapFrames} of input that was never read. */
+    void publish(int frameCount, long readAtNanos, long gapFrames) {
+        long position = head.get();
+        int slot = (int) (position & mask);
+        lengths[slot] = frameCount;
+        publishedAtNanos[slot] = readAtNanos;
+        gapFramesBefore[slot] = gapFrames;
+        overrunFramesBefore[slot] = overrunFrames.get();
+        head.lazySet(position + 1);
+    }
+
+    /** Producer: accounts for a block that was read but could not be queued. */
+    void recordOverrun(int frameCount) {
+        overrunBlocks.incrementAndGet();
+        overrunFrames.addAndGet(frameCount);
+    }
+
+    /** Consumer: frame count of the oldest published block, or -1 when empty. */
+    int peekLength() {
+        long position = tail.get();
+        if (position >= head.get()) {
+            return -1;
+        }
+        return lengths[(int) (position & mask)];
+    }
+
+    /** Consumer: the oldest published block; only valid after {@link #peekLength()} returned a length. */
+    short[] peek() {
+        return slots[(int) (tail.get() & mask)];
+    }
+
+    float[] peekFloat() {
+        return floatSlots[(int) (tail.get() & mask)];
+    }
+
+    /** Consumer: when the oldest published block was read, on the {@code System.nanoTime()} clock. */
+    long peekReadAtNanos() {
+        return publishedAtNanos[(int) (tail.get() & mask)];
+    }
+
+    /** Consumer: frames lost right before the oldest published block, which the consumer conceals first. */
+    long peekGapFrames() {
+        return gapFramesBefore[(int) (tail.get() & mask)];
+    }
+
+    /** Consumer: {@link #overrunFrames()} as it stood when the oldest published block was published. */
+    long peekOverrunFrames() {
+        return overrunFramesBefore[(int) (tail.get() & mask)];
+    }
+
+    /** Consumer: hands the oldest block back to the producer. */
+    void release() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    boolean isFloat() {
+        return floatSlots != null;
+    }
+
+    boolean isEmpty() {
+        return tail.get() >= head.get();
+    }
+
+    int bufferedBlocks() {
+        return (int) Math.max(0, head.get() - tail.get());
+    }
+
+    int capacityBlocks() {
+        return lengths.length;
+    }
+
+    int blockFrames() {
+        return blockFrames;
+    }
+
+    long overrunBlocks() {
+        return overrunBlocks.get();
+    }
+
+    long overrunFrames() {
+        return overrunFrames.get();
+    }
+
+    private boolean hasFreeSlot() {
+        return head.get() - tail.get() < lengths.length;
+    }
+}
@@ -0,0 +1,134 @@
+package com.memora.ai.nativemic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Resamples one input block once per distinct output rate instead of once per output stream. Each rate is a stage
+ * fed either by the input or, when a higher requested rate below the input is an integer multiple of it, by that
+ * stage's already band-limited output (48k -> 16k -> 8k), so cost scales with the number of distinct stages.
+ * Streams at the input rate read the input block directly.
+ */
+final class ResamplingGraph {
+
+    /** One rate in the graph; {@link #samples}/{@link #offset}/{@link #length} describe its latest output. */
+    static final class Stage {
+
+        final int sampleRate;
+        final Stage parent;
+        final NativeMic.Resampler resampler;
+        final int capacity;
+        private final float[] output;
+        float[] samples;
+        int offset;
+        int length;
+
+        private Stage(int sampleRate, Stage parent, NativeMic.Resampler resampler, int capacity) {
+            this.sampleRate = sampleRate;
+            this.parent = parent;
+            this.resampler = resampler;
+            this.capacity = capacity;
+            this.output = resampler != null ? new float[capacity] : null;
+        }
+
+        boolean isInput() {
+            return parent == null;
+        }
+
+        String resamplerName() {
+            if (resampler == null) {
+                return "none";
+            }
+            return resampler instanceof PolyphaseResampler ? "sinc" : "linear";
+        }
+    }
+
+    private final Stage input;
+    /** Processing order; an array so the per-block loops do not allocate iterators. */
+    private final Stage[] stages;
+
+    ResamplingGraph(int inputSampleRate, Iterable<Integer> outputSampleRates, int maxInputFrames, NativeMic.ResamplerQuality quality) {
+        this.input = new Stage(inputSampleRate, null, null, Math.max(1, maxInputFrames));
+
+        // Highest rates first, so every possible parent exists before the stages that could hang off it.
+        TreeSet<Integer> rates = new TreeSet<>(Collections.reverseOrder());
+        for (Integer rate : outputSampleRates) {
+            if (rate != inputSampleRate) {
+                rates.add(rate);
+            }
+        }
+        List<Stage> ordered = new ArrayList<>(rates.size());
+        for (int rate : rates) {
+            Stage parent = input;
+            for (Stage candidate : ordered) {
+                if (candidate.sampleRate < inputSampleRate && candidate.sampleRate % rate == 0) {
+                    // Later candidates are lower, so the last match is the closest rate above this one.
+                    parent = candidate;
+                }
+            }
+            NativeMic.Resampler resampler = NativeMic.StreamPipeline.createResampler(parent.sampleRate, rate, quality);
+            int capacity = resampler.maxOutputFrames(parent.capacity) + resampler.maxFlushFrames();
+            ordered.add(new Stage(rate, parent, resampler, capacity));
+        }
+        this.stages = ordered.toArray(new Stage[0]);
+    }
+
+    int inputSampleRate() {
+        return input.sampleRate;
+    }
+
+    int maxInputFrames() {
+        return input.capacity;
+    }
+
+    /** The stage producing {@code sampleRate}; the input stage when it matches the input rate. */
+    Stage stage(int sampleRate) {
+        if (sampleRate == input.sampleRate) {
+            return input;
+        }
+        for (Stage stage : stages) {
+            if (stage.sampleRate == sampleRate) {
+                return stage;
+            }
+        }
+        throw new IllegalArgumentException("No resampling stage for " + sampleRate + " Hz.");
+    }
+
+    /** Resampling stages in processing order, excluding the input. */
+    List<Stage> stages() {
+        return Collections.unmodifiableList(Arrays.asList(stages));
+    }
+
+    /** Runs at most {@link #maxInputFrames()} input frames through every stage. */
+    void process(float[] samples, int offset, int length) {
+        input.samples = samples;
+        input.offset = offset;
+        input.length = length;
+        for (int index = 0; index < stages.length; index += 1) {
+            Stage stage = stages[index];
+            Stage parent = stage.parent;
+            stage.samples = stage.output;
+            stage.offset = 0;
+            stage.length = stage.resampler.process(parent.samples, parent.offset, parent.length, stage.output, 0);
+        }
+    }
+
+    /** Drains every stage's filter delay, feeding each parent's tail through its children before they flush. */
+    void flush() {
+        input.length = 0;
+        for (int index = 0; index < stages.length; index += 1) {
+            Stage stage = stages[index];
+            Stage parent = stage.parent;
+            int written = parent.length > 0
+                ? stage.resampler.process(parent.samples, parent.offset, parent.length, stage.output, 0)
+                : 0;
+            written += stage.resampler.flush(stage.output, written);
+            stage.samples = stage.output;
+            stage.offset = 0;
+            stage.length = written;
+        }
+    }
+}
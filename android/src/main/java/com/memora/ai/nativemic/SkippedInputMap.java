@@ -0,0 +1,78 @@
+package com.memora.ai.nativemic;
+
+import java.util.Arrays;
+
+/**
+ * Input frames lost to ring overruns, as a step function of the processed input position. Processed frames are what
+ * reached the pipelines; captured frames also count the ones that were read but dropped. Mapping a position between
+ * the two has to use the frames skipped before that position rather than the total so far, or a later overrun would
+ * shift the timestamps of audio captured before it. Only the worker records steps; not thread-safe.
+ */
+final class SkippedInputMap {
+
+    /** Steps kept; past this the oldest is dropped, which only affects audio older than that many overruns. */
+    static final int MAX_STEPS = 1_024;
+
+    private long[] processedFrames = new long[16];
+    private long[] skippedTotals = new long[16];
+    private int count = 0;
+
+    void reset() {
+        count = 0;
+    }
+
+    /** Records that {@code skippedTotal} frames had been skipped before processed frame {@code processedFrame}. */
+    void record(long processedFrame, long skippedTotal) {
+        if (skippedTotal == skippedFrames()) {
+            return;
+        }
+        if (count > 0 && processedFrames[count - 1] == processedFrame) {
+            skippedTotals[count - 1] = skippedTotal;
+            return;
+        }
+        if (count == MAX_STEPS) {
+            System.arraycopy(processedFrames, 1, processedFrames, 0, count - 1);
+            System.arraycopy(skippedTotals, 1, skippedTotals, 0, count - 1);
+            count -= 1;
+        } else if (count == processedFrames.length) {
+            int capacity = Math.min(MAX_STEPS, count * 2);
+            processedFrames = Arrays.copyOf(processedFrames, capacity);
+            skippedTotals = Arrays.copyOf(skippedTotals, capacity);
+        }
+        processedFrames[count] = processedFrame;
+        skippedTotals[count] = skippedTotal;
+        count += 1;
+    }
+
+    /** Frames skipped so far. */
+    long skippedFrames() {
+        return count > 0 ? skippedTotals[count - 1] : 0;
+    }
+
+    /** The captured position of processed frame {@code processedFrame}. */
+    long capturedFrameAt(long processedFrame) {
+        for (int step = count - 1; step >= 0; step -= 1) {
+            if (processedFrames[step] <= processedFrame) {
+                return processedFrame + skippedTotals[step];
+            }
+        }
+        return processedFrame;
+    }
+
+    /**
+     * The processed position of captured frame {@code capturedFrame}. A frame that was skipped maps to the first frame
+     * processed after it.
+     */
+    long processedFrameAt(long capturedFrame) {
+        for (int step = count - 1; step >= 0; step -= 1) {
+            if (capturedFrame >= processedFrames[step] + skippedTotals[step]) {
+                return capturedFrame - skippedTotals[step];
+            }
+            long skippedBefore = step > 0 ? skippedTotals[step - 1] : 0;
+            if (capturedFrame >= processedFrames[step] + skippedBefore) {
+                return processedFrames[step];
+            }
+        }
+        return capturedFrame;
+    }
+}
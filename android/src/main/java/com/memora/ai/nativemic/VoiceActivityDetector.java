@@ -0,0 +1,224 @@
+package com.memora.ai.nativemic;
+
+/**
+ * Frame-based voice activity detector for mono input at any capture rate.
+ *
+ * <p>Each 10 ms frame is scored on three features: energy above an adaptive noise floor, the share of energy in the
+ * 300-3400 Hz speech band, and zero-crossing rate. Stationary noise pulls the floor up, so fans and hum stop
+ * registering, while a quiet voice over a quiet room still clears it. Activity starts after a short run of speech
+ * frames and is held for a hangover period after the last one.
+ */
+final class VoiceActivityDetector {
+
+    static final int DEFAULT_HANGOVER_MS = 300;
+
+    private static final int FRAME_MS = 10;
+    private static final int CALIBRATION_FRAMES = 10;
+    private static final int ONSET_FRAMES = 3;
+    private static final double SPEECH_SNR_DB = 10;
+    private static final double STRONG_SPEECH_SNR_DB = 20;
+    private static final double MIN_SPEECH_BAND_RATIO = 0.4;
+    private static final double MIN_STRONG_SPEECH_BAND_RATIO = 0.1;
+    private static final double MAX_VOICED_ZCR_HZ = 3_500;
+    private static final double MIN_SPEECH_DB = -70;
+    private static final double MIN_FLOOR_DB = -90;
+    private static final double MAX_FLOOR_DB = -10;
+    private static final double FLOOR_FALL_RATE = 0.3;
+    private static final double FLOOR_RISE_RATE = 0.02;
+    private static final double FLOOR_RISE_RATE_IN_SPEECH = 0.001;
+    private static final double SPEECH_BAND_LOW_HZ = 300;
+    private static final double SPEECH_BAND_HIGH_HZ = 3_400;
+
+    private final int sampleRate;
+    private final int frameLength;
+    private final int hangoverFrames;
+    private final Biquad bandHighPass;
+    private final Biquad bandLowPass;
+
+    private int frameFill = 0;
+    private double frameEnergy = 0;
+    private double frameBandEnergy = 0;
+    private int frameCrossings = 0;
+    private boolean previousPositive = false;
+
+    private long framesSeen = 0;
+    private double noiseFloorDb = MIN_FLOOR_DB;
+    private double lastEnergyDb = MIN_FLOOR_DB;
+    private double lastSnrDb = 0;
+    private int speechRun = 0;
+    private int hangoverRemaining = 0;
+    private boolean speech = false;
+    private long speechSegments = 0;
+
+    VoiceActivityDetector(int sampleRate) {
+        this(sampleRate, DEFAULT_HANGOVER_MS);
+    }
+
+    VoiceActivityDetector(int sampleRate, int hangoverMs) {
+        this.sampleRate = sampleRate;
+        this.frameLength = Math.max(1, (sampleRate * FRAME_MS) / 1_000);
+        this.hangoverFrames = Math.max(0, hangoverMs / FRAME_MS);
+        this.bandHighPass = Biquad.highPass(sampleRate, SPEECH_BAND_LOW_HZ);
+        this.bandLowPass = Biquad.lowPass(sampleRate, Math.min(SPEECH_BAND_HIGH_HZ, sampleRate * 0.45));
+    }
+
+    void process(float[] samples, int offset, int length) {
+        for (int index = offset; index < offset + length; index += 1) {
+            processSample(samples[index]);
+        }
+    }
+
+    void processPcm16(short[] samples, int length) {
+        for (int index = 0; index < length; index += 1) {
+            processSample(samples[index] / 32768.0f);
+        }
+    }
+
+    void processSilence(int length) {
+        for (int index = 0; index < length; index += 1) {
+            processSample(0f);
+        }
+    }
+
+    boolean isSpeech() {
+        return speech;
+    }
+
+    double noiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    double lastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    double lastSnrDb() {
+        return lastSnrDb;
+    }
+
+    long speechSegments() {
+        return speechSegments;
+    }
+
+    private void processSample(float sample) {
+        double band = bandLowPass.process(bandHighPass.process(sample));
+        frameEnergy += (double) sample * sample;
+        frameBandEnergy += band * band;
+        boolean positive = sample >= 0;
+        if (positive != previousPositive) {
+            frameCrossings += 1;
+            previousPositive = positive;
+        }
+
+        frameFill += 1;
+        if (frameFill >= frameLength) {
+            finishFrame();
+        }
+    }
+
+    private void finishFrame() {
+        double meanSquare = frameEnergy / frameLength;
+        double energyDb = Math.max(MIN_FLOOR_DB - 10, 10 * Math.log10(meanSquare + 1e-12));
+        double bandRatio = frameEnergy > 0 ? frameBandEnergy / frameEnergy : 0;
+        double zeroCrossingHz = (frameCrossings * (double) sampleRate) / (2.0 * frameLength);
+
+        frameFill = 0;
+        frameEnergy = 0;
+        frameBandEnergy = 0;
+        frameCrossings = 0;
+
+        framesSeen += 1;
+        lastEnergyDb = energyDb;
+        if (framesSeen == 1) {
+            noiseFloorDb = clampFloor(energyDb);
+        }
+        lastSnrDb = energyDb - noiseFloorDb;
+
+        boolean speechFrame = false;
+        if (framesSeen > CALIBRATION_FRAMES && energyDb > MIN_SPEECH_DB) {
+            boolean voiced = lastSnrDb > SPEECH_SNR_DB && bandRatio > MIN_SPEECH_BAND_RATIO && zeroCrossingHz < MAX_VOICED_ZCR_HZ;
+            // Loud frames qualify with little speech-band energy, so fricatives count but rumble and hum do not.
+            boolean strong = lastSnrDb > STRONG_SPEECH_SNR_DB && bandRatio > MIN_STRONG_SPEECH_BAND_RATIO;
+            speechFrame = voiced || strong;
+        }
+
+        updateNoiseFloor(energyDb, speechFrame);
+
+        if (speechFrame) {
+            speechRun += 1;
+            if (!speech && speechRun >= ONSET_FRAMES) {
+                speech = true;
+                speechSegments += 1;
+            }
+            if (speech) {
+                hangoverRemaining = hangoverFrames;
+            }
+        } else {
+            speechRun = 0;
+            if (speech) {
+                if (hangoverRemaining > 0) {
+                    hangoverRemaining -= 1;
+                } else {
+                    speech = false;
+                }
+            }
+        }
+    }
+
+    private void updateNoiseFloor(double energyDb, boolean speechFrame) {
+        double rate;
+        if (framesSeen <= CALIBRATION_FRAMES || energyDb < noiseFloorDb) {
+            rate = FLOOR_FALL_RATE;
+        } else if (speechFrame || speech) {
+            rate = FLOOR_RISE_RATE_IN_SPEECH;
+        } else {
+            rate = FLOOR_RISE_RATE;
+        }
+        noiseFloorDb = clampFloor(noiseFloorDb + (energyDb - noiseFloorDb) * rate);
+    }
+
+    private static double clampFloor(double value) {
+        return Math.max(MIN_FLOOR_DB, Math.min(MAX_FLOOR_DB, value));
+    }
+
+    /** Second-order Butterworth section (RBJ cookbook, Q = 1/sqrt(2)) in direct form II transposed. */
+    private static final class Biquad {
+
+        private final double b0;
+        private final double b1;
+        private final double b2;
+        private final double a1;
+        private final double a2;
+        private double z1 = 0;
+        private double z2 = 0;
+
+        private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+            this.b0 = b0 / a0;
+            this.b1 = b1 / a0;
+            this.b2 = b2 / a0;
+            this.a1 = a1 / a0;
+            this.a2 = a2 / a0;
+        }
+
+        static Biquad highPass(int sampleRate, double cutoffHz) {
+            double omega = (2 * Math.PI * cutoffHz) / sampleRate;
+            double alpha = Math.sin(omega) / Math.sqrt(2);
+            double cos = Math.cos(omega);
+            return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+        }
+
+        static Biquad lowPass(int sampleRate, double cutoffHz) {
+            double omega = (2 * Math.PI * cutoffHz) / sampleRate;
+            double alpha = Math.sin(omega) / Math.sqrt(2);
+            double cos = Math.cos(omega);
+            return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+        }
+
+        double process(double input) {
+            double output = b0 * input + z1;
+            z1 = b1 * input - a1 * output + z2;
+            z2 = b2 * input - a2 * output;
+            return output;
+        }
+    }
+}
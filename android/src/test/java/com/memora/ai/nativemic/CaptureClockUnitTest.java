@@ -0,0 +1,82 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class CaptureClockUnitTest {
+
+    private static final long START_NANOS = 5_000_000_000L;
+
+    @Test
+    public void staysOnTheNominalClockWithoutTimestamps() {
+        CaptureClock clock = new CaptureClock(48_000, START_NANOS);
+
+        assertFalse(clock.hasHardwareTimestamps());
+        assertEquals(START_NANOS + 1_000_000_000L, clock.nanosAtFrame(48_000));
+        assertEquals(48_000, clock.frameAtNanos(START_NANOS + 1_000_000_000L));
+        assertEquals(0, clock.driftPpm(), 0);
+        assertEquals(48_000, clock.estimatedSampleRate(), 0);
+    }
+
+    @Test
+    public void fitsTheRealRateThroughTimestampJitter() {
+        // A "48 kHz" device whose crystal actually runs at 48010 Hz, captured 12 ms before it was read.
+        double actualRate = 48_010;
+        CaptureClock clock = new CaptureClock(48_000, START_NANOS);
+        Random jitter = new Random(7);
+
+        for (long frame = 0; frame <= 48_000L * 60; frame += 24_000) {
+            long truth = START_NANOS + 12_000_000L + Math.round(frame * 1e9 / actualRate);
+            clock.addTimestamp(frame, truth + (long) ((jitter.nextDouble() - 0.5) * 400_000));
+        }
+
+        assertTrue(clock.isFitted());
+        assertEquals(208.3, clock.driftPpm(), 5);
+        assertEquals(actualRate, clock.estimatedSampleRate(), 0.3);
+
+        // The nominal clock would be 12 ms early at the start and 12.5 ms early a minute in; the fit is within 0.5 ms.
+        long frame = 48_000L * 61;
+        long truth = START_NANOS + 12_000_000L + Math.round(frame * 1e9 / actualRate);
+        assertEquals(truth, clock.nanosAtFrame(frame), 500_000);
+        assertEquals(frame, clock.frameAtNanos(truth), 24);
+    }
+
+    @Test
+    public void ignoresIsolatedGlitchesButFollowsARealJump() {
+        CaptureClock clock = new CaptureClock(16_000, START_NANOS);
+        long frame = 0;
+        for (; frame <= 16_000L * 10; frame += 8_000) {
+            clock.addTimestamp(frame, START_NANOS + frame * 62_500L);
+        }
+        assertTrue(clock.isFitted());
+
+        clock.addTimestamp(frame, START_NANOS + frame * 62_500L + 40_000_000L);
+        assertEquals(1, clock.rejectedSamples());
+        assertEquals(START_NANOS + frame * 62_500L, clock.nanosAtFrame(frame), 100_000);
+        frame += 8_000;
+
+        // The route changed and the clock now reads 30 ms later for good.
+        for (int index = 0; index < CaptureClock.MAX_CONSECUTIVE_REJECTS; index += 1, frame += 8_000) {
+            clock.addTimestamp(frame, START_NANOS + frame * 62_500L + 30_000_000L);
+        }
+        assertEquals(START_NANOS + frame * 62_500L + 30_000_000L, clock.nanosAtFrame(frame), 100_000);
+    }
+
+    @Test
+    public void positionsGoingBackwardsRestartTheWindow() {
+        CaptureClock clock = new CaptureClock(16_000, START_NANOS);
+        for (long frame = 0; frame <= 16_000L * 4; frame += 8_000) {
+            clock.addTimestamp(frame, START_NANOS + frame * 62_500L);
+        }
+        assertTrue(clock.isFitted());
+
+        clock.addTimestamp(0, START_NANOS + 10_000_000_000L);
+
+        assertFalse(clock.isFitted());
+        assertEquals(START_NANOS + 10_000_000_000L, clock.nanosAtFrame(0));
+    }
+}
@@ -0,0 +1,87 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ChannelDownmixerUnitTest {
+
+    @Test
+    public void averageLeftAndRightMixInPlace() {
+        short[] interleaved = { 100, 300, -200, -400, 32_767, 32_767, -32_768, 0 };
+
+        short[] average = interleaved.clone();
+        new ChannelDownmixer(2, NativeMic.ChannelMix.AVERAGE).downmix(average, 4);
+        assertArrayEquals(new short[] { 200, -300, 32_767, -16_384 }, Arrays.copyOf(average, 4));
+
+        short[] left = interleaved.clone();
+        new ChannelDownmixer(2, NativeMic.ChannelMix.LEFT).downmix(left, 4);
+        assertArrayEquals(new short[] { 100, -200, 32_767, -32_768 }, Arrays.copyOf(left, 4));
+
+        short[] right = interleaved.clone();
+        new ChannelDownmixer(2, NativeMic.ChannelMix.RIGHT).downmix(right, 4);
+        assertArrayEquals(new short[] { 300, -400, 32_767, 0 }, Arrays.copyOf(right, 4));
+    }
+
+    @Test
+    public void floatAverageMatchesPcm16Average() {
+        float[] interleaved = { 0.25f, 0.75f, -0.5f, 0.5f, 1.0f, -1.0f };
+
+        new ChannelDownmixer(2, NativeMic.ChannelMix.AVERAGE).downmix(interleaved, 3);
+
+        assertEquals(0.5f, interleaved[0], 0f);
+        assertEquals(0f, interleaved[1], 0f);
+        assertEquals(0f, interleaved[2], 0f);
+    }
+
+    @Test
+    public void monoInputIsLeftUntouched() {
+        short[] samples = { 1, 2, 3, 4 };
+
+        ChannelDownmixer downmixer = new ChannelDownmixer(1, NativeMic.ChannelMix.LOUDEST);
+        downmixer.downmix(samples, 4);
+
+        assertArrayEquals(new short[] { 1, 2, 3, 4 }, samples);
+    }
+
+    @Test
+    public void loudestFollowsTheLouderChannelWithHysteresis() {
+        ChannelDownmixer downmixer = new ChannelDownmixer(2, NativeMic.ChannelMix.LOUDEST);
+        short[] block = new short[2 * 960];
+
+        // Right is clearly louder: the downmixer moves to it and copies it from the next block on.
+        for (int iteration = 0; iteration < 5; iteration += 1) {
+            fill(block, 1_000, 8_000);
+            downmixer.downmix(block, 960);
+        }
+        assertEquals(1, downmixer.activeChannel());
+        fill(block, 1_000, 8_000);
+        downmixer.downmix(block, 960);
+        assertEquals(8_000, block[0]);
+
+        // Left creeping just above right is not enough to switch back.
+        for (int iteration = 0; iteration < 50; iteration += 1) {
+            fill(block, 9_000, 8_000);
+            downmixer.downmix(block, 960);
+        }
+        assertEquals(1, downmixer.activeChannel());
+
+        // A 6 dB lead is.
+        for (int iteration = 0; iteration < 50; iteration += 1) {
+            fill(block, 16_000, 8_000);
+            downmixer.downmix(block, 960);
+        }
+        assertEquals(0, downmixer.activeChannel());
+        assertEquals(-1, new ChannelDownmixer(2, NativeMic.ChannelMix.AVERAGE).activeChannel());
+    }
+
+    private static void fill(short[] block, int left, int right) {
+        for (int frame = 0; frame < block.length / 2; frame += 1) {
+            int sign = (frame & 1) == 0 ? 1 : -1;
+            block[frame * 2] = (short) (sign * left);
+            block[frame * 2 + 1] = (short) (sign * right);
+        }
+    }
+}
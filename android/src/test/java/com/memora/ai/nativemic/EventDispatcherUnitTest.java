@@ -0,0 +1,109 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EventDispatcherUnitTest {
+
+    @Test
+    public void deliversEventsInOrderOffTheCallingThread() throws Exception {
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        EventDispatcher<Integer> dispatcher = new EventDispatcher<>("test", 8, 0, (eventName, payload) -> {
+            delivered.add(eventName + ":" + payload);
+            threads.add(Thread.currentThread());
+            done.countDown();
+        });
+
+        dispatcher.dispatch("a", 1);
+        dispatcher.dispatch("b", 2);
+        dispatcher.dispatch("a", 3);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("a:1", "b:2", "a:3"), delivered);
+        assertFalse(threads.contains(Thread.currentThread()));
+        dispatcher.close();
+        assertEquals(3, dispatcher.stats().dispatchedEvents);
+    }
+
+    @Test
+    public void fullQueueDropsOldestButKeepsReliableAndCoalescesLevels() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstDelivered = new CountDownLatch(1);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        EventDispatcher<Integer> dispatcher = new EventDispatcher<>("test", 3, 0, (eventName, payload) -> {
+            firstDelivered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(eventName + ":" + payload);
+        });
+        dispatcher.setPolicy("pcm", EventDispatcher.DeliveryPolicy.DROP_OLDEST);
+        dispatcher.setPolicy("level", EventDispatcher.DeliveryPolicy.COALESCE);
+
+        // The first event occupies the dispatch thread so the rest stay queued.
+        dispatcher.dispatch("state", 0);
+        assertTrue(firstDelivered.await(2, TimeUnit.SECONDS));
+
+        dispatcher.dispatch("pcm", 1);
+        dispatcher.dispatch("level", 1);
+        dispatcher.dispatch("level", 2);
+        dispatcher.dispatch("pcm", 2);
+        dispatcher.dispatch("pcm", 3);
+        dispatcher.dispatch("pcm", 4);
+        dispatcher.dispatch("error", 0);
+
+        EventDispatcher.Stats stats = dispatcher.stats();
+        assertEquals(4, stats.queueDepth);
+        assertEquals(1, stats.coalescedEvents);
+        assertEquals(2, stats.droppedEvents);
+        assertEquals(Long.valueOf(1), stats.droppedByEvent.get("pcm"));
+        assertEquals(Long.valueOf(1), stats.droppedByEvent.get("level"));
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals(List.of("state:0", "pcm:2", "pcm:3", "pcm:4", "error:0"), delivered);
+    }
+
+    @Test
+    public void blockPolicyWaitsForRoomBeforeDropping() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstDelivered = new CountDownLatch(1);
+        EventDispatcher<Integer> dispatcher = new EventDispatcher<>("test", 1, 20, (eventName, payload) -> {
+            firstDelivered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.setDefaultPolicy(EventDispatcher.DeliveryPolicy.BLOCK);
+
+        dispatcher.dispatch("pcm", 0);
+        assertTrue(firstDelivered.await(2, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch("pcm", 1));
+
+        long startedAt = System.nanoTime();
+        assertTrue(dispatcher.dispatch("pcm", 2));
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(15));
+
+        EventDispatcher.Stats stats = dispatcher.stats();
+        assertEquals(1, stats.blockedEnqueues);
+        assertEquals(1, stats.droppedEvents);
+        assertEquals(1, stats.queueDepth);
+
+        release.countDown();
+        dispatcher.close();
+    }
+}
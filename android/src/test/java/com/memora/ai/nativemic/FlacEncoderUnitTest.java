@@ -0,0 +1,184 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.jflac.FLACDecoder;
+import org.jflac.frame.ChannelConstant;
+import org.jflac.frame.ChannelLPC;
+import org.jflac.frame.ChannelVerbatim;
+import org.jflac.frame.Frame;
+import org.jflac.metadata.StreamInfo;
+import org.jflac.util.ByteData;
+import org.junit.Test;
+
+public class FlacEncoderUnitTest {
+
+    @Test
+    public void streamHeaderIsAValidStreamInfoBlock() throws IOException {
+        byte[] header = new FlacEncoder(48_000).streamHeader();
+        assertEquals(FlacEncoder.STREAM_HEADER_BYTES, header.length);
+
+        StreamInfo info = new FLACDecoder(new ByteArrayInputStream(header)).readStreamInfo();
+        assertEquals(48_000, info.getSampleRate());
+        assertEquals(1, info.getChannels());
+        assertEquals(16, info.getBitsPerSample());
+        assertEquals(FlacEncoder.MAX_BLOCK_FRAMES, info.getMaxBlockSize());
+    }
+
+    @Test
+    public void speechLikeSignalRoundTripsLosslesslyAtAboutHalfSize() throws IOException {
+        int sampleRate = 16_000;
+        int chunkFrames = 320;
+        FlacEncoder encoder = new FlacEncoder(sampleRate);
+        short[] input = speechLike(sampleRate, chunkFrames * 100, 7);
+        byte[] encoded = new byte[FlacEncoder.maxEncodedBytes(chunkFrames)];
+
+        byte[] header = encoder.streamHeader();
+        long totalBytes = 0;
+        Set<Class<?>> subframeTypes = new HashSet<>();
+        for (int offset = 0; offset < input.length; offset += chunkFrames) {
+            int bytes = encoder.encode(input, offset, chunkFrames, encoded, 0);
+            totalBytes += bytes;
+
+            // Every chunk is decoded on its own behind the header, as a client that joined mid-stream would.
+            Decoded decoded = decode(header, encoded, bytes);
+            assertEquals(offset, (long) decoded.sampleNumbers.get(0));
+            assertArrayEquals(Arrays.copyOfRange(input, offset, offset + chunkFrames), decoded.samples);
+            subframeTypes.addAll(decoded.subframeTypes);
+        }
+
+        assertEquals(input.length, encoder.encodedFrames());
+        double ratio = totalBytes / (input.length * 2.0);
+        assertTrue("compression ratio " + ratio, ratio < 0.6);
+        assertTrue(subframeTypes.contains(ChannelLPC.class));
+    }
+
+    @Test
+    public void batchesSplitIntoMaximumSizeFramesAndCoverEverySubframeType() throws IOException {
+        int sampleRate = 48_000;
+        int frames = FlacEncoder.MAX_BLOCK_FRAMES * 2 + 1_000;
+        short[] input = new short[frames];
+        Random random = new Random(3);
+        for (int index = 0; index < frames; index += 1) {
+            if (index < 4_096) {
+                // Constant block.
+                input[index] = -1_234;
+            } else if (index < 8_192) {
+                // White noise at full scale only fits verbatim.
+                input[index] = (short) random.nextInt();
+            } else {
+                input[index] = (short) Math.round(20_000 * Math.sin(index * 0.01));
+            }
+        }
+
+        FlacEncoder encoder = new FlacEncoder(sampleRate);
+        byte[] encoded = new byte[FlacEncoder.maxEncodedBytes(frames)];
+        int bytes = encoder.encode(input, 0, frames, encoded, 0);
+        assertTrue(bytes <= encoded.length);
+
+        Decoded decoded = decode(encoder.streamHeader(), encoded, bytes);
+        assertArrayEquals(input, decoded.samples);
+        assertEquals(3, decoded.sampleNumbers.size());
+        assertTrue(decoded.subframeTypes.contains(ChannelConstant.class));
+        assertTrue(decoded.subframeTypes.contains(ChannelVerbatim.class));
+    }
+
+    @Test
+    public void shortAndExtremeBlocksRoundTrip() throws IOException {
+        FlacEncoder encoder = new FlacEncoder(44_100);
+        short[][] cases = {
+            { 7 },
+            { Short.MAX_VALUE, Short.MIN_VALUE, Short.MAX_VALUE, Short.MIN_VALUE, Short.MAX_VALUE },
+            speechLike(44_100, 33, 1),
+            speechLike(44_100, 257, 2),
+        };
+        for (short[] input : cases) {
+            byte[] encoded = new byte[FlacEncoder.maxEncodedBytes(input.length)];
+            int bytes = encoder.encode(input, 0, input.length, encoded, 0);
+            Decoded decoded = decode(encoder.streamHeader(), encoded, bytes);
+            assertArrayEquals(input, decoded.samples);
+            assertEquals(Arrays.asList(44_100), decoded.sampleRates);
+        }
+    }
+
+    @Test
+    public void flacStreamsExposeTheirHeaderAndEmitDecodableChunks() throws IOException {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.FLAC48K,
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.LINEAR,
+            3
+        );
+        byte[] header = pipeline.streamHeader();
+        assertEquals(48_000, new FLACDecoder(new ByteArrayInputStream(header)).readStreamInfo().getSampleRate());
+
+        short[] batch = speechLike(48_000, 960 * 3, 5);
+        int bytes = pipeline.encode(batch, batch.length);
+        assertTrue(bytes <= pipeline.encoded.length);
+        assertArrayEquals(batch, decode(header, pipeline.encoded, bytes).samples);
+    }
+
+    private static short[] speechLike(int sampleRate, int frames, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[frames];
+        for (int index = 0; index < frames; index += 1) {
+            double time = index / (double) sampleRate;
+            double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 3 * time);
+            double value = envelope * (6_000 * Math.sin(2 * Math.PI * 220 * time) + 2_500 * Math.sin(2 * Math.PI * 660 * time));
+            samples[index] = (short) Math.round(value + 40 * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    /**
+     * Decodes {@code length} bytes of frames behind the stream header with jflac, which checks both frame CRCs. Frames
+     * it had to skip count as bad, so any corruption fails the test.
+     */
+    private static Decoded decode(byte[] streamHeader, byte[] encoded, int length) throws IOException {
+        byte[] stream = Arrays.copyOf(streamHeader, streamHeader.length + length);
+        System.arraycopy(encoded, 0, stream, streamHeader.length, length);
+        FLACDecoder decoder = new FLACDecoder(new ByteArrayInputStream(stream));
+        decoder.readMetadata();
+
+        Decoded decoded = new Decoded();
+        List<Short> samples = new ArrayList<>();
+        Frame frame;
+        while ((frame = decoder.readNextFrame()) != null) {
+            // The decoder reuses one Frame, so what the tests need is copied out as each one is read.
+            decoded.sampleNumbers.add(frame.header.sampleNumber);
+            decoded.sampleRates.add(frame.header.sampleRate);
+            decoded.subframeTypes.add(frame.subframes[0].getClass());
+            ByteData pcm = decoder.decodeFrame(frame, null);
+            for (int index = 0; index + 1 < pcm.getLen(); index += 2) {
+                samples.add((short) ((pcm.getData(index) & 0xff) | (pcm.getData(index + 1) << 8)));
+            }
+        }
+        assertEquals("bad frames", 0, decoder.getBadFrames());
+
+        decoded.samples = new short[samples.size()];
+        for (int index = 0; index < decoded.samples.length; index += 1) {
+            decoded.samples[index] = samples.get(index);
+        }
+        return decoded;
+    }
+
+    private static final class Decoded {
+
+        final List<Long> sampleNumbers = new ArrayList<>();
+        final List<Integer> sampleRates = new ArrayList<>();
+        final Set<Class<?>> subframeTypes = new HashSet<>();
+        short[] samples;
+    }
+}
@@ -0,0 +1,82 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ImaAdpcmCodecUnitTest {
+
+    @Test
+    public void sineRoundTripsWithHighSnrAcrossBlocks() {
+        int sampleRate = 16_000;
+        int blockFrames = 320;
+        ImaAdpcmCodec encoder = new ImaAdpcmCodec();
+        byte[] block = new byte[ImaAdpcmCodec.blockBytes(blockFrames)];
+        short[] input = new short[blockFrames];
+        short[] output = new short[blockFrames];
+
+        double signalEnergy = 0;
+        double errorEnergy = 0;
+        for (int blockIndex = 0; blockIndex < 50; blockIndex += 1) {
+            for (int index = 0; index < blockFrames; index += 1) {
+                double time = (blockIndex * blockFrames + index) / (double) sampleRate;
+                input[index] = (short) Math.round(12_000 * Math.sin(2 * Math.PI * 440 * time));
+            }
+            assertEquals(block.length, encoder.encodeBlock(input, 0, blockFrames, block, 0));
+            assertEquals(blockFrames, ImaAdpcmCodec.decodeBlock(block, 0, blockFrames, output, 0));
+
+            // The first sample is carried verbatim in the block header.
+            assertEquals(input[0], output[0]);
+            if (blockIndex > 0) {
+                for (int index = 0; index < blockFrames; index += 1) {
+                    signalEnergy += (double) input[index] * input[index];
+                    double error = input[index] - output[index];
+                    errorEnergy += error * error;
+                }
+            }
+        }
+
+        double snrDb = 10 * Math.log10(signalEnergy / errorEnergy);
+        assertTrue("SNR " + snrDb, snrDb > 25);
+    }
+
+    @Test
+    public void blocksAreFourTimesSmallerThanPcmAndHandleOddLengths() {
+        assertEquals(0, ImaAdpcmCodec.blockBytes(0));
+        assertEquals(4, ImaAdpcmCodec.blockBytes(1));
+        assertEquals(164, ImaAdpcmCodec.blockBytes(320));
+        assertEquals(NativeMic.OutputStream.ADPCM16K.encodedBytes(320), ImaAdpcmCodec.blockBytes(320));
+        assertEquals(320, NativeMic.OutputStream.MULAW16K.encodedBytes(320));
+
+        ImaAdpcmCodec encoder = new ImaAdpcmCodec();
+        short[] input = { 0, 500, 1_000, 1_500, 2_000 };
+        byte[] block = new byte[ImaAdpcmCodec.blockBytes(input.length)];
+        assertEquals(6, encoder.encodeBlock(input, 0, input.length, block, 0));
+
+        short[] output = new short[input.length];
+        ImaAdpcmCodec.decodeBlock(block, 0, input.length, output, 0);
+        assertEquals(0, output[0]);
+        assertTrue(output[4] > output[1]);
+    }
+
+    @Test
+    public void compressedStreamsEmitEncodedChunks() {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.MULAW8K,
+            8_000,
+            20,
+            160,
+            NativeMic.ResamplerQuality.LINEAR
+        );
+        short[] samples = new short[160];
+        for (int index = 0; index < samples.length; index += 1) {
+            samples[index] = (short) (index * 100 - 8_000);
+        }
+
+        assertEquals(160, pipeline.encode(samples, samples.length));
+        for (int index = 0; index < samples.length; index += 1) {
+            assertEquals(MuLawCodec.encode(samples[index]), pipeline.encoded[index]);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramUnitTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinOneEighth() {
+        int previous = -1;
+        for (long nanos = 0; nanos < 120_000_000_000L; nanos = nanos * 9 / 8 + 1) {
+            int bucket = LatencyHistogram.bucketFor(nanos);
+            long upper = LatencyHistogram.bucketUpperNanos(bucket);
+
+            assertTrue(bucket >= previous);
+            assertTrue(nanos < upper);
+            assertTrue(upper - nanos <= Math.max(1_024, upper / 8));
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void percentilesComeFromTheRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..1000 us: p50 is about 500 us and p99 about 990 us.
+        for (int micros = 1; micros <= 1_000; micros += 1) {
+            histogram.record(micros * 1_000L);
+        }
+
+        LatencyHistogram.Summary summary = histogram.summary();
+        assertEquals(1_000, summary.count);
+        assertEquals(0.5, summary.p50Ms, 0.0625);
+        assertEquals(0.95, summary.p95Ms, 0.12);
+        assertEquals(0.99, summary.p99Ms, 0.12);
+        assertEquals(1.0, summary.maxMs, 0);
+        assertEquals(0.5005, summary.meanMs, 1e-9);
+        assertEquals(500.5, summary.totalMs, 1e-9);
+        assertTrue(summary.p50Ms <= summary.p95Ms && summary.p95Ms <= summary.p99Ms && summary.p99Ms <= summary.maxMs);
+    }
+
+    @Test
+    public void aSingleStallOnlyMovesTheTail() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int index = 0; index < 999; index += 1) {
+            histogram.record(200_000);
+        }
+        histogram.record(250_000_000);
+
+        LatencyHistogram.Summary summary = histogram.summary();
+        assertEquals(0.2, summary.p50Ms, 0.025);
+        assertEquals(0.2, summary.p99Ms, 0.025);
+        assertEquals(250.0, summary.maxMs, 0);
+    }
+
+    @Test
+    public void resetStartsAnEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000_000);
+        histogram.record(-1);
+        assertEquals(2, histogram.count());
+
+        histogram.reset();
+
+        LatencyHistogram.Summary summary = histogram.summary();
+        assertEquals(0, summary.count);
+        assertEquals(0, summary.p99Ms, 0);
+        assertEquals(0, summary.maxMs, 0);
+        assertEquals(0, summary.meanMs, 0);
+    }
+}
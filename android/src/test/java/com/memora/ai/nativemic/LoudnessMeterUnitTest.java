@@ -0,0 +1,95 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoudnessMeterUnitTest {
+
+    @Test
+    public void kWeightingMatchesBs1770CoefficientsAt48k() {
+        double[] coefficients = new LoudnessMeter(48_000).kWeightingCoefficients();
+        double[] expected = {
+            1.53512485958697,
+            -2.69169618940638,
+            1.19839281085285,
+            -1.69065929318241,
+            0.73248077421585,
+            -1.99004745483398,
+            0.99007225036621
+        };
+        for (int index = 0; index < expected.length; index += 1) {
+            assertEquals("coefficient " + index, expected[index], coefficients[index], 1e-8);
+        }
+    }
+
+    @Test
+    public void oneKilohertzSineReadsMinus23LufsAtMinus20Dbfs() {
+        for (int sampleRate : new int[] { 16_000, 44_100, 48_000 }) {
+            LoudnessMeter meter = new LoudnessMeter(sampleRate);
+            feed(meter, sine(sampleRate, 1_000, 0.1, 0, sampleRate * 4));
+
+            assertEquals("momentary @" + sampleRate, -23.0, meter.momentaryLufs(), 0.1);
+            assertEquals("short-term @" + sampleRate, -23.0, meter.shortTermLufs(), 0.1);
+            assertEquals("rms @" + sampleRate, 0.1 / Math.sqrt(2), meter.rms(), 1e-3);
+            assertEquals(0.0, meter.dcOffset(), 1e-3);
+        }
+    }
+
+    @Test
+    public void truePeakRecoversInterSamplePeaks() {
+        // A quarter-rate sine sampled 45 degrees off its crest never hits the crest on a sample.
+        LoudnessMeter meter = new LoudnessMeter(48_000);
+        feed(meter, sine(48_000, 12_000, 0.5, Math.PI / 4, 4_800));
+
+        assertEquals(0.5 * Math.sqrt(0.5), meter.peak(), 1e-3);
+        assertEquals(LoudnessMeter.toDbtp(0.5), LoudnessMeter.toDbtp(meter.truePeak()), 0.5);
+        assertTrue(meter.truePeak() > meter.peak() * 1.3);
+    }
+
+    @Test
+    public void reportsDcOffsetAndClippingPerInterval() {
+        LoudnessMeter meter = new LoudnessMeter(16_000);
+        float[] samples = sine(16_000, 440, 0.2, 0, 1_600);
+        for (int index = 0; index < samples.length; index += 1) {
+            samples[index] += 0.25f;
+        }
+        samples[10] = 1.0f;
+        samples[20] = -1.0f;
+        feed(meter, samples);
+
+        assertEquals(0.25, meter.dcOffset(), 5e-3);
+        assertEquals(2, meter.clippedSamples());
+
+        meter.resetInterval();
+        meter.processSilence(160);
+        assertEquals(0, meter.clippedSamples());
+        assertEquals(2, meter.totalClippedSamples());
+        assertEquals(0.0, meter.dcOffset(), 0);
+    }
+
+    @Test
+    public void silenceDecaysWindowsToFloor() {
+        LoudnessMeter meter = new LoudnessMeter(16_000);
+        feed(meter, sine(16_000, 1_000, 0.5, 0, 16_000));
+        meter.processSilence(16_000 * 4);
+
+        assertEquals(LoudnessMeter.SILENCE_DB, meter.shortTermLufs(), 1e-9);
+        assertEquals(0.0, meter.rms(), 1e-9);
+    }
+
+    private static void feed(LoudnessMeter meter, float[] samples) {
+        for (int offset = 0; offset < samples.length; offset += 320) {
+            meter.process(samples, offset, Math.min(320, samples.length - offset));
+        }
+    }
+
+    private static float[] sine(int sampleRate, double frequency, double amplitude, double phase, int frames) {
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * index / sampleRate + phase));
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,80 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedHistoryFileUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void historySurvivesWithoutCloseAndMapsTimeToFrames() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        // 2 s at 16 kHz, written as 3 s of 20 ms chunks so the ring wraps.
+        MappedHistoryFile history = MappedHistoryFile.create(file, 16_000, 2_000, "capture-1", 1_700_000_000_000L);
+        short[] chunk = new short[320];
+        long startPtsMs = 5_000;
+        for (int chunkIndex = 0; chunkIndex < 150; chunkIndex += 1) {
+            for (int index = 0; index < chunk.length; index += 1) {
+                chunk[index] = (short) (chunkIndex * chunk.length + index);
+            }
+            history.write(chunk, 0, chunk.length, startPtsMs + chunkIndex * 20L);
+        }
+
+        // Reopen from disk as if the process had died before close().
+        MappedHistoryFile recovered = MappedHistoryFile.openExisting(file);
+        assertFalse(recovered.closedCleanly());
+        assertEquals("capture-1", recovered.captureId());
+        assertEquals(16_000, recovered.sampleRate());
+        assertEquals(1_700_000_000_000L, recovered.startedAtEpochMs());
+        assertEquals(48_000, recovered.endFrame());
+        assertEquals(16_000, recovered.oldestFrame());
+
+        assertEquals(32_000, recovered.frameAt(startPtsMs + 2_000));
+        assertEquals(32_160, recovered.frameAt(startPtsMs + 2_010));
+        assertEquals(startPtsMs + 2_010, recovered.ptsAt(32_160));
+
+        short[] slice = new short[4];
+        recovered.copy(40_000, 4, slice, 0);
+        assertArrayEquals(new short[] { (short) 40_000, (short) 40_001, (short) 40_002, (short) 40_003 }, slice);
+
+        history.close();
+        assertTrue(MappedHistoryFile.openExisting(file).closedCleanly());
+    }
+
+    @Test
+    public void exportsAWrappedRangeAsWav() throws Exception {
+        File file = new File(folder.getRoot(), "history.bin");
+        MappedHistoryFile history = MappedHistoryFile.create(file, 8_000, 1_000, "capture-2", 0);
+        short[] chunk = new short[800];
+        for (int chunkIndex = 0; chunkIndex < 15; chunkIndex += 1) {
+            for (int index = 0; index < chunk.length; index += 1) {
+                chunk[index] = (short) (chunkIndex * chunk.length + index);
+            }
+            history.write(chunk, 0, chunk.length, chunkIndex * 100L);
+        }
+
+        // Frames 7000-10000 straddle the end of the 8000-frame ring.
+        File wav = new File(folder.getRoot(), "export.wav");
+        history.exportWav(wav, 7_000, 10_000);
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(wav.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(PcmFileRecorder.WAV_HEADER_BYTES + 6_000, bytes.limit());
+        assertEquals(8_000, bytes.getInt(24));
+        assertEquals(6_000, bytes.getInt(40));
+        for (int frame = 0; frame < 3_000; frame += 1) {
+            assertEquals((short) (7_000 + frame), bytes.getShort(PcmFileRecorder.WAV_HEADER_BYTES + frame * 2));
+        }
+    }
+}
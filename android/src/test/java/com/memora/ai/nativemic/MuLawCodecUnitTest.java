@@ -0,0 +1,51 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MuLawCodecUnitTest {
+
+    @Test
+    public void matchesG711ReferenceCodes() {
+        assertEquals((byte) 0xff, MuLawCodec.encode((short) 0));
+        assertEquals((byte) 0x80, MuLawCodec.encode(Short.MAX_VALUE));
+        assertEquals((byte) 0x00, MuLawCodec.encode(Short.MIN_VALUE));
+        assertEquals(32_124, MuLawCodec.decode((byte) 0x80));
+        assertEquals(-32_124, MuLawCodec.decode((byte) 0x00));
+        assertEquals(0, MuLawCodec.decode((byte) 0xff));
+    }
+
+    @Test
+    public void everyCodeRoundTripsAndEverySampleStaysWithinItsSegmentStep() {
+        for (int code = 0; code < 256; code += 1) {
+            short decoded = MuLawCodec.decode((byte) code);
+            // 0x7f and 0xff both decode to zero; zero encodes as 0xff.
+            int expected = code == 0x7f ? 0xff : code;
+            assertEquals("code " + code, expected, MuLawCodec.encode(decoded) & 0xff);
+        }
+
+        for (int sample = Short.MIN_VALUE; sample <= Short.MAX_VALUE; sample += 1) {
+            short decoded = MuLawCodec.decode(MuLawCodec.encode((short) sample));
+            int magnitude = Math.min(Math.abs(sample), 32_635);
+            // Quantisation step doubles per segment: 8 near zero up to 1024 at full scale.
+            int allowed = Math.max(8, Integer.highestOneBit(magnitude + 0x84) >> 4);
+            assertTrue("sample " + sample, Math.abs(decoded - sample) <= allowed);
+        }
+    }
+
+    @Test
+    public void arrayFormsHonourOffsets() {
+        short[] samples = { 100, -100, 1_000, -1_000, 10_000 };
+        byte[] codes = new byte[7];
+        MuLawCodec.encode(samples, 1, 4, codes, 2);
+        short[] decoded = new short[4];
+        MuLawCodec.decode(codes, 2, 4, decoded, 0);
+        for (int index = 0; index < 4; index += 1) {
+            assertEquals(MuLawCodec.decode(MuLawCodec.encode(samples[index + 1])), decoded[index]);
+        }
+        assertEquals(0, codes[0]);
+        assertEquals(0, codes[6]);
+    }
+}
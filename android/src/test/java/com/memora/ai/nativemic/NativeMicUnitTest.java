@@ -5,11 +5,20 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import android.media.AudioDeviceInfo;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import com.getcapacitor.JSObject;
 import com.getcapacitor.PermissionState;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 
 public class NativeMicUnitTest {
@@ -42,6 +51,31 @@ public class NativeMicUnitTest {
         assertNull(NativeMic.parseOutputStreams(Arrays.asList("pcm16k_s16le", "invalid")));
     }
 
+    @Test
+    public void outputStreamsAcceptAnyRateInRangeUnderOneCanonicalName() {
+        NativeMic.OutputStream telephony = NativeMic.OutputStream.fromWireValue("pcm8k_s16le");
+        NativeMic.OutputStream cd = NativeMic.OutputStream.fromWireValue("pcm44100_flac");
+        assertEquals(8_000, telephony.sampleRate);
+        assertEquals(NativeMic.StreamEncoding.S16LE, telephony.encoding);
+        assertEquals(44_100, cd.sampleRate);
+        assertEquals(NativeMic.StreamEncoding.FLAC, cd.encoding);
+
+        NativeMic.OutputStream tts = NativeMic.OutputStream.of(24_000, NativeMic.StreamEncoding.S16LE);
+        assertEquals("pcm24k_s16le", tts.wireValue);
+        assertEquals(tts, NativeMic.OutputStream.fromWireValue("pcm24k_s16le"));
+        assertEquals(NativeMic.OutputStream.ADPCM16K, NativeMic.OutputStream.fromWireValue("pcm16k_ima_adpcm"));
+
+        List<NativeMic.OutputStream> parsed = NativeMic.parseOutputStreams(Arrays.asList("pcm24k_s16le", "pcm24k_mulaw", "pcm24k_s16le"));
+        assertEquals(2, parsed.size());
+
+        assertNull(NativeMic.OutputStream.fromWireValue("pcm16000_s16le"));
+        assertNull(NativeMic.OutputStream.fromWireValue("pcm4k_s16le"));
+        assertNull(NativeMic.OutputStream.fromWireValue("pcm96k_s16le"));
+        assertNull(NativeMic.OutputStream.fromWireValue("pcm16k_f64"));
+        assertNull(NativeMic.OutputStream.fromWireValue("pcm016k_s16le"));
+        assertNull(NativeMic.OutputStream.of(7_999, NativeMic.StreamEncoding.S16LE));
+    }
+
     @Test
     public void linearResamplerProducesDataAndFlushes() {
         NativeMic.LinearResampler resampler = new NativeMic.LinearResampler(48_000, 16_000);
@@ -57,6 +91,366 @@ public class NativeMicUnitTest {
         assertTrue(flushed.length >= 0);
     }
 
+    @Test
+    public void pcmRingBufferPreservesOrderAcrossWrap() {
+        NativeMic.PcmRingBuffer ring = new NativeMic.PcmRingBuffer(16);
+        short[] chunk = new short[6];
+        short next = 0;
+        short expected = 0;
+
+        for (int round = 0; round < 20; round += 1) {
+            short[] block = new short[7];
+            for (int index = 0; index < block.length; index += 1) {
+                block[index] = next;
+                next += 1;
+            }
+            ring.write(block, 0, block.length);
+
+            while (ring.read(chunk, chunk.length)) {
+                for (short sample : chunk) {
+                    assertEquals(expected, sample);
+                    expected += 1;
+                }
+            }
+        }
+
+        assertEquals(16, ring.capacity());
+        assertTrue(ring.readFinal(chunk, chunk.length));
+        assertEquals(expected, chunk[0]);
+        assertEquals(0, chunk[chunk.length - 1]);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void resolveBatchChunksHonoursCountAndDurationLimits() {
+        assertEquals(1, NativeMic.resolveBatchChunks(20, null, null));
+        assertEquals(4, NativeMic.resolveBatchChunks(20, 4, null));
+        assertEquals(5, NativeMic.resolveBatchChunks(20, null, 100));
+        assertEquals(3, NativeMic.resolveBatchChunks(20, 3, 100));
+        assertEquals(2, NativeMic.resolveBatchChunks(20, 8, 50));
+        assertEquals(-1, NativeMic.resolveBatchChunks(20, null, 10));
+        assertEquals(-1, NativeMic.resolveBatchChunks(20, 0, null));
+    }
+
+    @Test
+    public void chunkBatchKeepsPerChunkTimingAndContiguousSamples() {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.PCM16K,
+            16_000,
+            10,
+            160,
+            NativeMic.ResamplerQuality.LINEAR,
+            3
+        );
+        NativeMic.ChunkBatch batch = pipeline.batch;
+        assertEquals(160, pipeline.chunkFrames);
+
+        short[] chunk = new short[160];
+        for (int index = 0; index < 3; index += 1) {
+            Arrays.fill(chunk, (short) (index + 1));
+            batch.add(chunk, chunk.length, index, index * 10L);
+        }
+
+        assertTrue(batch.isFull());
+        assertEquals(480, batch.totalFrames);
+        assertEquals(2L, batch.seqs[2]);
+        assertEquals(20L, batch.ptsMs[2]);
+        assertEquals(1, batch.samples[159]);
+        assertEquals(2, batch.samples[160]);
+        assertEquals(3, batch.samples[479]);
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        assertEquals(0, batch.totalFrames);
+    }
+
+    @Test
+    public void streamPipelineSteadyStateDoesNotAllocate() {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.PCM16K,
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.LINEAR
+        );
+        float[] input = new float[960];
+        for (int index = 0; index < input.length; index += 1) {
+            input[index] = (float) Math.sin((index / 48_000.0) * Math.PI * 2 * 440);
+        }
+
+        // Past the optimizing compiler's invocation threshold, so measuring does not catch a tier transition.
+        for (int iteration = 0; iteration < 20_000; iteration += 1) {
+            pipeline.convert(input, input.length);
+            while (pipeline.popChunk()) {
+                // Drain like emitAvailableChunksLocked does.
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long chunks = 0;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int iteration = 0; iteration < 1_000; iteration += 1) {
+            pipeline.convert(input, input.length);
+            while (pipeline.popChunk()) {
+                chunks += 1;
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(1_000, chunks);
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void arbitraryRatePipelinesResampleToTheirOwnRate() {
+        float[] input = new float[960];
+        for (int index = 0; index < input.length; index += 1) {
+            input[index] = (float) Math.sin((index / 48_000.0) * Math.PI * 2 * 440);
+        }
+
+        int[] rates = { 8_000, 24_000, 44_100 };
+        for (int rate : rates) {
+            NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+                NativeMic.OutputStream.of(rate, NativeMic.StreamEncoding.S16LE),
+                48_000,
+                20,
+                960,
+                NativeMic.ResamplerQuality.SINC
+            );
+            assertEquals((rate * 20) / 1_000, pipeline.chunkFrames);
+
+            // One second of input yields one second of output, give or take the filter delay.
+            long frames = 0;
+            for (int iteration = 0; iteration < 50; iteration += 1) {
+                pipeline.convert(input, input.length);
+                while (pipeline.popChunk()) {
+                    frames += pipeline.chunkFrames;
+                }
+            }
+            assertTrue("rate " + rate + " produced " + frames, frames > rate - 2 * pipeline.chunkFrames && frames <= rate);
+        }
+    }
+
+    @Test
+    public void identityRatePipelinePassesRawPcmThroughBitExact() {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.PCM48K,
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.SINC
+        );
+        assertTrue(pipeline.passthrough);
+
+        short[] input = new short[960];
+        for (int index = 0; index < input.length; index += 1) {
+            input[index] = (short) ((index * 7919) ^ (index << 5));
+        }
+        input[0] = Short.MIN_VALUE;
+        input[1] = Short.MAX_VALUE;
+        input[2] = -1;
+
+        pipeline.writeRaw(input, 0, input.length, false);
+        assertTrue(pipeline.popChunk());
+        assertTrue(Arrays.equals(input, pipeline.chunkBuffer));
+
+        pipeline.writeRaw(input, 0, input.length, true);
+        assertTrue(pipeline.popChunk());
+        assertTrue(Arrays.equals(new short[960], pipeline.chunkBuffer));
+
+        pipeline.flush();
+        assertFalse(pipeline.popFinalChunk());
+    }
+
+    @Test
+    public void f32lePipelinesCarryResamplerOutputBitForBit() {
+        float[] input = new float[960];
+        for (int index = 0; index < input.length; index += 1) {
+            input[index] = (float) (0.9 * Math.sin((index / 48_000.0) * Math.PI * 2 * 440));
+        }
+        ResamplingGraph reference = new ResamplingGraph(48_000, Arrays.asList(16_000), 960, NativeMic.ResamplerQuality.SINC);
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.of(16_000, NativeMic.StreamEncoding.F32LE),
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.SINC
+        );
+        assertEquals("pcm16k_f32le", pipeline.stream.wireValue);
+        assertFalse(pipeline.keepsPcm16());
+
+        float[] expected = new float[16_000];
+        int expectedFrames = 0;
+        int checkedFrames = 0;
+        for (int iteration = 0; iteration < 10; iteration += 1) {
+            reference.process(input, 0, input.length);
+            ResamplingGraph.Stage stage = reference.stage(16_000);
+            System.arraycopy(stage.samples, stage.offset, expected, expectedFrames, stage.length);
+            expectedFrames += stage.length;
+
+            pipeline.convert(input, input.length);
+            while (pipeline.popChunk()) {
+                int payloadBytes = pipeline.encodeFloats(pipeline.floatChunk, pipeline.chunkFrames);
+                assertEquals(pipeline.chunkFrames * 4, payloadBytes);
+                for (int frame = 0; frame < pipeline.chunkFrames; frame += 1) {
+                    int bits = (pipeline.encoded[frame * 4] & 0xff) |
+                        ((pipeline.encoded[frame * 4 + 1] & 0xff) << 8) |
+                        ((pipeline.encoded[frame * 4 + 2] & 0xff) << 16) |
+                        (pipeline.encoded[frame * 4 + 3] << 24);
+                    assertEquals(Float.floatToRawIntBits(expected[checkedFrames + frame]), bits);
+                }
+                checkedFrames += pipeline.chunkFrames;
+            }
+        }
+        assertTrue(checkedFrames > 0);
+    }
+
+    @Test
+    public void f32lePassthroughWidensRawPcmExactly() {
+        NativeMic.StreamPipeline pipeline = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.of(48_000, NativeMic.StreamEncoding.F32LE),
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.SINC
+        );
+        assertTrue(pipeline.passthrough);
+
+        short[] input = new short[960];
+        for (int index = 0; index < input.length; index += 1) {
+            input[index] = (short) ((index * 7919) ^ (index << 5));
+        }
+        input[0] = Short.MIN_VALUE;
+        input[1] = Short.MAX_VALUE;
+
+        pipeline.writeRaw(input, 0, input.length, false);
+        assertTrue(pipeline.popChunk());
+        for (int index = 0; index < input.length; index += 1) {
+            assertEquals(input[index], (int) (pipeline.floatChunk[index] * 32768.0f));
+        }
+        assertEquals(-1.0f, pipeline.floatChunk[0], 0f);
+
+        // A recording needs PCM16, so both queues are fed and stay in step.
+        pipeline.history = new PcmHistoryRing(48_000);
+        assertTrue(pipeline.keepsPcm16());
+        pipeline.writeRaw(input, 0, input.length, false);
+        assertTrue(pipeline.popChunk());
+        assertTrue(Arrays.equals(input, pipeline.chunkBuffer));
+        assertEquals(input[5] / 32768.0f, pipeline.floatChunk[5], 0f);
+    }
+
+    @Test
+    public void rawFrameRingHandsOffBlocksInOrderAndCountsOverruns() throws Exception {
+        RawFrameRing ring = new RawFrameRing(4, 8);
+        int totalBlocks = 20_000;
+        long[] received = new long[] { 0, -1 };
+        AtomicBoolean producing = new AtomicBoolean(true);
+        AtomicBoolean ordered = new AtomicBoolean(true);
+
+        Thread consumer = new Thread(() -> {
+            while (producing.get() || !ring.isEmpty()) {
+                int length = ring.peekLength();
+                if (length < 0) {
+                    Thread.yield();
+                    continue;
+                }
+                short[] block = ring.peek();
+                long sequence = ((block[0] & 0xffffL) << 16) | (block[1] & 0xffffL);
+                if (sequence <= received[1] || length != 8) {
+                    ordered.set(false);
+                }
+                received[1] = sequence;
+                received[0] += 1;
+                ring.release();
+            }
+        });
+        consumer.start();
+
+        for (int sequence = 0; sequence < totalBlocks; sequence += 1) {
+            short[] slot = ring.claim();
+            if (slot == null) {
+                ring.recordOverrun(8);
+                continue;
+            }
+            slot[0] = (short) (sequence >>> 16);
+            slot[1] = (short) sequence;
+            ring.publish(8);
+        }
+        producing.set(false);
+        consumer.join(5_000);
+
+        assertTrue(ordered.get());
+        assertEquals(4, ring.capacityBlocks());
+        assertEquals(totalBlocks, received[0] + ring.overrunBlocks());
+        assertEquals(ring.overrunBlocks() * 8, ring.overrunFrames());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void floatCaptureRingCarriesFloatBlocks() {
+        assertEquals(NativeMic.CaptureEncoding.FLOAT, NativeMic.CaptureEncoding.fromWireValue("float"));
+        assertNull(NativeMic.CaptureEncoding.fromWireValue("pcm24"));
+
+        RawFrameRing ring = new RawFrameRing(2, 4, true);
+        assertTrue(ring.isFloat());
+
+        float[] slot = ring.claimFloat();
+        slot[0] = 1.5f;
+        slot[3] = -0.25f;
+        ring.publish(4);
+
+        assertEquals(4, ring.peekLength());
+        assertEquals(1.5f, ring.peekFloat()[0], 0f);
+        assertEquals(-0.25f, ring.peekFloat()[3], 0f);
+        assertEquals(0, ring.peekGapFrames());
+        ring.release();
+        assertTrue(ring.isEmpty());
+
+        // A gap marked by the reader travels with the block it precedes, not with later ones.
+        ring.claimFloat();
+        ring.publish(4, System.nanoTime(), 960);
+        ring.claimFloat();
+        ring.publish(4);
+        assertEquals(960, ring.peekGapFrames());
+        ring.release();
+        assertEquals(0, ring.peekGapFrames());
+        ring.release();
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void speechGateReleasesPreRollAndMarksSegments() {
+        NativeMic.SpeechGate gate = new NativeMic.SpeechGate(2, 2, 1);
+        List<String> delivered = new ArrayList<>();
+        NativeMic.SpeechGate.ChunkSink sink = (samples, seq, ptsMs, flags) -> delivered.add(samples[0] + ":" + seq + ":" + flags);
+        boolean[] speech = { false, false, false, false, true, true, false, false, false, false };
+
+        for (int index = 0; index < speech.length; index += 1) {
+            gate.offer(new short[] { (short) (index * 10) }, index, index * 20L, speech[index], false, sink);
+        }
+
+        // Chunk 1 is pushed out of the two-chunk pre-roll; chunks 8 and 9 fall outside the post-roll.
+        assertEquals(
+            List.of(
+                "20:2:" + PcmStreamServer.FLAG_SEGMENT_START,
+                "30:3:0",
+                "40:4:0",
+                "50:5:0",
+                "60:6:0",
+                "70:7:" + PcmStreamServer.FLAG_SEGMENT_END
+            ),
+            delivered
+        );
+        assertFalse(gate.isOpen());
+        assertEquals(2, gate.suppressedChunks);
+
+        delivered.clear();
+        gate.offer(new short[] { 100 }, 10, 200, false, true, sink);
+        assertEquals(List.of("100:10:" + PcmStreamServer.FLAG_FINAL), delivered);
+        assertEquals(4, gate.suppressedChunks);
+    }
+
     @Test
     public void systemRoutePrefersSpeakerWhenOnlyBuiltInOutputsExist() {
         assertTrue(
@@ -85,4 +479,464 @@ public class NativeMicUnitTest {
         );
     }
 
+    @Test
+    public void deadRecorderIsRebuiltInPlaceWithConcealedSilence() throws Exception {
+        FakeSourceFactory factory = new FakeSourceFactory(16_000, 10, 150);
+        RecordedEvents events = new RecordedEvents();
+        NativeMic controller = new NativeMic(events, factory);
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        JSObject recovered = events.await("micStateChanged", "media_services_recovered", 5_000);
+        Thread.sleep(200);
+        NativeMic.StopCaptureResultModel result = controller.stopCapture(captureId, 1_000);
+
+        assertNotNull(recovered);
+        assertEquals(captureId, recovered.getString("captureId"));
+        assertEquals("running", recovered.getString("state"));
+        assertTrue(recovered.getLong("recoveryMs") >= 150);
+        long concealedMs = recovered.getLong("concealedMs");
+        assertTrue("concealed " + concealedMs + " ms", concealedMs >= 100 && concealedMs < 1_000);
+        assertEquals(2, factory.opened.size());
+        assertTrue(factory.opened.get(0).released);
+        assertEquals(1, events.named("micError").size());
+        assertEquals(captureId, result.captureId);
+        assertEquals(NativeMic.NativeMicState.IDLE, controller.getState());
+
+        // One unbroken stream: consecutive seqs, ptsMs advancing by exactly one chunk, the gap flagged in between.
+        List<JSObject> chunks = events.named("micPcmChunk");
+        int concealedChunks = 0;
+        for (int index = 0; index < chunks.size(); index += 1) {
+            JSObject chunk = chunks.get(index);
+            assertEquals(captureId, chunk.getString("captureId"));
+            assertEquals(index, chunk.getLong("seq"));
+            if (index > 0) {
+                assertEquals(20, chunk.getLong("ptsMs") - chunks.get(index - 1).getLong("ptsMs"));
+            }
+            if (chunk.optBoolean("concealed")) {
+                concealedChunks += 1;
+                assertTrue(index >= 9);
+            }
+        }
+        assertTrue(concealedChunks >= concealedMs / 20 && concealedChunks <= concealedMs / 20 + 2);
+        assertTrue(chunks.size() > 20);
+    }
+
+    @Test
+    public void recorderComingBackInAnotherFormatPausesTheCapture() throws Exception {
+        FakeSourceFactory factory = new FakeSourceFactory(16_000, 5, 0);
+        factory.reopenSampleRate = 44_100;
+        RecordedEvents events = new RecordedEvents();
+        NativeMic controller = new NativeMic(events, factory);
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        JSObject paused = events.await("micStateChanged", "media_services_reset", 5_000);
+
+        assertNotNull(paused);
+        assertEquals("paused", paused.getString("state"));
+        assertEquals(NativeMic.NativeMicState.PAUSED, controller.getState());
+        assertTrue(factory.opened.get(1).released);
+        assertNull(events.find("micStateChanged", "media_services_recovered"));
+
+        controller.stopCapture(captureId, 1_000);
+        assertEquals(NativeMic.NativeMicState.IDLE, controller.getState());
+    }
+
+    @Test
+    public void aCaptureThreadThatOutlivesStopDoesNotRunIntoTheNextCapture() throws Exception {
+        FakeSourceFactory factory = new FakeSourceFactory(16_000, -1, 0);
+        NativeMic controller = new NativeMic(new RecordedEvents(), factory);
+
+        String first = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        Thread.sleep(100);
+        FakeCaptureSource stuck = factory.opened.get(0);
+        CountDownLatch gate = new CountDownLatch(1);
+        stuck.hold = gate;
+        Thread.sleep(100);
+        // The join times out with the old reader still parked in read().
+        controller.stopCapture(first, 10);
+
+        String second = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        int callsBeforeRelease = stuck.readCalls;
+        gate.countDown();
+        Thread.sleep(200);
+
+        assertEquals(callsBeforeRelease, stuck.readCalls);
+        controller.stopCapture(second, 1_000);
+    }
+
+    @Test
+    public void aGatedCaptureWithoutOutputStreamsIsRejectedAsInvalid() {
+        NativeMic controller = new NativeMic(new RecordedEvents(), new FakeSourceFactory(16_000, -1, 0));
+        NativeMic.StartCaptureOptionsModel options = new NativeMic.StartCaptureOptionsModel(
+            NativeMic.MicProfile.PIPECAT,
+            NativeMic.SessionMode.VOICE_CHAT,
+            null,
+            20,
+            false,
+            NativeMic.getDefaultAudioLevelIntervalMs(),
+            false,
+            null,
+            NativeMic.OutputRoute.SYSTEM,
+            NativeMic.ResamplerQuality.SINC,
+            NativeMic.CaptureEncoding.PCM16,
+            1,
+            NativeMic.ChannelMix.AVERAGE,
+            NativeMic.PcmTransport.EVENTS,
+            1,
+            true,
+            NativeMic.getDefaultVadPreRollMs(),
+            NativeMic.getDefaultVadPostRollMs(),
+            0,
+            null,
+            null
+        );
+
+        try {
+            controller.startSourceCapture(options, 16_000);
+            fail("startSourceCapture accepted a capture without output streams");
+        } catch (NativeMic.NativeMicControllerError error) {
+            assertEquals(NativeMic.NativeMicErrorCode.INTERNAL, error.code);
+            assertEquals("At least one output stream must be provided.", error.getMessage());
+        }
+        assertEquals(NativeMic.NativeMicState.IDLE, controller.getState());
+    }
+
+    @Test
+    public void preparedCaptureStartsOnTheRecorderItAlreadyOpened() throws Exception {
+        FakeSourceFactory factory = new FakeSourceFactory(16_000, -1, 0);
+        RecordedEvents events = new RecordedEvents();
+        NativeMic controller = new NativeMic(events, factory);
+
+        controller.prepareCaptureAt(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        assertEquals(1, factory.opened.size());
+        assertFalse(factory.opened.get(0).started);
+        assertTrue(controller.getDiagnostics().optBoolean("capturePrepared"));
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        Thread.sleep(200);
+        assertFalse(controller.getDiagnostics().optBoolean("capturePrepared"));
+        controller.stopCapture(captureId, 1_000);
+
+        assertEquals(1, factory.opened.size());
+        assertTrue(factory.opened.get(0).started);
+        assertTrue(factory.opened.get(0).released);
+        List<JSObject> chunks = events.named("micPcmChunk");
+        assertTrue(chunks.size() > 2);
+        assertTrue(chunks.get(0).getLong("timeToFirstChunkMs") >= 0);
+        for (int index = 1; index < chunks.size(); index += 1) {
+            assertFalse(chunks.get(index).has("timeToFirstChunkMs"));
+        }
+    }
+
+    @Test
+    public void mismatchedPreparedCaptureIsReleasedAndStartsCold() throws Exception {
+        FakeSourceFactory factory = new FakeSourceFactory(16_000, -1, 0);
+        NativeMic controller = new NativeMic(new RecordedEvents(), factory);
+
+        controller.prepareCaptureAt(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        controller.prepareCaptureAt(captureOptions(NativeMic.OutputStream.PCM48K), 16_000);
+        assertTrue(factory.opened.get(0).released);
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        controller.stopCapture(captureId, 1_000);
+
+        assertEquals(3, factory.opened.size());
+        assertFalse(factory.opened.get(1).started);
+        assertTrue(factory.opened.get(1).released);
+        assertTrue(factory.opened.get(2).started);
+
+        controller.prepareCaptureAt(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        controller.releasePreparedCapture();
+        assertTrue(factory.opened.get(3).released);
+    }
+
+    @Test(timeout = 10_000)
+    public void aBlockedChunkEmitterDoesNotHoldTheControllerLock() throws Exception {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        NativeMic controller = new NativeMic(
+            (eventName, payload) -> {
+                if (eventName.equals("micPcmChunk")) {
+                    emitting.countDown();
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            },
+            new FakeSourceFactory(16_000, -1, 0)
+        );
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K), 16_000);
+        assertTrue(emitting.await(5, TimeUnit.SECONDS));
+
+        // The worker is parked in the emitter, as under the block policy with a slow WebView; the bridge still gets in.
+        assertEquals("running", controller.getDiagnostics().getString("state"));
+        controller.setMicEnabled(captureId, false);
+
+        unblock.countDown();
+        controller.stopCapture(captureId, 1_000);
+        assertEquals(NativeMic.NativeMicState.IDLE, controller.getState());
+    }
+
+    @Test(timeout = 20_000)
+    public void recentAudioKeepsItsTimestampsAcrossALaterOverrun() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordedEvents events = new RecordedEvents();
+        NativeMic controller = new NativeMic(
+            (eventName, payload) -> {
+                events.emit(eventName, payload);
+                if (eventName.equals("micPcmChunk") && payload.optLong("seq") == 5) {
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            },
+            new FakeSourceFactory(16_000, -1, 0)
+        );
+
+        String captureId = controller.startSourceCapture(captureOptions(NativeMic.OutputStream.PCM16K, 10_000), 16_000);
+        // The worker stalls on chunk 5 until the reader has run a full ring ahead and dropped input.
+        while (controller.getDiagnostics().getLong("inputOverrunFrames") == 0) {
+            Thread.sleep(10);
+        }
+        unblock.countDown();
+        Thread.sleep(300);
+
+        List<JSObject> chunks = events.named("micPcmChunk");
+        boolean jumped = false;
+        for (int index = 1; index < chunks.size(); index += 1) {
+            jumped |= chunks.get(index).getLong("ptsMs") - chunks.get(index - 1).getLong("ptsMs") > 20;
+        }
+        assertTrue(jumped);
+
+        // Audio from before the overrun and from after it comes back with the ptsMs its chunk carried.
+        for (JSObject chunk : List.of(chunks.get(2), chunks.get(chunks.size() - 1))) {
+            long ptsMs = chunk.getLong("ptsMs");
+            NativeMic.RecentAudioResultModel recent = controller.getRecentAudio(
+                captureId,
+                NativeMic.OutputStream.PCM16K,
+                ptsMs,
+                ptsMs + 20
+            );
+            assertEquals(ptsMs, recent.ptsMs);
+            assertEquals(320, recent.frames);
+            assertEquals(chunk.getString("dataBase64"), recent.dataBase64);
+        }
+
+        controller.stopCapture(captureId, 1_000);
+    }
+
+    private static NativeMic.StartCaptureOptionsModel captureOptions(NativeMic.OutputStream stream) {
+        return captureOptions(stream, 0);
+    }
+
+    private static NativeMic.StartCaptureOptionsModel captureOptions(NativeMic.OutputStream stream, int historyMs) {
+        return new NativeMic.StartCaptureOptionsModel(
+            NativeMic.MicProfile.WAVEFORM,
+            NativeMic.SessionMode.MEASUREMENT,
+            List.of(stream),
+            20,
+            false,
+            NativeMic.getDefaultAudioLevelIntervalMs(),
+            false,
+            null,
+            NativeMic.OutputRoute.SYSTEM,
+            NativeMic.ResamplerQuality.SINC,
+            NativeMic.CaptureEncoding.PCM16,
+            1,
+            NativeMic.ChannelMix.AVERAGE,
+            NativeMic.PcmTransport.EVENTS,
+            1,
+            false,
+            NativeMic.getDefaultVadPreRollMs(),
+            NativeMic.getDefaultVadPostRollMs(),
+            historyMs,
+            null,
+            null
+        );
+    }
+
+    /** Collects emitted events; listeners run on the capture threads, so access is synchronized. */
+    private static final class RecordedEvents implements NativeMic.EventEmitter {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<JSObject> payloads = new ArrayList<>();
+
+        @Override
+        public synchronized void emit(String eventName, JSObject payload) {
+            names.add(eventName);
+            payloads.add(payload);
+            notifyAll();
+        }
+
+        synchronized List<JSObject> named(String eventName) {
+            List<JSObject> matching = new ArrayList<>();
+            for (int index = 0; index < names.size(); index += 1) {
+                if (names.get(index).equals(eventName)) {
+                    matching.add(payloads.get(index));
+                }
+            }
+            return matching;
+        }
+
+        synchronized JSObject find(String eventName, String reason) {
+            for (JSObject payload : named(eventName)) {
+                if (reason.equals(payload.getString("reason"))) {
+                    return payload;
+                }
+            }
+            return null;
+        }
+
+        synchronized JSObject await(String eventName, String reason, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            JSObject payload = find(eventName, reason);
+            while (payload == null && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+                payload = find(eventName, reason);
+            }
+            return payload;
+        }
+    }
+
+    /** Opens paced fake recorders; the first one dies after {@code deadAfterReads} reads. */
+    private static final class FakeSourceFactory implements CaptureSource.Factory {
+
+        final List<FakeCaptureSource> opened = new ArrayList<>();
+        private final int sampleRate;
+        private final int deadAfterReads;
+        private final long reopenDelayMs;
+        int reopenSampleRate;
+
+        FakeSourceFactory(int sampleRate, int deadAfterReads, long reopenDelayMs) {
+            this.sampleRate = sampleRate;
+            this.deadAfterReads = deadAfterReads;
+            this.reopenDelayMs = reopenDelayMs;
+            this.reopenSampleRate = sampleRate;
+        }
+
+        @Override
+        public synchronized CaptureSource open(
+            int audioSource,
+            int rate,
+            NativeMic.CaptureEncoding encoding,
+            int channels,
+            int chunkFrames
+        ) {
+            boolean first = opened.isEmpty();
+            if (!first) {
+                try {
+                    Thread.sleep(reopenDelayMs);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            FakeCaptureSource source = new FakeCaptureSource(first ? sampleRate : reopenSampleRate, first ? deadAfterReads : -1);
+            opened.add(source);
+            return source;
+        }
+    }
+
+    private static final class FakeCaptureSource implements CaptureSource {
+
+        private final int sampleRate;
+        private final int deadAfterReads;
+        private int reads = 0;
+        private int position = 0;
+        volatile boolean started = false;
+        volatile boolean stopped = false;
+        volatile boolean released = false;
+        volatile CountDownLatch hold;
+        volatile int readCalls = 0;
+
+        FakeCaptureSource(int sampleRate, int deadAfterReads) {
+            this.sampleRate = sampleRate;
+            this.deadAfterReads = deadAfterReads;
+        }
+
+        @Override
+        public int sampleRate() {
+            return sampleRate;
+        }
+
+        @Override
+        public int channelCount() {
+            return 1;
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        @Override
+        public int read(short[] buffer, int length) {
+            readCalls += 1;
+            CountDownLatch gate = hold;
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (stopped) {
+                return 0;
+            }
+            if (reads == deadAfterReads) {
+                return AudioRecord.ERROR_DEAD_OBJECT;
+            }
+            reads += 1;
+            try {
+                Thread.sleep((length * 1_000L) / sampleRate);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // A ramp, so every sample says where it was captured.
+            for (int index = 0; index < length; index += 1) {
+                buffer[index] = (short) position++;
+            }
+            return length;
+        }
+
+        @Override
+        public int read(float[] buffer, int length) {
+            return AudioRecord.ERROR_INVALID_OPERATION;
+        }
+
+        @Override
+        public boolean getTimestamp(AudioTimestamp timestamp) {
+            return false;
+        }
+
+        @Override
+        public boolean setPreferredDevice(AudioDeviceInfo device) {
+            return true;
+        }
+
+        @Override
+        public AudioDeviceInfo getPreferredDevice() {
+            return null;
+        }
+
+        @Override
+        public AudioDeviceInfo getRoutedDevice() {
+            return null;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public void release() {
+            stopped = true;
+            released = true;
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Test;
+
+public class Pcm16Base64EncoderUnitTest {
+
+    @Test
+    public void matchesReferenceEncoderForEveryTailLength() {
+        Pcm16Base64Encoder encoder = new Pcm16Base64Encoder(4);
+        Random random = new Random(7);
+        for (int length = 0; length <= 64; length += 1) {
+            short[] samples = new short[length];
+            for (int index = 0; index < length; index += 1) {
+                samples[index] = (short) random.nextInt();
+            }
+            assertEquals("length " + length, reference(samples, 0, length), encoder.encode(samples, 0, length));
+        }
+    }
+
+    @Test
+    public void encodesExtremesAndOffsets() {
+        short[] samples = { Short.MIN_VALUE, -1, 0, 1, Short.MAX_VALUE, 0x00ff, (short) 0xff00, 0x7f80 };
+        Pcm16Base64Encoder encoder = new Pcm16Base64Encoder();
+        for (int offset = 0; offset < samples.length; offset += 1) {
+            int length = samples.length - offset;
+            assertEquals(reference(samples, offset, length), encoder.encode(samples, offset, length));
+        }
+        assertEquals(Pcm16Base64Encoder.encodedLength(320), encoder.encode(new short[320], 0, 320).length());
+    }
+
+    @Test
+    public void encodesRawBytesLikeTheReferenceEncoder() {
+        Pcm16Base64Encoder encoder = new Pcm16Base64Encoder();
+        Random random = new Random(11);
+        byte[] data = new byte[40];
+        random.nextBytes(data);
+        for (int offset = 0; offset < 4; offset += 1) {
+            for (int length = 0; length <= data.length - offset; length += 1) {
+                byte[] slice = Arrays.copyOfRange(data, offset, offset + length);
+                assertEquals(Base64.getEncoder().encodeToString(slice), encoder.encodeBytes(data, offset, length));
+            }
+        }
+    }
+
+    private static String reference(short[] samples, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int index = 0; index < length; index += 1) {
+            buffer.putShort(samples[offset + index]);
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+}
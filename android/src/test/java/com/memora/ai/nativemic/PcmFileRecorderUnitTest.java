@@ -0,0 +1,72 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PcmFileRecorderUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wavRecordingPatchesRiffSizesOnClose() throws Exception {
+        File file = new File(folder.getRoot(), "nested/capture.wav");
+        PcmFileRecorder recorder = PcmFileRecorder.open(file, 16_000, PcmFileRecorder.Format.WAV, PcmFileRecorder.FsyncPolicy.NONE);
+
+        // Spans several 32 KiB buffers plus a partial one.
+        short[] chunk = new short[320];
+        int chunks = 200;
+        for (int chunkIndex = 0; chunkIndex < chunks; chunkIndex += 1) {
+            for (int index = 0; index < chunk.length; index += 1) {
+                chunk[index] = (short) (chunkIndex * chunk.length + index);
+            }
+            recorder.write(chunk, 0, chunk.length);
+            while (recorder.lagMs() > 1_500) {
+                // Four seconds of audio outrun the two-second buffer budget unless paced like a live capture.
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(recorder.close(2_000));
+        int dataBytes = chunks * chunk.length * 2;
+        assertEquals(dataBytes, recorder.writtenBytes());
+        assertEquals(0, recorder.droppedBytes());
+        assertEquals(0, recorder.lagBytes());
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(PcmFileRecorder.WAV_HEADER_BYTES + dataBytes, bytes.limit());
+        assertEquals(36 + dataBytes, bytes.getInt(4));
+        assertEquals(16_000, bytes.getInt(24));
+        assertEquals(32_000, bytes.getInt(28));
+        assertEquals(16, bytes.getShort(34));
+        assertEquals(dataBytes, bytes.getInt(40));
+        for (int frame = 0; frame < dataBytes / 2; frame += 1) {
+            assertEquals((short) frame, bytes.getShort(PcmFileRecorder.WAV_HEADER_BYTES + frame * 2));
+        }
+    }
+
+    @Test
+    public void rawRecordingHasNoHeaderAndSyncsEveryBufferWhenAsked() throws Exception {
+        File file = folder.newFile("capture.pcm");
+        PcmFileRecorder recorder = PcmFileRecorder.open(file, 48_000, PcmFileRecorder.Format.RAW, PcmFileRecorder.FsyncPolicy.ALWAYS);
+
+        recorder.write(new short[] { 1, -1, Short.MAX_VALUE, Short.MIN_VALUE }, 1, 3);
+        assertTrue(recorder.close(2_000));
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(6, bytes.limit());
+        assertEquals(-1, bytes.getShort(0));
+        assertEquals(Short.MAX_VALUE, bytes.getShort(2));
+        assertEquals(Short.MIN_VALUE, bytes.getShort(4));
+        // One sync for the buffer and one when the file is closed.
+        assertEquals(2, recorder.fsyncCount());
+    }
+}
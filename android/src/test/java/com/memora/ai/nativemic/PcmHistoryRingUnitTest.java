@@ -0,0 +1,56 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class PcmHistoryRingUnitTest {
+
+    @Test
+    public void keepsTheMostRecentFramesAcrossWraparound() {
+        PcmHistoryRing history = new PcmHistoryRing(8);
+        short[] chunk = new short[3];
+        for (int chunkIndex = 0; chunkIndex < 5; chunkIndex += 1) {
+            for (int index = 0; index < chunk.length; index += 1) {
+                chunk[index] = (short) (chunkIndex * chunk.length + index);
+            }
+            history.write(chunk, 0, chunk.length);
+        }
+
+        assertEquals(7, history.oldestFrame());
+        assertEquals(15, history.endFrame());
+
+        short[] slice = new short[6];
+        history.copy(8, 6, slice, 0);
+        assertArrayEquals(new short[] { 8, 9, 10, 11, 12, 13 }, slice);
+    }
+
+    @Test
+    public void oversizedWriteKeepsOnlyItsTail() {
+        PcmHistoryRing history = new PcmHistoryRing(4);
+        history.write(new short[] { 1, 2 }, 0, 2);
+        history.write(new short[] { 3, 4, 5, 6, 7, 8 }, 0, 6);
+
+        assertEquals(4, history.oldestFrame());
+        assertEquals(8, history.endFrame());
+
+        short[] slice = new short[4];
+        history.copy(4, 4, slice, 0);
+        assertArrayEquals(new short[] { 5, 6, 7, 8 }, slice);
+    }
+
+    @Test
+    public void rejectsFramesThatWereOverwritten() {
+        PcmHistoryRing history = new PcmHistoryRing(4);
+        history.write(new short[] { 1, 2, 3, 4, 5, 6 }, 0, 6);
+
+        try {
+            history.copy(1, 2, new short[2], 0);
+            fail("Expected overwritten frames to be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Frames 0 and 1 are gone.
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class PcmStreamServerUnitTest {
+
+    @Test
+    public void encodedFrameUsesLittleEndianHeaderAndPayload() {
+        byte[] frame = PcmStreamServer.encodeFrame(7, 1_234L, new short[] { 1, -2, Short.MAX_VALUE }, 3, true);
+        ByteBuffer buffer = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(PcmStreamServer.FRAME_HEADER_BYTES + 6, frame.length);
+        assertEquals(6, buffer.getInt());
+        assertEquals(3, buffer.getInt());
+        assertEquals(7L, buffer.getLong());
+        assertEquals(1_234L, buffer.getLong());
+        assertEquals(PcmStreamServer.FLAG_FINAL, buffer.getInt());
+        assertEquals(1, buffer.getShort());
+        assertEquals(-2, buffer.getShort());
+        assertEquals(Short.MAX_VALUE, buffer.getShort());
+    }
+
+    @Test
+    public void plainHttpClientReceivesPublishedFramesUntilClose() throws Exception {
+        PcmStreamServer server = PcmStreamServer.start("secret", Arrays.asList("pcm16k_s16le"));
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(server.urlFor("pcm16k_s16le")).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            InputStream body = connection.getInputStream();
+
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (server.clientCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, server.clientCount());
+
+            byte[] first = PcmStreamServer.encodeFrame(0, 100, new short[] { 10, 20 }, 2, false);
+            byte[] second = PcmStreamServer.encodeFrame(1, 120, new short[] { 30, 40 }, 2, true);
+            server.publish("pcm16k_s16le", first);
+            server.publish("pcm48k_s16le", PcmStreamServer.encodeFrame(0, 100, new short[] { 99 }, 1, false));
+            server.publish("pcm16k_s16le", second);
+            server.close();
+
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                received.write(buffer, 0, read);
+            }
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(first);
+            expected.write(second);
+            assertArrayEquals(expected.toByteArray(), received.toByteArray());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void requestsWithoutTheCaptureTokenAreRejected() throws Exception {
+        PcmStreamServer server = PcmStreamServer.start("secret", Arrays.asList("pcm16k_s16le"));
+        try {
+            String base = "http://127.0.0.1:" + server.port();
+            assertEquals(403, status(base + "/pcm/pcm16k_s16le?token=wrong"));
+            assertEquals(403, status(base + "/pcm/pcm16k_s16le"));
+            assertEquals(404, status(base + "/pcm/pcm48k_s16le?token=secret"));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void connectionsOverTheLimitAreTurnedAway() throws Exception {
+        PcmStreamServer server = PcmStreamServer.start("secret", Arrays.asList("pcm16k_s16le"));
+        List<Socket> idle = new ArrayList<>();
+        try {
+            for (int index = 0; index < PcmStreamServer.MAX_CONNECTIONS; index += 1) {
+                idle.add(new Socket("127.0.0.1", server.port()));
+            }
+            assertEquals(503, status("http://127.0.0.1:" + server.port() + "/pcm/pcm16k_s16le?token=secret"));
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+            server.close();
+        }
+    }
+
+    @Test
+    public void oversizedRequestHeadsAreDroppedUnanswered() throws Exception {
+        PcmStreamServer server = PcmStreamServer.start("secret", Arrays.asList("pcm16k_s16le"));
+        try (Socket socket = new Socket("127.0.0.1", server.port())) {
+            socket.setSoTimeout(5_000);
+            StringBuilder request = new StringBuilder("GET /pcm/pcm16k_s16le?token=secret HTTP/1.1\r\n");
+            for (int index = 0; index < 1_000; index += 1) {
+                request.append("X-Padding: 0123456789abcdef\r\n");
+            }
+            request.append("\r\n");
+            String response;
+            try {
+                OutputStream output = socket.getOutputStream();
+                output.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+                output.flush();
+                response = readAll(socket.getInputStream());
+            } catch (IOException reset) {
+                response = "";
+            }
+            assertFalse(response, response.startsWith("HTTP/1.1 200"));
+            assertEquals(0, server.clientCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void queryParsingExtractsStreamAndToken() {
+        assertEquals("pcm16k_s16le", PcmStreamServer.parseStream("/pcm/pcm16k_s16le?token=abc"));
+        assertNull(PcmStreamServer.parseStream("/other/pcm16k_s16le"));
+        assertEquals("abc", PcmStreamServer.parseQueryParameter("/pcm/x?foo=1&token=abc", "token"));
+        assertNull(PcmStreamServer.parseQueryParameter("/pcm/x", "token"));
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            received.write(buffer, 0, read);
+        }
+        return new String(received.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static int status(String url) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
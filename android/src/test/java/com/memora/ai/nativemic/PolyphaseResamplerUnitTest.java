@@ -0,0 +1,81 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PolyphaseResamplerUnitTest {
+
+    @Test
+    public void outputFrameCountMatchesRatioAfterFlush() {
+        int[][] ratios = new int[][] { { 48_000, 16_000 }, { 44_100, 16_000 }, { 44_100, 48_000 }, { 32_000, 16_000 }, { 16_000, 48_000 } };
+        for (int[] ratio : ratios) {
+            PolyphaseResampler resampler = new PolyphaseResampler(ratio[0], ratio[1]);
+            float[] input = tone(ratio[0], 440, 960);
+            float[] output = new float[resampler.maxOutputFrames(input.length) * 10 + resampler.maxFlushFrames()];
+
+            int written = 0;
+            for (int block = 0; block < 10; block += 1) {
+                written += resampler.process(input, 0, input.length, output, written);
+            }
+            written += resampler.flush(output, written);
+
+            long expected = ((long) input.length * 10 * ratio[1] + ratio[0] - 1) / ratio[0];
+            assertEquals(expected, written);
+        }
+    }
+
+    @Test
+    public void passbandToneKeepsUnityGain() {
+        float[] output = resampleAll(new PolyphaseResampler(48_000, 16_000), tone(48_000, 1_000, 48_000));
+
+        double rms = rms(output, 200, output.length - 200);
+        assertEquals(Math.sqrt(0.5), rms, 0.02);
+    }
+
+    @Test
+    public void decimationRejectsContentAboveOutputNyquist() {
+        float[] input = tone(48_000, 12_000, 48_000);
+
+        double polyphaseRms = rms(resampleAll(new PolyphaseResampler(48_000, 16_000), input), 200, 15_800);
+        double linearRms = rms(resampleAll(new NativeMic.LinearResampler(48_000, 16_000), input), 200, 15_800);
+
+        assertTrue(20 * Math.log10(polyphaseRms / Math.sqrt(0.5)) < -50);
+        assertTrue(linearRms > 0.1);
+    }
+
+    @Test
+    public void sincQualityFallsBackToLinearForUnsupportedRatios() {
+        assertTrue(NativeMic.StreamPipeline.createResampler(48_000, 16_000, NativeMic.ResamplerQuality.SINC) instanceof PolyphaseResampler);
+        assertTrue(
+            NativeMic.StreamPipeline.createResampler(48_000, 16_000, NativeMic.ResamplerQuality.LINEAR) instanceof NativeMic.LinearResampler
+        );
+        assertTrue(NativeMic.StreamPipeline.createResampler(48_000, 16_001, NativeMic.ResamplerQuality.SINC) instanceof NativeMic.LinearResampler);
+    }
+
+    private static float[] resampleAll(NativeMic.Resampler resampler, float[] input) {
+        float[] output = new float[resampler.maxOutputFrames(input.length) + resampler.maxFlushFrames()];
+        int written = resampler.process(input, 0, input.length, output, 0);
+        written += resampler.flush(output, written);
+        float[] trimmed = new float[written];
+        System.arraycopy(output, 0, trimmed, 0, written);
+        return trimmed;
+    }
+
+    private static float[] tone(int sampleRate, double frequency, int frames) {
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = (float) Math.sin((index / (double) sampleRate) * Math.PI * 2 * frequency);
+        }
+        return samples;
+    }
+
+    private static double rms(float[] samples, int from, int to) {
+        double sum = 0;
+        for (int index = from; index < to; index += 1) {
+            sum += samples[index] * samples[index];
+        }
+        return Math.sqrt(sum / (to - from));
+    }
+}
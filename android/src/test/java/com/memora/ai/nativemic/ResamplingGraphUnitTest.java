@@ -0,0 +1,110 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ResamplingGraphUnitTest {
+
+    @Test
+    public void lowerRatesHangOffTheClosestIntegerMultiple() {
+        ResamplingGraph graph = new ResamplingGraph(
+            48_000,
+            Arrays.asList(8_000, 16_000, 48_000, 24_000, 44_100, 16_000),
+            960,
+            NativeMic.ResamplerQuality.SINC
+        );
+
+        List<ResamplingGraph.Stage> stages = graph.stages();
+        assertEquals(4, stages.size());
+        assertEquals(44_100, stages.get(0).sampleRate);
+        assertEquals(24_000, stages.get(1).sampleRate);
+        assertEquals(16_000, stages.get(2).sampleRate);
+        assertEquals(8_000, stages.get(3).sampleRate);
+
+        assertTrue(graph.stage(48_000).isInput());
+        assertTrue(graph.stage(44_100).parent.isInput());
+        assertTrue(graph.stage(24_000).parent.isInput());
+        assertTrue(graph.stage(16_000).parent.isInput());
+        assertSame(graph.stage(16_000), graph.stage(8_000).parent);
+        assertEquals("none", graph.stage(48_000).resamplerName());
+        assertEquals("sinc", graph.stage(8_000).resamplerName());
+    }
+
+    @Test
+    public void chainedStagesProduceTheFullFrameCountAfterFlush() {
+        ResamplingGraph graph = new ResamplingGraph(48_000, Arrays.asList(16_000, 8_000), 960, NativeMic.ResamplerQuality.SINC);
+        float[] input = tone(48_000, 440, 960);
+        int[] written = new int[2];
+
+        for (int block = 0; block < 10; block += 1) {
+            graph.process(input, 0, input.length);
+            written[0] += graph.stage(16_000).length;
+            written[1] += graph.stage(8_000).length;
+        }
+        graph.flush();
+        written[0] += graph.stage(16_000).length;
+        written[1] += graph.stage(8_000).length;
+
+        assertEquals(3_200, written[0]);
+        assertEquals(1_600, written[1]);
+    }
+
+    @Test
+    public void chainedStageStillRejectsContentAboveItsNyquist() {
+        ResamplingGraph graph = new ResamplingGraph(48_000, Arrays.asList(16_000, 8_000), 960, NativeMic.ResamplerQuality.SINC);
+        // Passes the 16k stage untouched but must not alias into the 8k stage it feeds.
+        float[] input = tone(48_000, 6_000, 48_000);
+        float[] output = new float[8_000];
+        int written = 0;
+
+        for (int offset = 0; offset < input.length; offset += 960) {
+            graph.process(input, offset, 960);
+            ResamplingGraph.Stage stage = graph.stage(8_000);
+            System.arraycopy(stage.samples, stage.offset, output, written, stage.length);
+            written += stage.length;
+        }
+
+        double energy = 0;
+        for (int index = 200; index < written - 200; index += 1) {
+            energy += output[index] * output[index];
+        }
+        assertTrue(Math.sqrt(energy / (written - 400)) < 0.01);
+    }
+
+    @Test
+    public void pipelinesSharingAGraphMatchStandalonePipelines() {
+        float[] input = tone(48_000, 440, 960);
+        ResamplingGraph graph = new ResamplingGraph(48_000, Arrays.asList(16_000, 8_000), 960, NativeMic.ResamplerQuality.SINC);
+        NativeMic.StreamPipeline shared = new NativeMic.StreamPipeline(NativeMic.OutputStream.MULAW16K, graph, 20, 1);
+        NativeMic.StreamPipeline standalone = new NativeMic.StreamPipeline(
+            NativeMic.OutputStream.MULAW16K,
+            48_000,
+            20,
+            960,
+            NativeMic.ResamplerQuality.SINC
+        );
+
+        for (int block = 0; block < 5; block += 1) {
+            graph.process(input, 0, input.length);
+            shared.pull();
+            standalone.convert(input, input.length);
+            while (standalone.popChunk()) {
+                assertTrue(shared.popChunk());
+                assertEquals(Arrays.toString(standalone.chunkBuffer), Arrays.toString(shared.chunkBuffer));
+            }
+        }
+    }
+
+    private static float[] tone(int sampleRate, double frequency, int frames) {
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = (float) (0.5 * Math.sin((index / (double) sampleRate) * Math.PI * 2 * frequency));
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,54 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SkippedInputMapUnitTest {
+
+    @Test
+    public void positionsBeforeAnOverrunKeepTheirOffset() {
+        SkippedInputMap map = new SkippedInputMap();
+        map.record(0, 0);
+        // 960 frames processed, then 320 dropped, then 640 dropped further on.
+        map.record(960, 320);
+        map.record(4_800, 960);
+
+        assertEquals(960, map.skippedFrames());
+        assertEquals(500, map.capturedFrameAt(500));
+        assertEquals(960 + 320, map.capturedFrameAt(960));
+        assertEquals(4_799 + 320, map.capturedFrameAt(4_799));
+        assertEquals(4_800 + 960, map.capturedFrameAt(4_800));
+
+        assertEquals(500, map.processedFrameAt(500));
+        assertEquals(4_799, map.processedFrameAt(4_799 + 320));
+        assertEquals(6_000, map.processedFrameAt(6_000 + 960));
+    }
+
+    @Test
+    public void skippedCapturePositionsMapToTheNextProcessedFrame() {
+        SkippedInputMap map = new SkippedInputMap();
+        map.record(960, 320);
+
+        assertEquals(959, map.processedFrameAt(959));
+        assertEquals(960, map.processedFrameAt(960));
+        assertEquals(960, map.processedFrameAt(1_100));
+        assertEquals(960, map.processedFrameAt(1_280));
+        assertEquals(961, map.processedFrameAt(1_281));
+    }
+
+    @Test
+    public void roundTripsAcrossManySteps() {
+        SkippedInputMap map = new SkippedInputMap();
+        for (int step = 1; step <= 100; step += 1) {
+            map.record(step * 1_000L, step * 10L);
+        }
+
+        for (long processed = 0; processed < 101_000; processed += 37) {
+            assertEquals(processed, map.processedFrameAt(map.capturedFrameAt(processed)));
+        }
+        map.reset();
+        assertEquals(0, map.skippedFrames());
+        assertEquals(12_345, map.capturedFrameAt(12_345));
+    }
+}
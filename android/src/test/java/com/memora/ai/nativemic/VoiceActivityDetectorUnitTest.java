@@ -0,0 +1,136 @@
+package com.memora.ai.nativemic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class VoiceActivityDetectorUnitTest {
+
+    private static final int RATE = 16_000;
+
+    @Test
+    public void steadyFanNoiseIsNotSpeech() {
+        VoiceActivityDetector detector = new VoiceActivityDetector(RATE);
+        int speechFrames = feedCountingSpeech(detector, noise(RATE * 3, -40, 1));
+
+        assertFalse(detector.isSpeech());
+        assertEquals(0, speechFrames);
+        assertEquals(-40, detector.noiseFloorDb(), 3);
+    }
+
+    @Test
+    public void lowFrequencyHumOnsetIsNotSpeech() {
+        VoiceActivityDetector detector = new VoiceActivityDetector(RATE);
+        detector.process(noise(RATE, -75, 2), 0, RATE);
+        int speechFrames = feedCountingSpeech(detector, tone(RATE * 2, 60, -30));
+
+        assertEquals(0, speechFrames);
+        assertFalse(detector.isSpeech());
+    }
+
+    @Test
+    public void quietSpeakerOverQuietRoomIsDetected() {
+        VoiceActivityDetector detector = new VoiceActivityDetector(RATE);
+        float[] room = noise(RATE, -70, 3);
+        detector.process(room, 0, room.length);
+        assertFalse(detector.isSpeech());
+
+        // Around -50 dBFS: well under the old fixed -45 dBFS threshold.
+        float[] voice = mix(voiced(RATE, -50), noise(RATE, -70, 4));
+        int speechFrames = feedCountingSpeech(detector, voice);
+
+        assertTrue(detector.isSpeech());
+        assertTrue(speechFrames > 50);
+        assertEquals(1, detector.speechSegments());
+    }
+
+    @Test
+    public void hangoverHoldsActivityThenReleases() {
+        VoiceActivityDetector detector = new VoiceActivityDetector(RATE, 200);
+        detector.process(noise(RATE / 2, -70, 5), 0, RATE / 2);
+        float[] voice = voiced(RATE / 2, -30);
+        detector.process(voice, 0, voice.length);
+        assertTrue(detector.isSpeech());
+
+        float[] tail = noise(RATE / 10, -70, 6);
+        detector.process(tail, 0, tail.length);
+        assertTrue(detector.isSpeech());
+
+        float[] quiet = noise(RATE / 5, -70, 7);
+        detector.process(quiet, 0, quiet.length);
+        assertFalse(detector.isSpeech());
+    }
+
+    private static int feedCountingSpeech(VoiceActivityDetector detector, float[] samples) {
+        int frame = RATE / 100;
+        int speechFrames = 0;
+        for (int offset = 0; offset + frame <= samples.length; offset += frame) {
+            detector.process(samples, offset, frame);
+            if (detector.isSpeech()) {
+                speechFrames += 1;
+            }
+        }
+        return speechFrames;
+    }
+
+    /** Harmonic-rich 140 Hz voice with two formant-like peaks and syllable-rate modulation. */
+    private static float[] voiced(int frames, double levelDb) {
+        double amplitude = Math.pow(10, levelDb / 20) * Math.sqrt(2);
+        float[] samples = new float[frames];
+        double fundamental = 140;
+        for (int index = 0; index < frames; index += 1) {
+            double time = index / (double) RATE;
+            double value = 0;
+            for (int harmonic = 1; harmonic * fundamental < 3_800; harmonic += 1) {
+                double frequency = harmonic * fundamental;
+                double formant = Math.exp(-Math.pow((frequency - 700) / 250, 2)) + 0.6 * Math.exp(-Math.pow((frequency - 1_200) / 300, 2));
+                value += (0.05 + formant) * Math.sin(2 * Math.PI * frequency * time);
+            }
+            double envelope = 0.6 + 0.4 * Math.sin(2 * Math.PI * 4 * time);
+            samples[index] = (float) (value * envelope);
+        }
+        return normalise(samples, amplitude / Math.sqrt(2));
+    }
+
+    private static float[] tone(int frames, double frequency, double levelDb) {
+        double amplitude = Math.pow(10, levelDb / 20) * Math.sqrt(2);
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * index / RATE));
+        }
+        return samples;
+    }
+
+    private static float[] noise(int frames, double levelDb, long seed) {
+        Random random = new Random(seed);
+        double rms = Math.pow(10, levelDb / 20);
+        float[] samples = new float[frames];
+        for (int index = 0; index < frames; index += 1) {
+            samples[index] = (float) (rms * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    private static float[] mix(float[] first, float[] second) {
+        float[] mixed = new float[Math.min(first.length, second.length)];
+        for (int index = 0; index < mixed.length; index += 1) {
+            mixed[index] = first[index] + second[index];
+        }
+        return mixed;
+    }
+
+    private static float[] normalise(float[] samples, double targetRms) {
+        double sum = 0;
+        for (float sample : samples) {
+            sum += sample * sample;
+        }
+        double scale = targetRms / Math.sqrt(sum / samples.length);
+        for (int index = 0; index < samples.length; index += 1) {
+            samples[index] = (float) (samples[index] * scale);
+        }
+        return samples;
+    }
+}
@@ -96,16 +96,14 @@ struct StartCaptureResultModel {
 struct StopCaptureResultModel {
     let captureId: String
     let totalFramesIn: Int64
-    let totalFramesOut16k: Int64
-    let totalFramesOut48k: Int64
+    let totalFramesOut: [String: Int64]
     let durationMs: Int64
 
     func asDictionary() -> [String: Any] {
         [
             "captureId": captureId,
             "totalFramesIn": totalFramesIn,
-            "totalFramesOut16k": totalFramesOut16k,
-            "totalFramesOut48k": totalFramesOut48k,
+            "totalFramesOut": totalFramesOut,
             "durationMs": durationMs
         ]
     }
@@ -738,8 +736,7 @@ final class OutputStreamPipeline {
             let result = StopCaptureResultModel(
                 captureId: activeCaptureId,
                 totalFramesIn: totalFramesIn,
-                totalFramesOut16k: totalFramesOut16k,
-                totalFramesOut48k: totalFramesOut48k,
+                totalFramesOut: totalFramesOutLocked(),
                 durationMs: durationMs
             )
 
@@ -777,8 +774,7 @@ final class OutputStreamPipeline {
                 "actualInputSampleRate": actualInputSampleRate,
                 "actualInputChannels": actualInputChannels,
                 "totalFramesIn": totalFramesIn,
-                "totalFramesOut16k": totalFramesOut16k,
-                "totalFramesOut48k": totalFramesOut48k,
+                "totalFramesOut": totalFramesOutLocked(),
                 "inputFramesDropped": droppedInputFrames,
                 "inputRingBufferedFrames": inputRingBuffer.availableCount(),
                 "mediaServicesResetCount": mediaServicesResetCount,
@@ -974,6 +970,19 @@ final class OutputStreamPipeline {
         emitEventLocked(name: "micPcmChunk", payload: payload)
     }
 
+    private func totalFramesOutLocked() -> [String: Int64] {
+        var totals: [String: Int64] = [:]
+        for stream in outputPipelines.keys {
+            switch stream {
+            case .pcm16k:
+                totals[stream.rawValue] = totalFramesOut16k
+            case .pcm48k:
+                totals[stream.rawValue] = totalFramesOut48k
+            }
+        }
+        return totals
+    }
+
     private func handleInterruptionLocked(_ notification: Notification) {
         guard let activeCaptureId else {
             return
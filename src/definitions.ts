@@ -3,8 +3,29 @@ import type { PluginListenerHandle } from '@capacitor/core';
 export type MicPermissionState = 'prompt' | 'granted' | 'denied';
 export type MicProfile = 'waveform' | 'pipecat';
 export type SessionMode = 'measurement' | 'voice_chat';
-export type OutputStream = 'pcm16k_s16le' | 'pcm48k_s16le';
+export type StreamEncoding = 's16le' | 'mulaw' | 'ima_adpcm' | 'flac' | 'f32le';
+export type OutputStream = `pcm${number}k_${StreamEncoding}` | `pcm${number}_${StreamEncoding}`;
+export interface OutputStreamSpec {
+  rate: number;
+  format?: StreamEncoding;
+}
 export type OutputRoute = 'system' | 'speaker' | 'receiver';
+export type ResamplerQuality = 'linear' | 'sinc';
+export type CaptureEncoding = 'pcm16' | 'float';
+export type ChannelMix = 'average' | 'left' | 'right' | 'loudest';
+export type PcmTransport = 'events' | 'loopback';
+export type PcmBackpressure = 'drop_oldest' | 'block' | 'reliable';
+export type LatencyStage =
+  | 'read'
+  | 'queue'
+  | 'convert'
+  | 'resample'
+  | 'encode'
+  | 'emit'
+  | 'jsDispatch'
+  | 'captureCpu'
+  | 'processCpu';
+
 export type NativeWebRTCState =
   | 'idle'
   | 'initializing'
@@ -34,13 +55,38 @@ export type RTCIceServerLike = {
 export interface StartCaptureOptions {
   profile: MicProfile;
   mode: SessionMode;
-  outputStreams: OutputStream[];
+  outputStreams: (OutputStream | OutputStreamSpec)[];
   chunkMs?: number;
   emitAudioLevel?: boolean;
   audioLevelIntervalMs?: number;
   voiceProcessing?: boolean;
   preferredInputId?: string;
   outputRoute?: OutputRoute;
+  resamplerQuality?: ResamplerQuality;
+  captureEncoding?: CaptureEncoding;
+  channels?: 1 | 2;
+  channelMix?: ChannelMix;
+  pcmTransport?: PcmTransport;
+  pcmBackpressure?: PcmBackpressure;
+  batchChunks?: number;
+  maxBatchMs?: number;
+  gateOnVad?: boolean;
+  vadPreRollMs?: number;
+  vadPostRollMs?: number;
+  historyMs?: number;
+  record?: RecordOptions;
+  diskHistory?: DiskHistoryOptions;
+}
+
+export type RecordFormat = 'wav' | 'raw';
+
+export type RecordFsyncPolicy = 'none' | 'periodic' | 'always';
+
+export interface RecordOptions {
+  path: string;
+  stream?: OutputStream;
+  format?: RecordFormat;
+  fsync?: RecordFsyncPolicy;
 }
 
 export interface StartCaptureResult {
@@ -48,6 +94,13 @@ export interface StartCaptureResult {
   actualInputSampleRate: number;
   actualInputChannels: number;
   chunkMs: number;
+  batchChunks: number;
+  streamUrls?: Partial<Record<OutputStream, string>>;
+  streamHeaders?: Partial<Record<OutputStream, string>>;
+  /** Started on the engine built by prepareCapture. */
+  warmStart?: boolean;
+  /** Time spent inside startCapture. */
+  startupMs?: number;
 }
 
 export interface StopCaptureOptions {
@@ -58,9 +111,75 @@ export interface StopCaptureOptions {
 export interface StopCaptureResult {
   captureId: string;
   totalFramesIn: number;
-  totalFramesOut16k: number;
-  totalFramesOut48k: number;
+  totalFramesOut: Partial<Record<OutputStream, number>>;
   durationMs: number;
+  recording?: RecordingResult;
+  /** Per-stage capture path timings (Android). */
+  latency?: Partial<Record<LatencyStage, LatencySummary>>;
+}
+
+/** Percentiles are bucketed with about 12.5% resolution. */
+export interface LatencySummary {
+  count: number;
+  p50Ms: number;
+  p95Ms: number;
+  p99Ms: number;
+  maxMs: number;
+  meanMs: number;
+  totalMs: number;
+}
+
+export interface RecordingResult {
+  path: string;
+  stream: OutputStream;
+  format: RecordFormat;
+  bytesWritten: number;
+  droppedBytes: number;
+  writerLagMs: number;
+  maxWriterLagMs: number;
+  complete: boolean;
+}
+
+export interface DiskHistoryOptions {
+  path: string;
+  stream?: OutputStream;
+  durationMs?: number;
+}
+
+export interface ExportHistoryFileOptions {
+  path: string;
+  outputPath: string;
+  fromMs?: number;
+  toMs?: number;
+}
+
+export interface ExportHistoryFileResult {
+  path: string;
+  outputPath: string;
+  captureId: string;
+  sampleRate: number;
+  startedAtEpochMs: number;
+  ptsMs: number;
+  frames: number;
+  durationMs: number;
+  recovered: boolean;
+}
+
+export interface GetRecentAudioOptions {
+  captureId: string;
+  stream: OutputStream;
+  fromMs?: number;
+  toMs?: number;
+}
+
+export interface RecentAudioResult {
+  captureId: string;
+  stream: OutputStream;
+  sampleRate: number;
+  channels: 1;
+  ptsMs: number;
+  frames: number;
+  dataBase64: string;
 }
 
 export interface MicDevice {
@@ -74,26 +193,51 @@ export interface MicStateChangedEvent {
   captureId?: string;
   state: 'idle' | 'running' | 'paused';
   reason?: string;
+  /** Set with reason 'media_services_recovered': time from the recorder dying until audio flowed again. */
+  recoveryMs?: number;
+  /** Set with reason 'media_services_recovered': silence inserted for the audio lost meanwhile. */
+  concealedMs?: number;
 }
 
 export interface MicPcmChunkEvent {
   captureId: string;
   stream: OutputStream;
-  sampleRate: 16000 | 48000;
+  sampleRate: number;
   channels: 1;
+  encoding?: StreamEncoding;
   frames: number;
   seq: number;
   ptsMs: number;
-  dataBase64: string;
+  dataBase64?: string;
+  captureLatencyMs?: number;
+  /** First chunk of a capture only: time from the startCapture call until this chunk was emitted. */
+  timeToFirstChunkMs?: number;
+  chunks?: MicPcmChunkInfo[];
+  segmentStart?: boolean;
+  segmentEnd?: boolean;
+  /** Contains silence standing in for audio lost while the recorder was rebuilt. */
+  concealed?: boolean;
   final?: boolean;
 }
 
+export interface MicPcmChunkInfo {
+  seq: number;
+  ptsMs: number;
+  frames: number;
+}
+
 export interface MicAudioLevelEvent {
   captureId: string;
   rms: number;
   peak: number;
   dbfs: number;
   vad?: boolean;
+  truePeak?: number;
+  truePeakDbtp?: number;
+  momentaryLufs?: number;
+  shortTermLufs?: number;
+  dcOffset?: number;
+  clippedSamples?: number;
   ptsMs: number;
 }
 
@@ -201,9 +345,13 @@ export interface NativeMicPlugin {
   setPreferredInput(options: { inputId: string | null }): Promise<void>;
   setOutputRoute(options: { route: OutputRoute }): Promise<void>;
 
+  prepareCapture(options: StartCaptureOptions): Promise<void>;
+  releasePreparedCapture(): Promise<void>;
   startCapture(options: StartCaptureOptions): Promise<StartCaptureResult>;
   stopCapture(options: StopCaptureOptions): Promise<StopCaptureResult>;
   setMicEnabled(options: { captureId: string; enabled: boolean }): Promise<void>;
+  getRecentAudio(options: GetRecentAudioOptions): Promise<RecentAudioResult>;
+  exportHistoryFile(options: ExportHistoryFileOptions): Promise<ExportHistoryFileResult>;
   getState(): Promise<{ state: 'idle' | 'running' | 'paused' }>;
   getDiagnostics(): Promise<Record<string, unknown>>;
 
@@ -1,6 +1,10 @@
 import { WebPlugin } from "@capacitor/core";
 
 import type {
+	ChannelMix,
+	ExportHistoryFileOptions,
+	ExportHistoryFileResult,
+	GetRecentAudioOptions,
 	MicDevice,
 	MicPermissionState,
 	MicProfile,
@@ -11,6 +15,8 @@ import type {
 	NativeWebRTCStateResult,
 	OutputRoute,
 	OutputStream,
+	OutputStreamSpec,
+	RecentAudioResult,
 	SessionMode,
 	StartCaptureOptions,
 	StartCaptureResult,
@@ -54,16 +60,19 @@ interface CaptureConfig {
 	voiceProcessing: boolean;
 	preferredInputId?: string;
 	outputRoute: OutputRoute;
+	channels: number;
+	channelMix: ChannelMix;
 }
 
 interface StreamPipeline {
 	stream: OutputStream;
-	sampleRate: 16000 | 48000;
+	sampleRate: number;
 	chunkFrames: number;
 	seq: number;
 	emittedFrames: number;
 	pendingSamples: number[];
 	resampler: LinearResampler;
+	float: boolean;
 }
 
 class LinearResampler {
@@ -149,11 +158,11 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 	private preferredInputId?: string;
 	private selectedOutputRoute: OutputRoute = "system";
 	private micEnabled = true;
+	private activeChannel = 0;
+	private channelEnergy: number[] = [];
 
 	private captureStartPtsMs = 0;
 	private totalFramesIn = 0;
-	private totalFramesOut16k = 0;
-	private totalFramesOut48k = 0;
 	private actualInputSampleRate = 0;
 	private actualInputChannels = 0;
 	private droppedInputFrames = 0;
@@ -319,6 +328,13 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		}
 	}
 
+	async prepareCapture(options: StartCaptureOptions): Promise<void> {
+		// The browser has no recorder to build ahead of time; only validate.
+		this.normalizeStartOptions(options);
+	}
+
+	async releasePreparedCapture(): Promise<void> {}
+
 	async startCapture(
 		options: StartCaptureOptions,
 	): Promise<StartCaptureResult> {
@@ -377,8 +393,6 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			this.micEnabled = true;
 
 			this.totalFramesIn = 0;
-			this.totalFramesOut16k = 0;
-			this.totalFramesOut48k = 0;
 			this.droppedInputFrames = 0;
 			this.levelSumSquares = 0;
 			this.levelPeak = 0;
@@ -493,8 +507,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		const result: StopCaptureResult = {
 			captureId: activeCaptureId,
 			totalFramesIn: this.totalFramesIn,
-			totalFramesOut16k: this.totalFramesOut16k,
-			totalFramesOut48k: this.totalFramesOut48k,
+			totalFramesOut: this.totalFramesOut(),
 			durationMs,
 		};
 
@@ -536,6 +549,47 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		this.micEnabled = enabled;
 	}
 
+	async getRecentAudio(
+		options: GetRecentAudioOptions,
+	): Promise<RecentAudioResult> {
+		const captureId =
+			typeof options?.captureId === "string" ? options.captureId : "";
+		if (!captureId) {
+			this.reject("E_INTERNAL", "captureId is required.", false, undefined);
+		}
+
+		if (
+			!this.activeCaptureId ||
+			this.activeCaptureId !== captureId ||
+			this.state === "idle"
+		) {
+			this.reject(
+				"E_NOT_RUNNING",
+				`No active capture matches ${captureId}.`,
+				false,
+				captureId,
+			);
+		}
+
+		this.reject(
+			"E_INTERNAL",
+			"Recent audio history is not implemented on web.",
+			false,
+			captureId,
+		);
+	}
+
+	async exportHistoryFile(
+		_options: ExportHistoryFileOptions,
+	): Promise<ExportHistoryFileResult> {
+		this.reject(
+			"E_INTERNAL",
+			"Disk history files are not implemented on web.",
+			false,
+			undefined,
+		);
+	}
+
 	async getState(): Promise<{ state: "idle" | "running" | "paused" }> {
 		return { state: this.state };
 	}
@@ -548,8 +602,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			actualInputSampleRate: this.actualInputSampleRate,
 			actualInputChannels: this.actualInputChannels,
 			totalFramesIn: this.totalFramesIn,
-			totalFramesOut16k: this.totalFramesOut16k,
-			totalFramesOut48k: this.totalFramesOut48k,
+			totalFramesOut: this.totalFramesOut(),
 			inputFramesDropped: this.droppedInputFrames,
 			inputRingBufferedFrames: 0,
 			mediaServicesResetCount: this.mediaServicesResetCount,
@@ -756,7 +809,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		if (!outputStreams || outputStreams.length === 0) {
 			this.reject(
 				"E_INTERNAL",
-				"outputStreams must include pcm16k_s16le, pcm48k_s16le, or both.",
+				"outputStreams must include one or more pcm<rate>_s16le or pcm<rate>_f32le streams with a rate of 8000-48000 Hz.",
 				false,
 				undefined,
 			);
@@ -809,6 +862,29 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			? options.outputRoute
 			: "system";
 
+		const channels = options.channels ?? 1;
+		if (channels !== 1 && channels !== 2) {
+			this.reject(
+				"E_INTERNAL",
+				"channels must be between 1 and 2.",
+				false,
+				undefined,
+			);
+		}
+
+		if (
+			options.channelMix !== undefined &&
+			!this.isChannelMix(options.channelMix)
+		) {
+			this.reject(
+				"E_INTERNAL",
+				"channelMix must be average, left, right, or loudest.",
+				false,
+				undefined,
+			);
+		}
+		const channelMix = options.channelMix ?? "average";
+
 		return {
 			profile: options.profile,
 			mode: options.mode,
@@ -819,11 +895,13 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			voiceProcessing,
 			preferredInputId,
 			outputRoute,
+			channels,
+			channelMix,
 		};
 	}
 
 	private parseOutputStreams(
-		streams: OutputStream[] | undefined,
+		streams: (OutputStream | OutputStreamSpec)[] | undefined,
 	): OutputStream[] | null {
 		if (!Array.isArray(streams)) {
 			return null;
@@ -832,7 +910,11 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		const parsed: OutputStream[] = [];
 		const seen = new Set<OutputStream>();
 
-		for (const rawStream of streams) {
+		for (const rawValue of streams) {
+			const rawStream =
+				typeof rawValue === "object" && rawValue !== null
+					? this.streamNameForSpec(rawValue)
+					: rawValue;
 			if (!this.isOutputStream(rawStream)) {
 				return null;
 			}
@@ -885,7 +967,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 
 		const preferredInputId = config.preferredInputId ?? this.preferredInputId;
 		const audioConstraints: MediaTrackConstraints = {
-			channelCount: { ideal: 1 },
+			channelCount: { ideal: config.channels },
 			echoCancellation: config.voiceProcessing,
 			noiseSuppression: config.voiceProcessing,
 			autoGainControl: config.voiceProcessing,
@@ -998,11 +1080,12 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			this.pipelines.set(stream, {
 				stream,
 				sampleRate,
-				chunkFrames: (sampleRate * chunkMs) / 1_000,
+				chunkFrames: Math.floor((sampleRate * chunkMs) / 1_000),
 				seq: 0,
 				emittedFrames: 0,
 				pendingSamples: [],
 				resampler: new LinearResampler(inputSampleRate, sampleRate),
+				float: stream.endsWith("_f32le"),
 			});
 		}
 	}
@@ -1034,10 +1117,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		for (const pipeline of this.pipelines.values()) {
 			const resampled = pipeline.resampler.process(monoSamples);
 			if (resampled.length > 0) {
-				const pcm16 = this.floatToPcm16(resampled);
-				for (let index = 0; index < pcm16.length; index += 1) {
-					pipeline.pendingSamples.push(pcm16[index]);
-				}
+				this.queueSamples(pipeline, resampled);
 			}
 			this.emitAvailableChunks(pipeline, false);
 		}
@@ -1058,6 +1138,22 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			return new Float32Array(buffer.getChannelData(0));
 		}
 
+		const mix = this.activeConfig?.channelMix ?? "average";
+		if (mix !== "average") {
+			// Same rule as Android: pick from the energy seen so far, switch on a 3 dB lead.
+			let selected = Math.min(this.activeChannel, channelCount - 1);
+			if (mix === "left") {
+				selected = 0;
+			} else if (mix === "right") {
+				selected = Math.min(1, channelCount - 1);
+			}
+			const mono = new Float32Array(buffer.getChannelData(selected));
+			if (mix === "loudest") {
+				this.updateLoudestChannel(buffer);
+			}
+			return mono;
+		}
+
 		const mono = new Float32Array(frameLength);
 		const scale = 1 / channelCount;
 
@@ -1071,6 +1167,30 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		return mono;
 	}
 
+	private updateLoudestChannel(buffer: AudioBuffer): void {
+		const channelCount = buffer.numberOfChannels;
+		const active = Math.min(this.activeChannel, channelCount - 1);
+		let loudest = active;
+
+		for (let channelIndex = 0; channelIndex < channelCount; channelIndex += 1) {
+			const channel = buffer.getChannelData(channelIndex);
+			let sumSquares = 0;
+			for (let frame = 0; frame < channel.length; frame += 1) {
+				sumSquares += channel[frame] * channel[frame];
+			}
+			const energy = sumSquares / Math.max(1, channel.length);
+			const previous = this.channelEnergy[channelIndex] ?? 0;
+			this.channelEnergy[channelIndex] = previous + (energy - previous) * 0.125;
+			if (this.channelEnergy[channelIndex] > (this.channelEnergy[loudest] ?? 0)) {
+				loudest = channelIndex;
+			}
+		}
+
+		if (this.channelEnergy[loudest] > (this.channelEnergy[active] ?? 0) * 2) {
+			this.activeChannel = loudest;
+		}
+	}
+
 	private floatToPcm16(samples: Float32Array): Int16Array {
 		const pcm16 = new Int16Array(samples.length);
 		for (let index = 0; index < samples.length; index += 1) {
@@ -1121,6 +1241,14 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		this.levelFrames = 0;
 	}
 
+	private queueSamples(pipeline: StreamPipeline, samples: Float32Array): void {
+		// f32le streams keep the resampler output as is; s16le streams round it once here.
+		const queued = pipeline.float ? samples : this.floatToPcm16(samples);
+		for (let index = 0; index < queued.length; index += 1) {
+			pipeline.pendingSamples.push(queued[index]);
+		}
+	}
+
 	private emitAvailableChunks(pipeline: StreamPipeline, final: boolean): void {
 		while (pipeline.pendingSamples.length >= pipeline.chunkFrames) {
 			const chunk = pipeline.pendingSamples.splice(0, pipeline.chunkFrames);
@@ -1145,21 +1273,18 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		pipeline.seq += 1;
 		pipeline.emittedFrames += samples.length;
 
-		if (pipeline.stream === "pcm16k_s16le") {
-			this.totalFramesOut16k += samples.length;
-		} else {
-			this.totalFramesOut48k += samples.length;
-		}
-
 		const payload: Record<string, unknown> = {
 			captureId: this.activeCaptureId,
 			stream: pipeline.stream,
 			sampleRate: pipeline.sampleRate,
 			channels: 1,
+			encoding: pipeline.float ? "f32le" : "s16le",
 			frames: samples.length,
 			seq,
 			ptsMs,
-			dataBase64: this.encodePcm16(samples),
+			dataBase64: pipeline.float
+				? this.encodeFloat32(samples)
+				: this.encodePcm16(samples),
 		};
 
 		if (final) {
@@ -1173,10 +1298,7 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		for (const pipeline of this.pipelines.values()) {
 			const remaining = pipeline.resampler.flush();
 			if (remaining.length > 0) {
-				const pcm16 = this.floatToPcm16(remaining);
-				for (let index = 0; index < pcm16.length; index += 1) {
-					pipeline.pendingSamples.push(pcm16[index]);
-				}
+				this.queueSamples(pipeline, remaining);
 			}
 
 			this.emitAvailableChunks(pipeline, false);
@@ -1212,6 +1334,21 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 			view.setInt16(index * 2, samples[index], true);
 		}
 
+		return this.encodeBase64(bytes);
+	}
+
+	private encodeFloat32(samples: number[]): string {
+		const bytes = new Uint8Array(samples.length * 4);
+		const view = new DataView(bytes.buffer);
+
+		for (let index = 0; index < samples.length; index += 1) {
+			view.setFloat32(index * 4, samples[index], true);
+		}
+
+		return this.encodeBase64(bytes);
+	}
+
+	private encodeBase64(bytes: Uint8Array): string {
 		if (typeof btoa === "function") {
 			let binary = "";
 			for (let index = 0; index < bytes.length; index += 1) {
@@ -1603,8 +1740,6 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		this.pipelines.clear();
 		this.captureStartPtsMs = 0;
 		this.totalFramesIn = 0;
-		this.totalFramesOut16k = 0;
-		this.totalFramesOut48k = 0;
 		this.actualInputSampleRate = 0;
 		this.actualInputChannels = 0;
 		this.droppedInputFrames = 0;
@@ -1613,14 +1748,34 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 		this.levelFrames = 0;
 		this.levelIntervalFrames = 0;
 		this.micEnabled = true;
+		this.activeChannel = 0;
+		this.channelEnergy = [];
 	}
 
 	private stopStreamTracks(stream: MediaStream | null): void {
 		stream?.getTracks().forEach((track) => track.stop());
 	}
 
-	private getSampleRateForStream(stream: OutputStream): 16000 | 48000 {
-		return stream === "pcm16k_s16le" ? 16000 : 48000;
+	private getSampleRateForStream(stream: OutputStream): number {
+		const match = /^pcm([1-9][0-9]*)(k?)_/.exec(stream);
+		if (!match) {
+			return 0;
+		}
+		return Number(match[1]) * (match[2] === "k" ? 1_000 : 1);
+	}
+
+	private streamNameForSpec(spec: OutputStreamSpec): string {
+		const rate = Number(spec.rate);
+		const label = rate % 1_000 === 0 ? `${rate / 1_000}k` : String(rate);
+		return `pcm${label}_${spec.format ?? "s16le"}`;
+	}
+
+	private totalFramesOut(): Partial<Record<OutputStream, number>> {
+		const totals: Partial<Record<OutputStream, number>> = {};
+		for (const pipeline of this.pipelines.values()) {
+			totals[pipeline.stream] = pipeline.emittedFrames;
+		}
+		return totals;
 	}
 
 	private createCaptureId(): string {
@@ -1693,13 +1848,35 @@ export class NativeMicWeb extends WebPlugin implements NativeMicPlugin {
 	}
 
 	private isOutputStream(value: unknown): value is OutputStream {
-		return value === "pcm16k_s16le" || value === "pcm48k_s16le";
+		// The web fallback resamples with a linear interpolator and only emits s16le and f32le.
+		if (typeof value !== "string") {
+			return false;
+		}
+		const format = value.endsWith("_f32le") ? "f32le" : "s16le";
+		if (!value.endsWith(`_${format}`)) {
+			return false;
+		}
+		const sampleRate = this.getSampleRateForStream(value as OutputStream);
+		return (
+			sampleRate >= 8_000 &&
+			sampleRate <= 48_000 &&
+			value === this.streamNameForSpec({ rate: sampleRate, format })
+		);
 	}
 
 	private isOutputRoute(value: unknown): value is OutputRoute {
 		return value === "system" || value === "speaker" || value === "receiver";
 	}
 
+	private isChannelMix(value: unknown): value is ChannelMix {
+		return (
+			value === "average" ||
+			value === "left" ||
+			value === "right" ||
+			value === "loudest"
+		);
+	}
+
 	private monotonicMs(): number {
 		if (
 			typeof performance !== "undefined" &&